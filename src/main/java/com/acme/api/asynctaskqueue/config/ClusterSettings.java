@@ -0,0 +1,29 @@
+package com.acme.api.asynctaskqueue.config;
+
+/**
+ * Cluster mode ({@code jobs.cluster.*}): several nodes share the job table of
+ * {@link com.acme.api.asynctaskqueue.repo.JdbcJobRepository} and each claims queued jobs from it to run them.
+ *
+ * @param nodeId         owner written into the rows this node claims; it should survive a restart, since a node
+ *                       only recovers the jobs it owns
+ * @param claimBatchSize most jobs claimed in one round-trip
+ * @param maxInFlight    most claimed jobs this node runs (or retries) at once
+ * @param minPollMs      poll interval while there are jobs to claim
+ * @param maxPollMs      poll interval an idle node backs off to, doubling from {@code minPollMs}
+ */
+public record ClusterSettings(boolean enabled, String nodeId, int claimBatchSize, int maxInFlight,
+                              long minPollMs, long maxPollMs) {
+
+    public ClusterSettings {
+        if (nodeId == null || nodeId.isBlank()) throw new IllegalArgumentException("nodeId is required");
+        if (enabled && (claimBatchSize < 1 || maxInFlight < 1 || minPollMs < 1 || maxPollMs < minPollMs)) {
+            throw new IllegalArgumentException("Invalid cluster settings: " + claimBatchSize + " per claim, "
+                    + maxInFlight + " in flight, polling every " + minPollMs + "-" + maxPollMs + "ms");
+        }
+    }
+
+    /** A single node: jobs are run where they are submitted. */
+    public static ClusterSettings disabled() {
+        return new ClusterSettings(false, "local", 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,25 @@
+package com.acme.api.asynctaskqueue.config;
+
+/**
+ * Leases ({@code jobs.lease.*}): every attempt holds a lease on its job that lapses unless it is renewed. One
+ * heartbeat renews every lease the node holds at once.
+ *
+ * @param visibilityTimeoutMs how long a lease holds without being renewed
+ * @param heartbeatMs         how often the leases are renewed; well below {@code visibilityTimeoutMs}, so a late
+ *                            heartbeat or two does not cost a lease
+ * @param maxAttemptMs        how long an attempt's lease is renewed at most, unless its own timeout is shorter; a
+ *                            handler that hangs past it loses its job once the lease lapses
+ */
+public record LeaseSettings(long visibilityTimeoutMs, long heartbeatMs, long maxAttemptMs) {
+
+    public LeaseSettings {
+        if (visibilityTimeoutMs < 1 || heartbeatMs < 1 || heartbeatMs >= visibilityTimeoutMs || maxAttemptMs < 1) {
+            throw new IllegalArgumentException("Invalid lease settings: " + visibilityTimeoutMs + "ms visibility, "
+                    + "heartbeat every " + heartbeatMs + "ms, attempts of up to " + maxAttemptMs + "ms");
+        }
+    }
+
+    public static LeaseSettings defaults() {
+        return new LeaseSettings(30_000, 10_000, 600_000);
+    }
+}
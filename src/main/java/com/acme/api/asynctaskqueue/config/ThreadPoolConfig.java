@@ -1,8 +1,16 @@
 package com.acme.api.asynctaskqueue.config;
 
+import com.acme.api.asynctaskqueue.executor.CountingRejectionHandler;
+import com.acme.api.asynctaskqueue.executor.PriorityLaneQueue;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.schedule.ScheduleStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
 import java.util.concurrent.*;
 
 @Configuration
@@ -10,12 +18,28 @@ public class ThreadPoolConfig {
 
     /**
      * The executor for regular jobs. All initial jobs are handled by this executor.
+     * <p/>
+     * With {@code jobs.executor.mode=virtual} every job attempt gets its own virtual thread instead. The bundled
+     * handlers spend almost all of their time blocked, which a virtual thread does without holding an OS thread,
+     * so throughput is no longer capped by the pool size. The bound moves to per-type permits, see
+     * {@link com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter}. {@code jobs.executor.mode=adaptive} also
+     * uses virtual threads, but the per-type bound is learned from observed latency instead of configured.
+     * <p/>
+     * In platform mode the queue has a lane per job priority (and one for retries), see {@link PriorityLaneQueue}.
+     * It holds at most {@code jobs.executor.platform.queue-capacity} jobs across all lanes, like the plain FIFO
+     * queue it replaces. Priorities do not apply in the virtual modes, where no job ever waits for a thread.
      */
     @Bean
-    public ThreadPoolExecutor normalJobExecutor() {
-        int poolSize = 5;
-        int queueCapacity = 10;
-        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+    public ExecutorService normalJobExecutor(@Value("${jobs.executor.mode:platform}") String mode,
+                                             @Value("${jobs.executor.platform.pool-size:5}") int poolSize,
+                                             @Value("${jobs.executor.platform.queue-capacity:10}") int queueCapacity,
+                                             @Value("${jobs.executor.priority.aging-ms:2000}") long agingMs,
+                                             @Value("${jobs.executor.priority.retry-lane:true}") boolean retryLane) {
+        if ("virtual".equals(mode) || "adaptive".equals(mode)) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-vt-", 0).factory());
+        }
+
+        BlockingQueue<Runnable> queue = new PriorityLaneQueue(queueCapacity, agingMs, retryLane);
 
         return new ThreadPoolExecutor(
                 poolSize,
@@ -29,7 +53,8 @@ public class ThreadPoolConfig {
 
     /**
      * Exclusive executor to handle compensation jobs. It contains a smaller number of worker threads
-     * since jobs are not expected to fail often.
+     * since jobs are not expected to fail often. Its rejections are counted for the executor telemetry; a
+     * rejected compensation is parked in the retry scheduler.
      */
     @Bean
     public ThreadPoolExecutor compensationJobExecutor() {
@@ -43,27 +68,67 @@ public class ThreadPoolConfig {
                 0L,
                 TimeUnit.MILLISECONDS,
                 queue,
-                new ThreadPoolExecutor.AbortPolicy()
+                new CountingRejectionHandler(new ThreadPoolExecutor.AbortPolicy())
         );
     }
 
 
     /**
-     * Retry executor is single-threaded. This was a decision based solely for simplicity
-     * of demonstration of retry logic in a FIFO manner; which made it easier to see them
-     * sequentially in the logs. For example:
+     * Retries used to go through a single-threaded {@code ScheduledExecutorService}, which made them easy to
+     * follow sequentially in the logs. For example:
      * <pre>
      * 18:06:59.864: ⚠️ Queue full. Retrying Email attempt 3 after 8601ms (simulated)...
      * 18:06:59.932: POST http://localhost:8080/v1/jobs	429	16 ms
      * 18:07:00.012: ⚠️ Queue full. Retrying Email attempt 4 after 16600ms (simulated)...
-     * 18:07:00.035: POST http://localhost:8080/v1/jobs	429	15 ms
-     * 18:07:00.044: ⚠️ Queue full. Retrying Email attempt 5 after 32596ms (simulated)...
-     * 18:07:00.086: POST http://localhost:8080/v1/jobs	429	8 ms
-     * 18:07:00.097: ⚠️ Queue full. Retrying Email attempt 6 after 64378ms (simulated)...
      * </pre>
+     * Its delay queue is a heap, though, and a retry that found the normal executor full was simply lost.
+     * The retry scheduler is now a timing wheel, still with a single ticker thread, that parks rejected retries
+     * again instead of dropping them.
+     */
+    @Bean(destroyMethod = "close")
+    public RetryScheduler retryScheduler(@Value("${jobs.retry.tick-ms:10}") long tickMs,
+                                         @Value("${jobs.retry.repark-base-ms:1000}") long reparkBaseMs,
+                                         @Value("${jobs.retry.repark-max-ms:60000}") long reparkMaxMs) {
+        return new RetryScheduler(tickMs, reparkBaseMs, reparkMaxMs);
+    }
+
+    /**
+     * Holds the jobs submitted with a later time until they are due; see {@link ScheduleStore}.
+     */
+    @Bean(destroyMethod = "close")
+    public ScheduleStore scheduleStore(@Value("${jobs.schedule.slot-ms:100}") long slotMs,
+                                       @Value("${jobs.schedule.spread-ms:1000}") long spreadMs) {
+        return new ScheduleStore(slotMs, spreadMs);
+    }
+
+    /**
+     * Cluster mode is off by default. A node without {@code jobs.cluster.node-id} is named after its host.
+     */
+    @Bean
+    public ClusterSettings clusterSettings(@Value("${jobs.cluster.enabled:false}") boolean enabled,
+                                           @Value("${jobs.cluster.node-id:}") String nodeId,
+                                           @Value("${jobs.cluster.claim-batch-size:16}") int claimBatchSize,
+                                           @Value("${jobs.cluster.max-in-flight:15}") int maxInFlight,
+                                           @Value("${jobs.cluster.poll.min-ms:10}") long minPollMs,
+                                           @Value("${jobs.cluster.poll.max-ms:1000}") long maxPollMs) {
+        if (!enabled) return ClusterSettings.disabled();
+        if (nodeId.isBlank()) {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                nodeId = UUID.randomUUID().toString();
+            }
+        }
+        return new ClusterSettings(true, nodeId, claimBatchSize, maxInFlight, minPollMs, maxPollMs);
+    }
+
+    /**
+     * Leases of running attempts; see {@link LeaseSettings}.
      */
     @Bean
-    public ScheduledExecutorService retryScheduler() {
-        return Executors.newSingleThreadScheduledExecutor();
+    public LeaseSettings leaseSettings(@Value("${jobs.lease.visibility-timeout-ms:30000}") long visibilityTimeoutMs,
+                                       @Value("${jobs.lease.heartbeat-ms:10000}") long heartbeatMs,
+                                       @Value("${jobs.lease.max-attempt-ms:600000}") long maxAttemptMs) {
+        return new LeaseSettings(visibilityTimeoutMs, heartbeatMs, maxAttemptMs);
     }
 }
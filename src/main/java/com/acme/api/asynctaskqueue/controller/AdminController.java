@@ -0,0 +1,65 @@
+package com.acme.api.asynctaskqueue.controller;
+
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.metrics.ExecutorTelemetry;
+import com.acme.api.asynctaskqueue.metrics.JobMetrics;
+import com.acme.api.asynctaskqueue.metrics.LatencyPhase;
+import com.acme.api.asynctaskqueue.metrics.LatencySummary;
+import com.acme.api.asynctaskqueue.metrics.TelemetrySample;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only operational views of the executors and job latency. For example:
+ * <br/>
+ * GET http://localhost:8080/v1/admin/limits
+ * <br/>
+ * GET http://localhost:8080/v1/admin/latency?windowSeconds=60
+ * <br/>
+ * GET http://localhost:8080/v1/admin/executors?samples=60
+ */
+@RestController
+@RequestMapping("/v1/admin")
+public class AdminController {
+
+    private final TypeConcurrencyLimiter limiter;
+    private final JobMetrics metrics;
+    private final ExecutorTelemetry telemetry;
+
+    public AdminController(TypeConcurrencyLimiter limiter, JobMetrics metrics, ExecutorTelemetry telemetry) {
+        this.limiter = limiter;
+        this.metrics = metrics;
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Current concurrency limit and jobs in flight per job type. Empty in platform mode, where the executor's
+     * pool and queue are the only limit.
+     */
+    @GetMapping("/limits")
+    public Map<String, TypeConcurrencyLimiter.TypeLimit> limits() {
+        return limiter.limits();
+    }
+
+    /**
+     * p50/p90/p99/p999 and max latency per job type and phase over the last {@code windowSeconds}.
+     */
+    @GetMapping("/latency")
+    public Map<String, Map<LatencyPhase, LatencySummary>> latency(@RequestParam(defaultValue = "60") long windowSeconds) {
+        return metrics.latency(windowSeconds * 1000);
+    }
+
+    /**
+     * The last {@code samples} executor telemetry points, oldest first: active, queued, completed and rejected
+     * jobs per executor with a queue-wait estimate, and the retry backlog.
+     */
+    @GetMapping("/executors")
+    public List<TelemetrySample> executors(@RequestParam(defaultValue = "60") int samples) {
+        return telemetry.recent(samples);
+    }
+}
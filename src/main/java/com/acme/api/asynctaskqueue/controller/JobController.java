@@ -1,15 +1,35 @@
 package com.acme.api.asynctaskqueue.controller;
 
+import com.acme.api.asynctaskqueue.events.JobEventFilter;
+import com.acme.api.asynctaskqueue.events.JobEventSink;
+import com.acme.api.asynctaskqueue.events.JobEventStream;
+import com.acme.api.asynctaskqueue.executor.BulkheadFullException;
+import com.acme.api.asynctaskqueue.jobs.dto.JobCountsResponse;
 import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
 import com.acme.api.asynctaskqueue.jobs.dto.JobResponse;
 import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
 import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.service.BulkJobSubmitter;
+import com.acme.api.asynctaskqueue.service.JobQueryService;
 import com.acme.api.asynctaskqueue.service.JobService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
 
 /**
@@ -19,16 +39,39 @@ import java.util.concurrent.RejectedExecutionException;
  * <br/>
  * GET http://localhost:8080/v1/jobs/12345
  * <br/>
+ * GET http://localhost:8080/v1/jobs?status=COMPENSATION_FAILED&amp;since=2025-01-01T09:00:00Z&amp;limit=100
+ * <br/>
+ * GET http://localhost:8080/v1/jobs/12345?waitMs=10000
+ * <br/>
  * POST http://localhost:8080/v1/jobs
+ * <br/>
+ * POST http://localhost:8080/v1/jobs/bulk
+ * <br/>
+ * GET http://localhost:8080/v1/jobs/events?type=sendEmail&status=SUCCEEDED,COMPENSATED
  */
 @RestController
 @RequestMapping("/v1/jobs")
 public class JobController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final JobService jobService;
+    private final BulkJobSubmitter bulkSubmitter;
+    private final JobEventStream events;
+    private final JobQueryService queries;
+    private final long maxWaitMs;
+    private final long eventStreamTimeoutMs;
 
-    public JobController(JobService jobService) {
+    public JobController(JobService jobService, BulkJobSubmitter bulkSubmitter, JobEventStream events,
+                         JobQueryService queries,
+                         @Value("${jobs.long-poll.max-wait-ms:30000}") long maxWaitMs,
+                         @Value("${jobs.events.stream-timeout-ms:3600000}") long eventStreamTimeoutMs) {
         this.jobService = jobService;
+        this.bulkSubmitter = bulkSubmitter;
+        this.events = events;
+        this.queries = queries;
+        this.maxWaitMs = maxWaitMs;
+        this.eventStreamTimeoutMs = eventStreamTimeoutMs;
     }
 
     @PostMapping
@@ -36,6 +79,10 @@ public class JobController {
         try {
             Job job = jobService.submitJob(request);
             return ResponseEntity.ok(new JobResponse(job.getJobId()));
+        } catch (BulkheadFullException full) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Job queue is full. Please try again later.",
+                            "bulkhead", full.getBulkhead()));
         } catch (RejectedExecutionException ex) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
                     .body(Map.of("error", "Job queue is full. Please try again later."));
@@ -45,8 +92,89 @@ public class JobController {
         }
     }
 
+    /**
+     * Submits many jobs in one request. The body is NDJSON, one {@link JobRequest} per line. The response is
+     * always 200 and is NDJSON as well, streamed while the body is read: one result per job line (its jobId or
+     * the rejection reason) followed by a summary. See {@link BulkJobSubmitter} for how partial acceptance works.
+     */
+    @PostMapping(path = "/bulk", consumes = NDJSON)
+    public void submitBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        bulkSubmitter.submit(request.getInputStream(), response.getOutputStream());
+    }
+
+    /**
+     * Lists jobs by current status and/or type, in the order they entered that status (oldest first), one page at
+     * a time. {@code since} is an ISO-8601 instant; {@code cursor} is the {@code nextCursor} of the previous page.
+     */
+    @GetMapping
+    public ResponseEntity<?> findJobs(@RequestParam(required = false) JobStatus status,
+                                      @RequestParam(required = false) String type,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant since,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(queries.findJobs(status, type, since, cursor, limit));
+        } catch (IllegalArgumentException badRequest) {
+            return ResponseEntity.badRequest().body(Map.of("error", badRequest.getMessage()));
+        }
+    }
+
+    /**
+     * Number of jobs per status, overall and per type.
+     */
+    @GetMapping("/counts")
+    public JobCountsResponse countJobs() {
+        return queries.countJobs();
+    }
+
     @GetMapping("/{jobId}")
     public JobStatusResponse getStatus(@PathVariable String jobId) {
         return jobService.getJobStatus(jobId);
     }
+
+    /**
+     * Long-poll variant of {@link #getStatus(String)}: answers as soon as the job reaches a terminal status, or
+     * with its current status once {@code waitMs} (capped at {@code jobs.long-poll.max-wait-ms}) has passed. The
+     * request is parked with Servlet async processing, so no container thread is held while it waits.
+     */
+    @GetMapping(path = "/{jobId}", params = "waitMs")
+    public DeferredResult<JobStatusResponse> awaitStatus(@PathVariable String jobId, @RequestParam long waitMs) {
+        long timeoutMs = Math.max(1, Math.min(waitMs, maxWaitMs));
+        CompletableFuture<JobStatusResponse> terminal = jobService.awaitTerminalStatus(jobId);
+
+        DeferredResult<JobStatusResponse> result = new DeferredResult<>(timeoutMs);
+        result.onTimeout(() -> result.setResult(jobService.getJobStatus(jobId)));
+        result.onCompletion(() -> terminal.cancel(false));
+        terminal.thenAccept(result::setResult);
+        return result;
+    }
+
+    /**
+     * Server-Sent Events stream of job status changes, optionally filtered by job type, new status and
+     * idempotency-key prefix. See {@link JobEventStream} for how slow subscribers are handled; a client that
+     * reconnects with {@code Last-Event-ID} resumes after that event. Returns 429 when too many streams are open.
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamEvents(@RequestParam(required = false) List<String> type,
+                                          @RequestParam(required = false) List<JobStatus> status,
+                                          @RequestParam(required = false) String idempotencyKeyPrefix,
+                                          @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        JobEventFilter filter = new JobEventFilter(type == null ? Set.of() : Set.copyOf(type),
+                status == null ? Set.of() : Set.copyOf(status), idempotencyKeyPrefix);
+        SseEmitter emitter = new SseEmitter(eventStreamTimeoutMs);
+        try {
+            JobEventStream.Subscription subscription = events.subscribe(filter,
+                    lastEventId == null ? null : lastEventId + 1, JobEventSink.sse(emitter));
+            emitter.onCompletion(subscription::close);
+            emitter.onTimeout(subscription::close);
+            emitter.onError(error -> subscription.close());
+        } catch (RejectedExecutionException full) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("error", full.getMessage()));
+        }
+        return ResponseEntity.ok(emitter);
+    }
 }
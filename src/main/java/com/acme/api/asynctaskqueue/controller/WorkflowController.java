@@ -0,0 +1,52 @@
+package com.acme.api.asynctaskqueue.controller;
+
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowRequest;
+import com.acme.api.asynctaskqueue.service.JobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Workflows: jobs submitted together that run once the jobs they depend on have succeeded. For example:
+ * <br/>
+ * POST http://localhost:8080/v1/workflows
+ * <pre>
+ * {"jobs": [
+ *   {"name": "report", "type": "generateReport", "payload": {"reportName": "Q3"}},
+ *   {"name": "email", "type": "sendEmail", "payload": {"to": "cfo@example.com"}, "dependsOn": ["report"]}
+ * ]}
+ * </pre>
+ * GET http://localhost:8080/v1/workflows/12345
+ */
+@RestController
+@RequestMapping("/v1/workflows")
+public class WorkflowController {
+
+    private final JobService jobService;
+
+    public WorkflowController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody WorkflowRequest request) {
+        try {
+            return ResponseEntity.ok(jobService.submitWorkflow(request));
+        } catch (IllegalArgumentException badWorkflow) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", badWorkflow.getMessage()));
+        }
+    }
+
+    @GetMapping("/{workflowId}")
+    public ResponseEntity<?> getStatus(@PathVariable String workflowId) {
+        try {
+            return ResponseEntity.ok(jobService.getWorkflow(workflowId));
+        } catch (IllegalArgumentException notFound) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", notFound.getMessage()));
+        }
+    }
+}
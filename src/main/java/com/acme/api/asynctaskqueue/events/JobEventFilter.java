@@ -0,0 +1,22 @@
+package com.acme.api.asynctaskqueue.events;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+
+import java.util.Set;
+
+/**
+ * Server-side filter of an event subscription. Empty sets and a {@code null} prefix match everything; the
+ * status filter applies to the status a job moved to.
+ */
+public record JobEventFilter(Set<String> types, Set<JobStatus> statuses, String idempotencyKeyPrefix) {
+
+    public static final JobEventFilter ALL = new JobEventFilter(Set.of(), Set.of(), null);
+
+    public boolean matches(JobTransitionEvent event) {
+        return (types.isEmpty() || types.contains(event.type()))
+                && (statuses.isEmpty() || statuses.contains(event.to()))
+                && (idempotencyKeyPrefix == null
+                    || event.idempotencyKey() != null && event.idempotencyKey().startsWith(idempotencyKeyPrefix));
+    }
+}
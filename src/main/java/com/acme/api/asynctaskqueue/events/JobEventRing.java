@@ -0,0 +1,100 @@
+package com.acme.api.asynctaskqueue.events;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-size ring of the most recent job events, numbered by a global sequence. Publishing never blocks and never
+ * waits for readers: it claims the next sequence number and overwrites the oldest slot. Each reader keeps its own
+ * cursor and finds out from the slot's sequence number whether the event it wants is not published yet, still
+ * there, or already overwritten.
+ */
+final class JobEventRing {
+
+    record Slot(long seq, JobTransitionEvent event) {}
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    JobEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    void publish(JobTransitionEvent event) {
+        long seq = next.getAndIncrement();
+        slots.set((int) (seq & mask), new Slot(seq, event));
+        // Readers only sleep when they have caught up; nobody to wake is the common case
+        if (waiting.get() > 0) {
+            lock.lock();
+            try {
+                published.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** The sequence number the next event will get. */
+    long head() {
+        return next.get();
+    }
+
+    /**
+     * The slot holding {@code seq}: {@code null} or an older slot while the event is still being published, a newer
+     * one once it has been overwritten.
+     */
+    Slot slot(long seq) {
+        return slots.get((int) (seq & mask));
+    }
+
+    /**
+     * Waits until an event with sequence number {@code seq} has been claimed, the timeout has passed or
+     * {@link #wakeAll()} was called, whichever comes first.
+     *
+     * @return whether it has been claimed
+     */
+    boolean awaitClaimed(long seq, long timeoutMs) throws InterruptedException {
+        if (next.get() > seq) return true;
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            if (next.get() <= seq) {
+                published.awaitNanos(TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            }
+            return next.get() > seq;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+
+    /** Wakes every waiting reader, e.g. so that closed subscriptions notice. */
+    void wakeAll() {
+        lock.lock();
+        try {
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
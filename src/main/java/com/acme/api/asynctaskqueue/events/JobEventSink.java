@@ -0,0 +1,54 @@
+package com.acme.api.asynctaskqueue.events;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobEventGap;
+import com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+/**
+ * Where a subscription delivers its events. A delivery that throws ends the subscription.
+ */
+public interface JobEventSink {
+
+    void transition(long seq, JobTransitionEvent event) throws IOException;
+
+    void gap(JobEventGap gap) throws IOException;
+
+    /** Sent when nothing else was for a while, so that a closed connection is noticed. */
+    void heartbeat() throws IOException;
+
+    /** The subscription ended on the server side (delivery failed or the application is stopping). */
+    default void close() {
+    }
+
+    /**
+     * Server-Sent Events: {@code transition} events with the sequence number as id (for {@code Last-Event-ID}),
+     * {@code gap} events, and comment lines as heartbeats.
+     */
+    static JobEventSink sse(SseEmitter emitter) {
+        return new JobEventSink() {
+            @Override
+            public void transition(long seq, JobTransitionEvent event) throws IOException {
+                emitter.send(SseEmitter.event().id(Long.toString(seq)).name("transition")
+                        .data(event, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void gap(JobEventGap gap) throws IOException {
+                emitter.send(SseEmitter.event().name("gap").data(gap, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package com.acme.api.asynctaskqueue.events;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobEventGap;
+import com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobState;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.service.JobTransitionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fans out every job status change to the subscribers of {@code GET /v1/jobs/events}.
+ * <p/>
+ * Job workers only append the event to a {@link JobEventRing} of {@code jobs.events.buffer-size} events, so a
+ * subscriber can never slow them down. Every subscription reads the ring at its own pace on its own virtual
+ * thread, which blocks (without holding an OS thread) while its client is slow to read. A subscriber that falls
+ * more than the ring's capacity behind receives a {@link JobEventGap} for the events it lost and continues with
+ * the oldest event still in the ring. A subscription may start at a given sequence number, so a client that
+ * reconnects with {@code Last-Event-ID} resumes where it left off, as far as the ring still reaches back.
+ */
+@Component
+public class JobEventStream implements JobTransitionListener, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JobEventStream.class);
+
+    private final JobEventRing ring;
+    private final long heartbeatMs;
+    private final int maxSubscribers;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public JobEventStream(@Value("${jobs.events.buffer-size:8192}") int bufferSize,
+                          @Value("${jobs.events.heartbeat-ms:15000}") long heartbeatMs,
+                          @Value("${jobs.events.max-subscribers:256}") int maxSubscribers) {
+        this.ring = new JobEventRing(bufferSize);
+        this.heartbeatMs = heartbeatMs;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    @Override
+    public void onTransition(Job job, JobStatus from) {
+        JobState state = job.state();
+        ring.publish(new JobTransitionEvent(job.getJobId(), job.getType(), job.getIdempotencyKey(), from,
+                state.status(), state.attempts(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Starts delivering the matching events to the sink.
+     *
+     * @param fromSeq the first event to deliver, or {@code null} for events published from now on
+     * @throws RejectedExecutionException if {@code jobs.events.max-subscribers} subscriptions are open
+     */
+    public Subscription subscribe(JobEventFilter filter, Long fromSeq, JobEventSink sink) {
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new RejectedExecutionException("Too many event subscribers (" + maxSubscribers + ")");
+        }
+        long cursor = fromSeq == null ? ring.head() : Math.max(0, Math.min(fromSeq, ring.head()));
+        Subscription subscription = new Subscription(filter, cursor, sink);
+        subscriptions.add(subscription);
+        Thread.ofVirtual().name("job-events").start(subscription::run);
+        return subscription;
+    }
+
+    @Override
+    public void destroy() {
+        for (Subscription subscription : List.copyOf(subscriptions)) {
+            subscription.close();
+        }
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final JobEventFilter filter;
+        private final JobEventSink sink;
+        private long cursor;
+        private volatile boolean closed;
+
+        private Subscription(JobEventFilter filter, long cursor, JobEventSink sink) {
+            this.filter = filter;
+            this.cursor = cursor;
+            this.sink = sink;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            subscriptions.remove(this);
+            ring.wakeAll();
+        }
+
+        private void run() {
+            long lastSentAt = System.currentTimeMillis();
+            try {
+                // Commits the response right away, so clients see the stream open before the first event
+                sink.heartbeat();
+                while (!closed) {
+                    long head = ring.head();
+                    if (cursor >= head) {
+                        if (!ring.awaitClaimed(cursor, heartbeatMs)
+                                && System.currentTimeMillis() - lastSentAt >= heartbeatMs && !closed) {
+                            sink.heartbeat();
+                            lastSentAt = System.currentTimeMillis();
+                        }
+                        continue;
+                    }
+                    long oldest = head - ring.capacity();
+                    if (cursor < oldest) {
+                        sink.gap(new JobEventGap(oldest - cursor, oldest));
+                        cursor = oldest;
+                        continue;
+                    }
+
+                    JobEventRing.Slot slot = ring.slot(cursor);
+                    if (slot == null || slot.seq() < cursor) {
+                        Thread.onSpinWait(); // claimed, the publisher is about to store it
+                        continue;
+                    }
+                    if (slot.seq() > cursor) continue; // overwritten meanwhile: reported as a gap
+
+                    if (filter.matches(slot.event())) {
+                        sink.transition(cursor, slot.event());
+                        lastSentAt = System.currentTimeMillis();
+                    }
+                    cursor++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.debug("Job event subscription ended: {}", e.toString());
+            } finally {
+                close();
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.worker.ExecutionProfile;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The executor that job attempts of one or more types are handed to, together with its admission limit.
+ * The {@linkplain #shared shared} bulkhead is the normal executor used by every type without a profile of its
+ * own; the others are created from an {@link ExecutionProfile} by {@link JobBulkheads}.
+ * <p/>
+ * A {@link ExecutionProfile.RejectionPolicy#CALLER_RUNS CALLER_RUNS} bulkhead only runs an attempt on the submitting
+ * thread when the submitter says it may. That is meant for request threads, which it slows down. The service's
+ * own threads (the retry wheel, the schedule store, the cluster claimer) must not be tied up by a job; they get
+ * a {@link BulkheadFullException} and park the job again.
+ * <p/>
+ * An async attempt gives its thread back before it is over, so a pool alone would not bound async work. A pool
+ * bulkhead therefore also holds at most as many attempts as it has threads and queue slots, and an attempt keeps
+ * its slot until its stage completes; async work is bounded exactly like blocking work.
+ */
+public class Bulkhead implements AutoCloseable {
+    public static final String SHARED_NAME = "shared";
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final String name;
+    private final ExecutorService executor;
+    private final TypeConcurrencyLimiter typeLimiter; // shared bulkhead only
+    private final Semaphore permits;                  // virtual bulkheads only
+    private final Semaphore slots;                    // bounded pools only: threads plus queue capacity
+    private final int maxPermits;
+    private final boolean callerRuns;
+    private final boolean owned;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder(); // where the executor does not count them
+
+    private Bulkhead(String name, ExecutorService executor, TypeConcurrencyLimiter typeLimiter, int maxPermits,
+                     boolean callerRuns, boolean owned) {
+        this.name = name;
+        this.executor = executor;
+        this.typeLimiter = typeLimiter;
+        this.permits = maxPermits > 0 ? new Semaphore(maxPermits) : null;
+        this.slots = slotsOf(executor);
+        this.maxPermits = maxPermits;
+        this.callerRuns = callerRuns;
+        this.owned = owned;
+    }
+
+    /**
+     * Wraps the shared normal executor. It is not shut down by {@link #close()}; it belongs to the context.
+     */
+    public static Bulkhead shared(ExecutorService normalExecutor, TypeConcurrencyLimiter limiter) {
+        return new Bulkhead(SHARED_NAME, normalExecutor, limiter, 0, false, false);
+    }
+
+    public static Bulkhead of(String type, ExecutionProfile profile, long agingMs, boolean retryLane) {
+        boolean callerRuns = profile.rejectionPolicy() == ExecutionProfile.RejectionPolicy.CALLER_RUNS;
+        return switch (profile.mode()) {
+            case PLATFORM -> {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(profile.concurrency(), profile.concurrency(),
+                        0L, TimeUnit.MILLISECONDS,
+                        new PriorityLaneQueue(profile.queueCapacity(), agingMs, retryLane),
+                        Thread.ofPlatform().name("job-" + type + "-", 0).factory(),
+                        new ThreadPoolExecutor.AbortPolicy()); // callers that may run it do so in executeAsync
+                yield new Bulkhead(type, pool, null, 0, callerRuns, true);
+            }
+            case VIRTUAL -> new Bulkhead(type,
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("job-" + type + "-vt-", 0).factory()),
+                    null, profile.concurrency(), callerRuns, true);
+            case SHARED -> throw new IllegalArgumentException("The shared bulkhead is created with shared()");
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Jobs waiting for a thread, where the executor exposes it. */
+    public int getQueued() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    /** Jobs currently running (or, for virtual bulkheads, holding a permit). */
+    public int getActive() {
+        if (permits != null) return maxPermits - permits.availablePermits();
+        return executor instanceof ThreadPoolExecutor pool ? pool.getActiveCount() : 0;
+    }
+
+    /** Attempts finished so far. */
+    public long getCompleted() {
+        return executor instanceof ThreadPoolExecutor pool ? pool.getCompletedTaskCount() : completed.sum();
+    }
+
+    /** Attempts rejected so far because the bulkhead (or, for the shared one, a type's limit) was full. */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Hands one attempt of a job to the bulkhead, from a thread that must not run it itself.
+     *
+     * @throws BulkheadFullException if the bulkhead is saturated
+     */
+    public void execute(String type, JobPriority priority, boolean retry, Runnable attempt) {
+        execute(type, priority, retry, false, attempt);
+    }
+
+    /**
+     * Hands one attempt of a job to the bulkhead.
+     *
+     * @param callerMayRun whether a saturated CALLER_RUNS bulkhead may run the attempt on this thread
+     * @throws BulkheadFullException if the bulkhead is saturated and the attempt is not run by the caller
+     */
+    public void execute(String type, JobPriority priority, boolean retry, boolean callerMayRun, Runnable attempt) {
+        executeAsync(type, priority, retry, callerMayRun, () -> {
+            attempt.run();
+            return DONE;
+        });
+    }
+
+    /**
+     * Hands one attempt of a job to the bulkhead, for an attempt that ends when the stage it returns completes.
+     * The thread is given back as soon as {@code attempt} returns, but the attempt holds its permit (and counts
+     * against its type's limit) until the stage completes.
+     *
+     * @param callerMayRun whether a saturated CALLER_RUNS bulkhead may run the attempt on this thread
+     * @throws BulkheadFullException if the bulkhead is saturated and the attempt is not run by the caller
+     */
+    public void executeAsync(String type, JobPriority priority, boolean retry, boolean callerMayRun,
+                             Supplier<? extends CompletionStage<?>> attempt) {
+        try {
+            if (typeLimiter != null) {
+                executeLimitedByType(type, priority, retry, attempt);
+            } else if (permits != null) {
+                executeWithPermit(attempt, callerRuns && callerMayRun);
+            } else {
+                executeOnPool(priority, retry, attempt, callerRuns && callerMayRun);
+            }
+        } catch (BulkheadFullException full) {
+            rejected.increment();
+            throw full;
+        } catch (RejectedExecutionException rex) {
+            rejected.increment();
+            throw new BulkheadFullException(name, "Bulkhead '" + name + "' is full: " + rex.getMessage(), rex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (owned) executor.shutdown();
+    }
+
+    private void executeLimitedByType(String type, JobPriority priority, boolean retry,
+                                      Supplier<? extends CompletionStage<?>> attempt) {
+        long admittedAt = typeLimiter.acquire(type);
+        if (!takeSlot()) {
+            typeLimiter.release(type);
+            throw new RejectedExecutionException("all slots in use");
+        }
+        try {
+            executor.execute(new PrioritizedTask(priority, retry, () -> runUntilComplete(attempt, () -> {
+                releaseSlot();
+                typeLimiter.release(type, admittedAt);
+                completed.increment();
+            })));
+        } catch (RejectedExecutionException rex) {
+            releaseSlot();
+            typeLimiter.release(type);
+            throw rex;
+        }
+    }
+
+    private void executeOnPool(JobPriority priority, boolean retry, Supplier<? extends CompletionStage<?>> attempt,
+                               boolean runInCaller) {
+        try {
+            if (!takeSlot()) throw new RejectedExecutionException("all slots in use");
+            try {
+                executor.execute(new PrioritizedTask(priority, retry,
+                        () -> runUntilComplete(attempt, this::releaseSlot)));
+            } catch (RejectedExecutionException rex) {
+                releaseSlot();
+                throw rex;
+            }
+        } catch (RejectedExecutionException rex) {
+            // As ThreadPoolExecutor.CallerRunsPolicy, but only for callers that may run it
+            if (!runInCaller || executor.isShutdown()) throw rex;
+            runUntilComplete(attempt, () -> {});
+        }
+    }
+
+    private boolean takeSlot() {
+        return slots == null || slots.tryAcquire();
+    }
+
+    private void releaseSlot() {
+        if (slots != null) slots.release();
+    }
+
+    /** A bounded pool holds as many attempts as it has threads and queue slots; anything else is not limited here. */
+    private static Semaphore slotsOf(ExecutorService executor) {
+        if (!(executor instanceof ThreadPoolExecutor pool)) return null;
+        long slots = (long) pool.getMaximumPoolSize() + pool.getQueue().remainingCapacity();
+        return slots < Integer.MAX_VALUE ? new Semaphore((int) slots) : null;
+    }
+
+    private void executeWithPermit(Supplier<? extends CompletionStage<?>> attempt, boolean runInCaller) {
+        if (!permits.tryAcquire()) {
+            if (runInCaller) {
+                runUntilComplete(attempt, completed::increment);
+                return;
+            }
+            throw new RejectedExecutionException("all permits in use");
+        }
+        try {
+            executor.execute(() -> runUntilComplete(attempt, () -> {
+                permits.release();
+                completed.increment();
+            }));
+        } catch (RejectedExecutionException rex) {
+            permits.release();
+            throw rex;
+        }
+    }
+
+    /**
+     * Starts the attempt and runs {@code release} once it is over: when its stage completes, or right away if
+     * starting it threw.
+     */
+    private static void runUntilComplete(Supplier<? extends CompletionStage<?>> attempt, Runnable release) {
+        CompletionStage<?> stage;
+        try {
+            stage = attempt.get();
+        } catch (RuntimeException | Error e) {
+            release.run();
+            throw e;
+        }
+        if (stage == null) {
+            release.run();
+        } else {
+            stage.whenComplete((result, error) -> release.run());
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A job was rejected because its bulkhead is saturated. It is still a {@link RejectedExecutionException}, so
+ * every caller that handles backpressure keeps working; callers that care can tell which bulkhead is full.
+ */
+public class BulkheadFullException extends RejectedExecutionException {
+    private final String bulkhead;
+
+    public BulkheadFullException(String bulkhead, String message, Throwable cause) {
+        super(message, cause);
+        this.bulkhead = bulkhead;
+    }
+
+    public String getBulkhead() {
+        return bulkhead;
+    }
+}
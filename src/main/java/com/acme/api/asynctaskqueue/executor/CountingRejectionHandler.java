@@ -0,0 +1,33 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the tasks a {@link ThreadPoolExecutor} rejects, then applies the wrapped policy.
+ */
+public class CountingRejectionHandler implements RejectedExecutionHandler {
+    private final RejectedExecutionHandler delegate;
+    private final LongAdder rejected = new LongAdder();
+
+    public CountingRejectionHandler(RejectedExecutionHandler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+        rejected.increment();
+        delegate.rejectedExecution(task, executor);
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /** Rejections counted by the executor's handler, or 0 if it does not count them. */
+    public static long rejectedBy(ThreadPoolExecutor executor) {
+        return executor.getRejectedExecutionHandler() instanceof CountingRejectionHandler counting
+                ? counting.getRejected() : 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.acme.api.asynctaskqueue.executor;
+
+/**
+ * Concurrency limit for one job type that adapts to observed latency, in the style of the "gradient" limits
+ * used by TCP Vegas-like congestion control.
+ * <p/>
+ * Every sample is the time a job spent from admission to completion: queue wait plus handler latency. Samples
+ * are averaged over a window of {@code max(windowSamples, limit)} completions, roughly one round trip at the
+ * current limit. The result is compared with the baseline, the lowest window latency seen since the last probe
+ * (what the downstream needs when nothing is queued). At the end of every window:
+ * <pre>
+ * gradient = clamp(tolerance * baseline / windowRtt, 0.5, 1.0)
+ * newLimit = limit * gradient + sqrt(limit)
+ * limit    = (1 - smoothing) * limit + smoothing * newLimit
+ * </pre>
+ * While latency stays within {@code tolerance} of the baseline the gradient is 1 and the limit grows by about
+ * {@code sqrt(limit)} per window; once requests start to queue downstream, latency climbs, the gradient drops
+ * below 1 and the limit shrinks in proportion. It settles where the queueing latency is about {@code tolerance}
+ * times the baseline. The limit only grows while it is actually used (at least half of it in flight), so an idle
+ * type does not drift up to the maximum.
+ * <p/>
+ * A baseline learned only from the minimum would never notice that the downstream itself got slower, and one
+ * learned from a moving average creeps up with the queueing it should detect. Instead, every
+ * {@code PROBE_INTERVAL} windows the limit is halved for two windows: the first lets the queue drain, the second
+ * measures latency at half the load. If that barely moved, the latency is the downstream's own and becomes the new
+ * baseline (which is how a slower downstream is learned); if it dropped, it was queueing, and the baseline can only
+ * go down. The limit then returns to where it was.
+ * <p/>
+ * The limit is driven purely by samples, not by a clock, so the same sequence of samples always produces the
+ * same limits. Not thread-safe; {@link TypeConcurrencyLimiter} serializes access.
+ */
+public class GradientLimit {
+    private static final int PROBE_INTERVAL = 50;
+
+    private enum Phase { RUN, PROBE_DRAIN, PROBE_MEASURE }
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final int windowSamples;
+
+    private double limit;
+    private double baseline = Double.NaN;
+
+    private Phase phase = Phase.RUN;
+    private double limitBeforeProbe;
+    private double rttBeforeProbe;
+    private int windowsSinceProbe;
+
+    private int samples;
+    private double sampleSum;
+    private int maxInFlight;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                         int windowSamples) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowSamples = windowSamples;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /** Baseline latency in nanoseconds, or NaN before the first window completed. */
+    public double getBaselineRttNanos() {
+        return baseline;
+    }
+
+    /**
+     * Records one completed job.
+     *
+     * @param rttNanos admission to completion
+     * @param inFlight jobs in flight when this one completed, including itself
+     */
+    public void onSample(long rttNanos, int inFlight) {
+        sampleSum += rttNanos;
+        maxInFlight = Math.max(maxInFlight, inFlight);
+        // Draining must outlast every job admitted before the probe, i.e. span the old limit
+        double window = phase == Phase.PROBE_DRAIN ? limitBeforeProbe : limit;
+        if (++samples < Math.max(windowSamples, window)) return;
+
+        double windowRtt = sampleSum / samples;
+        boolean used = maxInFlight * 2 >= limit;
+        samples = 0;
+        sampleSum = 0;
+        maxInFlight = 0;
+
+        switch (phase) {
+            case PROBE_DRAIN -> phase = Phase.PROBE_MEASURE;
+            case PROBE_MEASURE -> {
+                // Latency that halving our load did not reduce is the downstream's own: it may raise the baseline.
+                // Latency that did drop was (partly) our queueing, and only a lower baseline is believed.
+                baseline = windowRtt > rttBeforeProbe * 0.75 ? windowRtt : Math.min(baseline, windowRtt);
+                limit = limitBeforeProbe;
+                phase = Phase.RUN;
+            }
+            case RUN -> adjust(windowRtt, used);
+        }
+    }
+
+    private void adjust(double windowRtt, boolean used) {
+        baseline = Double.isNaN(baseline) ? windowRtt : Math.min(baseline, windowRtt);
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baseline / windowRtt));
+        if (gradient < 1.0 || used) {
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            limit = Math.max(minLimit, Math.min(maxLimit, (1 - smoothing) * limit + smoothing * newLimit));
+        }
+
+        if (++windowsSinceProbe >= PROBE_INTERVAL) {
+            windowsSinceProbe = 0;
+            limitBeforeProbe = limit;
+            rttBeforeProbe = windowRtt;
+            limit = Math.max(minLimit, limit / 2);
+            phase = Phase.PROBE_DRAIN;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.worker.ExecutionProfile;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+/**
+ * Routes each job type to its {@link Bulkhead}. Types registered with an {@link ExecutionProfile} get a
+ * dedicated bulkhead, created the first time a job of the type is enqueued; all other types share the
+ * normal executor.
+ */
+@Component
+public class JobBulkheads implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JobBulkheads.class);
+
+    private final Bulkhead shared;
+    private final JobHandlerRegistry handlers;
+    private final long agingMs;
+    private final boolean retryLane;
+    private final ConcurrentHashMap<String, Bulkhead> byType = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobBulkheads(@Qualifier("normalJobExecutor") ExecutorService normalExecutor,
+                        TypeConcurrencyLimiter limiter,
+                        JobHandlerRegistry handlers,
+                        @Value("${jobs.executor.priority.aging-ms:2000}") long agingMs,
+                        @Value("${jobs.executor.priority.retry-lane:true}") boolean retryLane) {
+        this.shared = Bulkhead.shared(normalExecutor, limiter);
+        this.handlers = handlers;
+        this.agingMs = agingMs;
+        this.retryLane = retryLane;
+    }
+
+    public JobBulkheads(ExecutorService normalExecutor, TypeConcurrencyLimiter limiter, JobHandlerRegistry handlers) {
+        this(normalExecutor, limiter, handlers, 2000, true);
+    }
+
+    public Bulkhead forType(String type) {
+        Bulkhead bulkhead = byType.get(type);
+        if (bulkhead != null) return bulkhead;
+        return byType.computeIfAbsent(type, this::create);
+    }
+
+    /** The shared bulkhead followed by every dedicated bulkhead created so far. */
+    public Collection<Bulkhead> all() {
+        return Stream.concat(Stream.of(shared), byType.values().stream().filter(b -> b != shared).distinct()).toList();
+    }
+
+    @Override
+    public void destroy() {
+        for (Bulkhead bulkhead : List.copyOf(byType.values())) {
+            bulkhead.close();
+        }
+    }
+
+    private Bulkhead create(String type) {
+        // The registry may not know the type (or may be a test double); such jobs fail in the handler lookup
+        ExecutionProfile profile = handlers.profile(type);
+        if (profile == null || profile.mode() == ExecutionProfile.Mode.SHARED) return shared;
+
+        logger.info("Creating bulkhead for job type {}: {}", type, profile);
+        return Bulkhead.of(type, profile, agingMs, retryLane);
+    }
+}
@@ -0,0 +1,15 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+
+/**
+ * A job attempt handed to the normal executor, tagged with what {@link PriorityLaneQueue} needs to pick its
+ * lane. Any other {@link Runnable} is queued as NORMAL.
+ */
+public record PrioritizedTask(JobPriority priority, boolean retry, Runnable task) implements Runnable {
+
+    @Override
+    public void run() {
+        task.run();
+    }
+}
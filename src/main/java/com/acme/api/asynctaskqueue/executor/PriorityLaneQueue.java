@@ -0,0 +1,234 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Work queue for the normal executor with one FIFO lane per {@link JobPriority}, plus an optional lane for
+ * retries so that a storm of failing jobs cannot crowd out first attempts (nor the other way around).
+ * <p/>
+ * Workers take from the most important non-empty lane, with aging: the head of a lane counts as one level
+ * more important for every {@code agingMs} it has waited, so a LOW job is served ahead of fresh HIGH jobs once
+ * it has waited three aging periods, however many HIGH jobs keep arriving.
+ * <p/>
+ * There is no global lock. Lanes are {@link ConcurrentLinkedQueue}s, the capacity bound is a CAS on the element
+ * count, and waiting workers block on a {@link Semaphore} that holds one permit per queued element. The
+ * capacity is shared by all lanes, so backpressure (429) behaves exactly as with the previous bounded queue.
+ */
+public class PriorityLaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    private record Entry(Runnable task, long enqueuedAt) {}
+
+    // Lanes from most to least important: HIGH, NORMAL, LOW, RETRY
+    private static final int RETRY_LANE = JobPriority.values().length;
+
+    private final ConcurrentLinkedQueue<Entry>[] lanes;
+    private final int capacity;
+    private final long agingNanos;
+    private final boolean retryLane;
+    private final LongSupplier clock;
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final Semaphore available = new Semaphore(0);
+
+    public PriorityLaneQueue(int capacity, long agingMs, boolean retryLane) {
+        this(capacity, agingMs, retryLane, System::nanoTime);
+    }
+
+    PriorityLaneQueue(int capacity, long agingMs, boolean retryLane, LongSupplier clock) {
+        this.lanes = newLanes(RETRY_LANE + 1);
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.capacity = capacity;
+        this.agingNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(agingMs));
+        this.retryLane = retryLane;
+        this.clock = clock;
+    }
+
+    /** Number of tasks waiting in the lane of this priority. */
+    public int laneSize(JobPriority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    /** Number of retries waiting in the retry lane. */
+    public int retryLaneSize() {
+        return lanes[RETRY_LANE].size();
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        Objects.requireNonNull(task);
+        int c;
+        do {
+            c = count.get();
+            if (c >= capacity) return false;
+        } while (!count.compareAndSet(c, c + 1));
+
+        lanes[laneOf(task)].add(new Entry(task, clock.getAsLong()));
+        available.release();
+        return true;
+    }
+
+    @Override
+    public Runnable poll() {
+        return available.tryAcquire() ? dequeue() : null;
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        available.acquire();
+        return dequeue();
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return available.tryAcquire(timeout, unit) ? dequeue() : null;
+    }
+
+    @Override
+    public void put(Runnable task) throws InterruptedException {
+        while (!offer(task)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(task)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (System.nanoTime() - deadline >= 0) return false;
+            Thread.onSpinWait();
+        }
+        return true;
+    }
+
+    @Override
+    public Runnable peek() {
+        int lane = pickLane();
+        Entry head = lane < 0 ? null : lanes[lane].peek();
+        return head == null ? null : head.task();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        // Used by ThreadPoolExecutor to take back a task it could not start; rare, so a scan is fine
+        for (ConcurrentLinkedQueue<Entry> lane : lanes) {
+            for (Entry e : lane) {
+                if (e.task().equals(o) && available.tryAcquire()) {
+                    if (lane.remove(e)) {
+                        count.decrementAndGet();
+                        return true;
+                    }
+                    available.release();
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - count.get());
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> target, int maxElements) {
+        int n = 0;
+        Runnable task;
+        while (n < maxElements && (task = poll()) != null) {
+            target.add(task);
+            n++;
+        }
+        return n;
+    }
+
+    /** Weakly consistent snapshot, lane by lane. */
+    @Override
+    public Iterator<Runnable> iterator() {
+        List<Runnable> snapshot = new ArrayList<>(count.get());
+        for (ConcurrentLinkedQueue<Entry> lane : lanes) {
+            for (Entry e : lane) {
+                snapshot.add(e.task());
+            }
+        }
+        return snapshot.iterator();
+    }
+
+    private int laneOf(Runnable task) {
+        if (task instanceof PrioritizedTask pt) {
+            if (pt.retry() && retryLane) return RETRY_LANE;
+            return pt.priority().ordinal();
+        }
+        return JobPriority.NORMAL.ordinal();
+    }
+
+    /**
+     * Removes one element. The caller holds a permit, so there is at least one element that no other consumer
+     * can claim; the loop only repeats if a competing consumer emptied the lane that was picked.
+     */
+    private Runnable dequeue() {
+        while (true) {
+            int lane = pickLane();
+            Entry e = lane < 0 ? null : lanes[lane].poll();
+            if (e == null) e = pollAny();
+            if (e != null) {
+                count.decrementAndGet();
+                return e.task();
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private Entry pollAny() {
+        for (ConcurrentLinkedQueue<Entry> lane : lanes) {
+            Entry e = lane.poll();
+            if (e != null) return e;
+        }
+        return null;
+    }
+
+    /**
+     * The lane whose head has the best effective rank: its lane index minus one for every aging period the head
+     * has waited. Ties go to the more important lane.
+     */
+    private int pickLane() {
+        long now = clock.getAsLong();
+        int best = -1;
+        long bestRank = Long.MAX_VALUE;
+        for (int i = 0; i < lanes.length; i++) {
+            Entry head = lanes[i].peek();
+            if (head == null) continue;
+            long rank = i - (now - head.enqueuedAt()) / agingNanos;
+            if (rank < bestRank) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> ConcurrentLinkedQueue<E>[] newLanes(int count) {
+        return (ConcurrentLinkedQueue<E>[]) new ConcurrentLinkedQueue<?>[count];
+    }
+}
@@ -0,0 +1,148 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Admission control for the virtual-thread execution modes. A virtual-thread executor never runs out of
+ * threads, so the bound that the fixed pool and its queue used to provide is expressed as a concurrency limit
+ * per job type instead: a job counts against its type from the moment it is enqueued until its attempt finishes.
+ * <p/>
+ * With {@code jobs.executor.mode=virtual} the limit is fixed: {@code jobs.executor.virtual.permits.<type>},
+ * falling back to {@code jobs.executor.virtual.default-permits}. With {@code jobs.executor.mode=adaptive} every
+ * type gets a {@link GradientLimit} that grows while the latency of its jobs stays flat and shrinks when it
+ * rises. In platform mode the limiter admits everything and the pool's threads and bounded queue are the only
+ * limit, as before; an async attempt keeps its place in that bound until it completes (see {@link Bulkhead}).
+ */
+@Component
+public class TypeConcurrencyLimiter {
+
+    /** Snapshot of one type's limit, for reporting. */
+    public record TypeLimit(int limit, int inFlight) {}
+
+    private final class TypeState {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final GradientLimit adaptive;
+        volatile int limit;
+
+        TypeState(String type) {
+            this.adaptive = adaptiveLimits == null ? null : adaptiveLimits.apply(type);
+            this.limit = adaptive == null ? permitsForType.applyAsInt(type) : adaptive.getLimit();
+        }
+    }
+
+    private final boolean enabled;
+    private final ToIntFunction<String> permitsForType;
+    private final Function<String, GradientLimit> adaptiveLimits;
+    private final Map<String, TypeState> types = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TypeConcurrencyLimiter(@Value("${jobs.executor.mode:platform}") String mode,
+                                  @Value("${jobs.executor.virtual.default-permits:200}") int defaultPermits,
+                                  @Value("${jobs.executor.adaptive.initial-limit:20}") int initialLimit,
+                                  @Value("${jobs.executor.adaptive.min-limit:2}") int minLimit,
+                                  @Value("${jobs.executor.adaptive.max-limit:1000}") int maxLimit,
+                                  @Value("${jobs.executor.adaptive.tolerance:1.5}") double tolerance,
+                                  @Value("${jobs.executor.adaptive.smoothing:0.2}") double smoothing,
+                                  @Value("${jobs.executor.adaptive.window-samples:20}") int windowSamples,
+                                  Environment env) {
+        this(!"platform".equals(mode),
+                type -> env.getProperty("jobs.executor.virtual.permits." + type, Integer.class, defaultPermits),
+                "adaptive".equals(mode)
+                        ? type -> new GradientLimit(initialLimit, minLimit, maxLimit, tolerance, smoothing, windowSamples)
+                        : null);
+    }
+
+    /**
+     * Fixed limits per type.
+     */
+    public TypeConcurrencyLimiter(boolean enabled, ToIntFunction<String> permitsForType) {
+        this(enabled, permitsForType, null);
+    }
+
+    /**
+     * @param adaptiveLimits creates the limit of a type; {@code null} for fixed limits from {@code permitsForType}
+     */
+    public TypeConcurrencyLimiter(boolean enabled, ToIntFunction<String> permitsForType,
+                                  Function<String, GradientLimit> adaptiveLimits) {
+        this.enabled = enabled;
+        this.permitsForType = permitsForType;
+        this.adaptiveLimits = adaptiveLimits;
+    }
+
+    /**
+     * Admits one attempt of a job of this type.
+     *
+     * @return the admission time ({@link System#nanoTime()}), to be passed to {@link #release(String, long)}
+     * @throws BulkheadFullException naming the type, if its limit is reached
+     */
+    public long acquire(String type) {
+        long now = System.nanoTime();
+        if (!enabled) return now;
+
+        TypeState state = state(type);
+        int current;
+        do {
+            current = state.inFlight.get();
+            if (current >= state.limit) {
+                throw new BulkheadFullException(type,
+                        "Concurrency limit reached for job type " + type + " (limit " + state.limit + ")",
+                        null);
+            }
+        } while (!state.inFlight.compareAndSet(current, current + 1));
+        return now;
+    }
+
+    /**
+     * Ends an attempt without recording its latency.
+     */
+    public void release(String type) {
+        if (!enabled) return;
+        state(type).inFlight.decrementAndGet();
+    }
+
+    /**
+     * Ends an attempt admitted at {@code admittedAt}. With adaptive limits, its latency (queue wait plus
+     * handler time) feeds the type's limit.
+     */
+    public void release(String type, long admittedAt) {
+        if (!enabled) return;
+        TypeState state = state(type);
+        if (state.adaptive != null) {
+            long rtt = System.nanoTime() - admittedAt;
+            synchronized (state) {
+                state.adaptive.onSample(rtt, state.inFlight.get());
+                state.limit = state.adaptive.getLimit();
+            }
+        }
+        state.inFlight.decrementAndGet();
+    }
+
+    /** Attempts currently admitted for the type (0 when the limiter is disabled). */
+    public int inUse(String type) {
+        if (!enabled) return 0;
+        return state(type).inFlight.get();
+    }
+
+    /** Current limit and usage of every type seen so far, by type name. Empty when the limiter is disabled. */
+    public Map<String, TypeLimit> limits() {
+        Map<String, TypeLimit> result = new TreeMap<>();
+        types.forEach((type, state) -> result.put(type, new TypeLimit(state.limit, state.inFlight.get())));
+        return result;
+    }
+
+    private TypeState state(String type) {
+        TypeState state = types.get(type);
+        return state != null ? state : types.computeIfAbsent(type, TypeState::new);
+    }
+}
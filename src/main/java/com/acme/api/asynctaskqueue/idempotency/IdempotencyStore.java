@@ -0,0 +1,123 @@
+package com.acme.api.asynctaskqueue.idempotency;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded map of idempotency key to job id, with an atomic "claim or return existing" operation.
+ * <p/>
+ * Keys are not expired one by one. The store keeps {@value #GENERATIONS} generations (plain maps); new keys
+ * always go into the newest one. When the newest generation gets too old or too large, a fresh generation is
+ * started and the oldest one is dropped as a whole, so eviction costs one reference swap no matter how many
+ * keys it removes, and there are no per-entry timestamps or timers.
+ * <p/>
+ * With a generation span of {@code ttl / (GENERATIONS - 1)}, a key is remembered for at least the TTL and at
+ * most {@code ttl * GENERATIONS / (GENERATIONS - 1)}, unless the size cap forces an earlier rotation. Memory
+ * stays at roughly {@code maxKeys} entries no matter how many unique keys pass through.
+ */
+@Component
+public class IdempotencyStore {
+
+    static final int GENERATIONS = 4;
+    private static final int STRIPES = 64;
+
+    private record Generation(ConcurrentHashMap<String, String> keys, long startedAt) {}
+
+    private final long spanNanos;
+    private final int maxKeysPerGeneration;
+    private final LongSupplier clock;
+    private final Object[] stripes = new Object[STRIPES];
+
+    /** Newest first. Replaced (never mutated) on rotation, so readers always see a consistent set. */
+    private volatile Generation[] generations;
+
+    @Autowired
+    public IdempotencyStore(@Value("${jobs.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${jobs.idempotency.max-keys:1000000}") int maxKeys) {
+        this(TimeUnit.SECONDS.toNanos(ttlSeconds), maxKeys, System::nanoTime);
+    }
+
+    IdempotencyStore(long ttlNanos, int maxKeys, LongSupplier clock) {
+        this.spanNanos = ttlNanos / (GENERATIONS - 1);
+        this.maxKeysPerGeneration = Math.max(1, maxKeys / GENERATIONS);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        Generation[] initial = new Generation[GENERATIONS];
+        for (int i = 0; i < GENERATIONS; i++) {
+            initial[i] = new Generation(new ConcurrentHashMap<>(), clock.getAsLong());
+        }
+        generations = initial;
+    }
+
+    /**
+     * Associates the key with {@code jobId} unless it is already taken.
+     *
+     * @return {@code null} if the caller now owns the key, otherwise the job id that already owns it
+     */
+    public String claim(String key, String jobId) {
+        rotateIfNeeded();
+        // Duplicates of the same key serialize on one stripe; unrelated keys almost never contend
+        synchronized (stripes[(key.hashCode() & 0x7fffffff) % STRIPES]) {
+            Generation[] current = generations;
+            for (Generation generation : current) {
+                String existing = generation.keys().get(key);
+                if (existing != null) return existing;
+            }
+            current[0].keys().put(key, jobId);
+            return null;
+        }
+    }
+
+    /**
+     * Looks up the job that owns the key, or {@code null}.
+     */
+    public String find(String key) {
+        for (Generation generation : generations) {
+            String existing = generation.keys().get(key);
+            if (existing != null) return existing;
+        }
+        return null;
+    }
+
+    /**
+     * Gives the key back, e.g. when the job that claimed it was rejected. Only removes the mapping if it still
+     * points at {@code jobId}.
+     */
+    public void release(String key, String jobId) {
+        for (Generation generation : generations) {
+            generation.keys().remove(key, jobId);
+        }
+    }
+
+    /** Number of keys currently remembered (including ones past their TTL whose generation is still alive). */
+    public int size() {
+        int size = 0;
+        for (Generation generation : generations) {
+            size += generation.keys().size();
+        }
+        return size;
+    }
+
+    private void rotateIfNeeded() {
+        Generation newest = generations[0];
+        if (clock.getAsLong() - newest.startedAt() < spanNanos && newest.keys().size() < maxKeysPerGeneration) {
+            return;
+        }
+        synchronized (this) {
+            Generation[] current = generations;
+            if (current[0] != newest) return; // someone else rotated already
+
+            Generation[] next = new Generation[GENERATIONS];
+            next[0] = new Generation(new ConcurrentHashMap<>(), clock.getAsLong());
+            System.arraycopy(current, 0, next, 1, GENERATIONS - 1); // the oldest generation falls off
+            generations = next;
+        }
+    }
+}
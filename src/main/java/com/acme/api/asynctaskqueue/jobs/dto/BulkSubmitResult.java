@@ -0,0 +1,21 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one line of a bulk submission: either the id of the admitted job or the reason it was rejected.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkSubmitResult(
+        int line,
+        String jobId,
+        String error
+) {
+    public static BulkSubmitResult accepted(int line, String jobId) {
+        return new BulkSubmitResult(line, jobId, null);
+    }
+
+    public static BulkSubmitResult rejected(int line, String error) {
+        return new BulkSubmitResult(line, null, error);
+    }
+}
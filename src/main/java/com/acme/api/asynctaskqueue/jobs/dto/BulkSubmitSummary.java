@@ -0,0 +1,16 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Last line of a bulk submission response. {@code firstQueueFullLine} is the line from which a client
+ * should resubmit after backing off; it is absent if the queue never filled up.
+ */
+public record BulkSubmitSummary(
+        int accepted,
+        int rejected,
+
+        // Optional fields
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        Integer firstQueueFullLine
+) {}
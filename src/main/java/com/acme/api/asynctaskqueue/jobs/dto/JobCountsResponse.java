@@ -0,0 +1,10 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.acme.api.asynctaskqueue.model.JobStatus;
+
+import java.util.Map;
+
+/**
+ * Number of jobs per status, overall and per job type, as returned by {@code GET /v1/jobs/counts}.
+ */
+public record JobCountsResponse(Map<JobStatus, Integer> byStatus, Map<String, Map<JobStatus, Integer>> byType) {}
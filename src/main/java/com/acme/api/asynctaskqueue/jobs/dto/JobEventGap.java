@@ -0,0 +1,7 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+/**
+ * Sent on the event stream in place of the {@code missed} events a subscriber fell too far behind to receive;
+ * the stream continues with the event whose id is {@code resumeAt}.
+ */
+public record JobEventGap(long missed, long resumeAt) {}
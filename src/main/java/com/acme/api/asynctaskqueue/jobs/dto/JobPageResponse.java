@@ -0,0 +1,15 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A page of {@code GET /v1/jobs}. Pass {@code nextCursor} as {@code cursor} to get the next page; it is absent
+ * on the last page.
+ */
+public record JobPageResponse(
+        List<JobSummary> jobs,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String nextCursor
+) {}
@@ -1,9 +1,37 @@
 package com.acme.api.asynctaskqueue.jobs.dto;
 
+import com.acme.api.asynctaskqueue.model.JobPriority;
+
+import java.time.Instant;
 import java.util.Map;
 
 public record JobRequest(
         String type,
         Map<String, Object> payload,
-        String idempotencyKey
-) {}
+        String idempotencyKey,
+
+        // Optional, NORMAL if absent
+        JobPriority priority,
+
+        // Optional, limit for each attempt in milliseconds; jobs.handler.default-timeout-ms if absent
+        Long timeoutMs,
+
+        // Optional, at most one of them; the job runs right away if all are absent. runAt is an ISO-8601 instant,
+        // cron a Spring cron expression (seconds first) evaluated in UTC, which runs the job at every match
+        Instant runAt,
+        Long delayMs,
+        String cron
+) {
+    public JobRequest(String type, Map<String, Object> payload, String idempotencyKey) {
+        this(type, payload, idempotencyKey, null, null);
+    }
+
+    public JobRequest(String type, Map<String, Object> payload, String idempotencyKey, JobPriority priority) {
+        this(type, payload, idempotencyKey, priority, null);
+    }
+
+    public JobRequest(String type, Map<String, Object> payload, String idempotencyKey, JobPriority priority,
+                      Long timeoutMs) {
+        this(type, payload, idempotencyKey, priority, timeoutMs, null, null, null);
+    }
+}
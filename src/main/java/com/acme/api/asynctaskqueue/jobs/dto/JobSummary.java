@@ -0,0 +1,8 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import java.time.Instant;
+
+/**
+ * One job in a {@link JobPageResponse}.
+ */
+public record JobSummary(String jobId, String type, String status, int attempts, Instant statusChangedAt) {}
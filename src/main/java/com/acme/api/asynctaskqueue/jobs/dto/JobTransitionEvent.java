@@ -0,0 +1,20 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One status change of a job, as streamed by {@code GET /v1/jobs/events}. {@code from} is absent for the
+ * submission of a job.
+ */
+public record JobTransitionEvent(
+        String jobId,
+        String type,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String idempotencyKey,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        JobStatus from,
+        JobStatus to,
+        int attempts,
+        long timestampMs
+) {}
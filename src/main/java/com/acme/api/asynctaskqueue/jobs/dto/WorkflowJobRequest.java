@@ -0,0 +1,27 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One job of a {@link WorkflowRequest}. {@code name} identifies it within the workflow only; the job gets a
+ * jobId of its own when the workflow is submitted.
+ */
+public record WorkflowJobRequest(
+        String name,
+        String type,
+        Map<String, Object> payload,
+
+        // Optional, the names of the jobs that must succeed before this one runs; it runs right away if absent
+        List<String> dependsOn,
+
+        // Optional, as in JobRequest
+        JobPriority priority,
+        Long timeoutMs
+) {
+    public WorkflowJobRequest(String name, String type, Map<String, Object> payload, List<String> dependsOn) {
+        this(name, type, payload, dependsOn, null, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public record WorkflowJobResponse(
+        String name,
+        String jobId,
+        String status,
+
+        // Optional, how compensating this job went if it succeeded and the workflow failed afterwards
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String compensation
+) {}
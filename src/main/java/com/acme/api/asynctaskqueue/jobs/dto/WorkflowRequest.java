@@ -0,0 +1,10 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import java.util.List;
+
+/**
+ * A set of jobs submitted together, which may depend on each other but not in a cycle.
+ */
+public record WorkflowRequest(
+        List<WorkflowJobRequest> jobs
+) {}
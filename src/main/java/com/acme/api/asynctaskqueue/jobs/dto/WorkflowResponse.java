@@ -0,0 +1,12 @@
+package com.acme.api.asynctaskqueue.jobs.dto;
+
+import java.util.List;
+
+/**
+ * A workflow and its jobs, in the order they were submitted.
+ */
+public record WorkflowResponse(
+        String workflowId,
+        String status,
+        List<WorkflowJobResponse> jobs
+) {}
@@ -9,6 +9,22 @@
  *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobResponse} - Immutable class that represents a GET request</li>
  *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse} - Immutable class that contains the async
  *   response from a job</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.BulkSubmitResult} - Immutable class that represents the outcome
+ *   of one line of a bulk (NDJSON) submission</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.BulkSubmitSummary} - Immutable class that closes a bulk
+ *   submission response</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent} - Immutable class that represents one
+ *   status change on the job event stream</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobEventGap} - Immutable class that marks the events a slow
+ *   subscriber of the job event stream missed</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobPageResponse} - Immutable class that represents one page
+ *   of a job query, made of {@link com.acme.api.asynctaskqueue.jobs.dto.JobSummary} objects</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.JobCountsResponse} - Immutable class that contains the number
+ *   of jobs per status and type</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.WorkflowRequest} - Immutable class that represents a POST
+ *   request for a workflow, made of {@link com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobRequest} objects</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.jobs.dto.WorkflowResponse} - Immutable class that contains the status of
+ *   a workflow and, as {@link com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobResponse} objects, of its jobs</li>
  * </ul>
  */
 package com.acme.api.asynctaskqueue.jobs.dto;
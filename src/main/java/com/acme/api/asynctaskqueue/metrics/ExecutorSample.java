@@ -0,0 +1,10 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+/**
+ * The state of one executor at one sampling point. {@code completed} and {@code rejected} are totals since
+ * startup; {@code estimatedQueueWaitMs} is how long a job joining the queue now would wait at the throughput
+ * of the last interval, or {@code null} if jobs are queued but none completed during that interval.
+ */
+public record ExecutorSample(String executor, int active, int queued, long completed, long rejected,
+                             Long estimatedQueueWaitMs) {
+}
@@ -0,0 +1,140 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+import com.acme.api.asynctaskqueue.executor.Bulkhead;
+import com.acme.api.asynctaskqueue.executor.CountingRejectionHandler;
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples the saturation of every executor at a fixed interval into an in-memory ring of
+ * {@code jobs.telemetry.capacity} points, so that a burst of 429s can be traced back to the bulkhead, the
+ * compensation executor or the retry backlog that caused it.
+ * <p/>
+ * A sample records, per bulkhead and for the compensation executor, the active and queued jobs and the totals of
+ * completed and rejected ones, and the retry scheduler's backlog. The queue-wait estimate is Little's law on the
+ * last interval: queued jobs divided by the jobs completed per millisecond.
+ * <p/>
+ * Only the sampler thread writes the ring. A reader drops the points that were replaced while it copied them.
+ */
+@Component
+public class ExecutorTelemetry implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorTelemetry.class);
+
+    static final String COMPENSATION = "compensation";
+
+    private final JobBulkheads bulkheads;
+    private final ThreadPoolExecutor compensationExecutor;
+    private final RetryScheduler retryScheduler;
+    private final LongSupplier clock;
+
+    private final TelemetrySample[] ring;
+    private volatile long written;
+    private final Map<String, Long> lastCompleted = new HashMap<>();
+    private long lastSampleAt = -1;
+
+    private final ScheduledExecutorService sampler;
+
+    @Autowired
+    public ExecutorTelemetry(JobBulkheads bulkheads,
+                             @Qualifier("compensationJobExecutor") ThreadPoolExecutor compensationExecutor,
+                             RetryScheduler retryScheduler,
+                             @Value("${jobs.telemetry.capacity:600}") int capacity,
+                             @Value("${jobs.telemetry.interval-ms:1000}") long intervalMs) {
+        this(bulkheads, compensationExecutor, retryScheduler, capacity, System::currentTimeMillis);
+        sampler.scheduleAtFixedRate(this::sampleQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    ExecutorTelemetry(JobBulkheads bulkheads, ThreadPoolExecutor compensationExecutor, RetryScheduler retryScheduler,
+                      int capacity, LongSupplier clock) {
+        this.bulkheads = bulkheads;
+        this.compensationExecutor = compensationExecutor;
+        this.retryScheduler = retryScheduler;
+        this.ring = new TelemetrySample[capacity];
+        this.clock = clock;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "executor-telemetry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Takes one sample and appends it to the ring. Called by the sampler thread only.
+     */
+    TelemetrySample sample() {
+        long now = clock.getAsLong();
+        long elapsed = lastSampleAt < 0 ? 0 : now - lastSampleAt;
+        lastSampleAt = now;
+
+        List<ExecutorSample> executors = new ArrayList<>();
+        for (Bulkhead bulkhead : bulkheads.all()) {
+            executors.add(executor(bulkhead.getName(), bulkhead.getActive(), bulkhead.getQueued(),
+                    bulkhead.getCompleted(), bulkhead.getRejected(), elapsed));
+        }
+        executors.add(executor(COMPENSATION, compensationExecutor.getActiveCount(),
+                compensationExecutor.getQueue().size(), compensationExecutor.getCompletedTaskCount(),
+                CountingRejectionHandler.rejectedBy(compensationExecutor), elapsed));
+
+        TelemetrySample sample = new TelemetrySample(now, List.copyOf(executors),
+                retryScheduler.getPendingRetries(), retryScheduler.getReparkedRetries());
+        ring[(int) (written % ring.length)] = sample;
+        written++;
+        return sample;
+    }
+
+    /**
+     * The most recent samples, oldest first.
+     */
+    public List<TelemetrySample> recent(int count) {
+        long end = written;
+        long start = Math.max(0, Math.max(end - ring.length, end - count));
+        List<TelemetrySample> samples = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            samples.add(ring[(int) (i % ring.length)]);
+        }
+        // Points the sampler replaced while we were copying are newer ones out of order: drop them
+        long overwritten = written - ring.length - start;
+        return overwritten > 0 ? samples.subList((int) Math.min(overwritten, samples.size()), samples.size()) : samples;
+    }
+
+    @Override
+    public void destroy() {
+        sampler.shutdownNow();
+    }
+
+    private ExecutorSample executor(String name, int active, int queued, long completed, long rejected,
+                                    long elapsedMs) {
+        Long previous = lastCompleted.put(name, completed);
+        Long queueWaitMs;
+        if (queued == 0) {
+            queueWaitMs = 0L;
+        } else if (previous == null || elapsedMs == 0 || completed == previous) {
+            queueWaitMs = null;
+        } else {
+            queueWaitMs = queued * elapsedMs / (completed - previous);
+        }
+        return new ExecutorSample(name, active, queued, completed, rejected, queueWaitMs);
+    }
+
+    private void sampleQuietly() {
+        try {
+            sample();
+        } catch (RuntimeException e) {
+            logger.warn("Executor telemetry sample failed", e);
+        }
+    }
+}
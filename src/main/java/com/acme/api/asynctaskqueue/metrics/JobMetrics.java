@@ -1,15 +1,50 @@
 package com.acme.api.asynctaskqueue.metrics;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 
+/**
+ * Job timing. Besides the overall average, every job type keeps a {@link LatencyHistogram} per
+ * {@link LatencyPhase}, covering the last {@code jobs.metrics.latency.slots} slices of
+ * {@code jobs.metrics.latency.slice-ms} each (5 minutes by default), from which percentiles over any shorter
+ * window are reported.
+ */
 @Service
 public class JobMetrics {
     private final AtomicLong totalJobExecutionTimeMs = new AtomicLong(0);
     private final AtomicInteger completedJobs = new AtomicInteger(0);
 
+    private final Map<String, LatencyHistogram[]> latencies = new ConcurrentHashMap<>();
+    private final int slots;
+    private final long sliceMs;
+    private final LongSupplier clock;
+
+    public JobMetrics() {
+        this(30, 10_000);
+    }
+
+    @Autowired
+    public JobMetrics(@Value("${jobs.metrics.latency.slots:30}") int slots,
+                      @Value("${jobs.metrics.latency.slice-ms:10000}") long sliceMs) {
+        this(slots, sliceMs, System::currentTimeMillis);
+    }
+
+    JobMetrics(int slots, long sliceMs, LongSupplier clock) {
+        this.slots = slots;
+        this.sliceMs = sliceMs;
+        this.clock = clock;
+    }
+
     public void recordJobDuration(long durationMs) {
         totalJobExecutionTimeMs.addAndGet(durationMs);
         completedJobs.incrementAndGet();
@@ -23,4 +58,42 @@ public class JobMetrics {
     public int getCompletedJobs() {
         return completedJobs.get();
     }
+
+    /**
+     * Records the latency of one phase of a job of the given type.
+     */
+    public void record(String type, LatencyPhase phase, long nanos) {
+        LatencyHistogram[] byPhase = latencies.get(type);
+        if (byPhase == null) {
+            byPhase = latencies.computeIfAbsent(type, t -> newHistograms());
+        }
+        byPhase[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos), clock.getAsLong());
+    }
+
+    /**
+     * Percentiles per job type and phase over (about) the last {@code windowMs}, rounded up to whole slices and
+     * capped at the retained history. Phases without samples in the window are left out.
+     */
+    public Map<String, Map<LatencyPhase, LatencySummary>> latency(long windowMs) {
+        int slices = (int) Math.max(1, Math.min(slots, (windowMs + sliceMs - 1) / sliceMs));
+        long now = clock.getAsLong();
+        Map<String, Map<LatencyPhase, LatencySummary>> result = new TreeMap<>();
+        latencies.forEach((type, byPhase) -> {
+            Map<LatencyPhase, LatencySummary> phases = new EnumMap<>(LatencyPhase.class);
+            for (LatencyPhase phase : LatencyPhase.values()) {
+                LatencySummary summary = byPhase[phase.ordinal()].summary(slices, now);
+                if (summary.count() > 0) phases.put(phase, summary);
+            }
+            if (!phases.isEmpty()) result.put(type, phases);
+        });
+        return result;
+    }
+
+    private LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] byPhase = new LatencyHistogram[LatencyPhase.values().length];
+        for (int i = 0; i < byPhase.length; i++) {
+            byPhase[i] = new LatencyHistogram(slots, sliceMs);
+        }
+        return byPhase;
+    }
 }
@@ -0,0 +1,106 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free latency histogram with a fixed memory footprint, sliding over the last {@code slots} time slices.
+ * <p/>
+ * Values are recorded in microseconds into log-linear buckets, the layout HdrHistogram uses: every power of two
+ * is split into {@code 2^SUB_BITS} linear sub-buckets, so a bucket is never wider than 1/16 of its values
+ * (6.25%) from 1µs up to about 38 hours. That is {@value #BUCKETS} counters per slice; larger values land in the
+ * last bucket. Recording is a bucket computation and one atomic increment.
+ * <p/>
+ * Each slice covers {@code sliceMs}. The first value recorded in a new slice claims the oldest slot and clears it;
+ * values recorded into that slot by other threads while it is being cleared may be lost, which is accepted to keep
+ * recording lock-free. A snapshot adds up the slots of the requested number of most recent slices, the current
+ * (partial) one included.
+ */
+public class LatencyHistogram {
+    static final int SUB_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+    static final double RELATIVE_ERROR = 1.0 / SUB_BUCKETS;
+
+    private static final class Slot {
+        final AtomicLong slice = new AtomicLong(-1);
+        final AtomicIntegerArray counts = new AtomicIntegerArray(BUCKETS);
+    }
+
+    private final Slot[] slots;
+    private final long sliceMs;
+
+    public LatencyHistogram(int slots, long sliceMs) {
+        this.slots = new Slot[slots];
+        for (int i = 0; i < slots; i++) {
+            this.slots[i] = new Slot();
+        }
+        this.sliceMs = sliceMs;
+    }
+
+    public void record(long micros, long nowMs) {
+        long slice = nowMs / sliceMs;
+        Slot slot = slots[(int) (slice % slots.length)];
+        long seen = slot.slice.get();
+        if (seen < slice && slot.slice.compareAndSet(seen, slice)) {
+            for (int i = 0; i < BUCKETS; i++) {
+                slot.counts.set(i, 0);
+            }
+        }
+        slot.counts.incrementAndGet(index(micros));
+    }
+
+    /**
+     * Percentiles of the values recorded in the last {@code slices} slices (at most the number of slots).
+     */
+    public LatencySummary summary(int slices, long nowMs) {
+        long current = nowMs / sliceMs;
+        long oldest = current - Math.min(slices, slots.length) + 1;
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (Slot slot : slots) {
+            long slice = slot.slice.get();
+            if (slice < oldest || slice > current) continue;
+            for (int i = 0; i < BUCKETS; i++) {
+                int c = slot.counts.get(i);
+                counts[i] += c;
+                total += c;
+            }
+        }
+        if (total == 0) return LatencySummary.EMPTY;
+
+        int max = BUCKETS - 1;
+        while (counts[max] == 0) max--;
+        return new LatencySummary(total,
+                percentile(counts, total, 0.50), percentile(counts, total, 0.90),
+                percentile(counts, total, 0.99), percentile(counts, total, 0.999),
+                highestEquivalent(max) / 1000.0);
+    }
+
+    private static double percentile(long[] counts, long total, double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return highestEquivalent(i) / 1000.0;
+        }
+        return highestEquivalent(counts.length - 1) / 1000.0;
+    }
+
+    static int index(long micros) {
+        if (micros < 2 * SUB_BUCKETS) return (int) Math.max(0, micros);
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int shift = exponent - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (micros >>> shift);
+    }
+
+    /** Largest value that falls into the bucket. */
+    static long highestEquivalent(int index) {
+        if (index < 2 * SUB_BUCKETS) return index;
+        int shift = (index >> SUB_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,17 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+/**
+ * The parts of a job's life whose latency is recorded separately by {@link JobMetrics}.
+ */
+public enum LatencyPhase {
+    /** From being handed to the bulkhead until an attempt starts. */
+    QUEUE_WAIT,
+    /** One attempt of the handler, successful or not. */
+    EXECUTION,
+    /** From a failed attempt until its retry is back in the bulkhead, including any re-parking. */
+    RETRY_DELAY,
+    /** The compensation handler of a job that ran out of attempts. */
+    COMPENSATION,
+    /** From submission until the job reached a terminal status. */
+    END_TO_END
+}
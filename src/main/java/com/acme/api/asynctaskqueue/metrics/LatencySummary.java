@@ -0,0 +1,10 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+/**
+ * Percentiles of one phase of one job type over a window, in milliseconds. Values are the upper bound of their
+ * histogram bucket, so they overstate the true value by at most {@link LatencyHistogram#RELATIVE_ERROR}.
+ */
+public record LatencySummary(long count, double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {
+
+    static final LatencySummary EMPTY = new LatencySummary(0, 0, 0, 0, 0, 0);
+}
@@ -0,0 +1,11 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+import java.util.List;
+
+/**
+ * One sampling point of {@link ExecutorTelemetry}: every executor, plus the retries parked in the retry
+ * scheduler and the number of retries it had to park again because their bulkhead was full (since startup).
+ */
+public record TelemetrySample(long timestampMs, List<ExecutorSample> executors, int pendingRetries,
+                              long reparkedRetries) {
+}
@@ -0,0 +1,300 @@
+package com.acme.api.asynctaskqueue.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A job payload encoded into one byte array, for {@link PayloadStorage#COMPACT}. A payload materialized by
+ * Jackson costs a LinkedHashMap entry per field, a boxed object per number and a copy of every field name; this
+ * keeps tagged values with varint lengths and numbers, and refers to field names by their id in a process-wide
+ * dictionary. The map is rebuilt by {@link #decode()} every time it is needed and never kept.
+ * <pre>
+ * value  = NULL | FALSE | TRUE | INT zigzag | LONG zigzag | FLOAT 4 bytes | DOUBLE 8 bytes
+ *        | STRING length utf8 | BIG_INTEGER length bytes | BIG_DECIMAL scale length bytes
+ *        | LIST count value* | MAP count (key value)*
+ * key    = varint (id &lt;&lt; 1)  |  varint (length &lt;&lt; 1 | 1) utf8
+ * </pre>
+ * Only the types Jackson produces for JSON are supported; {@link #encode(Map)} returns {@code null} for a payload
+ * holding anything else, and the job keeps the map as it is. The dictionary only grows, so names longer than
+ * {@link #MAX_INTERNED_LENGTH} (more likely data than field names) and any names beyond {@link #MAX_KEYS} are
+ * written inline instead.
+ */
+final class CompactPayload {
+    static final int MAX_KEYS = 1 << 16;
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+    private static final byte BIG_INTEGER = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte LIST = 10;
+    private static final byte MAP = 11;
+
+    private static final Map<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<String> keyNames = new AtomicReferenceArray<>(MAX_KEYS);
+    private static int nextKeyId; // guarded by keyIds
+
+    private final byte[] bytes;
+
+    private CompactPayload(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the encoded payload, or {@code null} if it holds a value of an unsupported type
+     */
+    static CompactPayload encode(Map<String, Object> payload) {
+        Writer out = new Writer();
+        if (!out.map(payload)) return null;
+        return new CompactPayload(out.toByteArray());
+    }
+
+    Map<String, Object> decode() {
+        Reader in = new Reader(bytes);
+        in.pos++; // MAP tag
+        return in.map();
+    }
+
+    /** Encoded size in bytes. */
+    int size() {
+        return bytes.length;
+    }
+
+    private static int internedId(String key) {
+        if (key.length() > MAX_INTERNED_LENGTH) return -1;
+        Integer id = keyIds.get(key);
+        if (id != null) return id;
+        synchronized (keyIds) {
+            id = keyIds.get(key);
+            if (id != null) return id;
+            if (nextKeyId == MAX_KEYS) return -1;
+            int newId = nextKeyId++;
+            keyNames.set(newId, key);
+            keyIds.put(key, newId);
+            return newId;
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buf = new byte[64];
+        private int pos;
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        boolean value(Object value) {
+            switch (value) {
+                case null -> put(NULL);
+                case Boolean b -> put(b ? TRUE : FALSE);
+                case Integer i -> {
+                    put(INT);
+                    varint(Integer.toUnsignedLong((i << 1) ^ (i >> 31)));
+                }
+                case Long l -> {
+                    put(LONG);
+                    varint((l << 1) ^ (l >> 63));
+                }
+                case Float f -> {
+                    put(FLOAT);
+                    fixed(Float.floatToRawIntBits(f), 4);
+                }
+                case Double d -> {
+                    put(DOUBLE);
+                    fixed(Double.doubleToRawLongBits(d), 8);
+                }
+                case String s -> {
+                    put(STRING);
+                    string(s);
+                }
+                case BigInteger b -> {
+                    put(BIG_INTEGER);
+                    bytes(b.toByteArray());
+                }
+                case BigDecimal d -> {
+                    put(BIG_DECIMAL);
+                    varint(Integer.toUnsignedLong((d.scale() << 1) ^ (d.scale() >> 31)));
+                    bytes(d.unscaledValue().toByteArray());
+                }
+                case List<?> list -> {
+                    put(LIST);
+                    varint(list.size());
+                    for (Object element : list) {
+                        if (!value(element)) return false;
+                    }
+                }
+                case Map<?, ?> map -> {
+                    return map(map);
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean map(Map<?, ?> map) {
+            put(MAP);
+            varint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String key)) return false;
+                int id = internedId(key);
+                if (id >= 0) {
+                    varint((long) id << 1);
+                } else {
+                    byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+                    varint(((long) utf8.length << 1) | 1);
+                    raw(utf8);
+                }
+                if (!value(entry.getValue())) return false;
+            }
+            return true;
+        }
+
+        private void string(String s) {
+            bytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void bytes(byte[] b) {
+            varint(b.length);
+            raw(b);
+        }
+
+        private void raw(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, pos, b.length);
+            pos += b.length;
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            buf[pos++] = b;
+        }
+
+        private void varint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        private void fixed(long v, int width) {
+            ensure(width);
+            for (int i = 0; i < width; i++) {
+                buf[pos++] = (byte) (v >>> (8 * i));
+            }
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) buf = Arrays.copyOf(buf, Math.max(pos + extra, buf.length * 2));
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        Object value() {
+            byte tag = buf[pos++];
+            return switch (tag) {
+                case NULL -> null;
+                case FALSE -> Boolean.FALSE;
+                case TRUE -> Boolean.TRUE;
+                case INT -> {
+                    int v = (int) varint();
+                    yield (v >>> 1) ^ -(v & 1);
+                }
+                case LONG -> {
+                    long v = varint();
+                    yield (v >>> 1) ^ -(v & 1);
+                }
+                case FLOAT -> Float.intBitsToFloat((int) fixed(4));
+                case DOUBLE -> Double.longBitsToDouble(fixed(8));
+                case STRING -> {
+                    int length = (int) varint();
+                    String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+                    pos += length;
+                    yield s;
+                }
+                case BIG_INTEGER -> new BigInteger(bytes());
+                case BIG_DECIMAL -> {
+                    int s = (int) varint();
+                    int scale = (s >>> 1) ^ -(s & 1);
+                    yield new BigDecimal(new BigInteger(bytes()), scale);
+                }
+                case LIST -> {
+                    int count = (int) varint();
+                    List<Object> list = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        list.add(value());
+                    }
+                    yield list;
+                }
+                case MAP -> map();
+                default -> throw new IllegalStateException("Corrupt compact payload: tag " + tag + " at " + (pos - 1));
+            };
+        }
+
+        Map<String, Object> map() {
+            int count = (int) varint();
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(4, (int) (count / 0.75f) + 1));
+            for (int i = 0; i < count; i++) {
+                long key = varint();
+                String name;
+                if ((key & 1) == 0) {
+                    name = keyNames.get((int) (key >>> 1));
+                } else {
+                    int length = (int) (key >>> 1);
+                    name = new String(buf, pos, length, StandardCharsets.UTF_8);
+                    pos += length;
+                }
+                map.put(name, value());
+            }
+            return map;
+        }
+
+        private byte[] bytes() {
+            int length = (int) varint();
+            byte[] b = Arrays.copyOfRange(buf, pos, pos + length);
+            pos += length;
+            return b;
+        }
+
+        private long varint() {
+            long v = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return v;
+            }
+        }
+
+        private long fixed(int width) {
+            long v = 0;
+            for (int i = 0; i < width; i++) {
+                v |= (long) (buf[pos++] & 0xFF) << (8 * i);
+            }
+            return v;
+        }
+    }
+}
@@ -1,86 +1,298 @@
 package com.acme.api.asynctaskqueue.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.Instant;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 
 /**
  * A regular Java POJO responsible to hold a job's state. Purposely designed for mutability
  * since this is a lifecycle object, and the job status will change over time.
+ * <p/>
+ * Many of these are in flight at once, so the id is kept as two longs (see {@link JobIds}) and type names are
+ * shared between jobs; {@link #getJobId()} returns a new string per call for a UUID id. Every job that is only
+ * queued shares one {@link JobState}, so such a job has no state object of its own.
+ * <p/>
+ * Worker, retry and compensation threads all move a job along, and request threads read it meanwhile. What
+ * changes with the lifecycle is therefore one immutable {@link JobState}, replaced by compare-and-set: status
+ * changes go through {@link #transition}, which only allows the edges of {@link JobStatus#canTransitionTo}, and
+ * {@link #state()} is a consistent snapshot that never waits for a writer. The individual setters are for
+ * rehydrating a job from storage.
  */
 public class Job {
-    private final String jobId;
+    private static final VarHandle STATE;
+    private static final VarHandle STATUS_CHANGED_AT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(Job.class, "state", JobState.class);
+            STATUS_CHANGED_AT = lookup.findVarHandle(Job.class, "statusChangedAtMillis", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final int MAX_SHARED_TYPES = 1024;
+    private static final Map<String, String> sharedTypes = new ConcurrentHashMap<>();
+
+    private final long idHigh;
+    private final long idLow;
+    private final String idText; // only for ids that are not canonical UUIDs
     private final String type;
-    private final Map<String, Object> payload;
+    private final Object payload; // the map, or a CompactPayload
     private final String idempotencyKey;
 
-    private JobStatus status;
-    private final AtomicInteger attempts = new AtomicInteger(0);
-    private String lastError;
-    private Instant startedAt;
-    private Instant completedAt;
+    private volatile JobState state = JobState.QUEUED;
+    private volatile JobPriority priority = JobPriority.NORMAL;
+    private volatile long statusChangedAtMillis = System.currentTimeMillis();
+    private long timeoutMs;
+    private Schedule schedule; // null unless the job was submitted to run later
+    private final long submittedAtNanos = System.nanoTime();
 
     public Job(String jobId, String type, Map<String, Object> payload, String idempotencyKey) {
-        this.jobId = jobId;
-        this.type = type;
-        this.payload = payload;
+        this(jobId, type, payload, idempotencyKey, PayloadStorage.MAP);
+    }
+
+    /**
+     * @param storage how to keep the payload; a payload that cannot be stored compactly is kept as a map
+     */
+    public Job(String jobId, String type, Map<String, Object> payload, String idempotencyKey, PayloadStorage storage) {
+        Objects.requireNonNull(jobId, "jobId");
+        if (JobIds.isCanonicalUuid(jobId)) {
+            this.idHigh = JobIds.high(jobId);
+            this.idLow = JobIds.low(jobId);
+            this.idText = null;
+        } else {
+            this.idHigh = 0;
+            this.idLow = 0;
+            this.idText = jobId;
+        }
+        this.type = shared(type);
+        CompactPayload compact = storage == PayloadStorage.COMPACT && payload != null
+                ? CompactPayload.encode(payload)
+                : null;
+        this.payload = compact != null ? compact : payload;
         this.idempotencyKey = idempotencyKey;
-        this.status = JobStatus.QUEUED;
     }
 
     public String getJobId() {
-        return jobId;
+        return idText != null ? idText : JobIds.format(idHigh, idLow);
+    }
+
+    /** Whether the id is a UUID, held as {@link #getIdHigh()} and {@link #getIdLow()}. */
+    public boolean hasUuidId() {
+        return idText == null;
+    }
+
+    public long getIdHigh() {
+        return idHigh;
+    }
+
+    public long getIdLow() {
+        return idLow;
     }
 
     public String getType() {
         return type;
     }
 
+    /**
+     * With {@link PayloadStorage#COMPACT} every call decodes a new map, so read it once per use.
+     */
+    @SuppressWarnings("unchecked")
     public Map<String, Object> getPayload() {
-        return payload;
+        return payload instanceof CompactPayload compact ? compact.decode() : (Map<String, Object>) payload;
+    }
+
+    public PayloadStorage getPayloadStorage() {
+        return payload instanceof CompactPayload ? PayloadStorage.COMPACT : PayloadStorage.MAP;
     }
 
     public String getIdempotencyKey() {
         return idempotencyKey;
     }
 
+    /** The current status, attempts, error and timestamps, all as of the same moment. */
+    public JobState state() {
+        return state;
+    }
+
+    /**
+     * Moves the job to {@code status}, along with whatever else {@code change} derives from the current state,
+     * in one atomic step. {@code change} may be applied more than once if another thread changes the job
+     * meanwhile, so it must not have side effects.
+     *
+     * @return the state that was replaced
+     * @throws IllegalStateException if the job's current status does not lead to {@code status}
+     */
+    public JobState transition(JobStatus status, UnaryOperator<JobState> change) {
+        while (true) {
+            JobState current = state;
+            if (!current.status().canTransitionTo(status)) {
+                throw new IllegalStateException("Job " + getJobId() + " cannot go from " + current.status()
+                        + " to " + status);
+            }
+            JobState next = change.apply(current).withStatus(status);
+            if (STATE.compareAndSet(this, current, next)) {
+                stampStatusChange(current, next);
+                return current;
+            }
+        }
+    }
+
+    public JobState transition(JobStatus status) {
+        return transition(status, UnaryOperator.identity());
+    }
+
     public JobStatus getStatus() {
-        return status;
+        return state.status();
     }
 
+    /**
+     * Only meant for rehydrating a job from durable storage (or setting up one that nobody can see yet), like the
+     * other setters of the state: it does not check the transition. Regular processing uses {@link #transition}.
+     */
     public void setStatus(JobStatus status) {
-        this.status = status;
+        update(s -> s.withStatus(status));
+    }
+
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * The priority only orders jobs waiting in an executor's queue. It is persisted with the job, so a job recovered
+     * after a restart, or claimed by another node, keeps it.
+     */
+    public void setPriority(JobPriority priority) {
+        this.priority = priority == null ? JobPriority.NORMAL : priority;
+    }
+
+    /** Limit for each attempt in milliseconds; 0 if the job has none of its own. */
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    /** Persisted like the priority. */
+    public void setTimeoutMs(Long timeoutMs) {
+        this.timeoutMs = timeoutMs == null ? 0 : Math.max(0, timeoutMs);
+    }
+
+    /** When the job is (or was) due, for a job submitted to run later; {@code null} otherwise. */
+    public Instant getRunAt() {
+        return schedule == null ? null : Instant.ofEpochMilli(schedule.runAtMillis());
+    }
+
+    /** The recurrence of a job submitted with a cron expression, {@code null} for a one-off job. */
+    public String getCron() {
+        return schedule == null ? null : schedule.cron();
+    }
+
+    /**
+     * Both are persisted, so a SCHEDULED job recovered after a restart waits for its time again.
+     *
+     * @param cron {@code null} for a one-off job
+     */
+    public void setSchedule(Instant runAt, String cron) {
+        this.schedule = runAt == null ? null : new Schedule(runAt.toEpochMilli(), cron);
     }
 
     public int getAttempts() {
-        return attempts.get();
+        return state.attempts();
     }
 
     public int incrementAttempts() {
-        return attempts.incrementAndGet();
+        return update(s -> s.withAttempts(s.attempts() + 1)).attempts();
+    }
+
+    public void setAttempts(int attempts) {
+        update(s -> s.withAttempts(attempts));
     }
 
     public String getLastError() {
-        return lastError;
+        return state.lastError();
     }
 
     public void setLastError(String lastError) {
-        this.lastError = lastError;
+        update(s -> s.withLastError(lastError));
     }
 
     public Instant getStartedAt() {
-        return startedAt;
+        return state.startedAt();
     }
 
     public void setStartedAt(Instant startedAt) {
-        this.startedAt = startedAt;
+        update(s -> s.withStartedAt(startedAt));
     }
 
     public Instant getCompletedAt() {
-        return completedAt;
+        return state.completedAt();
     }
 
     public void setCompletedAt(Instant completedAt) {
-        this.completedAt = completedAt;
+        update(s -> s.withCompletedAt(completedAt));
+    }
+
+    /**
+     * When the job entered its current status: set right after every status change, and persisted. It never moves
+     * back, even if two changes in quick succession set it out of order.
+     */
+    public Instant getStatusChangedAt() {
+        return Instant.ofEpochMilli(statusChangedAtMillis);
+    }
+
+    public long getStatusChangedAtMillis() {
+        return statusChangedAtMillis;
+    }
+
+    /** Only meant for rehydrating a job from durable storage, after its status has been set. */
+    public void setStatusChangedAt(Instant statusChangedAt) {
+        this.statusChangedAtMillis = statusChangedAt.toEpochMilli();
+    }
+
+    /**
+     * {@link System#nanoTime()} when this object was created, for measuring end-to-end latency. Not persisted:
+     * for a job recovered after a restart it is the time it was loaded.
+     */
+    public long getSubmittedAtNanos() {
+        return submittedAtNanos;
+    }
+
+    /** @return the new state */
+    private JobState update(UnaryOperator<JobState> change) {
+        while (true) {
+            JobState current = state;
+            JobState next = change.apply(current);
+            if (STATE.compareAndSet(this, current, next)) {
+                stampStatusChange(current, next);
+                return next;
+            }
+        }
+    }
+
+    private void stampStatusChange(JobState previous, JobState next) {
+        if (next.status() == previous.status()) return;
+        long now = System.currentTimeMillis();
+        long seen;
+        do {
+            seen = statusChangedAtMillis;
+            if (seen >= now) return;
+        } while (!STATUS_CHANGED_AT.compareAndSet(this, seen, now));
+    }
+
+    /** Kept out of line: most jobs run right away and pay one null reference for it. */
+    private record Schedule(long runAtMillis, String cron) {}
+
+    private static String shared(String type) {
+        if (type == null) return null;
+        String existing = sharedTypes.get(type);
+        if (existing != null) return existing;
+        if (sharedTypes.size() >= MAX_SHARED_TYPES) return type;
+        existing = sharedTypes.putIfAbsent(type, type);
+        return existing != null ? existing : type;
     }
 }
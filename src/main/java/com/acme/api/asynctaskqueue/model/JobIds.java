@@ -0,0 +1,54 @@
+package com.acme.api.asynctaskqueue.model;
+
+import java.util.UUID;
+
+/**
+ * Job ids as 128-bit values. Submitted jobs get a random UUID, which as a {@code String} costs about 80 bytes
+ * of heap; as two longs it costs 16. Ids that are not canonical UUIDs (e.g. in tests) stay strings.
+ * <p/>
+ * Parsing does not allocate, so a lookup by id string can go straight to a table keyed on the two longs.
+ */
+public final class JobIds {
+
+    private JobIds() {
+    }
+
+    /**
+     * Whether {@code id} is a UUID in the canonical lowercase 36-character form that {@link #format} produces, so
+     * that parsing and formatting it again gives back the same string.
+     */
+    public static boolean isCanonicalUuid(String id) {
+        if (id == null || id.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The most significant 64 bits of a canonical UUID. */
+    public static long high(String id) {
+        return hex(id, 0, 8) << 32 | hex(id, 9, 13) << 16 | hex(id, 14, 18);
+    }
+
+    /** The least significant 64 bits of a canonical UUID. */
+    public static long low(String id) {
+        return hex(id, 19, 23) << 48 | hex(id, 24, 36);
+    }
+
+    public static String format(long high, long low) {
+        return new UUID(high, low).toString();
+    }
+
+    private static long hex(String s, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            v = v << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return v;
+    }
+}
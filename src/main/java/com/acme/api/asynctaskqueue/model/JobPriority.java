@@ -0,0 +1,10 @@
+package com.acme.api.asynctaskqueue.model;
+
+/**
+ * Scheduling priority of a job in the normal executor's queue. Jobs submitted without one are NORMAL.
+ */
+public enum JobPriority {
+    HIGH,
+    NORMAL,
+    LOW
+}
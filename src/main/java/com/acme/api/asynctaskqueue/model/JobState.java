@@ -0,0 +1,60 @@
+package com.acme.api.asynctaskqueue.model;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Everything a job's lifecycle changes, as one immutable value. A {@link Job} replaces its state as a whole with a
+ * compare-and-set (see {@link Job#transition}), so a reader that takes {@link Job#state()} once sees a status
+ * together with the attempts, error and timestamps that belong to it, without any locking. A writer that loses
+ * the race builds its state again from the winner's, so a transition function must not have side effects.
+ * <p/>
+ * Timestamps are epoch nanoseconds, {@link #NO_TIME} if not set.
+ */
+public record JobState(JobStatus status, int attempts, String lastError, long startedAtNanos, long completedAtNanos) {
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    /** The state of every new job. Shared, so a job that is only queued has no state object of its own. */
+    public static final JobState QUEUED = new JobState(JobStatus.QUEUED, 0, null, NO_TIME, NO_TIME);
+
+    public JobState {
+        Objects.requireNonNull(status, "status");
+    }
+
+    public Instant startedAt() {
+        return toInstant(startedAtNanos);
+    }
+
+    public Instant completedAt() {
+        return toInstant(completedAtNanos);
+    }
+
+    public JobState withStatus(JobStatus status) {
+        return status == this.status ? this : new JobState(status, attempts, lastError, startedAtNanos, completedAtNanos);
+    }
+
+    public JobState withAttempts(int attempts) {
+        return new JobState(status, attempts, lastError, startedAtNanos, completedAtNanos);
+    }
+
+    public JobState withLastError(String lastError) {
+        return new JobState(status, attempts, lastError, startedAtNanos, completedAtNanos);
+    }
+
+    public JobState withStartedAt(Instant startedAt) {
+        return new JobState(status, attempts, lastError, toNanos(startedAt), completedAtNanos);
+    }
+
+    public JobState withCompletedAt(Instant completedAt) {
+        return new JobState(status, attempts, lastError, startedAtNanos, toNanos(completedAt));
+    }
+
+    /** Exact for any {@link Instant} until the year 2262. */
+    private static long toNanos(Instant instant) {
+        return instant == null ? NO_TIME : instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant toInstant(long epochNanos) {
+        return epochNanos == NO_TIME ? null : Instant.ofEpochSecond(0, epochNanos);
+    }
+}
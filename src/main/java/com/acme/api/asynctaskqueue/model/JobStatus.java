@@ -6,5 +6,39 @@ public enum JobStatus {
     SUCCEEDED,
     FAILED,
     COMPENSATION_FAILED,
-    COMPENSATED
+    COMPENSATED,
+    /** The last attempt failed and the job is parked until its next attempt is due. */
+    RETRYING,
+    /** Submitted to run later (runAt, delayMs or cron); the job waits in the schedule store until it is due. */
+    SCHEDULED,
+    /** Part of a workflow and waiting for the jobs it depends on to succeed. */
+    BLOCKED,
+    /** Part of a workflow that failed before this job could run, so it never ran. */
+    CANCELLED;
+
+    /**
+     * A terminal job will never change state again. Note that FAILED is not terminal: it means
+     * the retries are exhausted and the job is waiting for compensation.
+     */
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == COMPENSATED || this == COMPENSATION_FAILED || this == CANCELLED;
+    }
+
+    /**
+     * The lifecycle's edges: a scheduled job is queued once it is due, a blocked one once its parents have
+     * succeeded, unless its workflow fails first and cancels it. An attempt runs from QUEUED or RETRYING and
+     * ends in SUCCEEDED, RETRYING or (retries exhausted) FAILED, which compensation ends. A job queued, running or
+     * retrying when the process stopped is queued again on recovery. Nothing leaves a terminal status.
+     */
+    public boolean canTransitionTo(JobStatus next) {
+        return switch (this) {
+            case QUEUED -> next == RUNNING;
+            case RUNNING -> next == SUCCEEDED || next == RETRYING || next == FAILED || next == QUEUED;
+            case RETRYING -> next == RUNNING || next == QUEUED;
+            case FAILED -> next == COMPENSATED || next == COMPENSATION_FAILED;
+            case SCHEDULED -> next == QUEUED;
+            case BLOCKED -> next == QUEUED || next == CANCELLED;
+            case SUCCEEDED, COMPENSATED, COMPENSATION_FAILED, CANCELLED -> false;
+        };
+    }
 }
@@ -0,0 +1,14 @@
+package com.acme.api.asynctaskqueue.model;
+
+/**
+ * How a {@link Job} keeps its payload while it is in memory.
+ */
+public enum PayloadStorage {
+    /** The map as it was submitted. */
+    MAP,
+    /**
+     * One compact byte array per payload, decoded into a new map whenever the payload is read. Much smaller
+     * while jobs wait, at the cost of a decode per attempt.
+     */
+    COMPACT
+}
@@ -0,0 +1,20 @@
+package com.acme.api.asynctaskqueue.model;
+
+/**
+ * Where a workflow stands as a whole. A workflow fails as soon as one of its jobs fails for good: the jobs still
+ * blocked are cancelled and, once no job is in flight any more, the jobs that succeeded are compensated.
+ */
+public enum WorkflowStatus {
+    RUNNING,
+    SUCCEEDED,
+    /** A job failed for good; the others are finishing or being compensated. */
+    COMPENSATING,
+    /** Every job that had run was compensated. */
+    COMPENSATED,
+    /** At least one job could not be compensated. */
+    COMPENSATION_FAILED;
+
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == COMPENSATED || this == COMPENSATION_FAILED;
+    }
+}
@@ -0,0 +1,38 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Default repository. Jobs only live in the heap, so every job is lost when the process restarts.
+ */
+@Repository
+@ConditionalOnProperty(name = "jobs.repository.mode", havingValue = "memory", matchIfMissing = true)
+public class InMemoryJobRepository implements JobRepository {
+
+    private final JobTable store = new JobTable();
+    private final JobIndex index = new JobIndex();
+
+    @Override
+    public Job findById(String id) {
+        return store.get(id);
+    }
+
+    @Override
+    public void save(Job job) {
+        store.put(job);
+        index.onSave(job);
+    }
+
+    @Override
+    public void delete(String id) {
+        store.remove(id);
+        index.onDelete(id);
+    }
+
+    @Override
+    public JobIndex index() {
+        return index;
+    }
+}
@@ -0,0 +1,632 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.config.ClusterSettings;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.model.JobState;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relational repository (H2 or MySQL) with a write-behind buffer.
+ * <p/>
+ * A job is saved 3-5 times while it runs (RUNNING, attempt failed, SUCCEEDED, ...). Writing each of those
+ * synchronously would cost one round-trip and one commit per transition. Instead {@link #save(Job)} only
+ * records the job in {@code pending}; later saves of the same job overwrite that entry, so the transitions
+ * collapse into one row write. A flusher thread writes everything pending as one JDBC batch in a single
+ * transaction whenever {@code jobs.jdbc.batch-size} entries are waiting or {@code jobs.jdbc.flush-interval-ms}
+ * has passed, which bounds how far the table can lag behind memory.
+ * <p/>
+ * Reads check {@code pending} before the table, so a caller always sees its own writes even before they are
+ * flushed. Entries leave {@code pending} only after their batch has committed. Jobs this node is still working on
+ * are also kept in {@code live} until they finish, so every lookup of such a job returns the one instance whose
+ * state the service transitions; a copy mapped from the row would miss those transitions.
+ * <p/>
+ * In cluster mode several nodes share the table. Every row names the node that owns it ({@code lease_owner}),
+ * and a node only recovers its own jobs after a restart. A job handed to {@link #offer(Job)} is written without
+ * an owner; any node may then take it with {@link #claim}, which sets the owner in the same transaction
+ * that finds the row.
+ * <p/>
+ * A claimed row also carries a lease ({@code lease_until}) that its owner keeps renewing with
+ * {@link #renewLeases}. Once a node stops, its leases lapse and other nodes take its jobs over with
+ * {@link #reclaimExpired}, which finds them through an index on {@code lease_until} rather than by scanning
+ * the table. Writes are fenced: a node's update of a row that another node has taken over is dropped, so a node
+ * that lost its leases cannot overwrite the new owner's progress.
+ * <p/>
+ * The node a job was submitted to keeps the instance it offered until the job finishes. {@link #followOffered()}
+ * re-reads the rows of those jobs and applies what the nodes running them changed, so lookups, the index and the
+ * service's listeners on the submitting node see the job progress too.
+ */
+@Repository
+@ConditionalOnProperty(name = "jobs.repository.mode", havingValue = "jdbc")
+public class JdbcJobRepository implements JobRepository, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcJobRepository.class);
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private static final String UPDATE = "UPDATE jobs SET status = ?, attempts = ?, last_error = ?, started_at = ?, "
+            + "completed_at = ?, status_changed_at = ?, lease_owner = ?, "
+            + "lease_until = CASE WHEN ? = 1 THEN NULL ELSE lease_until END WHERE job_id = ?";
+    private static final String FENCE = " AND (lease_owner IS NULL OR lease_owner = ?)";
+    private static final String INSERT = "INSERT INTO jobs (job_id, type, idempotency_key, payload, status, attempts, "
+            + "last_error, started_at, completed_at, status_changed_at, lease_owner, queued_at, run_at, cron, priority, "
+            + "timeout_ms) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String STATE_COLUMNS = "job_id, status, attempts, last_error, started_at, completed_at, "
+            + "status_changed_at";
+    private static final String SELECT = "SELECT " + STATE_COLUMNS + ", type, idempotency_key, payload, run_at, cron, "
+            + "priority, timeout_ms FROM jobs";
+
+    /** A status change of an offered job, made by the node that claimed it; see {@link #followOffered()}. */
+    public record RemoteTransition(Job job, JobStatus from) {}
+
+    /**
+     * State captured at save time. A new instance per save, so the flusher can tell whether the entry it
+     * wrote is still the latest one when it removes it from {@code pending}.
+     */
+    private record PendingWrite(Job job, JobStatus status, int attempts, String lastError,
+                                Instant startedAt, Instant completedAt, Instant statusChangedAt, String owner) {
+        static PendingWrite of(Job job, String owner) {
+            JobState state = job.state();
+            return new PendingWrite(job, state.status(), state.attempts(), state.lastError(),
+                    state.startedAt(), state.completedAt(), job.getStatusChangedAt(), owner);
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final int maxPending;
+    private final long flushIntervalNanos;
+    private final ClusterSettings cluster;
+    private final String update;
+
+    private final ConcurrentHashMap<String, PendingWrite> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Job> live = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Job> offered = new ConcurrentHashMap<>();
+    private final JobIndex index = new JobIndex();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong fenced = new AtomicLong();
+
+    public JdbcJobRepository(DataSource dataSource, ObjectMapper mapper, int batchSize, long flushIntervalMs,
+                             int maxPending) {
+        this(dataSource, mapper, batchSize, flushIntervalMs, maxPending, ClusterSettings.disabled());
+    }
+
+    @Autowired
+    public JdbcJobRepository(DataSource dataSource,
+                             ObjectMapper mapper,
+                             @Value("${jobs.jdbc.batch-size:500}") int batchSize,
+                             @Value("${jobs.jdbc.flush-interval-ms:50}") long flushIntervalMs,
+                             @Value("${jobs.jdbc.max-pending:50000}") int maxPending,
+                             ClusterSettings cluster) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.cluster = cluster;
+        this.update = cluster.enabled() ? UPDATE + FENCE : UPDATE;
+
+        createSchema(dataSource);
+
+        flusher = new Thread(this::flushLoop, "job-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public Job findById(String id) {
+        Job job = live.get(id);
+        if (job == null) job = offered.get(id);
+        if (job != null) return job;
+        PendingWrite write = pending.get(id);
+        if (write != null) return write.job();
+
+        List<Job> rows = jdbc.query(SELECT + " WHERE job_id = ?", this::mapJob, id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @Override
+    public void save(Job job) {
+        PendingWrite write = PendingWrite.of(job, cluster.nodeId());
+        if (write.status().isTerminal()) live.remove(job.getJobId(), job);
+        else live.put(job.getJobId(), job);
+        write(write);
+    }
+
+    /**
+     * Cluster mode: saves a queued job without an owner, for whichever node {@link #claim claims} it first.
+     * The node that offers a job must not save it again. A job saved before it was offered (a scheduled job that
+     * fell due) is followed from then on like any other offered job, not kept as one of this node's.
+     */
+    public void offer(Job job) {
+        live.remove(job.getJobId(), job);
+        offered.put(job.getJobId(), job);
+        write(PendingWrite.of(job, null));
+    }
+
+    /**
+     * Cluster mode: takes up to {@code max} offered jobs for this node, leased until {@code leaseUntil}. Rows
+     * another node is claiming right now are skipped rather than waited for, and a row is only taken while it has
+     * no owner, so every job is claimed by exactly one node.
+     */
+    public List<Job> claim(int max, long leaseUntil) {
+        return take("status = ? AND lease_owner IS NULL", List.of(JobStatus.QUEUED.name()), max, leaseUntil);
+    }
+
+    /**
+     * Cluster mode: takes over up to {@code max} jobs of other nodes whose lease lapsed before {@code now}, in
+     * whatever state their node left them, leased to this node until {@code leaseUntil}.
+     */
+    public List<Job> reclaimExpired(int max, long now, long leaseUntil) {
+        return take("lease_until < ? AND lease_owner <> ?", List.of(now, cluster.nodeId()), max, leaseUntil);
+    }
+
+    /**
+     * Cluster mode: extends this node's leases on the given jobs to {@code leaseUntil}, in one batch.
+     *
+     * @return the jobs among them that another node has taken over
+     */
+    public List<String> renewLeases(Collection<String> jobIds, long leaseUntil) {
+        List<String> ids = List.copyOf(jobIds);
+        if (ids.isEmpty()) return List.of();
+        int[][] counts = jdbc.batchUpdate("UPDATE jobs SET lease_until = ? WHERE job_id = ? AND lease_owner = ?",
+                ids, batchSize, (ps, id) -> {
+                    ps.setLong(1, leaseUntil);
+                    ps.setString(2, id);
+                    ps.setString(3, cluster.nodeId());
+                });
+        List<String> lost = new ArrayList<>();
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                if (count == 0) lost.add(ids.get(i));
+                i++;
+            }
+        }
+        lost.forEach(live::remove);
+        return lost;
+    }
+
+    /**
+     * Selects rows matching {@code condition} and sets this node as their owner, re-checking the condition in the
+     * update so that a row somebody else changed in between is not taken.
+     */
+    private List<Job> take(String condition, List<Object> args, int max, long leaseUntil) {
+        List<Job> taken = tx.execute(status -> {
+            Object[] selectArgs = new Object[args.size() + 1];
+            args.toArray(selectArgs);
+            selectArgs[args.size()] = max;
+            // No ORDER BY: H2 would lock every row it sorts. The scan follows the index, oldest first.
+            List<Job> found = jdbc.query(SELECT + " WHERE " + condition + " LIMIT ? FOR UPDATE SKIP LOCKED",
+                    this::mapJob, selectArgs);
+            if (found.isEmpty()) return found;
+            int[][] counts = jdbc.batchUpdate("UPDATE jobs SET lease_owner = ?, lease_until = ? WHERE job_id = ? AND "
+                    + condition, found, found.size(), (ps, job) -> {
+                        ps.setString(1, cluster.nodeId());
+                        ps.setLong(2, leaseUntil);
+                        ps.setString(3, job.getJobId());
+                        for (int k = 0; k < args.size(); k++) {
+                            ps.setObject(4 + k, args.get(k));
+                        }
+                    });
+            List<Job> won = new ArrayList<>(found.size());
+            int i = 0;
+            for (int[] chunk : counts) {
+                for (int count : chunk) {
+                    if (count != 0) won.add(found.get(i));
+                    i++;
+                }
+            }
+            return won;
+        });
+        List<Job> adopted = new ArrayList<>(taken.size());
+        for (Job job : taken) {
+            // A job this node offered itself keeps the instance its submitter holds
+            Job mine = offered.remove(job.getJobId());
+            if (mine != null) {
+                restore(mine, job);
+                job = mine;
+            }
+            adopt(job);
+            adopted.add(job);
+        }
+        return adopted;
+    }
+
+    /**
+     * Cluster mode: re-reads the rows of the unfinished jobs this node offered and another node claimed, and
+     * applies their state to the instances {@link #findById} returns. Jobs leave the set once they finished (or
+     * their row is gone).
+     *
+     * @return the jobs whose status changed since the last call
+     */
+    public List<RemoteTransition> followOffered() {
+        List<String> ids = new ArrayList<>();
+        for (String id : offered.keySet()) {
+            if (!pending.containsKey(id)) ids.add(id); // not in the table yet, or about to be rewritten
+        }
+        List<RemoteTransition> changed = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + batchSize));
+            String params = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            Set<String> found = new HashSet<>();
+            jdbc.query("SELECT " + STATE_COLUMNS + " FROM jobs WHERE job_id IN (" + params + ")", rs -> {
+                String id = rs.getString("job_id");
+                found.add(id);
+                Job job = offered.get(id);
+                if (job == null) return;
+                JobStatus before = job.getStatus();
+                int attempts = job.getAttempts();
+                readState(job, rs);
+                if (job.getStatus() != before || job.getAttempts() != attempts) index.onSave(job);
+                if (job.getStatus() != before) changed.add(new RemoteTransition(job, before));
+                if (job.getStatus().isTerminal()) offered.remove(id, job);
+            }, chunk.toArray());
+            for (String id : chunk) {
+                if (!found.contains(id)) offered.remove(id);
+            }
+        }
+        return changed;
+    }
+
+    private void write(PendingWrite write) {
+        pending.put(write.job().getJobId(), write);
+        index.onSave(write.job());
+
+        int size = pending.size();
+        if (size >= maxPending) {
+            // The database is not keeping up; make the producer pay for a flush instead of growing without bound
+            flush();
+        } else if (size >= batchSize) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        // Deletes are rare (retention only), so they are written straight away rather than batched
+        flushLock.lock();
+        try {
+            pending.remove(id);
+            live.remove(id);
+            offered.remove(id);
+            index.onDelete(id);
+            jdbc.update("DELETE FROM jobs WHERE job_id = ?", id);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * In cluster mode only this node's jobs: offered jobs are left to be claimed, and other nodes recover their own.
+     */
+    @Override
+    public Collection<Job> findRecoverable() {
+        String sql = SELECT + " WHERE status NOT IN (?, ?, ?, ?)";
+        List<Object> args = new ArrayList<>(List.of(JobStatus.SUCCEEDED.name(), JobStatus.COMPENSATED.name(),
+                JobStatus.COMPENSATION_FAILED.name(), JobStatus.CANCELLED.name()));
+        if (cluster.enabled()) {
+            sql += " AND lease_owner = ?";
+            args.add(cluster.nodeId());
+        }
+        List<Job> jobs = jdbc.query(sql, this::mapJob, args.toArray());
+        jobs.forEach(this::adopt);
+        return jobs;
+    }
+
+    /** Makes a job loaded from the table the instance every later lookup returns. */
+    private void adopt(Job job) {
+        live.put(job.getJobId(), job);
+        index.onSave(job);
+    }
+
+    /**
+     * Covers the jobs saved by this process and the in-flight jobs recovered at startup. Terminal jobs written
+     * by an earlier process are only in the table.
+     */
+    @Override
+    public JobIndex index() {
+        return index;
+    }
+
+    /**
+     * Writes everything currently pending. Updates go first; jobs whose row does not exist yet are then
+     * inserted with their payload, so the payload is only serialized once per job.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            if (pending.isEmpty()) return;
+            List<PendingWrite> batch = new ArrayList<>(pending.values());
+
+            tx.executeWithoutResult(status -> {
+                int[][] counts = jdbc.batchUpdate(update, batch, batchSize, (ps, w) -> {
+                    ps.setString(1, w.status().name());
+                    ps.setInt(2, w.attempts());
+                    ps.setString(3, truncate(w.lastError()));
+                    setMicros(ps, 4, w.startedAt());
+                    setMicros(ps, 5, w.completedAt());
+                    setMicros(ps, 6, w.statusChangedAt());
+                    ps.setString(7, w.owner());
+                    ps.setInt(8, w.status().isTerminal() ? 1 : 0);
+                    ps.setString(9, w.job().getJobId());
+                    if (cluster.enabled()) ps.setString(10, cluster.nodeId());
+                });
+
+                List<PendingWrite> missing = new ArrayList<>();
+                List<PendingWrite> unknown = new ArrayList<>();
+                int i = 0;
+                for (int[] chunk : counts) {
+                    for (int count : chunk) {
+                        // Drivers may answer SUCCESS_NO_INFO (-2) for every statement of a batch, which says
+                        // nothing about whether the row was there
+                        if (count == 0) missing.add(batch.get(i));
+                        else if (count < 0) unknown.add(batch.get(i));
+                        i++;
+                    }
+                }
+                List<PendingWrite> inserts = withoutExisting(missing, unknown);
+                long queuedAt = System.currentTimeMillis();
+                jdbc.batchUpdate(INSERT, inserts, batchSize, (ps, w) -> {
+                    ps.setString(1, w.job().getJobId());
+                    ps.setString(2, w.job().getType());
+                    ps.setString(3, w.job().getIdempotencyKey());
+                    ps.setString(4, toJson(w.job().getPayload()));
+                    ps.setString(5, w.status().name());
+                    ps.setInt(6, w.attempts());
+                    ps.setString(7, truncate(w.lastError()));
+                    setMicros(ps, 8, w.startedAt());
+                    setMicros(ps, 9, w.completedAt());
+                    setMicros(ps, 10, w.statusChangedAt());
+                    ps.setString(11, w.owner());
+                    ps.setLong(12, queuedAt);
+                    setMicros(ps, 13, w.job().getRunAt());
+                    ps.setString(14, w.job().getCron());
+                    ps.setString(15, w.job().getPriority().name());
+                    ps.setLong(16, w.job().getTimeoutMs());
+                });
+            });
+
+            // Keep anything that was saved again while the batch was in flight
+            for (PendingWrite w : batch) {
+                pending.remove(w.job().getJobId(), w);
+            }
+            flushes.incrementAndGet();
+            rowsWritten.addAndGet(batch.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Picks the writes that need an insert. An update that matched nothing belongs to a new job, except in cluster
+     * mode, where it may also have been fenced off because another node owns the row now; those are dropped. An
+     * update whose count the driver did not report is inserted only if its row turns out not to exist.
+     */
+    private List<PendingWrite> withoutExisting(List<PendingWrite> missing, List<PendingWrite> unknown) {
+        List<PendingWrite> check = new ArrayList<>(unknown);
+        if (cluster.enabled()) check.addAll(missing);
+        Set<String> existing = existingIds(check);
+
+        List<PendingWrite> inserts = new ArrayList<>(missing.size() + unknown.size());
+        int dropped = 0;
+        for (PendingWrite w : missing) {
+            if (!existing.contains(w.job().getJobId())) {
+                inserts.add(w);
+            } else {
+                live.remove(w.job().getJobId(), w.job());
+                dropped++;
+            }
+        }
+        for (PendingWrite w : unknown) {
+            if (!existing.contains(w.job().getJobId())) inserts.add(w);
+        }
+        if (dropped > 0) {
+            logger.warn("Dropped the writes of {} jobs that another node has taken over", dropped);
+            fenced.addAndGet(dropped);
+        }
+        return inserts;
+    }
+
+    private Set<String> existingIds(List<PendingWrite> writes) {
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < writes.size(); from += batchSize) {
+            List<PendingWrite> chunk = writes.subList(from, Math.min(writes.size(), from + batchSize));
+            String params = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            existing.addAll(jdbc.queryForList("SELECT job_id FROM jobs WHERE job_id IN (" + params + ")",
+                    String.class, chunk.stream().map(w -> w.job().getJobId()).toArray()));
+        }
+        return existing;
+    }
+
+    /** Cluster mode: writes dropped because another node had taken the job over. */
+    public long getFencedWrites() {
+        return fenced.get();
+    }
+
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(flusher);
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        flush();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+            } catch (Exception e) {
+                // Entries stay pending and are retried on the next cycle
+                logger.error("Write-behind flush of {} jobs failed", pending.size(), e);
+            }
+        }
+    }
+
+    private Job mapJob(ResultSet rs, int row) throws SQLException {
+        Job job = new Job(rs.getString("job_id"), rs.getString("type"), fromJson(rs.getString("payload")),
+                rs.getString("idempotency_key"));
+        readState(job, rs);
+        job.setSchedule(getMicros(rs, "run_at"), rs.getString("cron"));
+        String priority = rs.getString("priority");
+        if (priority != null) job.setPriority(JobPriority.valueOf(priority));
+        job.setTimeoutMs(rs.getLong("timeout_ms"));
+        return job;
+    }
+
+    private static void readState(Job job, ResultSet rs) throws SQLException {
+        job.setStatus(JobStatus.valueOf(rs.getString("status")));
+        job.setAttempts(rs.getInt("attempts"));
+        job.setLastError(rs.getString("last_error"));
+        job.setStartedAt(getMicros(rs, "started_at"));
+        job.setCompletedAt(getMicros(rs, "completed_at"));
+        Instant statusChangedAt = getMicros(rs, "status_changed_at");
+        if (statusChangedAt != null) job.setStatusChangedAt(statusChangedAt);
+    }
+
+    /** Copies the state of {@code source}, as loaded from the table, onto {@code target}. */
+    private static void restore(Job target, Job source) {
+        JobState state = source.state();
+        target.setStatus(state.status());
+        target.setAttempts(state.attempts());
+        target.setLastError(state.lastError());
+        target.setStartedAt(state.startedAt());
+        target.setCompletedAt(state.completedAt());
+        target.setStatusChangedAt(source.getStatusChangedAt());
+    }
+
+    private void createSchema(DataSource dataSource) {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(dataSource, md -> md.getDatabaseProductName());
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot inspect the job database", e);
+        }
+        String textType = product.toLowerCase().contains("mysql") ? "LONGTEXT" : "CLOB";
+        jdbc.execute("CREATE TABLE IF NOT EXISTS jobs ("
+                + "job_id VARCHAR(64) NOT NULL PRIMARY KEY, "
+                + "type VARCHAR(128) NOT NULL, "
+                + "idempotency_key VARCHAR(255), "
+                + "payload " + textType + ", "
+                + "status VARCHAR(32) NOT NULL, "
+                + "attempts INT NOT NULL, "
+                + "last_error VARCHAR(" + MAX_ERROR_LENGTH + "), "
+                + "started_at BIGINT, "
+                + "completed_at BIGINT)");
+        // Tables created before cluster mode get its columns here
+        if (!hasColumn("lease_owner")) {
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN lease_owner VARCHAR(255)");
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN queued_at BIGINT");
+            jdbc.execute("CREATE INDEX jobs_claim ON jobs (status, lease_owner, queued_at)");
+        }
+        if (!hasColumn("lease_until")) {
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN lease_until BIGINT");
+            jdbc.execute("CREATE INDEX jobs_lease ON jobs (lease_until)");
+        }
+        if (!hasColumn("status_changed_at")) {
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN status_changed_at BIGINT");
+        }
+        if (!hasColumn("run_at")) {
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN run_at BIGINT");
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN cron VARCHAR(255)");
+        }
+        if (!hasColumn("priority")) {
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN priority VARCHAR(16)");
+            jdbc.execute("ALTER TABLE jobs ADD COLUMN timeout_ms BIGINT");
+        }
+    }
+
+    private boolean hasColumn(String column) {
+        return Boolean.TRUE.equals(jdbc.query("SELECT * FROM jobs WHERE 1 = 0", rs -> {
+            ResultSetMetaData md = rs.getMetaData();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                if (md.getColumnName(i).equalsIgnoreCase(column)) return true;
+            }
+            return false;
+        }));
+    }
+
+    private String toJson(Map<String, Object> payload) {
+        try {
+            return mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize job payload", e);
+        }
+    }
+
+    private Map<String, Object> fromJson(String json) {
+        if (json == null) return null;
+        try {
+            return mapper.readValue(json, PAYLOAD_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt job payload in database", e);
+        }
+    }
+
+    private static String truncate(String error) {
+        return error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /** Timestamps are stored as epoch microseconds so that H2 and MySQL agree without time zone handling. */
+    private static void setMicros(PreparedStatement ps, int index, Instant instant) throws SQLException {
+        if (instant == null) ps.setNull(index, Types.BIGINT);
+        else ps.setLong(index, ChronoUnit.MICROS.between(Instant.EPOCH, instant));
+    }
+
+    private static Instant getMicros(ResultSet rs, String column) throws SQLException {
+        long micros = rs.getLong(column);
+        return rs.wasNull() ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,188 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Secondary indexes over the jobs of a {@link JobRepository}, kept up to date by the repository on every save
+ * and delete, so that jobs can be listed by status, type and time without scanning the repository.
+ * <p/>
+ * Jobs are ordered by the time they entered their current status ({@link Job#getStatusChangedAt()}), which the
+ * job carries and the repositories persist, so an index rebuilt after a restart keeps the original times: listing
+ * COMPENSATION_FAILED jobs since 09:00 returns the jobs that became COMPENSATION_FAILED since then. There is a
+ * time-ordered set of all jobs, one per status and one per type; a save that does not change the status only
+ * costs a map lookup. Counts per status and per type and status are plain counters, so reading them is O(1).
+ * <p/>
+ * Pages are walked with an opaque cursor (the position of the last job returned), which stays valid while jobs
+ * come and go. A job that changes status while a client pages through the index moves to the end, so it may be
+ * listed again under its new status.
+ */
+public class JobIndex {
+
+    /** One indexed job, as returned by {@link #query}. */
+    public record Hit(String jobId, JobStatus status, long statusChangedAtMs) {}
+
+    /** A page of hits and the cursor of the next page, {@code null} when this is the last one. */
+    public record Page(List<Hit> hits, String nextCursor) {}
+
+    private record Key(long at, String jobId) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int c = Long.compare(at, other.at);
+            return c != 0 ? c : jobId.compareTo(other.jobId);
+        }
+    }
+
+    private record Entry(String type, JobStatus status, Key key) {}
+
+    private static final int STATUSES = JobStatus.values().length;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Key> byTime = new ConcurrentSkipListSet<>();
+    private final Map<JobStatus, ConcurrentSkipListSet<Key>> byStatus = new EnumMap<>(JobStatus.class);
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<Key>> byType = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray statusCounts = new AtomicIntegerArray(STATUSES);
+    private final ConcurrentHashMap<String, AtomicIntegerArray> typeStatusCounts = new ConcurrentHashMap<>();
+
+    public JobIndex() {
+        for (JobStatus status : JobStatus.values()) {
+            byStatus.put(status, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    public void onSave(Job job) {
+        entries.compute(job.getJobId(), (id, old) -> {
+            if (old != null && old.status() == job.getStatus()) return old;
+            if (old != null) unlink(old);
+            Entry entry = new Entry(job.getType() == null ? "" : job.getType(), job.getStatus(),
+                    new Key(job.getStatusChangedAtMillis(), id));
+            link(entry);
+            return entry;
+        });
+    }
+
+    public void onDelete(String jobId) {
+        entries.computeIfPresent(jobId, (id, old) -> {
+            unlink(old);
+            return null;
+        });
+    }
+
+    public int count(JobStatus status) {
+        return statusCounts.get(status.ordinal());
+    }
+
+    public int count(String type, JobStatus status) {
+        AtomicIntegerArray counts = typeStatusCounts.get(type);
+        return counts == null ? 0 : counts.get(status.ordinal());
+    }
+
+    /** Jobs per type and status; statuses without jobs are left out. */
+    public Map<String, Map<JobStatus, Integer>> countsByType() {
+        Map<String, Map<JobStatus, Integer>> result = new TreeMap<>();
+        typeStatusCounts.forEach((type, counts) -> {
+            Map<JobStatus, Integer> byStatus = new EnumMap<>(JobStatus.class);
+            for (JobStatus status : JobStatus.values()) {
+                int count = counts.get(status.ordinal());
+                if (count > 0) byStatus.put(status, count);
+            }
+            if (!byStatus.isEmpty()) result.put(type, byStatus);
+        });
+        return result;
+    }
+
+    /**
+     * Jobs matching the filters in {@code statusChangedAt} order, oldest first.
+     *
+     * @param status  only jobs currently in this status, or {@code null}
+     * @param type    only jobs of this type, or {@code null}
+     * @param sinceMs only jobs that entered their status at or after this time (epoch ms), or {@code null}
+     * @param cursor  {@link Page#nextCursor()} of the previous page, or {@code null} for the first page
+     * @throws IllegalArgumentException if the cursor is not one returned by this index
+     */
+    public Page query(JobStatus status, String type, Long sinceMs, String cursor, int limit) {
+        // With both filters, walk the smaller bucket and check the other filter per job
+        NavigableSet<Key> source;
+        if (status != null && (type == null || count(status) <= typeTotal(type))) {
+            source = byStatus.get(status);
+        } else if (type != null) {
+            source = byType.getOrDefault(type, new ConcurrentSkipListSet<>());
+        } else {
+            source = byTime;
+        }
+
+        Key from = new Key(sinceMs == null ? Long.MIN_VALUE : sinceMs, "");
+        boolean inclusive = true;
+        if (cursor != null) {
+            Key after = decode(cursor);
+            if (after.compareTo(from) >= 0) {
+                from = after;
+                inclusive = false;
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(Math.min(limit, 1024));
+        Key last = null;
+        for (Key key : source.tailSet(from, inclusive)) {
+            Entry entry = entries.get(key.jobId());
+            if (entry == null || !entry.key().equals(key)) continue; // moved or deleted meanwhile
+            if (status != null && entry.status() != status) continue;
+            if (type != null && !entry.type().equals(type)) continue;
+            if (hits.size() == limit) {
+                return new Page(hits, encode(last));
+            }
+            hits.add(new Hit(key.jobId(), entry.status(), key.at()));
+            last = key;
+        }
+        return new Page(hits, null);
+    }
+
+    private int typeTotal(String type) {
+        AtomicIntegerArray counts = typeStatusCounts.get(type);
+        if (counts == null) return 0;
+        int total = 0;
+        for (int i = 0; i < STATUSES; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    private void link(Entry entry) {
+        byTime.add(entry.key());
+        byStatus.get(entry.status()).add(entry.key());
+        byType.computeIfAbsent(entry.type(), t -> new ConcurrentSkipListSet<>()).add(entry.key());
+        statusCounts.incrementAndGet(entry.status().ordinal());
+        typeStatusCounts.computeIfAbsent(entry.type(), t -> new AtomicIntegerArray(STATUSES))
+                .incrementAndGet(entry.status().ordinal());
+    }
+
+    private void unlink(Entry entry) {
+        byTime.remove(entry.key());
+        byStatus.get(entry.status()).remove(entry.key());
+        ConcurrentSkipListSet<Key> typed = byType.get(entry.type());
+        if (typed != null) typed.remove(entry.key());
+        statusCounts.decrementAndGet(entry.status().ordinal());
+        typeStatusCounts.get(entry.type()).decrementAndGet(entry.status().ordinal());
+    }
+
+    private static String encode(Key key) {
+        String raw = key.at() + ":" + key.jobId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Key decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int colon = raw.indexOf(':');
+            return new Key(Long.parseLong(raw.substring(0, colon)), raw.substring(colon + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented, memory-mapped append-only log plus snapshots. This class knows nothing about jobs; it stores
+ * opaque record bodies framed as {@code length (int) | crc32c (int) | body}.
+ * <p/>
+ * Segments are preallocated files of a fixed size, so a zero length marks the end of the written data.
+ * A crash may leave a torn record at the tail of the last segment; the CRC check stops replay there.
+ * <p/>
+ * A snapshot named {@code snapshot-N.snap} holds the full state of every job as of the moment segment N was
+ * opened. Replay loads the newest complete snapshot and then every segment numbered N or higher.
+ */
+class JobJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final int SNAPSHOT_END = -1;
+
+    private final Path dir;
+    private final int segmentBytes;
+    // All mutable state below is guarded by this
+    private final CRC32C crc = new CRC32C();
+    private long segmentSeq;
+    private MappedByteBuffer current;
+    /** Segments that were rolled over but not yet forced to disk. */
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+    /** Preallocated by the flusher thread so that rolling over does not create files on the append path. */
+    private MappedByteBuffer spare;
+    private boolean dirty;
+
+    JobJournal(Path dir, int segmentBytes) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Feeds every durable record to the consumer, oldest first, then opens a fresh segment for appends.
+     * Must be called once before the first {@link #append(ByteBuffer)}.
+     */
+    synchronized void replay(Consumer<ByteBuffer> consumer) throws IOException {
+        long fromSeq = 0;
+        Path snapshot = latest(SNAPSHOT_PREFIX);
+        if (snapshot != null) {
+            fromSeq = sequenceOf(snapshot);
+            replaySnapshot(snapshot, consumer);
+        }
+
+        long lastSeq = fromSeq - 1;
+        for (Path segment : list(SEGMENT_PREFIX)) {
+            long seq = sequenceOf(segment);
+            if (seq < fromSeq) continue; // already covered by the snapshot, compaction was interrupted
+            replaySegment(segment, consumer);
+            lastSeq = seq;
+        }
+
+        segmentSeq = lastSeq + 1;
+        current = map(segmentSeq);
+    }
+
+    /**
+     * Appends one record. The body is copied into the mapped segment, so the caller may reuse its buffer.
+     * The record is visible to the OS page cache right away and becomes durable on the next {@link #flush()}.
+     */
+    synchronized void append(ByteBuffer body) throws IOException {
+        int length = body.remaining();
+        if (HEADER_BYTES + length > segmentBytes) {
+            throw new IOException("Journal record of " + length + " bytes exceeds the segment size");
+        }
+        if (current.remaining() < HEADER_BYTES + length) {
+            roll();
+        }
+        crc.reset();
+        crc.update(body.duplicate());
+        current.putInt(length).putInt((int) crc.getValue()).put(body);
+        dirty = true;
+    }
+
+    /**
+     * Group commit: a single msync covers every record appended since the previous flush.
+     */
+    void flush() throws IOException {
+        MappedByteBuffer toForce;
+        List<MappedByteBuffer> rolled;
+        synchronized (this) {
+            if (!dirty && unforced.isEmpty()) {
+                prepareSpare();
+                return;
+            }
+            dirty = false;
+            toForce = current;
+            rolled = new ArrayList<>(unforced);
+            unforced.clear();
+        }
+        for (MappedByteBuffer segment : rolled) {
+            segment.force();
+        }
+        toForce.force();
+        prepareSpare();
+    }
+
+    /**
+     * Starts a new segment and returns its sequence number. Everything appended from now on lands in that
+     * segment or later ones, so a snapshot taken after this call may replace all earlier segments.
+     */
+    synchronized long rollForSnapshot() throws IOException {
+        roll();
+        return segmentSeq;
+    }
+
+    synchronized long currentSegment() {
+        return segmentSeq;
+    }
+
+    /**
+     * Writes a snapshot covering all segments before {@code seq}, then deletes those segments and any older
+     * snapshot. The file is written under a temporary name and renamed once complete, so a crash in the
+     * middle leaves the previous snapshot in place.
+     */
+    void writeSnapshot(long seq, Consumer<Consumer<ByteBuffer>> records) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT_PREFIX + format(seq) + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            CRC32C snapshotCrc = new CRC32C();
+            records.accept(body -> writeFramed(out, snapshotCrc, body));
+            out.writeInt(SNAPSHOT_END);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_PREFIX + format(seq) + ".snap"), StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segment : list(SEGMENT_PREFIX)) {
+            if (sequenceOf(segment) < seq) Files.deleteIfExists(segment);
+        }
+        for (Path old : list(SNAPSHOT_PREFIX)) {
+            if (sequenceOf(old) < seq) Files.deleteIfExists(old);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void roll() throws IOException {
+        unforced.add(current);
+        segmentSeq++;
+        MappedByteBuffer next = spare;
+        spare = null;
+        current = next != null ? next : map(segmentSeq);
+    }
+
+    private void prepareSpare() throws IOException {
+        long seq;
+        synchronized (this) {
+            if (spare != null) return;
+            seq = segmentSeq + 1;
+        }
+        // Creating and mapping the file is the slow part, keep it outside the append lock
+        MappedByteBuffer next = map(seq);
+        synchronized (this) {
+            if (spare == null && segmentSeq + 1 == seq) spare = next;
+        }
+    }
+
+    private MappedByteBuffer map(long seq) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir.resolve(SEGMENT_PREFIX + format(seq) + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    private void replaySegment(Path segment, Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer body = ByteBuffer.allocate(4096);
+        CRC32C check = new CRC32C();
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int expectedCrc = data.getInt();
+            if (length <= 0 || length > data.remaining()) break;
+
+            if (body.capacity() < length) body = ByteBuffer.allocate(Math.max(length, body.capacity() * 2));
+            body.clear().limit(length);
+            data.get(data.position(), body.array(), 0, length);
+            data.position(data.position() + length);
+
+            check.reset();
+            check.update(body.array(), 0, length);
+            if ((int) check.getValue() != expectedCrc) {
+                logger.warn("Torn record in journal segment {}; ignoring the rest of it", segment.getFileName());
+                break;
+            }
+            consumer.accept(body);
+        }
+    }
+
+    private void replaySnapshot(Path snapshot, Consumer<ByteBuffer> consumer) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32C check = new CRC32C();
+        while (true) {
+            int length = data.getInt();
+            if (length == SNAPSHOT_END) return;
+            int expectedCrc = data.getInt();
+            byte[] bytes = new byte[length];
+            data.get(bytes);
+            check.reset();
+            check.update(bytes);
+            if ((int) check.getValue() != expectedCrc) {
+                throw new IOException("Corrupt snapshot " + snapshot.getFileName());
+            }
+            consumer.accept(ByteBuffer.wrap(bytes));
+        }
+    }
+
+    private static void writeFramed(DataOutputStream out, CRC32C crc, ByteBuffer body) {
+        try {
+            crc.reset();
+            crc.update(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            out.writeInt(body.remaining());
+            out.writeInt((int) crc.getValue());
+            out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path latest(String prefix) throws IOException {
+        List<Path> files = list(prefix);
+        return files.isEmpty() ? null : files.get(files.size() - 1);
+    }
+
+    /** Lists the finished files with the given prefix, ordered by sequence number. */
+    private List<Path> list(String prefix) throws IOException {
+        String suffix = prefix.equals(SNAPSHOT_PREFIX) ? ".snap" : ".log";
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith(prefix)
+                            && p.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+    }
+
+    private static String format(long seq) {
+        return String.format("%016d", seq);
+    }
+}
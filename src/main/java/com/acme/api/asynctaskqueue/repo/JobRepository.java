@@ -1,21 +1,48 @@
 package com.acme.api.asynctaskqueue.repo;
 
 import com.acme.api.asynctaskqueue.model.Job;
-import org.springframework.stereotype.Repository;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.List;
 
-@Repository
-public class JobRepository {
+/**
+ * Storage abstraction for {@link Job} objects. The implementation is selected with the
+ * {@code jobs.repository.mode} property:
+ * <ul>
+ *     <li>{@code memory} (default) - {@link InMemoryJobRepository}, nothing survives a restart</li>
+ *     <li>{@code journal} - {@link JournalJobRepository}, an append-only journal replayed on startup</li>
+ *     <li>{@code jdbc} - {@link JdbcJobRepository}, a relational table written through a write-behind buffer</li>
+ * </ul>
+ */
+public interface JobRepository {
 
-    private final Map<String, Job> store = new ConcurrentHashMap<>();
+    Job findById(String id);
 
-    public Job findById(String id) {
-        return store.get(id);
+    void save(Job job);
+
+    /**
+     * Drops the job entirely, e.g. once retention has expired it. Unknown ids are ignored.
+     */
+    void delete(String id);
+
+    /**
+     * Secondary indexes over the jobs this repository holds, updated by every {@link #save} and {@link #delete}.
+     */
+    JobIndex index();
+
+    /**
+     * Jobs that were still in flight (not in a terminal state) when the previous process stopped.
+     * Only durable implementations return anything here; they are re-enqueued by the service at startup.
+     */
+    default Collection<Job> findRecoverable() {
+        return List.of();
     }
 
-    public void save(Job job) {
-        store.put(job.getJobId(), job);
+    /**
+     * Jobs that had already finished when the previous process stopped and that this one holds again. The service
+     * hands them to retention at startup, so they expire like the jobs that finish in this process.
+     */
+    default Collection<Job> findRetained() {
+        return List.of();
     }
 }
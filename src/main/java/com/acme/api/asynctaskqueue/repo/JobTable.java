@@ -0,0 +1,215 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobIds;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Jobs by id, for the repositories that keep every job in the heap. A {@code ConcurrentHashMap<String, Job>}
+ * costs a node object and a 36-character id string per job; this keeps the 128-bit id in a {@code long[]} next
+ * to the job reference, in open-addressing tables with linear probing. Nothing is allocated per job, and a
+ * lookup by id string parses it instead of hashing it.
+ * <p/>
+ * The table is split into segments, each with its own {@link StampedLock}: writes lock their segment, reads are
+ * optimistic and only take the read lock if a write got in the way. Removed slots are marked deleted and
+ * reclaimed when the segment is rehashed. Jobs whose id is not a canonical UUID are kept in a plain map.
+ */
+final class JobTable {
+    private static final int SEGMENTS = 64;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final Job DELETED = new Job("deleted", null, null, null);
+
+    /** Keys and jobs of one generation of a segment; replaced as a whole when the segment is rehashed. */
+    private static final class Slots {
+        final long[] keys; // high, low of slot i at 2i, 2i+1
+        final Job[] jobs;  // null if the slot was never used, DELETED if its job was removed
+
+        Slots(int capacity) {
+            this.keys = new long[capacity * 2];
+            this.jobs = new Job[capacity];
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        Slots slots = new Slots(INITIAL_CAPACITY);
+        int size;
+        int used; // size plus deleted slots
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<String, Job> others = new ConcurrentHashMap<>();
+
+    JobTable() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    Job get(String id) {
+        if (!JobIds.isCanonicalUuid(id)) return others.get(id);
+        long high = JobIds.high(id);
+        long low = JobIds.low(id);
+        long hash = hash(high, low);
+        Segment segment = segments[(int) (hash >>> 58)];
+
+        long stamp = segment.lock.tryOptimisticRead();
+        Job job = find(segment.slots, high, low, hash);
+        if (segment.lock.validate(stamp)) return job;
+
+        stamp = segment.lock.readLock();
+        try {
+            return find(segment.slots, high, low, hash);
+        } finally {
+            segment.lock.unlockRead(stamp);
+        }
+    }
+
+    /** @return the job previously stored under the same id, or {@code null} */
+    Job put(Job job) {
+        if (!job.hasUuidId()) return others.put(job.getJobId(), job);
+        long high = job.getIdHigh();
+        long low = job.getIdLow();
+        long hash = hash(high, low);
+        Segment segment = segments[(int) (hash >>> 58)];
+
+        long stamp = segment.lock.writeLock();
+        try {
+            Slots slots = segment.slots;
+            int mask = slots.jobs.length - 1;
+            int free = -1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                Job current = slots.jobs[i];
+                if (current == null) {
+                    if (free < 0) {
+                        free = i;
+                        segment.used++;
+                    }
+                    break;
+                }
+                if (current == DELETED) {
+                    if (free < 0) free = i;
+                } else if (slots.keys[2 * i] == high && slots.keys[2 * i + 1] == low) {
+                    slots.jobs[i] = job;
+                    return current;
+                }
+            }
+            slots.keys[2 * free] = high;
+            slots.keys[2 * free + 1] = low;
+            slots.jobs[free] = job;
+            segment.size++;
+            if (segment.used * 4 > slots.jobs.length * 3) rehash(segment);
+            return null;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /** @return the removed job, or {@code null} if there was none */
+    Job remove(String id) {
+        if (!JobIds.isCanonicalUuid(id)) return others.remove(id);
+        long high = JobIds.high(id);
+        long low = JobIds.low(id);
+        long hash = hash(high, low);
+        Segment segment = segments[(int) (hash >>> 58)];
+
+        long stamp = segment.lock.writeLock();
+        try {
+            Slots slots = segment.slots;
+            int i = indexOf(slots, high, low, hash);
+            if (i < 0) return null;
+            Job removed = slots.jobs[i];
+            slots.jobs[i] = DELETED;
+            segment.size--;
+            return removed;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        int size = others.size();
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /** Visits every job, one segment at a time; jobs saved or removed meanwhile may or may not be seen. */
+    void forEach(Consumer<Job> action) {
+        for (Segment segment : segments) {
+            Job[] snapshot;
+            long stamp = segment.lock.readLock();
+            try {
+                snapshot = segment.slots.jobs.clone();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+            for (Job job : snapshot) {
+                if (job != null && job != DELETED) action.accept(job);
+            }
+        }
+        others.values().forEach(action);
+    }
+
+    private static Job find(Slots slots, long high, long low, long hash) {
+        int i = indexOf(slots, high, low, hash);
+        return i < 0 ? null : slots.jobs[i];
+    }
+
+    /**
+     * Probes at most the whole table, so that an optimistic read racing with a writer cannot loop forever; its
+     * result is thrown away by the failed validation anyway.
+     */
+    private static int indexOf(Slots slots, long high, long low, long hash) {
+        int mask = slots.jobs.length - 1;
+        int i = (int) hash & mask;
+        for (int probes = 0; probes <= mask; probes++, i = (i + 1) & mask) {
+            Job current = slots.jobs[i];
+            if (current == null) return -1;
+            if (current != DELETED && slots.keys[2 * i] == high && slots.keys[2 * i + 1] == low) return i;
+        }
+        return -1;
+    }
+
+    /** Rebuilds the segment without its deleted slots, twice as large if it is more than half full. */
+    private static void rehash(Segment segment) {
+        Slots old = segment.slots;
+        int capacity = segment.size * 2 > old.jobs.length ? old.jobs.length * 2 : old.jobs.length;
+        Slots slots = new Slots(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.jobs.length; j++) {
+            Job job = old.jobs[j];
+            if (job == null || job == DELETED) continue;
+            long high = old.keys[2 * j];
+            long low = old.keys[2 * j + 1];
+            int i = (int) hash(high, low) & mask;
+            while (slots.jobs[i] != null) {
+                i = (i + 1) & mask;
+            }
+            slots.keys[2 * i] = high;
+            slots.keys[2 * i + 1] = low;
+            slots.jobs[i] = job;
+        }
+        segment.slots = slots;
+        segment.used = segment.size;
+    }
+
+    /** Random UUIDs are already well mixed, but ids need not be random; the top 6 bits pick the segment. */
+    private static long hash(long high, long low) {
+        long h = high * 0x9E3779B97F4A7C15L ^ low;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
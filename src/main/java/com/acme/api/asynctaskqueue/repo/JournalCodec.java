@@ -0,0 +1,183 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.model.JobState;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Binary layout of the journal records. Every record body starts with a kind byte followed by the job id:
+ * <pre>
+ * FULL   : kind | jobId | type | idempotencyKey | payload (JSON) | state | runAt (millis) | cron
+ *          | priority (byte) | timeoutMs (long)
+ * STATE  : kind | jobId | state
+ * REMOVE : kind | jobId
+ * state  = status (byte) | attempts (int) | lastError | startedAt (micros) | completedAt (micros)
+ *          | statusChangedAt (millis)
+ * </pre>
+ * Strings are written as an int length (-1 for null) followed by UTF-8 bytes. The payload never changes
+ * after submission, so it is only written once (FULL); every later transition is a small STATE record.
+ * <p/>
+ * Fields added later go at the end and are only read if the record has them, so journals written before them
+ * still replay. A record without {@code statusChangedAt} takes the job's completion or start time instead. The
+ * schedule, priority and timeout never change either, so like the payload they are only written in FULL
+ * records; runAt is {@code NO_TIME} for a job that runs right away.
+ */
+final class JournalCodec {
+
+    static final byte FULL = 1;
+    static final byte STATE = 2;
+    static final byte REMOVE = 3;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final JobStatus[] STATUSES = JobStatus.values();
+    private static final JobPriority[] PRIORITIES = JobPriority.values();
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper mapper;
+
+    /** Per-thread scratch buffer so that encoding a record does not allocate on the hot path. */
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    JournalCodec(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Encodes the job into the calling thread's scratch buffer. The returned buffer is flipped and only
+     * valid until the same thread encodes another record.
+     */
+    ByteBuffer encode(byte kind, Job job) {
+        byte[] payload = kind == FULL ? payloadBytes(job) : null;
+        JobState state = job.state();
+        int estimate = 80 + utf8Length(job.getJobId()) + utf8Length(job.getCron()) + utf8Length(job.getType()) + utf8Length(job.getIdempotencyKey())
+                + utf8Length(state.lastError()) + (payload == null ? 0 : payload.length);
+
+        ByteBuffer buf = scratch.get();
+        if (buf.capacity() < estimate) {
+            buf = ByteBuffer.allocate(Math.max(estimate, buf.capacity() * 2));
+            scratch.set(buf);
+        }
+        buf.clear();
+        buf.put(kind);
+        putString(buf, job.getJobId());
+        if (kind == FULL) {
+            putString(buf, job.getType());
+            putString(buf, job.getIdempotencyKey());
+            buf.putInt(payload.length).put(payload);
+        }
+        if (kind != REMOVE) {
+            buf.put((byte) state.status().ordinal());
+            buf.putInt(state.attempts());
+            putString(buf, state.lastError());
+            buf.putLong(toMicros(state.startedAt()));
+            buf.putLong(toMicros(state.completedAt()));
+            buf.putLong(job.getStatusChangedAtMillis());
+        }
+        if (kind == FULL) {
+            buf.putLong(job.getRunAt() == null ? NO_TIME : job.getRunAt().toEpochMilli());
+            putString(buf, job.getCron());
+            buf.put((byte) job.getPriority().ordinal());
+            buf.putLong(job.getTimeoutMs());
+        }
+        return buf.flip();
+    }
+
+    byte kindOf(ByteBuffer body) {
+        return body.get(body.position());
+    }
+
+    /** Reads the kind byte and the job id, leaving the buffer positioned at the rest of the record. */
+    String readHeader(ByteBuffer body) {
+        body.get();
+        return getString(body);
+    }
+
+    Job readFull(String jobId, ByteBuffer body) {
+        String type = getString(body);
+        String idempotencyKey = getString(body);
+        byte[] payload = new byte[body.getInt()];
+        body.get(payload);
+        Job job = new Job(jobId, type, parsePayload(payload), idempotencyKey);
+        readState(job, body);
+        if (body.hasRemaining()) {
+            long runAt = body.getLong();
+            String cron = getString(body);
+            if (runAt != NO_TIME) job.setSchedule(Instant.ofEpochMilli(runAt), cron);
+        }
+        if (body.hasRemaining()) {
+            job.setPriority(PRIORITIES[body.get()]);
+            job.setTimeoutMs(body.getLong());
+        }
+        return job;
+    }
+
+    void readState(Job job, ByteBuffer body) {
+        job.setStatus(STATUSES[body.get()]);
+        job.setAttempts(body.getInt());
+        job.setLastError(getString(body));
+        job.setStartedAt(fromMicros(body.getLong()));
+        job.setCompletedAt(fromMicros(body.getLong()));
+        if (body.hasRemaining()) {
+            job.setStatusChangedAt(Instant.ofEpochMilli(body.getLong()));
+        } else if (job.getCompletedAt() != null || job.getStartedAt() != null) {
+            job.setStatusChangedAt(job.getCompletedAt() != null ? job.getCompletedAt() : job.getStartedAt());
+        }
+    }
+
+    private byte[] payloadBytes(Job job) {
+        try {
+            return mapper.writeValueAsBytes(job.getPayload());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize payload of job " + job.getJobId(), e);
+        }
+    }
+
+    private Map<String, Object> parsePayload(byte[] json) {
+        try {
+            return mapper.readValue(json, PAYLOAD_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt payload in journal", e);
+        }
+    }
+
+    private static void putString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return value;
+    }
+
+    /** Upper bound of the encoded size; exact for ASCII, which ids and types always are. */
+    private static int utf8Length(String value) {
+        return value == null ? 4 : 4 + value.length() * 3;
+    }
+
+    private static long toMicros(Instant instant) {
+        return instant == null ? NO_TIME : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+
+    private static Instant fromMicros(long micros) {
+        return micros == NO_TIME ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+}
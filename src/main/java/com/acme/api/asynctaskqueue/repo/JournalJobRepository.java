@@ -0,0 +1,216 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable repository. Jobs are served from an in-memory index exactly like {@link InMemoryJobRepository},
+ * but every {@link #save(Job)} also appends the new state to a {@link JobJournal}.
+ * <p/>
+ * Saves never wait for the disk: the record is copied into a memory-mapped segment and a background
+ * flusher forces all segments every {@code jobs.journal.fsync-interval-ms} (group commit). A crash can
+ * therefore lose at most that window of transitions. Once enough segments have accumulated, the index is
+ * written out as a snapshot and the older segments are deleted.
+ * <p/>
+ * Records of one job must reach the journal in the order of its states, or replay would end on an older one.
+ * Two threads may save the same job at once (an attempt's outcome and its timeout, say), so a save updates the
+ * index, encodes the job and appends the record under a lock striped by job id.
+ * <p/>
+ * On startup the snapshot and remaining segments are replayed to rebuild the index. Jobs that were not in a
+ * terminal state are handed to the service through {@link #findRecoverable()} so they can be re-enqueued.
+ */
+@Repository
+@ConditionalOnProperty(name = "jobs.repository.mode", havingValue = "journal")
+public class JournalJobRepository implements JobRepository, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JournalJobRepository.class);
+
+    private static final int LOCK_STRIPES = 256; // a power of two
+
+    private final JobTable index = new JobTable();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final JobIndex jobIndex = new JobIndex();
+    private final JobJournal journal;
+    private final JournalCodec codec;
+    private final int compactAfterSegments;
+    private final ScheduledExecutorService background;
+    private volatile long lastSnapshotSegment;
+    private List<Job> recovered;
+    private List<Job> retained;
+
+    public JournalJobRepository(ObjectMapper mapper,
+                                @Value("${jobs.journal.dir:data/journal}") Path dir,
+                                @Value("${jobs.journal.segment-size-mb:64}") int segmentSizeMb,
+                                @Value("${jobs.journal.fsync-interval-ms:5}") long fsyncIntervalMs,
+                                @Value("${jobs.journal.compact-after-segments:4}") int compactAfterSegments) throws IOException {
+        this.codec = new JournalCodec(mapper);
+        this.journal = new JobJournal(dir, segmentSizeMb * 1024 * 1024);
+        this.compactAfterSegments = compactAfterSegments;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        long start = System.nanoTime();
+        journal.replay(this::apply);
+        lastSnapshotSegment = journal.currentSegment();
+        recovered = new ArrayList<>();
+        retained = new ArrayList<>();
+        index.forEach(job -> {
+            jobIndex.onSave(job);
+            (job.getStatus().isTerminal() ? retained : recovered).add(job);
+        });
+        logger.info("Journal replay restored {} jobs ({} in flight) from {} in {}ms",
+                index.size(), recovered.size(), dir, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        background = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "job-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        background.scheduleWithFixedDelay(this::flushQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(this::compactIfNeeded, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Job findById(String id) {
+        return index.get(id);
+    }
+
+    @Override
+    public void save(Job job) {
+        long hash = job.hasUuidId() ? job.getIdHigh() ^ job.getIdLow() : job.getJobId().hashCode();
+        synchronized (lockFor(hash)) {
+            Job previous = index.put(job);
+            // Encoded under the lock: whichever save appends last records the latest state
+            append(previous == null ? JournalCodec.FULL : JournalCodec.STATE, job);
+        }
+        jobIndex.onSave(job);
+    }
+
+    @Override
+    public void delete(String id) {
+        long hash = JobIds.isCanonicalUuid(id) ? JobIds.high(id) ^ JobIds.low(id) : id.hashCode();
+        synchronized (lockFor(hash)) {
+            Job removed = index.remove(id);
+            if (removed != null) append(JournalCodec.REMOVE, removed);
+        }
+        jobIndex.onDelete(id);
+    }
+
+    private Object lockFor(long hash) {
+        return locks[(int) (hash ^ (hash >>> 32)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Covers every job in the journal; jobs replayed at startup are indexed as of the replay.
+     */
+    @Override
+    public JobIndex index() {
+        return jobIndex;
+    }
+
+    @Override
+    public synchronized Collection<Job> findRecoverable() {
+        List<Job> jobs = recovered;
+        recovered = List.of(); // only handed out once
+        return jobs;
+    }
+
+    @Override
+    public synchronized Collection<Job> findRetained() {
+        List<Job> jobs = retained;
+        retained = List.of();
+        return jobs;
+    }
+
+    /**
+     * Replaces every segment written so far with a single snapshot of the index.
+     */
+    public void compact() {
+        try {
+            long seq = journal.rollForSnapshot();
+            long start = System.nanoTime();
+            journal.writeSnapshot(seq, sink -> index.forEach(job -> sink.accept(codec.encode(JournalCodec.FULL, job))));
+            lastSnapshotSegment = seq;
+            logger.info("Journal compacted into snapshot {} ({} jobs) in {}ms",
+                    seq, index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal compaction failed", e);
+        }
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void flush() {
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Journal flush failed", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        background.shutdown();
+        background.awaitTermination(30, TimeUnit.SECONDS);
+        flush();
+    }
+
+    private void append(byte kind, Job job) {
+        try {
+            journal.append(codec.encode(kind, job));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot journal job " + job.getJobId(), e);
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        byte kind = codec.kindOf(record);
+        String jobId = codec.readHeader(record);
+        switch (kind) {
+            case JournalCodec.FULL -> index.put(codec.readFull(jobId, record));
+            case JournalCodec.STATE -> {
+                Job job = index.get(jobId);
+                if (job != null) codec.readState(job, record);
+            }
+            case JournalCodec.REMOVE -> index.remove(jobId);
+            default -> logger.warn("Skipping unknown journal record kind {} for job {}", kind, jobId);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            journal.flush();
+        } catch (Exception e) {
+            logger.error("Journal flush failed", e);
+        }
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (journal.currentSegment() - lastSnapshotSegment >= compactAfterSegments) {
+                compact();
+            }
+        } catch (Exception e) {
+            logger.error("Journal compaction failed", e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.acme.api.asynctaskqueue.retention;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.repo.JobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Drops terminal jobs (SUCCEEDED, COMPENSATED, COMPENSATION_FAILED, CANCELLED) from the {@link JobRepository}
+ * once they are older than the TTL of their status, or earlier when more than
+ * {@code jobs.retention.max-resident-jobs} terminal jobs are retained. A cancelled job is kept as long as a
+ * compensated one. A dropped job leaves a {@link JobTombstone} behind so its status can still be queried.
+ * <p/>
+ * The service never scans the repository. {@link #onTerminal(Job)} appends the job to a FIFO queue per status;
+ * since every job in a queue has the same TTL, the queue is also ordered by expiry and the sweeper only ever
+ * looks at queue heads. Each sweep evicts at most {@code jobs.retention.sweep-batch-size} jobs and then yields,
+ * so a large backlog is worked off in small steps instead of one long pause.
+ * <p/>
+ * Terminal jobs that a durable repository holds again after a restart are handed over by {@link #onRecovered}.
+ * Tombstones are not persisted; after a restart an evicted job is reported as not found.
+ */
+@Service
+public class JobRetentionService implements DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(JobRetentionService.class);
+
+    private record Retained(String jobId, long terminalAt) {}
+
+    private final JobRepository repo;
+    private final Map<JobStatus, Long> ttlNanos = new EnumMap<>(JobStatus.class);
+    private final Map<JobStatus, Queue<Retained>> retained = new EnumMap<>(JobStatus.class);
+    private final AtomicInteger residentCount = new AtomicInteger();
+    private final int maxResidentJobs;
+    private final int sweepBatchSize;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<String, JobTombstone> tombstones = new ConcurrentHashMap<>();
+    private final Queue<String> tombstoneOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tombstoneCount = new AtomicInteger();
+    private final int maxTombstones;
+
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public JobRetentionService(JobRepository repo,
+                               @Value("${jobs.retention.succeeded-ttl-seconds:3600}") long succeededTtlSeconds,
+                               @Value("${jobs.retention.compensated-ttl-seconds:86400}") long compensatedTtlSeconds,
+                               @Value("${jobs.retention.compensation-failed-ttl-seconds:604800}") long compensationFailedTtlSeconds,
+                               @Value("${jobs.retention.max-resident-jobs:100000}") int maxResidentJobs,
+                               @Value("${jobs.retention.max-tombstones:1000000}") int maxTombstones,
+                               @Value("${jobs.retention.sweep-interval-ms:1000}") long sweepIntervalMs,
+                               @Value("${jobs.retention.sweep-batch-size:10000}") int sweepBatchSize) {
+        this(repo, succeededTtlSeconds, compensatedTtlSeconds, compensationFailedTtlSeconds, maxResidentJobs,
+                maxTombstones, sweepBatchSize, System::nanoTime);
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, sweepIntervalMs, sweepIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    JobRetentionService(JobRepository repo, long succeededTtlSeconds, long compensatedTtlSeconds,
+                        long compensationFailedTtlSeconds, int maxResidentJobs, int maxTombstones,
+                        int sweepBatchSize, LongSupplier clock) {
+        this.repo = repo;
+        ttlNanos.put(JobStatus.SUCCEEDED, TimeUnit.SECONDS.toNanos(succeededTtlSeconds));
+        ttlNanos.put(JobStatus.COMPENSATED, TimeUnit.SECONDS.toNanos(compensatedTtlSeconds));
+        ttlNanos.put(JobStatus.COMPENSATION_FAILED, TimeUnit.SECONDS.toNanos(compensationFailedTtlSeconds));
+        ttlNanos.put(JobStatus.CANCELLED, TimeUnit.SECONDS.toNanos(compensatedTtlSeconds));
+        for (JobStatus status : ttlNanos.keySet()) {
+            retained.put(status, new ConcurrentLinkedQueue<>());
+        }
+        this.maxResidentJobs = maxResidentJobs;
+        this.maxTombstones = maxTombstones;
+        this.sweepBatchSize = sweepBatchSize;
+        this.clock = clock;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "job-retention");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts the retention clock for a job that just reached a terminal state.
+     */
+    public void onTerminal(Job job) {
+        Queue<Retained> queue = retained.get(job.getStatus());
+        if (queue == null) return;
+        queue.add(new Retained(job.getJobId(), clock.getAsLong()));
+        residentCount.incrementAndGet();
+    }
+
+    /**
+     * Starts the retention clock of terminal jobs an earlier process left behind, as of the time they became
+     * terminal, so they expire and count against the resident cap like jobs that finish now; a job whose TTL
+     * passed meanwhile goes with the next sweep. Meant for startup, before jobs finish in this process.
+     */
+    public void onRecovered(Collection<Job> jobs) {
+        long nowMillis = System.currentTimeMillis();
+        long now = clock.getAsLong();
+        jobs.stream()
+                .filter(job -> retained.containsKey(job.getStatus()))
+                .sorted(Comparator.comparingLong(Job::getStatusChangedAtMillis))
+                .forEach(job -> {
+                    long ageNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, nowMillis - job.getStatusChangedAtMillis()));
+                    retained.get(job.getStatus()).add(new Retained(job.getJobId(), now - ageNanos));
+                    residentCount.incrementAndGet();
+                });
+    }
+
+    public JobTombstone findTombstone(String jobId) {
+        return tombstones.get(jobId);
+    }
+
+    public int getResidentCount() {
+        return residentCount.get();
+    }
+
+    /**
+     * Evicts up to one batch of jobs: first the oldest ones while over the resident cap, then expired ones.
+     *
+     * @return the number of jobs evicted
+     */
+    public int sweep() {
+        int budget = sweepBatchSize;
+
+        while (budget > 0 && residentCount.get() > maxResidentJobs) {
+            Queue<Retained> oldest = null;
+            long oldestAt = 0;
+            for (Queue<Retained> queue : retained.values()) {
+                Retained head = queue.peek();
+                // Compared by difference, as nanoTime values must be; any value may be negative
+                if (head != null && (oldest == null || head.terminalAt() - oldestAt < 0)) {
+                    oldest = queue;
+                    oldestAt = head.terminalAt();
+                }
+            }
+            if (oldest == null || !evict(oldest.poll())) break;
+            budget--;
+        }
+
+        long now = clock.getAsLong();
+        for (Map.Entry<JobStatus, Queue<Retained>> entry : retained.entrySet()) {
+            long ttl = ttlNanos.get(entry.getKey());
+            Queue<Retained> queue = entry.getValue();
+            Retained head;
+            while (budget > 0 && (head = queue.peek()) != null && now - head.terminalAt() >= ttl) {
+                if (!evict(queue.poll())) break;
+                budget--;
+            }
+        }
+        return sweepBatchSize - budget;
+    }
+
+    @Override
+    public void destroy() {
+        sweeper.shutdownNow();
+    }
+
+    private boolean evict(Retained entry) {
+        if (entry == null) return false;
+        residentCount.decrementAndGet();
+
+        Job job = repo.findById(entry.jobId());
+        if (job == null || !job.getStatus().isTerminal()) return true;
+
+        addTombstone(JobTombstone.of(job));
+        repo.delete(job.getJobId());
+        return true;
+    }
+
+    private void addTombstone(JobTombstone tombstone) {
+        if (tombstones.put(tombstone.jobId(), tombstone) != null) return;
+        tombstoneOrder.add(tombstone.jobId());
+        if (tombstoneCount.incrementAndGet() > maxTombstones) {
+            String oldest = tombstoneOrder.poll();
+            if (oldest != null) {
+                tombstones.remove(oldest);
+                tombstoneCount.decrementAndGet();
+            }
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            // Keep going while full batches come back, but as separate small steps
+            int evicted;
+            do {
+                evicted = sweep();
+                if (evicted > 0) logger.debug("Retention evicted {} terminal jobs", evicted);
+            } while (evicted == sweepBatchSize && !Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+            logger.error("Retention sweep failed", e);
+        }
+    }
+}
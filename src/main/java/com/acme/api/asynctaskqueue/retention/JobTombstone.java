@@ -0,0 +1,45 @@
+package com.acme.api.asynctaskqueue.retention;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobState;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+
+import java.time.Instant;
+
+/**
+ * What is left of a terminal job after retention dropped it: enough to keep answering
+ * {@code GET /v1/jobs/{jobId}}, without the payload, type or error text. Timestamps are kept as epoch
+ * milliseconds to avoid two {@link Instant} objects per tombstone.
+ */
+public record JobTombstone(String jobId, JobStatus status, int attempts, long startedAtMs, long completedAtMs) {
+
+    private static final long NONE = -1L;
+
+    static JobTombstone of(Job job) {
+        JobState state = job.state();
+        return new JobTombstone(job.getJobId(), state.status(), state.attempts(),
+                state.startedAt() == null ? NONE : state.startedAt().toEpochMilli(),
+                state.completedAt() == null ? NONE : state.completedAt().toEpochMilli());
+    }
+
+    /**
+     * A payload-less stand-in for the original job, e.g. to answer a duplicate submission of an evicted job.
+     */
+    public Job toJob() {
+        Job job = new Job(jobId, null, null, null);
+        job.setStatus(status);
+        job.setAttempts(attempts);
+        job.setStartedAt(instant(startedAtMs));
+        job.setCompletedAt(instant(completedAtMs));
+        return job;
+    }
+
+    public JobStatusResponse toStatusResponse() {
+        return new JobStatusResponse(status.name(), attempts, null, instant(startedAtMs), instant(completedAtMs));
+    }
+
+    private static Instant instant(long epochMs) {
+        return epochMs == NONE ? null : Instant.ofEpochMilli(epochMs);
+    }
+}
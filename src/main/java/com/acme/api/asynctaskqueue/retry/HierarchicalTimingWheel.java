@@ -0,0 +1,239 @@
+package com.acme.api.asynctaskqueue.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel. Time advances in ticks of {@code tickMs}. Level 0 has one bucket per tick for the
+ * next {@code 2^bitsPerLevel} ticks; each higher level has buckets that are {@code 2^bitsPerLevel} times wider.
+ * A timeout sits in the lowest level whose range covers its deadline and moves down one level ("cascades")
+ * when the ticker reaches the start of its bucket, until it expires from a level-0 bucket exactly on its tick.
+ * <p/>
+ * Unlike {@code ScheduledThreadPoolExecutor}, whose delay queue is a binary heap, there is no sift on insert
+ * or cancel: scheduling appends the timeout to a lock-free queue that the ticker thread drains into a bucket,
+ * and cancelling flips a flag and hands the node back to the ticker for an O(1) unlink. Buckets are intrusive
+ * doubly-linked lists, so nothing is allocated per timeout beyond the {@link Timeout} itself.
+ * <p/>
+ * Expired tasks run on the ticker thread and must therefore be short (e.g. handing work to an executor).
+ */
+public class HierarchicalTimingWheel implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(HierarchicalTimingWheel.class);
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout {
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HierarchicalTimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile int state = PENDING;
+
+        // Owned by the ticker thread
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(HierarchicalTimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * @return {@code false} if the task already ran or was cancelled before
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+            wheel.pending.decrementAndGet();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) head = t;
+            else tail.next = t;
+            tail = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev == null) head = t.next;
+            else t.prev.next = t.next;
+            if (t.next == null) tail = t.prev;
+            else t.next.prev = t.prev;
+            t.bucket = null;
+            t.prev = null;
+            t.next = null;
+        }
+
+        /** Detaches and returns the whole list. */
+        Timeout drain() {
+            Timeout first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final long tickNanos;
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] levels;
+    private final long startNanos;
+
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Thread ticker;
+    private volatile boolean running = true;
+    private long currentTick; // next tick to process, owned by the ticker thread
+
+    /**
+     * @param tickMs        resolution; a timeout may fire up to one tick late but never early
+     * @param bitsPerLevel  log2 of the number of buckets per level
+     * @param levelCount    number of levels; the wheel spans {@code tickMs * 2^(bitsPerLevel * levelCount)}
+     */
+    public HierarchicalTimingWheel(String name, long tickMs, int bitsPerLevel, int levelCount) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.bits = bitsPerLevel;
+        this.mask = (1 << bitsPerLevel) - 1;
+        this.levels = new Bucket[levelCount][1 << bitsPerLevel];
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = new Bucket();
+            }
+        }
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(this::run, name);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /**
+     * Runs the task once the delay has passed. Safe to call from any thread.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsed = System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay));
+        Timeout timeout = new Timeout(this, task, (elapsed + tickNanos - 1) / tickNanos);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /** Number of timeouts that have neither expired nor been cancelled. */
+    public int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    private void run() {
+        while (running) {
+            long wakeAt = startNanos + currentTick * tickNanos;
+            long wait;
+            while ((wait = wakeAt - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(this, wait);
+            }
+            if (!running) return;
+
+            unlinkCancelled();
+            transferIncoming();
+            cascade(currentTick);
+            expire(levels[0][(int) (currentTick & mask)]);
+            currentTick++;
+        }
+    }
+
+    private void transferIncoming() {
+        // Bounded so that a flood of new timeouts cannot starve the ticks themselves
+        for (int i = 0; i < 100_000; i++) {
+            Timeout t = incoming.poll();
+            if (t == null) return;
+            if (t.state == PENDING) place(t);
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout t;
+        while ((t = cancelled.poll()) != null) {
+            if (t.bucket != null) t.bucket.remove(t);
+        }
+    }
+
+    private void place(Timeout t) {
+        long deadline = Math.max(t.deadlineTick, currentTick);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < levels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        // Deadlines beyond the top level land in some top-level bucket and are simply re-placed when it cascades
+        levels[level][(int) ((deadline >>> (bits * level)) & mask)].add(t);
+    }
+
+    private void cascade(long tick) {
+        for (int level = levels.length - 1; level > 0; level--) {
+            if ((tick & ((1L << (bits * level)) - 1)) != 0) continue;
+            Timeout t = levels[level][(int) ((tick >>> (bits * level)) & mask)].drain();
+            while (t != null) {
+                Timeout next = t.next;
+                t.bucket = null;
+                if (t.state == PENDING) place(t);
+                t = next;
+            }
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout t = bucket.drain();
+        while (t != null) {
+            Timeout next = t.next;
+            t.bucket = null;
+            t.prev = null;
+            t.next = null;
+            if (Timeout.STATE.compareAndSet(t, PENDING, EXPIRED)) {
+                pending.decrementAndGet();
+                try {
+                    t.task.run();
+                } catch (Throwable e) {
+                    logger.error("Timing wheel task failed", e);
+                }
+            }
+            t = next;
+        }
+    }
+}
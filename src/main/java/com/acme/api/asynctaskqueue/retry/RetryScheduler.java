@@ -0,0 +1,102 @@
+package com.acme.api.asynctaskqueue.retry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parks jobs until their next attempt is due, on top of a {@link HierarchicalTimingWheel}.
+ * <p/>
+ * A retry is never dropped. If the attempt is rejected because the executor is full, the retry is parked
+ * again with an extra backoff that doubles on every rejection (capped at {@code reparkMaxMs}, plus jitter so
+ * that a burst of rejected retries does not come back as a burst).
+ * <p/>
+ * It also keeps the deadlines of running attempts, on a wheel of their own so that they are not counted as
+ * parked retries. That wheel's ticker thread is only started by the first deadline.
+ */
+public class RetryScheduler implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(RetryScheduler.class);
+
+    private final HierarchicalTimingWheel wheel;
+    private final long tickMs;
+    private volatile HierarchicalTimingWheel deadlines;
+    private final long reparkBaseMs;
+    private final long reparkMaxMs;
+    private final AtomicLong reparked = new AtomicLong();
+
+    public RetryScheduler(long tickMs, long reparkBaseMs, long reparkMaxMs) {
+        // 256 buckets per level, 4 levels: about 2.5s, 11min, 2 days and 1.4 years at a 10ms tick
+        this.wheel = new HierarchicalTimingWheel("job-retry-wheel", tickMs, 8, 4);
+        this.tickMs = tickMs;
+        this.reparkBaseMs = reparkBaseMs;
+        this.reparkMaxMs = reparkMaxMs;
+    }
+
+    /**
+     * Runs {@code attempt} for the job after {@code delayMs}. The attempt signals a full executor by throwing
+     * {@link RejectedExecutionException}, in which case it is re-parked instead of lost.
+     */
+    public HierarchicalTimingWheel.Timeout schedule(String jobId, long delayMs, Runnable attempt) {
+        return schedule(jobId, delayMs, attempt, 0);
+    }
+
+    /**
+     * Runs {@code task} after {@code delayMs} unless the returned timeout is cancelled first. The task runs on
+     * the ticker thread and must be short.
+     */
+    public HierarchicalTimingWheel.Timeout deadline(long delayMs, Runnable task) {
+        HierarchicalTimingWheel wheel = deadlines;
+        if (wheel == null) {
+            synchronized (this) {
+                wheel = deadlines;
+                if (wheel == null) {
+                    deadlines = wheel = new HierarchicalTimingWheel("job-deadline-wheel", tickMs, 8, 4);
+                }
+            }
+        }
+        return wheel.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Retries that are parked and not yet handed to an executor. */
+    public int getPendingRetries() {
+        return wheel.pending();
+    }
+
+    /** Total number of times a due retry was rejected and parked again. */
+    public long getReparkedRetries() {
+        return reparked.get();
+    }
+
+    @Override
+    public void close() {
+        wheel.close();
+        synchronized (this) {
+            if (deadlines != null) deadlines.close();
+        }
+    }
+
+    private HierarchicalTimingWheel.Timeout schedule(String jobId, long delayMs, Runnable attempt, int rejections) {
+        return wheel.schedule(() -> fire(jobId, attempt, rejections), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire(String jobId, Runnable attempt, int rejections) {
+        try {
+            attempt.run();
+        } catch (RejectedExecutionException rex) {
+            long delay = reparkDelay(rejections + 1);
+            reparked.incrementAndGet();
+            logger.warn("Retry for Job {} rejected (queue full). Parking it again for {}ms", jobId, delay);
+            schedule(jobId, delay, attempt, rejections + 1);
+        }
+    }
+
+    private long reparkDelay(int rejections) {
+        long exp = reparkBaseMs << Math.min(rejections - 1, 20);
+        long capped = Math.min(exp, reparkMaxMs);
+        return capped + ThreadLocalRandom.current().nextLong(0, Math.max(1, capped / 4));
+    }
+}
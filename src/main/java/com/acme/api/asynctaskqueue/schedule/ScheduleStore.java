@@ -0,0 +1,207 @@
+package com.acme.api.asynctaskqueue.schedule;
+
+import com.acme.api.asynctaskqueue.model.JobIds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Jobs waiting for their time, for delayed and recurring submissions. There is no timer per job: jobs are
+ * grouped into time slots of {@code slotMs}, kept in a skip list ordered by time, and a slot keeps its jobs' ids
+ * in an array (a UUID id as two longs, see {@link JobIds}). One releaser thread sleeps until the first slot is
+ * due and hands its jobs to the release callback. A job costs about 16 bytes here, plus one entry per slot.
+ * <p/>
+ * A job is never released early: it goes into the first slot that ends at or after its time, so it is released
+ * up to {@code slotMs} late. Callers that all schedule for the same instant (typically the top of a minute) would
+ * still come out as one burst, so each job's time is pushed back by an offset of up to {@code spreadMs} derived
+ * from its id, which spreads such a burst evenly over the spread window.
+ * <p/>
+ * If the callback rejects a job with {@link RejectedExecutionException} (the executor is full), the job is put
+ * back {@link #REPARK_MS} later instead of being dropped. The releaser thread is only started by the first job.
+ */
+public class ScheduleStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleStore.class);
+
+    static final long REPARK_MS = 1000;
+    private static final long MAX_PARK_MS = 60_000; // re-read the clock at least this often
+
+    private static final class Slot {
+        long[] uuids = new long[8]; // high, low of UUID ids
+        int uuidCount;
+        List<String> others; // ids that are not canonical UUIDs
+        boolean released; // guarded by this
+
+        void add(String jobId) {
+            if (JobIds.isCanonicalUuid(jobId)) {
+                if (2 * uuidCount == uuids.length) uuids = Arrays.copyOf(uuids, uuids.length * 2);
+                uuids[2 * uuidCount] = JobIds.high(jobId);
+                uuids[2 * uuidCount + 1] = JobIds.low(jobId);
+                uuidCount++;
+            } else {
+                if (others == null) others = new ArrayList<>(1);
+                others.add(jobId);
+            }
+        }
+
+        int size() {
+            return uuidCount + (others == null ? 0 : others.size());
+        }
+    }
+
+    private final long slotMs;
+    private final long spreadMs;
+    private final LongSupplier clock;
+    private final boolean background;
+    private final ConcurrentSkipListMap<Long, Slot> slots = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Consumer<String> release;
+    private volatile long wakeAtMs = Long.MAX_VALUE;
+    private volatile Thread releaser;
+    private volatile boolean closed;
+
+    public ScheduleStore(long slotMs, long spreadMs) {
+        this(slotMs, spreadMs, System::currentTimeMillis, true);
+    }
+
+    /**
+     * @param background whether to start the releaser thread; without it, only {@link #releaseDue} releases jobs
+     */
+    ScheduleStore(long slotMs, long spreadMs, LongSupplier clock, boolean background) {
+        if (slotMs < 1 || spreadMs < 0) throw new IllegalArgumentException("slotMs must be positive, spreadMs not negative");
+        this.slotMs = slotMs;
+        this.spreadMs = spreadMs;
+        this.clock = clock;
+        this.background = background;
+    }
+
+    /** Sets where due jobs go; called once, before the first job is added. */
+    public void releaseTo(Consumer<String> release) {
+        this.release = release;
+    }
+
+    /**
+     * Keeps the job until {@code dueAtMs} (epoch milliseconds) plus its spread offset.
+     *
+     * @return when the job will be released at the earliest, epoch milliseconds
+     */
+    public long add(String jobId, long dueAtMs) {
+        long releaseAtMs = dueAtMs + offset(jobId);
+        long key = Math.floorDiv(releaseAtMs + slotMs - 1, slotMs); // the slot ending at or after it
+        while (true) {
+            Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+            synchronized (slot) {
+                if (slot.released) continue; // the releaser just took it; start a new one
+                slot.add(jobId);
+                size.incrementAndGet();
+                break;
+            }
+        }
+        if (background && key * slotMs < wakeAtMs) wakeUp();
+        return key * slotMs;
+    }
+
+    /** Jobs waiting for their time. */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Releases every job in the slots that have ended by {@code nowMs}.
+     *
+     * @return the number of jobs handed to the callback
+     */
+    int releaseDue(long nowMs) {
+        int released = 0;
+        Map.Entry<Long, Slot> first;
+        while ((first = slots.firstEntry()) != null && first.getKey() * slotMs <= nowMs) {
+            Slot slot = first.getValue();
+            slots.remove(first.getKey(), slot);
+            synchronized (slot) {
+                slot.released = true;
+            }
+            size.addAndGet(-slot.size());
+            for (int i = 0; i < slot.uuidCount; i++) {
+                released += releaseOne(JobIds.format(slot.uuids[2 * i], slot.uuids[2 * i + 1]), nowMs);
+            }
+            if (slot.others != null) {
+                for (String jobId : slot.others) {
+                    released += releaseOne(jobId, nowMs);
+                }
+            }
+        }
+        return released;
+    }
+
+    private int releaseOne(String jobId, long nowMs) {
+        try {
+            release.accept(jobId);
+            return 1;
+        } catch (RejectedExecutionException rex) {
+            logger.warn("Scheduled Job {} rejected (executor full); releasing it again in {}ms", jobId, REPARK_MS);
+            add(jobId, nowMs + REPARK_MS);
+        } catch (RuntimeException e) {
+            logger.error("Could not release scheduled Job {}", jobId, e);
+        }
+        return 0;
+    }
+
+    private long offset(String jobId) {
+        return spreadMs == 0 ? 0 : Math.floorMod(jobId.hashCode() * 0x9E3779B9L, spreadMs + 1);
+    }
+
+    private void wakeUp() {
+        Thread thread = releaser;
+        if (thread == null) {
+            synchronized (this) {
+                thread = releaser;
+                if (thread == null && background && !closed) {
+                    releaser = Thread.ofPlatform().name("job-schedule-releaser").daemon().start(this::run);
+                    return;
+                }
+            }
+        }
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        while (!closed) {
+            long now = clock.getAsLong();
+            try {
+                releaseDue(now);
+            } catch (RuntimeException e) {
+                logger.error("Releasing scheduled jobs failed", e);
+            }
+            Map.Entry<Long, Slot> first = slots.firstEntry();
+            long next = first == null ? Long.MAX_VALUE : first.getKey() * slotMs;
+            wakeAtMs = next;
+            // A slot added before wakeAtMs was published did not wake us up
+            first = slots.firstEntry();
+            if (first != null && first.getKey() * slotMs < next) continue;
+            now = clock.getAsLong();
+            if (next > now) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.min(next - now, MAX_PARK_MS)));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = releaser;
+        }
+        if (thread != null) LockSupport.unpark(thread);
+    }
+}
@@ -0,0 +1,92 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.retry.HierarchicalTimingWheel;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs one attempt of a handler (or one batch of a batch handler) and fails it with a {@link TimeoutException}
+ * once the job's timeout has passed, or once the lease of one of its jobs lapsed.
+ * <p/>
+ * An async handler's stage is cancelled when the attempt is given up, which is as far as a {@code CompletionStage}
+ * can be stopped; a handler that ignores the cancellation may still finish its work later, while the job has
+ * moved on. A blocking handler is still running on the thread that started the attempt when it is given up, so
+ * that thread is interrupted instead. The interrupt is confined to the attempt: the thread's interrupt status is
+ * cleared again before it returns to its executor.
+ */
+final class AttemptDeadline<T> implements JobLeases.Attempt {
+    private final Thread caller = Thread.currentThread();
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    // Guarded by this: whether the handler is still running on the caller thread, and whether it was interrupted
+    private boolean inline = true;
+    private boolean interrupted;
+
+    /**
+     * Starts the attempt on the calling thread.
+     *
+     * @param attempt   starts the handler; a blocking handler runs to completion inside it
+     * @param timeoutMs the attempt's timeout; 0 or less for none
+     * @param leases    the leases of the attempt's jobs; the first of them to lapse gives the attempt up
+     * @return completes when the attempt does, or exceptionally with a {@link TimeoutException} once it is given up
+     */
+    static <T> CompletableFuture<T> run(Callable<? extends CompletionStage<T>> attempt, long timeoutMs,
+                                        RetryScheduler timers, List<JobLeases.Lease> leases) {
+        if (timeoutMs <= 0 && leases.isEmpty()) return start(attempt);
+
+        AttemptDeadline<T> deadline = new AttemptDeadline<>();
+        HierarchicalTimingWheel.Timeout timer = timeoutMs <= 0 ? null : timers.deadline(timeoutMs,
+                () -> deadline.giveUp(new TimeoutException("Attempt timed out after " + timeoutMs + "ms")));
+        leases.forEach(lease -> lease.attach(deadline, timeoutMs));
+        CompletableFuture<T> stage;
+        try {
+            stage = start(attempt);
+        } finally {
+            deadline.returned();
+        }
+        stage.whenComplete((value, error) -> {
+            if (timer != null) timer.cancel();
+            if (error == null) {
+                deadline.result.complete(value);
+            } else {
+                deadline.result.completeExceptionally(error);
+            }
+        });
+        deadline.result.whenComplete((ignored, error) -> {
+            if (error instanceof TimeoutException) stage.cancel(false);
+        });
+        return deadline.result;
+    }
+
+    private static <T> CompletableFuture<T> start(Callable<? extends CompletionStage<T>> attempt) {
+        try {
+            return Objects.requireNonNull(attempt.call(), "The handler returned no stage").toCompletableFuture();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public synchronized void giveUp(TimeoutException reason) {
+        if (result.completeExceptionally(reason) && inline) {
+            interrupted = true;
+            caller.interrupt();
+        }
+    }
+
+    /** Called once the handler gave the caller thread back; it is not interrupted after this. */
+    private void returned() {
+        boolean clear;
+        synchronized (this) {
+            inline = false;
+            clear = interrupted;
+        }
+        if (clear) Thread.interrupted();
+    }
+}
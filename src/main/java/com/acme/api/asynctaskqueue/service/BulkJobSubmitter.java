@@ -0,0 +1,180 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.jobs.dto.BulkSubmitResult;
+import com.acme.api.asynctaskqueue.jobs.dto.BulkSubmitSummary;
+import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk submission of jobs from an NDJSON stream (one {@link JobRequest} object per line).
+ * <p/>
+ * The body is read token by token with the Jackson streaming parser, so it is never held in memory as a whole.
+ * Valid lines are collected into batches of {@code jobs.bulk.batch-size} and handed to
+ * {@link JobService#submitJobs(List)}; after every batch the per-line results are written and flushed, so the
+ * client sees progress while it is still sending.
+ * <p/>
+ * Partial acceptance works as follows:
+ * <ul>
+ *     <li>A line that is not a valid job request (wrong shape, missing type) is rejected on its own and the
+ *     remaining lines are still processed</li>
+ *     <li>Once the queue is full, that line and every valid line after it are rejected with "queue full"
+ *     without being saved, so the accepted jobs always precede the first queue-full line, which the summary
+ *     reports so the client knows where to resume</li>
+ *     <li>Malformed JSON cannot be resynchronized: the line is rejected, the rest of the body is ignored and
+ *     the summary is written</li>
+ * </ul>
+ */
+@Service
+public class BulkJobSubmitter {
+    private static final Logger logger = LoggerFactory.getLogger(BulkJobSubmitter.class);
+
+    static final String QUEUE_FULL = "Job queue is full. Please try again later.";
+
+    private final JobService jobService;
+    private final ObjectMapper mapper;
+    private final ObjectReader requestReader;
+    private final ObjectWriter resultWriter;
+    private final int batchSize;
+
+    public BulkJobSubmitter(JobService jobService,
+                            ObjectMapper mapper,
+                            @Value("${jobs.bulk.batch-size:256}") int batchSize) {
+        this.jobService = jobService;
+        this.mapper = mapper;
+        this.requestReader = mapper.readerFor(JobRequest.class);
+        // Flushing is done once per batch, not after every result
+        this.resultWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads job requests from {@code in} until it is exhausted and writes one {@link BulkSubmitResult} per job
+     * line to {@code out}, followed by a {@link BulkSubmitSummary}. Neither stream is closed.
+     */
+    public BulkSubmitSummary submit(InputStream in, OutputStream out) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(in);
+             JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null);
+
+            Batch batch = new Batch(gen);
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    int line = parser.currentTokenLocation().getLineNr();
+                    if (token != JsonToken.START_OBJECT) {
+                        parser.skipChildren();
+                        batch.reject(line, "Each line must be a JSON object");
+                        continue;
+                    }
+                    JobRequest request;
+                    try {
+                        request = requestReader.readValue(parser);
+                    } catch (MismatchedInputException shape) {
+                        skipToRoot(parser);
+                        batch.reject(line, "Invalid job request: " + shape.getOriginalMessage());
+                        continue;
+                    }
+                    if (request.type() == null || request.type().isBlank()) {
+                        batch.reject(line, "Job type is required");
+                        continue;
+                    }
+                    batch.add(line, request);
+                }
+            } catch (JsonProcessingException malformed) {
+                batch.reject(malformed.getLocation() == null ? -1 : malformed.getLocation().getLineNr(),
+                        "Malformed JSON, the rest of the request was ignored: " + malformed.getOriginalMessage());
+            }
+            batch.admit();
+
+            BulkSubmitSummary summary = new BulkSubmitSummary(batch.accepted, batch.rejected, batch.firstQueueFullLine);
+            write(gen, summary);
+            gen.flush();
+            logger.info("Bulk submission finished: {} accepted, {} rejected", summary.accepted(), summary.rejected());
+            return summary;
+        }
+    }
+
+    /**
+     * A databind error can leave the parser anywhere inside the object; move past the end of it.
+     */
+    private static void skipToRoot(JsonParser parser) throws IOException {
+        while (!parser.getParsingContext().inRoot()) {
+            if (parser.nextToken() == null) return;
+        }
+    }
+
+    private void write(JsonGenerator gen, Object value) throws IOException {
+        resultWriter.writeValue(gen, value);
+        gen.writeRaw('\n');
+    }
+
+    /**
+     * The valid lines waiting for admission. Results are written in line order, so a rejected line first
+     * admits whatever is pending before it.
+     */
+    private final class Batch {
+        private final JsonGenerator gen;
+        private final List<JobRequest> requests = new ArrayList<>(batchSize);
+        private final List<Integer> lines = new ArrayList<>(batchSize);
+        private int accepted;
+        private int rejected;
+        private Integer firstQueueFullLine;
+
+        Batch(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        void add(int line, JobRequest request) throws IOException {
+            requests.add(request);
+            lines.add(line);
+            if (requests.size() >= batchSize) admit();
+        }
+
+        void reject(int line, String error) throws IOException {
+            admit();
+            write(gen, BulkSubmitResult.rejected(line, error));
+            rejected++;
+        }
+
+        void admit() throws IOException {
+            if (requests.isEmpty()) return;
+
+            // Once the queue is full the rest of the stream is not admitted, even if capacity frees up meanwhile
+            List<Job> admitted = firstQueueFullLine == null ? jobService.submitJobs(requests) : List.of();
+            for (int i = 0; i < requests.size(); i++) {
+                if (i < admitted.size()) {
+                    write(gen, BulkSubmitResult.accepted(lines.get(i), admitted.get(i).getJobId()));
+                    accepted++;
+                } else {
+                    if (firstQueueFullLine == null) firstQueueFullLine = lines.get(i);
+                    write(gen, BulkSubmitResult.rejected(lines.get(i), QUEUE_FULL));
+                    rejected++;
+                }
+            }
+            requests.clear();
+            lines.clear();
+            gen.flush();
+        }
+    }
+}
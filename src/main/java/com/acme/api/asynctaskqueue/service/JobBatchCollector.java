@@ -0,0 +1,131 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.retry.HierarchicalTimingWheel;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.worker.BatchPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Collects the queued jobs of batch handler types into batches, see {@link BatchPolicy}. A full batch is
+ * dispatched by the thread that added its last job, a lingering one by the timer.
+ * <p/>
+ * Dispatching hands the batch to the type's bulkhead, where it is one attempt. If the bulkhead is full, the
+ * batch is parked in the {@link RetryScheduler} (which parks it again for as long as the bulkhead stays full)
+ * instead of being dropped. So that the collector cannot grow without bound meanwhile, a type accepts at most
+ * {@link #MAX_WAITING_BATCHES} batches worth of jobs that are not dispatched yet; beyond that, adding a job
+ * throws {@link RejectedExecutionException}, which a submission answers with 429.
+ */
+final class JobBatchCollector {
+    private static final Logger logger = LoggerFactory.getLogger(JobBatchCollector.class);
+
+    static final int MAX_WAITING_BATCHES = 8;
+
+    /** One job waiting in a batch. */
+    record Entry(String jobId, JobPriority priority, boolean retry, long enqueuedAt) {}
+
+    private static final class Buffer {
+        final String type;
+        List<Entry> entries = new ArrayList<>();
+        HierarchicalTimingWheel.Timeout linger;
+        int waiting; // collected or parked, not yet accepted by the bulkhead
+
+        Buffer(String type) {
+            this.type = type;
+        }
+    }
+
+    private final RetryScheduler timers;
+    private final BiConsumer<String, List<Entry>> dispatcher;
+    private final LongSupplier parkDelayMs;
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    /**
+     * @param dispatcher  hands a batch of the type to its bulkhead; throws {@link RejectedExecutionException} if full
+     * @param parkDelayMs first delay of a batch the bulkhead rejected
+     */
+    JobBatchCollector(RetryScheduler timers, BiConsumer<String, List<Entry>> dispatcher, LongSupplier parkDelayMs) {
+        this.timers = timers;
+        this.dispatcher = dispatcher;
+        this.parkDelayMs = parkDelayMs;
+    }
+
+    /**
+     * Adds the job to the current batch of its type.
+     *
+     * @throws RejectedExecutionException if too many jobs of the type are waiting to be dispatched
+     */
+    void add(Job job, boolean retry, BatchPolicy policy) {
+        String type = job.getType();
+        Buffer buffer = buffers.computeIfAbsent(type, Buffer::new);
+        List<Entry> full = null;
+        synchronized (buffer) {
+            if (buffer.waiting >= policy.maxSize() * MAX_WAITING_BATCHES) {
+                throw new RejectedExecutionException(buffer.waiting + " jobs of type " + type
+                        + " are waiting for a batch to be dispatched");
+            }
+            buffer.entries.add(new Entry(job.getJobId(), job.getPriority(), retry, System.nanoTime()));
+            buffer.waiting++;
+            if (buffer.entries.size() >= policy.maxSize()) {
+                full = take(buffer);
+            } else if (buffer.entries.size() == 1) {
+                buffer.linger = timers.deadline(policy.lingerMs(), () -> flush(buffer));
+            }
+        }
+        if (full != null) dispatchOrPark(buffer, full);
+    }
+
+    /** Jobs of the type collected or parked that the bulkhead has not accepted yet. */
+    int waiting(String type) {
+        Buffer buffer = buffers.get(type);
+        if (buffer == null) return 0;
+        synchronized (buffer) {
+            return buffer.waiting;
+        }
+    }
+
+    private void flush(Buffer buffer) {
+        List<Entry> batch;
+        synchronized (buffer) {
+            if (buffer.entries.isEmpty()) return;
+            batch = take(buffer);
+        }
+        dispatchOrPark(buffer, batch);
+    }
+
+    private List<Entry> take(Buffer buffer) {
+        List<Entry> batch = buffer.entries;
+        buffer.entries = new ArrayList<>(batch.size());
+        if (buffer.linger != null) {
+            buffer.linger.cancel();
+            buffer.linger = null;
+        }
+        return batch;
+    }
+
+    private void dispatchOrPark(Buffer buffer, List<Entry> batch) {
+        try {
+            handOver(buffer, batch);
+        } catch (RejectedExecutionException rex) {
+            logger.warn("Batch of {} {} jobs rejected (bulkhead full); parking it", batch.size(), buffer.type);
+            timers.schedule(batch.get(0).jobId(), parkDelayMs.getAsLong(), () -> handOver(buffer, batch));
+        }
+    }
+
+    private void handOver(Buffer buffer, List<Entry> batch) {
+        dispatcher.accept(buffer.type, batch);
+        synchronized (buffer) {
+            buffer.waiting -= batch.size();
+        }
+    }
+}
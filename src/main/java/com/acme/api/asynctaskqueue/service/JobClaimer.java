@@ -0,0 +1,189 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.config.ClusterSettings;
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.repo.JdbcJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Cluster mode: claims offered jobs from the shared table for this node, in batches, and hands them to the local
+ * executor. A node never has more than {@code maxInFlight} claimed jobs that have not finished their attempts, so
+ * jobs stay in the table, where any node can take them, instead of piling up in one node's queue.
+ * <p/>
+ * The poll cadence adapts to the load: after a full batch the next claim follows right away, after a partial
+ * one it waits {@code minPollMs}, and every empty poll doubles the wait up to {@code maxPollMs}, so idle nodes
+ * cost the database almost nothing. A node at its limit sleeps until one of its jobs finishes.
+ * <p/>
+ * Every claimed job is leased to this node until it finishes, whether it is queued, running, retrying or waiting
+ * for compensation, and every {@code heartbeatMs} one batched update renews all of those leases. Before claiming
+ * new jobs, each poll takes over the jobs whose lease lapsed because their node stopped; they are handed to
+ * {@code reclaim} in the state that node left them in.
+ * <p/>
+ * Every {@code maxPollMs} the claimer also re-reads the rows of the jobs this node offered and other nodes run
+ * (see {@link JdbcJobRepository#followOffered()}) and hands their status changes to {@code remote}, so long-polls,
+ * event streams and counts on the submitting node follow them.
+ */
+final class JobClaimer {
+    private static final Logger logger = LoggerFactory.getLogger(JobClaimer.class);
+
+    private final JdbcJobRepository repo;
+    private final ClusterSettings settings;
+    private final LeaseSettings leases;
+    private final Consumer<Job> run;
+    private final Consumer<Job> reclaim;
+    private final Consumer<JdbcJobRepository.RemoteTransition> remote;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private long nextHeartbeat; // claimer thread only
+    private long nextFollow;    // claimer thread only
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param run     enqueues a claimed job locally, throwing {@link RejectedExecutionException} if the executor
+     *                is full
+     * @param reclaim carries on with a job taken over from a node that stopped; must not throw
+     * @param remote  tells the service about a status change of an offered job on another node; must not throw
+     */
+    JobClaimer(JdbcJobRepository repo, ClusterSettings settings, LeaseSettings leases, Consumer<Job> run,
+               Consumer<Job> reclaim, Consumer<JdbcJobRepository.RemoteTransition> remote) {
+        this.repo = repo;
+        this.settings = settings;
+        this.leases = leases;
+        this.run = run;
+        this.reclaim = reclaim;
+        this.remote = remote;
+    }
+
+    synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = Thread.ofPlatform().name("job-claimer").daemon().start(this::loop);
+    }
+
+    synchronized void stop() {
+        running = false;
+        Thread t = thread;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /** Leaves a queued job in the table for any node to claim. */
+    void offer(Job job) {
+        repo.offer(job);
+    }
+
+    /** Keeps renewing the lease of a job this node recovered after a restart, as if it had just claimed it. */
+    void adopt(Job job) {
+        if (!job.getStatus().isTerminal()) inFlight.add(job.getJobId());
+    }
+
+    /** Jobs this node has claimed since it started. */
+    long getClaimed() {
+        return claimed.get();
+    }
+
+    /** Jobs this node has taken over from stopped nodes since it started. */
+    long getReclaimed() {
+        return reclaimed.get();
+    }
+
+    /**
+     * Called after every transition: a claimed job that finished makes room for the next claim.
+     */
+    void onTransition(Job job, JobStatus status) {
+        if (status.isTerminal() && inFlight.remove(job.getJobId())) {
+            Thread t = thread;
+            if (t != null) LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Takes over the jobs of stopped nodes and claims offered ones, as many as there is room for.
+     *
+     * @return the number of jobs taken, or -1 if there was no room
+     */
+    int claimOnce() {
+        int room = Math.min(settings.claimBatchSize(), settings.maxInFlight() - inFlight.size());
+        if (room <= 0) return -1;
+        long now = System.currentTimeMillis();
+        long leaseUntil = now + leases.visibilityTimeoutMs();
+        List<Job> expired = repo.reclaimExpired(room, now, leaseUntil);
+        for (Job job : expired) {
+            inFlight.add(job.getJobId());
+            logger.warn("Took over Job {} ({}) from a node whose lease lapsed", job.getJobId(), job.getStatus());
+            reclaim.accept(job);
+        }
+        reclaimed.addAndGet(expired.size());
+        if (expired.size() == room) return room;
+
+        List<Job> jobs = repo.claim(room - expired.size(), leaseUntil);
+        for (Job job : jobs) {
+            inFlight.add(job.getJobId());
+            try {
+                run.accept(job);
+            } catch (RejectedExecutionException rex) {
+                // Only possible if the executor is shared with local work; give the job back to the cluster
+                inFlight.remove(job.getJobId());
+                repo.offer(job);
+            }
+        }
+        claimed.addAndGet(jobs.size());
+        return expired.size() + jobs.size();
+    }
+
+    /** Renews the leases of every job this node holds, if a heartbeat is due. */
+    void heartbeat(long now) {
+        if (now < nextHeartbeat) return;
+        nextHeartbeat = now + leases.heartbeatMs();
+        List<String> lost = repo.renewLeases(inFlight, now + leases.visibilityTimeoutMs());
+        if (!lost.isEmpty()) {
+            // Another node took them over after a missed heartbeat; its writes win from now on
+            logger.warn("Lost the leases of {} jobs to other nodes: {}", lost.size(), lost);
+            lost.forEach(inFlight::remove);
+        }
+    }
+
+    /** Passes on what other nodes did with the jobs this node offered, if that is due. */
+    void follow(long now) {
+        if (now < nextFollow) return;
+        nextFollow = now + settings.maxPollMs();
+        repo.followOffered().forEach(remote);
+    }
+
+    private void loop() {
+        long pollMs = settings.minPollMs();
+        while (running) {
+            int count;
+            try {
+                heartbeat(System.currentTimeMillis());
+                count = claimOnce();
+                follow(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.warn("Claiming jobs failed; trying again in {}ms", settings.maxPollMs(), e);
+                count = 0;
+                pollMs = settings.maxPollMs();
+            }
+            if (count == settings.claimBatchSize()) {
+                pollMs = settings.minPollMs();
+                continue; // there may be more right away
+            }
+            if (count > 0) pollMs = settings.minPollMs();
+            long untilHeartbeat = Math.max(1, nextHeartbeat - System.currentTimeMillis());
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.min(pollMs, untilHeartbeat)));
+            if (count == 0) pollMs = Math.min(pollMs * 2, settings.maxPollMs());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobState;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Collapses identical submissions of the coalesced job types into one execution. Submissions are identical if
+ * they have the same type and payload, compared by a SHA-256 fingerprint of the payload in a canonical form
+ * (keys sorted at every level), so field order does not matter.
+ * <p/>
+ * The first submission leads: it is enqueued and runs like any job. A duplicate submitted while the leader is
+ * queued, running or retrying becomes a follower: it gets its own id and is saved, but never runs. Instead it
+ * follows the leader's transitions, taking on the leader's state each time, so that every submitter sees the
+ * same attempts, error and outcome, and only the leader is compensated. Once the leader has failed for good or
+ * finished, the next duplicate leads a new execution.
+ */
+final class JobCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(JobCoalescer.class);
+
+    private static final class Group {
+        final Job leader;
+        final List<Job> followers = new ArrayList<>();
+        volatile boolean closed; // set while holding this
+
+        Group(Job leader) {
+            this.leader = leader;
+        }
+    }
+
+    private final BiConsumer<Job, JobState> follow;
+    private final Map<String, Group> byFingerprint = new ConcurrentHashMap<>();
+    private final Map<String, Group> byLeader = new ConcurrentHashMap<>();
+
+    /**
+     * @param follow moves a follower to the given state of its leader
+     */
+    JobCoalescer(BiConsumer<Job, JobState> follow) {
+        this.follow = follow;
+    }
+
+    /**
+     * Attaches the job to the execution of an identical one, after bringing it up to the leader's state.
+     *
+     * @return the leader, or {@code null} if there is none and the job should be enqueued and then {@link #lead}
+     */
+    Job join(Job job) {
+        Group group = byFingerprint.get(fingerprint(job));
+        if (group == null) return null;
+        synchronized (group) {
+            if (group.closed || !attachable(group.leader.getStatus())) return null;
+            group.followers.add(job);
+            follow.accept(job, group.leader.state());
+            return group.leader;
+        }
+    }
+
+    /**
+     * Makes the enqueued job the leader of later duplicates, unless another one got there first.
+     */
+    void lead(Job job) {
+        String fingerprint = fingerprint(job);
+        Group group = new Group(job);
+        // Followers must never join a group whose leader's transitions nobody passes on
+        byLeader.put(job.getJobId(), group);
+        // No group lock in here: onTransition removes groups while holding one
+        Group winner = byFingerprint.compute(fingerprint, (key, current) ->
+                current == null || current.closed || !attachable(current.leader.getStatus()) ? group : current);
+        if (winner != group) {
+            byLeader.remove(job.getJobId(), group);
+            return;
+        }
+        // The leader may have finished before it was registered, and then nobody would close the group
+        synchronized (group) {
+            if (attachable(job.getStatus())) return;
+            close(fingerprint, group);
+            if (job.getStatus().isTerminal()) byLeader.remove(job.getJobId(), group);
+        }
+    }
+
+    /**
+     * Called after every transition of any job: if it leads a group, its followers take on its new state.
+     */
+    void onTransition(Job job) {
+        if (byLeader.isEmpty()) return;
+        Group group = byLeader.get(job.getJobId());
+        if (group == null) return;
+        synchronized (group) {
+            JobState state = job.state();
+            for (Job follower : group.followers) {
+                try {
+                    follow.accept(follower, state);
+                } catch (RuntimeException e) {
+                    // The leader's own transition has happened; a follower must not undo it
+                    logger.warn("Job {} could not follow Job {} to {}", follower.getJobId(), job.getJobId(),
+                            state.status(), e);
+                }
+            }
+            if (!attachable(state.status())) close(fingerprint(job), group);
+            if (state.status().isTerminal()) byLeader.remove(job.getJobId(), group);
+        }
+    }
+
+    private void close(String fingerprint, Group group) {
+        group.closed = true;
+        byFingerprint.remove(fingerprint, group);
+    }
+
+    /**
+     * A failed leader is only compensated, so a new duplicate should run instead of inheriting that.
+     */
+    private static boolean attachable(JobStatus status) {
+        return status == JobStatus.QUEUED || status == JobStatus.RUNNING || status == JobStatus.RETRYING;
+    }
+
+    static String fingerprint(Job job) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        canonical(digest, job.getPayload());
+        return job.getType() + ':' + Base64.getEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+
+    /**
+     * Feeds the value to the digest with a type tag and, for strings and containers, a length, so that
+     * different values cannot produce the same bytes.
+     */
+    private static void canonical(MessageDigest digest, Object value) {
+        switch (value) {
+            case null -> digest.update((byte) 'n');
+            case Map<?, ?> map -> {
+                Map<String, Object> sorted = new TreeMap<>();
+                map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+                tag(digest, 'm', sorted.size());
+                sorted.forEach((k, v) -> {
+                    string(digest, k);
+                    canonical(digest, v);
+                });
+            }
+            case Collection<?> list -> {
+                tag(digest, 'l', list.size());
+                list.forEach(element -> canonical(digest, element));
+            }
+            case Number number -> {
+                digest.update((byte) 'd');
+                string(digest, number.toString());
+            }
+            case Boolean b -> digest.update((byte) (b ? 't' : 'f'));
+            default -> {
+                digest.update((byte) 's');
+                string(digest, value.toString());
+            }
+        }
+    }
+
+    private static void string(MessageDigest digest, String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        tag(digest, 'b', utf8.length);
+        digest.update(utf8);
+    }
+
+    private static void tag(MessageDigest digest, char tag, int length) {
+        digest.update((byte) tag);
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+    }
+}
@@ -0,0 +1,52 @@
+package com.acme.api.asynctaskqueue.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The long-poll requests waiting for jobs to reach a terminal status. Only jobs somebody is waiting on have an
+ * entry: the first waiter creates it, and it is removed when the job completes or its last waiter gives up.
+ * Completing a job nobody waits on is a single lookup in an (usually empty) map.
+ */
+final class JobCompletionWaiters {
+
+    private static final class Waiters {
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        int count; // guarded by the map's compute
+    }
+
+    private final ConcurrentHashMap<String, Waiters> byJobId = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a waiter for the job. The returned future completes once {@link #complete} is called for it;
+     * cancelling the future withdraws the registration.
+     */
+    CompletableFuture<Void> register(String jobId) {
+        Waiters waiters = byJobId.compute(jobId, (id, existing) -> {
+            Waiters w = existing == null ? new Waiters() : existing;
+            w.count++;
+            return w;
+        });
+        // Each waiter gets its own dependent, so cancelling one does not cancel the others
+        CompletableFuture<Void> waiter = waiters.done.thenApply(v -> v);
+        waiter.whenComplete((v, error) -> {
+            if (waiter.isCancelled()) unregister(jobId, waiters);
+        });
+        return waiter;
+    }
+
+    void complete(String jobId) {
+        if (byJobId.isEmpty()) return;
+        Waiters waiters = byJobId.remove(jobId);
+        if (waiters != null) waiters.done.complete(null);
+    }
+
+    /** Jobs that currently have at least one waiter. */
+    int size() {
+        return byJobId.size();
+    }
+
+    private void unregister(String jobId, Waiters waiters) {
+        byJobId.computeIfPresent(jobId, (id, current) -> current == waiters && --current.count == 0 ? null : current);
+    }
+}
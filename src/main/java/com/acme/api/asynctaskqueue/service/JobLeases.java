@@ -0,0 +1,142 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.retry.HierarchicalTimingWheel;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The leases of the attempts running on this node. An attempt acquires a lease on its job when it starts and
+ * gives it back with its outcome; only an attempt that still holds its lease may apply that outcome.
+ * <p/>
+ * One heartbeat renews every lease at once, by moving its expiry forward, so a heartbeat costs a pass over the
+ * leases and nothing else. It stops renewing an attempt's lease once the attempt is older than its own timeout,
+ * or than {@code maxAttemptMs} if that comes first; telling a hung handler from a slow one is left to the timeout.
+ * Expiry is kept on the deadline wheel of the {@link RetryScheduler}: a lease's timer is only re-armed, for the
+ * time it has left, when it fires and finds the lease renewed, so renewals do not touch the wheel and no lease is
+ * ever looked for. A lapsed lease gives its attempt up, which cancels an async handler's stage or interrupts a
+ * blocking handler's thread so that its thread and bulkhead permit come back, and is then handed to
+ * {@code expired}. Whatever a handler that ignores both does from then on is ignored as well.
+ */
+final class JobLeases {
+    private static final Logger logger = LoggerFactory.getLogger(JobLeases.class);
+
+    /** The attempt holding a lease, as far as the lease is concerned. */
+    interface Attempt {
+        /** Fails the attempt and stops it as far as it can be stopped. */
+        void giveUp(TimeoutException reason);
+    }
+
+    static final class Lease {
+        final Job job;
+        final long acquiredAt;
+        volatile long expiresAt;
+        volatile long renewedUntil;
+        volatile HierarchicalTimingWheel.Timeout timer;
+        private volatile Attempt attempt;
+
+        private Lease(Job job, long acquiredAt, long expiresAt, long renewedUntil) {
+            this.job = job;
+            this.acquiredAt = acquiredAt;
+            this.expiresAt = expiresAt;
+            this.renewedUntil = renewedUntil;
+        }
+
+        /**
+         * Called once the attempt is about to start.
+         *
+         * @param timeoutMs the attempt's timeout, past which its lease is no longer renewed; 0 or less for none
+         */
+        void attach(Attempt attempt, long timeoutMs) {
+            this.attempt = attempt;
+            if (timeoutMs > 0) renewedUntil = Math.min(renewedUntil, acquiredAt + timeoutMs);
+        }
+    }
+
+    private final RetryScheduler timers;
+    private final LeaseSettings settings;
+    private final Consumer<Job> expired;
+    private final Map<String, Lease> held = new ConcurrentHashMap<>();
+    private final AtomicBoolean beating = new AtomicBoolean();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * @param expired fails the attempt of a job whose lease lapsed, once it was given up; runs on the wheel's
+     *                ticker thread, so it must hand the work off
+     */
+    JobLeases(RetryScheduler timers, LeaseSettings settings, Consumer<Job> expired) {
+        this.timers = timers;
+        this.settings = settings;
+        this.expired = expired;
+    }
+
+    /** Called when an attempt starts. The heartbeat starts with the first lease. */
+    Lease acquire(Job job) {
+        long now = System.currentTimeMillis();
+        Lease lease = new Lease(job, now, now + settings.visibilityTimeoutMs(), now + settings.maxAttemptMs());
+        held.put(job.getJobId(), lease);
+        lease.timer = timers.deadline(settings.visibilityTimeoutMs(), () -> check(lease));
+        if (!beating.get() && beating.compareAndSet(false, true)) {
+            timers.deadline(settings.heartbeatMs(), this::heartbeat);
+        }
+        return lease;
+    }
+
+    /**
+     * Called with the attempt's outcome.
+     *
+     * @return false if the lease lapsed first, in which case the outcome must be dropped
+     */
+    boolean release(Lease lease) {
+        if (!held.remove(lease.job.getJobId(), lease)) return false;
+        lease.timer.cancel();
+        return true;
+    }
+
+    /** Leases currently held. */
+    int held() {
+        return held.size();
+    }
+
+    /** Leases that lapsed since the node started. */
+    long getExpirations() {
+        return expirations.get();
+    }
+
+    private void heartbeat() {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + settings.visibilityTimeoutMs();
+        for (Lease lease : held.values()) {
+            if (now < lease.renewedUntil) lease.expiresAt = expiresAt;
+        }
+        timers.deadline(settings.heartbeatMs(), this::heartbeat);
+    }
+
+    private void check(Lease lease) {
+        long left = lease.expiresAt - System.currentTimeMillis();
+        if (left > 0) {
+            if (held.get(lease.job.getJobId()) == lease) lease.timer = timers.deadline(left, () -> check(lease));
+            return;
+        }
+        if (!held.remove(lease.job.getJobId(), lease)) return;
+        expirations.incrementAndGet();
+        logger.warn("Lease of Job {} lapsed after {}ms; its attempt is given up", lease.job.getJobId(),
+                System.currentTimeMillis() - lease.acquiredAt);
+        try {
+            Attempt attempt = lease.attempt;
+            if (attempt != null) attempt.giveUp(new TimeoutException("The attempt's lease lapsed"));
+            expired.accept(lease.job);
+        } catch (RuntimeException e) {
+            logger.error("Could not give up the attempt of Job {}", lease.job.getJobId(), e);
+        }
+    }
+}
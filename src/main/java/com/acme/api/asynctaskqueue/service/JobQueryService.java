@@ -0,0 +1,61 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobCountsResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.JobPageResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.JobSummary;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.repo.JobIndex;
+import com.acme.api.asynctaskqueue.repo.JobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers job listings and counts from the repository's {@link JobIndex}, never by scanning the repository.
+ */
+@Service
+public class JobQueryService {
+
+    private final JobRepository repo;
+    private final int maxPageSize;
+
+    public JobQueryService(JobRepository repo, @Value("${jobs.query.max-page-size:500}") int maxPageSize) {
+        this.repo = repo;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Jobs in the order they entered their current status, oldest first. See {@link JobIndex#query}.
+     *
+     * @throws IllegalArgumentException for an invalid cursor or limit
+     */
+    public JobPageResponse findJobs(JobStatus status, String type, Instant since, String cursor, int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be at least 1");
+        JobIndex.Page page = repo.index().query(status, type, since == null ? null : since.toEpochMilli(), cursor,
+                Math.min(limit, maxPageSize));
+
+        List<JobSummary> jobs = new ArrayList<>(page.hits().size());
+        for (JobIndex.Hit hit : page.hits()) {
+            Job job = repo.findById(hit.jobId());
+            if (job == null) continue; // deleted since the index was read
+            jobs.add(new JobSummary(job.getJobId(), job.getType(), hit.status().name(), job.getAttempts(),
+                    Instant.ofEpochMilli(hit.statusChangedAtMs())));
+        }
+        return new JobPageResponse(jobs, page.nextCursor());
+    }
+
+    public JobCountsResponse countJobs() {
+        JobIndex index = repo.index();
+        Map<JobStatus, Integer> byStatus = new EnumMap<>(JobStatus.class);
+        for (JobStatus status : JobStatus.values()) {
+            byStatus.put(status, index.count(status));
+        }
+        return new JobCountsResponse(byStatus, index.countsByType());
+    }
+}
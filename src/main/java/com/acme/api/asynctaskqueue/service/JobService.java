@@ -1,23 +1,52 @@
 package com.acme.api.asynctaskqueue.service;
 
+import com.acme.api.asynctaskqueue.config.ClusterSettings;
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.executor.Bulkhead;
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.idempotency.IdempotencyStore;
 import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
 import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowResponse;
 import com.acme.api.asynctaskqueue.metrics.JobMetrics;
+import com.acme.api.asynctaskqueue.metrics.LatencyPhase;
 import com.acme.api.asynctaskqueue.model.*;
+import com.acme.api.asynctaskqueue.repo.JdbcJobRepository;
 import com.acme.api.asynctaskqueue.repo.JobRepository;
+import com.acme.api.asynctaskqueue.retention.JobRetentionService;
+import com.acme.api.asynctaskqueue.retention.JobTombstone;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.schedule.ScheduleStore;
+import com.acme.api.asynctaskqueue.worker.AsyncJobHandler;
+import com.acme.api.asynctaskqueue.worker.BatchJobHandler;
 import com.acme.api.asynctaskqueue.worker.JobHandler;
 import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.support.CronExpression;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * This is the class that manages the {@link Job} object lifecycle. It manages all updates of the object's
@@ -25,154 +54,803 @@ import java.util.concurrent.*;
  * <p/>
  * Job objects are created with an initial (default) state of QUEUED. Afterward, this service class will
  * update the status of the job object to one of the appropriate states declared in the {@link JobStatus}
- * enumeration {<i>RUNNING, FAILED, SUCCEEDED, COMPENSATED, and COMPENSATION_FAILED</i>}.
+ * enumeration {<i>RUNNING, RETRYING, FAILED, SUCCEEDED, COMPENSATED, and COMPENSATION_FAILED</i>}.
  * <p/>
  * Depending on the job resulting job status once the job is queued, this class will handle the job as
  * follows:
  * <br/><br/>
  * <ul>
- *     <li>All initial jobs are enqueued in the normal queue</li>
- *     <li>All failed and are eligible for retries are enqueued in the retry (single-threaded) queue (Backoff with Jitter)</li>
+ *     <li>All initial jobs are enqueued in the bulkhead of their type (the normal queue, unless the type was
+ *     registered with an {@link com.acme.api.asynctaskqueue.worker.ExecutionProfile} of its own)</li>
+ *     <li>All failed and are eligible for retries are parked in the {@link RetryScheduler} (Backoff with Jitter)</li>
  *     <li>Jobs that ultimately fail are placed in the compensation queue</li>
  * </ul>
- *
+ * <p/>
+ * Every handler is driven through a {@link CompletionStage}: an {@link AsyncJobHandler} gives the worker thread
+ * back as soon as it has started the job, and a blocking {@link JobHandler} is adapted to one that has
+ * finished by the time it returns. Either way the attempt's outcome is handled when the stage completes, and
+ * an attempt that outlives the job's timeout fails with a {@link TimeoutException} (and is retried like any
+ * other failure).
+ * <p/>
+ * Jobs of a {@link BatchJobHandler}'s type are first collected into batches by a {@link JobBatchCollector};
+ * each batch is one attempt in the bulkhead, but every job in it is tracked, retried and compensated on its own.
+ * <p/>
+ * Identical submissions of the types listed in {@code jobs.coalesce.types} are collapsed by a {@link JobCoalescer}:
+ * a duplicate of a job that is still queued, running or retrying is saved under its own id but only follows that
+ * job's transitions, so the work is done once and every submitter sees its outcome.
+ * <p/>
+ * A job submitted with a {@code runAt}, {@code delayMs} or {@code cron} waits as SCHEDULED in the
+ * {@link ScheduleStore} and is queued when it is due. A recurring job is one job per occurrence: queueing one
+ * schedules the next. Its due time and recurrence are persisted, so after a restart it goes back into the store.
+ * <p/>
+ * A workflow is a set of jobs submitted together that depend on each other; {@link JobWorkflows} queues each job
+ * once its parents have succeeded and, if one fails for good, cancels the jobs still blocked and compensates the
+ * succeeded ones in reverse topological order.
+ * <p/>
+ * In cluster mode ({@code jobs.cluster.enabled}) a submitted job is not enqueued where it was submitted but left
+ * in the shared job table, and a {@link JobClaimer} on every node claims jobs from there. A claimed job's attempts,
+ * retries and compensation then all happen on the node that claimed it. The submitting node follows the job by
+ * re-reading its row, so its long-polls, event stream and counts see it progress, a poll interval late. Workflow
+ * jobs run on the node that submitted the workflow, and coalescing is off, since both need every transition as
+ * it happens.
+ * <p/>
+ * Every attempt holds a lease on its job ({@link JobLeases}), renewed by a heartbeat for up to its timeout or
+ * {@code jobs.lease.max-attempt-ms}, whichever is shorter. An attempt whose lease lapses, because its handler hangs,
+ * is given up and failed like one that timed out, and the job goes on to its next attempt; whatever the hung
+ * handler does later is ignored. In cluster mode the claimed jobs are leased in the table as well, and a node
+ * takes over the jobs of a node that stopped renewing them: an attempt that was running there counts as failed.
  */
 @Service
-public class JobService {
+public class JobService implements DisposableBean {
     private static final Logger logger = LoggerFactory.getLogger(JobService.class);
 
     private final JobRepository repo;
-    private final ThreadPoolExecutor normalExecutor;
+    private final JobBulkheads bulkheads;
     private final ThreadPoolExecutor compensationExecutor;
-    private final ScheduledExecutorService retryScheduler;
+    private final RetryScheduler retryScheduler;
     private final JobHandlerRegistry handlers;
     private final JobMetrics metrics;
-    private final ConcurrentMap<String, String> idemIndex = new ConcurrentHashMap<>();
+    private final IdempotencyStore idempotency;
+    private final JobRetentionService retention;
+    private final JobCompletionWaiters waiters = new JobCompletionWaiters();
+    private final List<JobTransitionListener> listeners;
+    private final long defaultTimeoutMs;
+    private final PayloadStorage payloadStorage;
+    private final JobBatchCollector batches;
+    private final Set<String> coalescedTypes;
+    private final JobCoalescer coalescer = new JobCoalescer(this::follow);
+    private final ScheduleStore schedules;
+    private final JobWorkflows workflows;
+    private final JobClaimer claimer; // null unless in cluster mode
+    private final JobLeases leases;
+    /** Keyed submissions between claiming their key and saving their job, for duplicates to wait on. */
+    private final ConcurrentHashMap<String, CompletableFuture<Job>> admitting = new ConcurrentHashMap<>();
 
     private static final int MAX_ATTEMPTS = 3;
     private static final long BASE_DELAY_MS = 500L;
+    private static final long CLAIM_WAIT_MS = 1000L;
+
+    public JobService(JobRepository repo,
+                      JobBulkheads bulkheads,
+                      ThreadPoolExecutor compensationExecutor,
+                      RetryScheduler retryScheduler,
+                      JobHandlerRegistry handlers,
+                      JobMetrics metrics,
+                      IdempotencyStore idempotency,
+                      JobRetentionService retention) {
+        this(repo, bulkheads, compensationExecutor, retryScheduler, handlers, metrics, idempotency, retention, List.of(),
+                0, PayloadStorage.MAP, Set.of(), new ScheduleStore(100, 0), ClusterSettings.disabled(),
+                LeaseSettings.defaults());
+    }
 
+    @Autowired
     public JobService(JobRepository repo,
-                      @Qualifier("normalJobExecutor") ThreadPoolExecutor normalExecutor,
+                      JobBulkheads bulkheads,
                       @Qualifier("compensationJobExecutor") ThreadPoolExecutor compensationExecutor,
-                      ScheduledExecutorService retryScheduler,
+                      RetryScheduler retryScheduler,
                       JobHandlerRegistry handlers,
-                      JobMetrics metrics) {
+                      JobMetrics metrics,
+                      IdempotencyStore idempotency,
+                      JobRetentionService retention,
+                      List<JobTransitionListener> listeners,
+                      @Value("${jobs.handler.default-timeout-ms:0}") long defaultTimeoutMs,
+                      @Value("${jobs.payload.storage:MAP}") PayloadStorage payloadStorage,
+                      @Value("${jobs.coalesce.types:}") Set<String> coalescedTypes,
+                      ScheduleStore schedules,
+                      ClusterSettings cluster,
+                      LeaseSettings leaseSettings) {
         this.repo = repo;
-        this.normalExecutor = normalExecutor;
+        this.bulkheads = bulkheads;
         this.compensationExecutor = compensationExecutor;
         this.retryScheduler = retryScheduler;
         this.handlers = handlers;
         this.metrics = metrics;
+        this.idempotency = idempotency;
+        this.retention = retention;
+        this.listeners = List.copyOf(listeners);
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.payloadStorage = payloadStorage;
+        this.batches = new JobBatchCollector(retryScheduler, this::dispatchBatch, () -> backoffWithJitter(1));
+        this.coalescedTypes = Set.copyOf(coalescedTypes);
+        this.schedules = schedules;
+        schedules.releaseTo(this::release);
+        this.workflows = new JobWorkflows(this::releaseWorkflowJob, this::cancelWorkflowJob, this::compensateSucceeded,
+                retryScheduler);
+        this.leases = new JobLeases(retryScheduler, leaseSettings, this::onLeaseExpired);
+        if (!cluster.enabled()) {
+            this.claimer = null;
+        } else if (repo instanceof JdbcJobRepository shared) {
+            this.claimer = new JobClaimer(shared, cluster, leaseSettings, job -> enqueue(job, false), this::reclaim,
+                    change -> onRemoteTransition(change.job(), change.from()));
+        } else {
+            throw new IllegalStateException("jobs.cluster.enabled requires jobs.repository.mode=jdbc");
+        }
     }
 
     public Job submitJob(JobRequest req) {
-        if (req.idempotencyKey() != null) {
-            String existingId = idemIndex.get(req.idempotencyKey());
-            if (existingId != null) {
-                logger.info("Duplicate submission detected for idempotency key {}. Returning existing job {}", req.idempotencyKey(), existingId);
-                return repo.findById(existingId);
-            }
+        Job job = new Job(UUID.randomUUID().toString(), req.type(), req.payload(), req.idempotencyKey(), payloadStorage);
+        job.setPriority(req.priority());
+        job.setTimeoutMs(req.timeoutMs());
+        Instant runAt = runAt(req);
+        if (runAt != null) {
+            job.setSchedule(runAt, req.cron());
+            job.setStatus(JobStatus.SCHEDULED);
         }
 
-        Job job = new Job(UUID.randomUUID().toString(), req.type(), req.payload(), req.idempotencyKey());
+        // In cluster mode a job due now is saved by offering it, for whichever node claims it
+        boolean offered = claimer != null && runAt == null;
+        if (job.getIdempotencyKey() == null) {
+            saveOrOffer(job, offered);
+        } else {
+            // Registered before the key is claimed, so a duplicate that sees the key can always wait for the save
+            CompletableFuture<Job> saved = new CompletableFuture<>();
+            admitting.put(job.getJobId(), saved);
+            try {
+                String existingId = idempotency.claim(job.getIdempotencyKey(), job.getJobId());
+                if (existingId != null) {
+                    logger.info("Duplicate submission detected for idempotency key {}. Returning existing job {}", req.idempotencyKey(), existingId);
+                    return awaitClaimedJob(req.idempotencyKey(), existingId);
+                }
+                saveOrOffer(job, offered);
+                saved.complete(job);
+            } finally {
+                admitting.remove(job.getJobId());
+                saved.complete(null); // no-op once saved
+            }
+        }
+        notifyListeners(job, null);
 
-        if (job.getIdempotencyKey() != null) {
-            idemIndex.putIfAbsent(job.getIdempotencyKey(), job.getJobId());
+        if (runAt != null) {
+            schedules.add(job.getJobId(), runAt.toEpochMilli());
+            logger.info("Job {} scheduled for {} (type: {}, cron: {})", job.getJobId(), runAt, job.getType(), job.getCron());
+            return job;
         }
 
-        repo.save(job);
+        boolean coalesced = claimer == null && coalescedTypes.contains(job.getType());
+        if (coalesced) {
+            Job leader = coalescer.join(job);
+            if (leader != null) {
+                logger.info("Job {} coalesced with identical Job {} (type: {})", job.getJobId(), leader.getJobId(), job.getType());
+                return job;
+            }
+        }
 
         try {
-            enqueue(job);
+            if (!offered) enqueue(job, false, true);
         } catch (RejectedExecutionException rex) {
             logger.warn("Job {} rejected due to backpressure (queue full)", job.getJobId(), rex);
+            // The client is told the job was not accepted, so it must not be counted, listed or recovered either
+            repo.delete(job.getJobId());
+            if (job.getIdempotencyKey() != null) {
+                // The job never ran, so a retry with the same key must be allowed to submit it again
+                idempotency.release(job.getIdempotencyKey(), job.getJobId());
+            }
             throw rex;
         }
+        if (coalesced) coalescer.lead(job);
 
         logger.info("Job {} submitted successfully (type: {}, idempotencyKey: {})", job.getJobId(), job.getType(), job.getIdempotencyKey());
         return job;
     }
 
-    private void enqueue(Job job) {
-        normalExecutor.execute(() -> runOnce(job.getJobId()));
+    /**
+     * Submits the jobs of a workflow. The workflow is accepted as a whole: jobs that find the executor full are
+     * parked in the retry scheduler rather than rejected, since the jobs before them may already be running.
+     *
+     * @throws IllegalArgumentException if a job has no handler, or the workflow is invalid (see {@link JobWorkflows})
+     */
+    public WorkflowResponse submitWorkflow(WorkflowRequest req) {
+        List<WorkflowJobRequest> requests = req.jobs() == null ? List.of() : req.jobs();
+        for (WorkflowJobRequest node : requests) {
+            handlers.get(node.type());
+        }
+        JobWorkflows.Workflow workflow = workflows.submit(requests, node -> {
+            Job job = new Job(UUID.randomUUID().toString(), node.type(), node.payload(), null, payloadStorage);
+            job.setPriority(node.priority());
+            job.setTimeoutMs(node.timeoutMs());
+            return job;
+        }, job -> {
+            repo.save(job);
+            notifyListeners(job, null);
+        });
+        return workflow.toResponse();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the workflow does not exist, or finished more than an hour ago
+     */
+    public WorkflowResponse getWorkflow(String workflowId) {
+        WorkflowResponse workflow = workflows.find(workflowId);
+        if (workflow == null) throw new IllegalArgumentException("Workflow not found");
+        return workflow;
+    }
+
+    /**
+     * Admits the jobs of one bulk batch in order, each exactly as {@link #submitJob(JobRequest)} would.
+     * Admission stops at the first job that is rejected due to backpressure, so the admitted jobs are always
+     * a prefix of the batch and nothing after the rejected job has been saved or enqueued.
+     *
+     * @return the admitted jobs; shorter than {@code requests} if the queue filled up
+     */
+    public List<Job> submitJobs(List<JobRequest> requests) {
+        List<Job> admitted = new ArrayList<>(requests.size());
+        for (JobRequest req : requests) {
+            try {
+                admitted.add(submitJob(req));
+            } catch (RejectedExecutionException rex) {
+                break;
+            }
+        }
+        return admitted;
+    }
+
+    /**
+     * The owner of an idempotency key saves its job right after claiming the key, so a concurrent duplicate
+     * may look it up a moment too early. It then blocks on the owner's entry in {@code admitting} until the save
+     * is done. If the owner failed before saving, the caller should simply try again.
+     */
+    private Job awaitClaimedJob(String key, String jobId) {
+        Job existing = repo.findById(jobId);
+        if (existing != null) return existing;
+        JobTombstone evicted = retention.findTombstone(jobId);
+        if (evicted != null) return evicted.toJob();
+
+        CompletableFuture<Job> saved = admitting.get(jobId);
+        if (saved == null) {
+            existing = repo.findById(jobId); // saved since the first lookup
+        } else {
+            try {
+                existing = saved.get(CLAIM_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                logger.warn("Job {} for idempotency key {} was not saved in time", jobId, key, e);
+            }
+        }
+        if (existing != null) return existing;
+        throw new RejectedExecutionException("Job " + jobId + " for idempotency key " + key + " is still being admitted");
+    }
+
+    /**
+     * When a scheduled submission is first due, or {@code null} if it should run right away.
+     *
+     * @throws IllegalArgumentException if the request asks for more than one of runAt, delayMs and cron, or one
+     *                                  of them is invalid
+     */
+    private static Instant runAt(JobRequest req) {
+        int given = (req.runAt() != null ? 1 : 0) + (req.delayMs() != null ? 1 : 0) + (req.cron() != null ? 1 : 0);
+        if (given > 1) throw new IllegalArgumentException("Only one of runAt, delayMs and cron may be given");
+        if (req.delayMs() != null) {
+            if (req.delayMs() < 0) throw new IllegalArgumentException("delayMs must not be negative");
+            return Instant.now().plusMillis(req.delayMs());
+        }
+        if (req.cron() != null) {
+            Instant first = nextOccurrence(req.cron(), Instant.now());
+            if (first == null) throw new IllegalArgumentException("cron expression " + req.cron() + " never matches");
+            return first;
+        }
+        return req.runAt();
+    }
+
+    /** The first match of a cron expression after {@code after}, in UTC; {@code null} if there is none. */
+    private static Instant nextOccurrence(String cron, Instant after) {
+        ZonedDateTime next = CronExpression.parse(cron).next(after.atZone(ZoneOffset.UTC));
+        return next == null ? null : next.toInstant();
     }
 
-    private void runOnce(String jobId) {
+    /**
+     * Called by the {@link ScheduleStore} when a scheduled job is due: it is queued, and the next occurrence of a
+     * recurring job is scheduled. A job the executor rejects stays QUEUED and the store releases it again later.
+     */
+    private void release(String jobId) {
         Job job = repo.findById(jobId);
         if (job == null) return;
+        if (job.getStatus() == JobStatus.SCHEDULED) {
+            transition(job, JobStatus.QUEUED, UnaryOperator.identity());
+            if (job.getCron() != null) scheduleNext(job);
+        }
+        if (job.getStatus() == JobStatus.QUEUED) enqueueOrOffer(job, false);
+    }
 
-        logger.info("Execution started for Job {}", jobId);
-        job.setStatus(JobStatus.RUNNING);
-        job.setStartedAt(Optional.ofNullable(job.getStartedAt()).orElse(Instant.now()));
-        repo.save(job);
-
-        JobHandler handler = handlers.get(job.getType());
-        long startTime = System.currentTimeMillis();
+    /**
+     * Every occurrence of a recurring job is a job of its own. An occurrence that is still running when the next
+     * one is due does not hold it back.
+     */
+    private void scheduleNext(Job job) {
+        Instant next = nextOccurrence(job.getCron(), Instant.now());
+        if (next == null) return;
+        Job successor = new Job(UUID.randomUUID().toString(), job.getType(), job.getPayload(), null, payloadStorage);
+        successor.setPriority(job.getPriority());
+        successor.setTimeoutMs(job.getTimeoutMs());
+        successor.setSchedule(next, job.getCron());
+        successor.setStatus(JobStatus.SCHEDULED);
+        repo.save(successor);
+        notifyListeners(successor, null);
+        schedules.add(successor.getJobId(), next.toEpochMilli());
+    }
 
+    /**
+     * Queues a workflow job that depends on nothing or whose parents have all succeeded.
+     */
+    private void releaseWorkflowJob(Job job) {
+        if (job.getStatus() == JobStatus.BLOCKED) transition(job, JobStatus.QUEUED, UnaryOperator.identity());
         try {
-            handler.execute(job.getPayload());
+            enqueue(job, false);
+        } catch (RejectedExecutionException rex) {
+            logger.warn("Workflow Job {} rejected (executor full); parking it", job.getJobId());
+            retryScheduler.schedule(job.getJobId(), backoffWithJitter(1), () -> enqueue(job, false));
+        }
+    }
 
-            job.setStatus(JobStatus.SUCCEEDED);
-            job.setCompletedAt(Instant.now());
-            repo.save(job);
+    private void cancelWorkflowJob(Job job) {
+        Instant completedAt = Instant.now();
+        transition(job, JobStatus.CANCELLED, s -> s.withCompletedAt(completedAt));
+        logger.info("Job {} CANCELLED: its workflow failed", job.getJobId());
+    }
 
-            logger.info("Execution SUCCEEDED for Job {}", jobId);
-        } catch (Exception ex) {
-            job.setLastError(ex.getMessage());
-            int retryCount = job.incrementAttempts();
+    /** The node that offers a job must not save it as well; it would stay resident here after another node ran it. */
+    private void saveOrOffer(Job job, boolean offered) {
+        if (offered) {
+            claimer.offer(job);
+        } else {
             repo.save(job);
+        }
+    }
+
+    /** A new job goes to the local executor, or in cluster mode to whichever node claims it. */
+    private void enqueueOrOffer(Job job, boolean callerMayRun) {
+        if (claimer != null) {
+            claimer.offer(job);
+        } else {
+            enqueue(job, false, callerMayRun);
+        }
+    }
+
+    /** From the service's own threads, which a CALLER_RUNS bulkhead must not make run the job. */
+    private void enqueue(Job job, boolean retry) {
+        enqueue(job, retry, false);
+    }
+
+    /**
+     * @param callerMayRun true only on the request thread that submitted the job (see {@link Bulkhead})
+     */
+    private void enqueue(Job job, boolean retry, boolean callerMayRun) {
+        if (handlers.find(job.getType()).orElse(null) instanceof BatchJobHandler batchHandler) {
+            batches.add(job, retry, batchHandler.batchPolicy());
+            return;
+        }
+        String jobId = job.getJobId();
+        long enqueuedAt = System.nanoTime();
+        bulkheads.forType(job.getType())
+                .executeAsync(job.getType(), job.getPriority(), retry, callerMayRun, () -> runOnce(jobId, enqueuedAt));
+    }
 
-            logger.warn("Execution FAILED for Job {} on attempt {}: {}", jobId, retryCount, ex.getMessage());
+    /**
+     * Starts one attempt of the job. The returned stage completes once the attempt's outcome has been handled,
+     * which for an async handler is usually long after this method returned.
+     */
+    private CompletableFuture<Void> runOnce(String jobId, long enqueuedAt) {
+        Job job = repo.findById(jobId);
+        if (job == null) return CompletableFuture.completedFuture(null);
+        metrics.record(job.getType(), LatencyPhase.QUEUE_WAIT, System.nanoTime() - enqueuedAt);
 
-            if (retryCount < MAX_ATTEMPTS) {
-                long delay = backoffWithJitter(retryCount);
-                logger.info("Scheduling retry {} for Job {} in {}ms", retryCount, jobId, delay);
+        logger.info("Execution started for Job {}", jobId);
+        transition(job, JobStatus.RUNNING, JobService::started);
+        JobLeases.Lease lease = leases.acquire(job);
 
-                retryScheduler.schedule(() -> {
-                    try {
-                        enqueue(Objects.requireNonNull(repo.findById(jobId)));
-                    } catch (RejectedExecutionException rex) {
-                        logger.warn("Retry for Job {} rejected by scheduler (queue full)", jobId, rex);
+        JobHandler handler = handlers.get(job.getType());
+        long startTime = System.nanoTime();
+
+        AsyncJobHandler async = AsyncJobHandler.of(handler);
+        return AttemptDeadline.run(() -> async.executeAsync(job.getPayload()), timeoutMs(job), retryScheduler,
+                        List.of(lease))
+                .handle((ignored, error) -> {
+                    if (!leases.release(lease)) {
+                        logger.warn("Dropping the outcome of Job {}'s attempt; its lease had lapsed", jobId);
+                        return null;
                     }
-                }, delay, TimeUnit.MILLISECONDS);
-            } else {
-                job.setStatus(JobStatus.FAILED);
-                repo.save(job);
-
-                logger.error("Max attempts reached for Job {}. Triggering compensation.", jobId);
-
-                compensationExecutor.execute(() -> {
-                    logger.info("Compensation started for Job {}", jobId);
-                    try {
-                        handler.compensate(Map.of(
-                                "type", job.getType(),
-                                "payload", job.getPayload(),
-                                "jobId", job.getJobId()
-                        ));
-                        job.setStatus(JobStatus.COMPENSATED);
-                        logger.info("Job {} COMPENSATED", jobId);
-                    } catch (Exception cx) {
-                        String lastKnownError = job.getLastError() == null ? "UNKNOWN" : job.getLastError();
-                        job.setStatus(JobStatus.COMPENSATION_FAILED);
-                        job.setLastError(lastKnownError + " | compensation: " + cx.getMessage());
-                        logger.error("Compensation FAILED for Job {}. Last known error: {}", jobId, lastKnownError, cx);
-                    } finally {
-                        job.setCompletedAt(Instant.now());
-                        repo.save(job);
-                        logger.info("Job {} final status: {}", jobId, job.getStatus());
-                        // Record metrics here after compensation
-                        long duration = System.currentTimeMillis() - startTime;
-                        metrics.recordJobDuration(duration);
+                    recordExecution(job, startTime);
+                    finishAttempt(job, handler, error);
+                    return null;
+                });
+    }
+
+    /**
+     * Hands a collected batch to the bulkhead of its type, as one attempt. The batch is as urgent as its most
+     * urgent job, and only a batch of nothing but retries goes to the retry lane.
+     */
+    private void dispatchBatch(String type, List<JobBatchCollector.Entry> batch) {
+        JobPriority priority = JobPriority.LOW;
+        boolean retry = true;
+        for (JobBatchCollector.Entry entry : batch) {
+            if (entry.priority().ordinal() < priority.ordinal()) priority = entry.priority();
+            retry &= entry.retry();
+        }
+        bulkheads.forType(type).executeAsync(type, priority, retry, false, () -> runBatch(type, batch));
+    }
+
+    /**
+     * Runs one batch. Every job moves to RUNNING and gets its own outcome from the batch result; a batch that
+     * fails as a whole (or times out) fails each of its jobs.
+     */
+    private CompletableFuture<Void> runBatch(String type, List<JobBatchCollector.Entry> batch) {
+        List<Job> jobs = new ArrayList<>(batch.size());
+        List<JobLeases.Lease> jobLeases = new ArrayList<>(batch.size());
+        long now = System.nanoTime();
+        for (JobBatchCollector.Entry entry : batch) {
+            Job job = repo.findById(entry.jobId());
+            if (job == null) continue;
+            metrics.record(type, LatencyPhase.QUEUE_WAIT, now - entry.enqueuedAt());
+            transition(job, JobStatus.RUNNING, JobService::started);
+            jobs.add(job);
+            jobLeases.add(leases.acquire(job));
+        }
+        if (jobs.isEmpty()) return CompletableFuture.completedFuture(null);
+        logger.info("Execution started for a batch of {} {} jobs", jobs.size(), type);
+
+        BatchJobHandler handler = (BatchJobHandler) handlers.get(type);
+        List<Map<String, Object>> payloads = jobs.stream().map(Job::getPayload).toList();
+        long startTime = System.nanoTime();
+
+        return AttemptDeadline.run(() -> CompletableFuture.completedFuture(handler.executeBatch(payloads)),
+                        batchTimeoutMs(jobs), retryScheduler, jobLeases)
+                .handle((result, error) -> {
+                    if (error == null && result == null) {
+                        error = new IllegalStateException("The batch handler returned no result");
+                    }
+                    for (int i = 0; i < jobs.size(); i++) {
+                        Job job = jobs.get(i);
+                        if (!leases.release(jobLeases.get(i))) continue; // given up already
+                        try {
+                            recordExecution(job, startTime);
+                            finishAttempt(job, handler, error != null ? error : result.failure(i));
+                        } catch (RuntimeException e) {
+                            logger.error("Could not record the outcome of Job {} in its batch", job.getJobId(), e);
+                        }
                     }
+                    return null;
                 });
-                return; // do not record metrics twice
+    }
+
+    /**
+     * The batch may run as long as its most patient job allows; if any job has no timeout, neither has the batch.
+     */
+    private long batchTimeoutMs(List<Job> jobs) {
+        long timeoutMs = 0;
+        for (Job job : jobs) {
+            long jobTimeoutMs = timeoutMs(job);
+            if (jobTimeoutMs <= 0) return 0;
+            timeoutMs = Math.max(timeoutMs, jobTimeoutMs);
+        }
+        return timeoutMs;
+    }
+
+    private long timeoutMs(Job job) {
+        return job.getTimeoutMs() > 0 ? job.getTimeoutMs() : defaultTimeoutMs;
+    }
+
+    /**
+     * Applies the outcome of one attempt: {@code error} is {@code null} if the handler succeeded.
+     */
+    private void finishAttempt(Job job, JobHandler handler, Throwable error) {
+        if (error == null) {
+            try {
+                onSucceeded(job);
+                return;
+            } catch (Exception ex) {
+                error = ex;
+            }
+        }
+        onFailed(job, handler, error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error);
+    }
+
+    private void onSucceeded(Job job) {
+        Instant now = Instant.now();
+        transition(job, JobStatus.SUCCEEDED, s -> s.withCompletedAt(now));
+        metrics.record(job.getType(), LatencyPhase.END_TO_END, System.nanoTime() - job.getSubmittedAtNanos());
+
+        logger.info("Execution SUCCEEDED for Job {}", job.getJobId());
+    }
+
+    private void onFailed(Job job, JobHandler handler, Throwable ex) {
+        String jobId = job.getJobId();
+        // Only this attempt can move the job on from RUNNING, so the count it sees is the one it replaces
+        int retryCount = job.getAttempts() + 1;
+        JobStatus next = retryCount < MAX_ATTEMPTS ? JobStatus.RETRYING : JobStatus.FAILED;
+        transition(job, next, s -> s.withAttempts(retryCount).withLastError(ex.getMessage()));
+
+        logger.warn("Execution FAILED for Job {} on attempt {}: {}", jobId, retryCount, ex.getMessage());
+
+        if (retryCount < MAX_ATTEMPTS) {
+            long delay = backoffWithJitter(retryCount);
+            logger.info("Scheduling retry {} for Job {} in {}ms", retryCount, jobId, delay);
+
+            // A rejected attempt throws back into the scheduler, which parks it again
+            long parkedAt = System.nanoTime();
+            retryScheduler.schedule(jobId, delay, () -> {
+                enqueue(Objects.requireNonNull(repo.findById(jobId)), true);
+                metrics.record(job.getType(), LatencyPhase.RETRY_DELAY, System.nanoTime() - parkedAt);
+            });
+        } else {
+            logger.error("Max attempts reached for Job {}. Triggering compensation.", jobId);
+            compensateOrPark(job, handler);
+        }
+    }
+
+    /**
+     * Fails an attempt whose lease lapsed, as if it had timed out. Called on the deadline wheel's thread, so the
+     * failure is handed to the compensation executor, and parked like a compensation if that is full.
+     */
+    private void onLeaseExpired(Job job) {
+        String jobId = job.getJobId();
+        Runnable failure = () -> onFailed(job, handlers.get(job.getType()),
+                new TimeoutException("The attempt's lease lapsed"));
+        try {
+            compensationExecutor.execute(failure);
+        } catch (RejectedExecutionException rex) {
+            logger.warn("Failing Job {}'s lapsed attempt rejected (compensation executor full); parking it", jobId);
+            retryScheduler.schedule(jobId, backoffWithJitter(1), () -> compensationExecutor.execute(failure));
+        }
+    }
+
+    /**
+     * Cluster mode: carries on with a job taken over from a node whose lease lapsed. An attempt that was running
+     * there counts as a failed one; anything else is picked up where it was left.
+     */
+    private void reclaim(Job job) {
+        try {
+            JobHandler handler = handlers.get(job.getType());
+            switch (job.getStatus()) {
+                case RUNNING -> onFailed(job, handler, new TimeoutException("The lease of the node running it lapsed"));
+                case FAILED -> compensateOrPark(job, handler);
+                case QUEUED, RETRYING -> retryScheduler.schedule(job.getJobId(), 0,
+                        () -> enqueue(job, job.getStatus() == JobStatus.RETRYING));
+                default -> logger.warn("Job {} was taken over as {}; nothing to do", job.getJobId(), job.getStatus());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Cannot carry on with Job {} taken over from another node", job.getJobId(), e);
+        }
+    }
+
+    private void compensateOrPark(Job job, JobHandler handler) {
+        try {
+            compensate(job, handler);
+        } catch (RejectedExecutionException rex) {
+            // The scheduler parks it again for as long as the compensation executor stays full
+            logger.warn("Compensation of Job {} rejected (compensation executor full); parking it", job.getJobId());
+            retryScheduler.schedule(job.getJobId(), backoffWithJitter(1), () -> compensate(job, handler));
+        }
+    }
+
+    /**
+     * Every attempt counts towards the average job time, whatever its outcome; compensation is timed separately.
+     */
+    private void recordExecution(Job job, long startTime) {
+        long duration = System.nanoTime() - startTime;
+        metrics.recordJobDuration(TimeUnit.NANOSECONDS.toMillis(duration));
+        metrics.record(job.getType(), LatencyPhase.EXECUTION, duration);
+    }
+
+    private void compensate(Job job, JobHandler handler) {
+        String jobId = job.getJobId();
+        compensationExecutor.execute(() -> {
+            logger.info("Compensation started for Job {}", jobId);
+            long startTime = System.nanoTime();
+            JobStatus outcome = JobStatus.COMPENSATION_FAILED;
+            String lastError = job.getLastError();
+            try {
+                handler.compensate(compensationRequest(job));
+                outcome = JobStatus.COMPENSATED;
+                logger.info("Job {} COMPENSATED", jobId);
+            } catch (Exception cx) {
+                String lastKnownError = lastError == null ? "UNKNOWN" : lastError;
+                lastError = lastKnownError + " | compensation: " + cx.getMessage();
+                logger.error("Compensation FAILED for Job {}. Last known error: {}", jobId, lastKnownError, cx);
+            } finally {
+                Instant completedAt = Instant.now();
+                String error = lastError;
+                transition(job, outcome, s -> s.withLastError(error).withCompletedAt(completedAt));
+                logger.info("Job {} final status: {}", jobId, job.getStatus());
+                long now = System.nanoTime();
+                metrics.record(job.getType(), LatencyPhase.COMPENSATION, now - startTime);
+                metrics.record(job.getType(), LatencyPhase.END_TO_END, now - job.getSubmittedAtNanos());
+            }
+        });
+    }
+
+    /**
+     * Compensates a workflow job that succeeded before its workflow failed. The job stays SUCCEEDED; the outcome
+     * goes to {@code then}, which records it in the workflow.
+     */
+    private void compensateSucceeded(Job job, Consumer<JobStatus> then) {
+        String jobId = job.getJobId();
+        Runnable compensation = () -> {
+            logger.info("Compensation started for succeeded Job {} (its workflow failed)", jobId);
+            long startTime = System.nanoTime();
+            JobStatus outcome = JobStatus.COMPENSATION_FAILED;
+            try {
+                handlers.get(job.getType()).compensate(compensationRequest(job));
+                outcome = JobStatus.COMPENSATED;
+            } catch (Exception cx) {
+                logger.error("Compensation FAILED for succeeded Job {}", jobId, cx);
+            } finally {
+                metrics.record(job.getType(), LatencyPhase.COMPENSATION, System.nanoTime() - startTime);
+                then.accept(outcome);
+            }
+        };
+        try {
+            compensationExecutor.execute(compensation);
+        } catch (RejectedExecutionException rex) {
+            logger.warn("Compensation of Job {} rejected (compensation executor full); parking it", jobId);
+            retryScheduler.schedule(jobId, backoffWithJitter(1), () -> compensationExecutor.execute(compensation));
+        }
+    }
+
+    private static Map<String, Object> compensationRequest(Job job) {
+        return Map.of(
+                "type", job.getType(),
+                "payload", job.getPayload(),
+                "jobId", job.getJobId()
+        );
+    }
+
+    /**
+     * In cluster mode, starts claiming jobs once the application, and with it every handler, is ready.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startClaiming() {
+        if (claimer != null) claimer.start();
+    }
+
+    /**
+     * Stops claiming jobs in cluster mode. Jobs already claimed are left to finish.
+     */
+    @Override
+    public void destroy() {
+        if (claimer != null) claimer.stop();
+    }
+
+    /** Jobs this node has claimed from the shared table; always 0 outside cluster mode. */
+    public long getClaimedJobs() {
+        return claimer == null ? 0 : claimer.getClaimed();
+    }
+
+    /** Jobs this node has taken over from nodes whose leases lapsed; always 0 outside cluster mode. */
+    public long getReclaimedJobs() {
+        return claimer == null ? 0 : claimer.getReclaimed();
+    }
+
+    /** Attempts given up because their lease lapsed. */
+    public long getExpiredLeases() {
+        return leases.getExpirations();
+    }
+
+    /**
+     * Picks up the jobs a durable repository found in flight when the previous process stopped. Jobs that
+     * were queued or running are enqueued again (the interrupted attempt is not counted), jobs waiting for
+     * compensation go straight to the compensation executor. Anything that does not fit in the queues right
+     * now is parked in the retry scheduler instead of being dropped. Workflows are not persisted, so a job that
+     * was still blocked in one is cancelled. Jobs that had already finished go to retention.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeRecoveredJobs() {
+        retention.onRecovered(repo.findRetained());
+        Collection<Job> recovered = repo.findRecoverable();
+        if (recovered.isEmpty()) return;
+
+        logger.info("Resuming {} jobs recovered from the repository", recovered.size());
+        for (Job job : recovered) {
+            if (claimer != null) claimer.adopt(job);
+            resume(job);
+        }
+    }
+
+    private void resume(Job job) {
+        try {
+            if (job.getStatus() == JobStatus.FAILED) {
+                compensate(job, handlers.get(job.getType()));
+            } else if (job.getStatus() == JobStatus.BLOCKED) {
+                cancelWorkflowJob(job);
+            } else if (job.getStatus() == JobStatus.SCHEDULED && job.getRunAt() != null) {
+                // Released (right away if it fell due while the process was down) like any other scheduled job
+                schedules.add(job.getJobId(), job.getRunAt().toEpochMilli());
+            } else {
+                if (job.getStatus() != JobStatus.QUEUED) transition(job, JobStatus.QUEUED, UnaryOperator.identity());
+                enqueue(job, false);
             }
+        } catch (RejectedExecutionException rex) {
+            retryScheduler.schedule(job.getJobId(), backoffWithJitter(1), () -> {
+                if (job.getStatus() == JobStatus.FAILED) {
+                    compensate(job, handlers.get(job.getType()));
+                } else {
+                    enqueue(job, false);
+                }
+            });
+        } catch (IllegalArgumentException noHandler) {
+            logger.error("Cannot resume Job {}: {}", job.getJobId(), noHandler.getMessage());
         }
+    }
+
+    /**
+     * Every status change after submission goes through here: the job moves to its new state in one atomic step
+     * (see {@link Job#transition}), is saved, the {@link JobTransitionListener}s are told and, once it is terminal,
+     * it is handed to retention and to anybody waiting for it.
+     *
+     * @throws IllegalStateException if the job's status does not lead to {@code status}, e.g. it already finished
+     */
+    private void transition(Job job, JobStatus status, UnaryOperator<JobState> change) {
+        JobStatus from = job.transition(status, change).status();
+        repo.save(job);
+        notifyListeners(job, from);
+        coalescer.onTransition(job);
+        workflows.onTransition(job, status);
+        if (claimer != null) claimer.onTransition(job, status);
+        if (status.isTerminal()) {
+            retention.onTerminal(job);
+            waiters.complete(job.getJobId());
+        }
+    }
+
+    /**
+     * Cluster mode: a job submitted here changed status on the node that claimed it. Listeners and waiters hear of
+     * it as of a local transition; saving and retrying the job are up to that node. A finished job is retained here
+     * like a local one, so that it leaves this node's index too.
+     */
+    private void onRemoteTransition(Job job, JobStatus from) {
+        notifyListeners(job, from);
+        if (job.getStatus().isTerminal()) {
+            retention.onTerminal(job);
+            waiters.complete(job.getJobId());
+        }
+    }
+
+    /**
+     * Moves a coalesced follower to its leader's state. A follower that joined a queued leader has not seen it
+     * start, so it passes through RUNNING on the way to a later status.
+     */
+    private void follow(Job follower, JobState leader) {
+        JobStatus current = follower.getStatus();
+        if (current == leader.status()) return;
+        if (!current.canTransitionTo(leader.status()) && current.canTransitionTo(JobStatus.RUNNING)) {
+            transition(follower, JobStatus.RUNNING, s -> leader);
+        }
+        transition(follower, leader.status(), s -> leader);
+    }
+
+    /** The first attempt's start is kept across retries. */
+    private static JobState started(JobState state) {
+        return state.startedAt() == null ? state.withStartedAt(Instant.now()) : state;
+    }
 
-        // Record metrics for successful or retried jobs
-        long duration = System.currentTimeMillis() - startTime;
-        metrics.recordJobDuration(duration);
+    private void notifyListeners(Job job, JobStatus from) {
+        for (JobTransitionListener listener : listeners) {
+            try {
+                listener.onTransition(job, from);
+            } catch (RuntimeException e) {
+                logger.warn("Transition listener {} failed for Job {}", listener, job.getJobId(), e);
+            }
+        }
     }
 
     private long backoffWithJitter(int attemptNumber) {
@@ -184,7 +862,36 @@ public class JobService {
 
     public JobStatusResponse getJobStatus(String id) {
         Job j = repo.findById(id);
-        if (j == null) throw new IllegalArgumentException("Job not found");
-        return new JobStatusResponse(j.getStatus().name(), j.getAttempts(), j.getLastError(), j.getStartedAt(), j.getCompletedAt());
+        if (j == null) {
+            JobTombstone evicted = retention.findTombstone(id);
+            if (evicted != null) return evicted.toStatusResponse();
+            throw new IllegalArgumentException("Job not found");
+        }
+        JobState s = j.state();
+        return new JobStatusResponse(s.status().name(), s.attempts(), s.lastError(), s.startedAt(), s.completedAt());
+    }
+
+    /**
+     * Completes with the job's status once it is terminal, right away if it already is. Cancelling the returned
+     * future stops waiting; nothing is kept for a job once its waiters have completed or cancelled.
+     *
+     * @throws IllegalArgumentException if the job does not exist
+     */
+    public CompletableFuture<JobStatusResponse> awaitTerminalStatus(String id) {
+        JobStatusResponse current = getJobStatus(id);
+        if (JobStatus.valueOf(current.status()).isTerminal()) return CompletableFuture.completedFuture(current);
+
+        CompletableFuture<Void> done = waiters.register(id);
+        // The job may have finished between the first look and the registration
+        current = getJobStatus(id);
+        if (JobStatus.valueOf(current.status()).isTerminal()) {
+            done.cancel(false);
+            return CompletableFuture.completedFuture(current);
+        }
+        CompletableFuture<JobStatusResponse> result = done.thenApply(v -> getJobStatus(id));
+        result.whenComplete((status, error) -> {
+            if (result.isCancelled()) done.cancel(false);
+        });
+        return result;
     }
 }
\ No newline at end of file
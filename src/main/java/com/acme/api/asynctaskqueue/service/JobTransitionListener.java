@@ -0,0 +1,16 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+
+/**
+ * Notified of every status change {@link JobService} makes, after the job has been saved. Listeners run on the
+ * thread that made the change, usually a job worker, so they must be quick and must not block.
+ */
+public interface JobTransitionListener {
+
+    /**
+     * @param from the previous status, or {@code null} when the job was just submitted
+     */
+    void onTransition(Job job, JobStatus from);
+}
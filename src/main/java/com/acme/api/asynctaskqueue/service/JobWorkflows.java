@@ -0,0 +1,299 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowResponse;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.model.WorkflowStatus;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs workflows: jobs submitted together, each of which may depend on others. A job without dependencies is
+ * queued right away; the others wait as BLOCKED. Every job has a counter of the parents that have not succeeded
+ * yet, and a parent's success only decrements the counters of its own children, queueing those that reach zero.
+ * Nothing is ever scanned for readiness, so a workflow costs time linear in its jobs and dependencies, from
+ * validation (a topological sort, which also finds cycles) to the last job.
+ * <p/>
+ * Once a job fails for good, the workflow fails: the jobs still blocked are cancelled, and jobs already queued or
+ * running finish (a failing one is compensated as usual). When no job is in flight any more, the jobs that
+ * succeeded are compensated one at a time, in reverse topological order, so a job is always compensated before
+ * the jobs it depended on. Those jobs stay SUCCEEDED; how their compensation went is part of the workflow.
+ * <p/>
+ * Workflows are not persisted. A finished workflow can be looked up for {@link #FINISHED_RETENTION_MS}.
+ */
+final class JobWorkflows {
+    private static final Logger logger = LoggerFactory.getLogger(JobWorkflows.class);
+
+    static final long FINISHED_RETENTION_MS = TimeUnit.HOURS.toMillis(1);
+
+    static final class Workflow {
+        final String id;
+        final String[] names;
+        final Job[] jobs;
+        final int[][] children;
+        final int[] order; // topological: every job comes after the jobs it depends on
+        final int[] pendingParents; // guarded by this
+        final JobStatus[] compensation; // guarded by this
+        int unsettled; // jobs not yet SUCCEEDED, CANCELLED or compensated; guarded by this
+        WorkflowStatus status = WorkflowStatus.RUNNING; // guarded by this
+
+        /**
+         * @throws IllegalArgumentException if a name is missing or taken, a dependency is unknown, or the
+         * dependencies form a cycle
+         */
+        Workflow(String id, List<WorkflowJobRequest> requests) {
+            int n = requests.size();
+            if (n == 0) throw new IllegalArgumentException("A workflow needs at least one job");
+            this.id = id;
+            this.names = new String[n];
+            this.jobs = new Job[n];
+            this.pendingParents = new int[n];
+            this.compensation = new JobStatus[n];
+            this.unsettled = n;
+
+            Map<String, Integer> index = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                String name = requests.get(i).name();
+                if (name == null || name.isBlank()) throw new IllegalArgumentException("Every workflow job needs a name");
+                if (index.putIfAbsent(name, i) != null) throw new IllegalArgumentException("Duplicate workflow job name: " + name);
+                names[i] = name;
+            }
+
+            int[][] parents = new int[n][];
+            int[] childCount = new int[n];
+            for (int i = 0; i < n; i++) {
+                List<String> dependsOn = requests.get(i).dependsOn();
+                parents[i] = new int[dependsOn == null ? 0 : dependsOn.size()];
+                for (int k = 0; k < parents[i].length; k++) {
+                    Integer parent = index.get(dependsOn.get(k));
+                    if (parent == null) {
+                        throw new IllegalArgumentException("Workflow job " + names[i] + " depends on unknown job " + dependsOn.get(k));
+                    }
+                    parents[i][k] = parent;
+                    childCount[parent]++;
+                }
+                pendingParents[i] = parents[i].length;
+            }
+            this.children = new int[n][];
+            for (int i = 0; i < n; i++) {
+                children[i] = new int[childCount[i]];
+                childCount[i] = 0;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int parent : parents[i]) {
+                    children[parent][childCount[parent]++] = i;
+                }
+            }
+
+            // Kahn's algorithm: whatever is left out of the order is on a cycle
+            this.order = new int[n];
+            int[] remaining = pendingParents.clone();
+            int head = 0, tail = 0;
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] == 0) order[tail++] = i;
+            }
+            while (head < tail) {
+                for (int child : children[order[head++]]) {
+                    if (--remaining[child] == 0) order[tail++] = child;
+                }
+            }
+            if (tail < n) throw new IllegalArgumentException("The workflow's jobs depend on each other in a cycle");
+        }
+
+        synchronized WorkflowResponse toResponse() {
+            List<WorkflowJobResponse> nodes = new ArrayList<>(jobs.length);
+            for (int i = 0; i < jobs.length; i++) {
+                nodes.add(new WorkflowJobResponse(names[i], jobs[i].getJobId(), jobs[i].getStatus().name(),
+                        compensation[i] == null ? null : compensation[i].name()));
+            }
+            return new WorkflowResponse(id, status.name(), nodes);
+        }
+    }
+
+    private record Node(Workflow workflow, int index) {}
+
+    private final Consumer<Job> release;
+    private final Consumer<Job> cancel;
+    private final BiConsumer<Job, Consumer<JobStatus>> compensate;
+    private final RetryScheduler retryScheduler;
+    private final Map<String, Workflow> byId = new ConcurrentHashMap<>();
+    private final Map<String, Node> byJob = new ConcurrentHashMap<>();
+
+    /**
+     * @param release    queues a job whose parents have all succeeded, moving it out of BLOCKED if needed
+     * @param cancel     moves a blocked job to CANCELLED
+     * @param compensate compensates a job that succeeded and reports the outcome (COMPENSATED or
+     *                   COMPENSATION_FAILED) to the given callback
+     */
+    JobWorkflows(Consumer<Job> release, Consumer<Job> cancel, BiConsumer<Job, Consumer<JobStatus>> compensate,
+                 RetryScheduler retryScheduler) {
+        this.release = release;
+        this.cancel = cancel;
+        this.compensate = compensate;
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * Validates the workflow, creates its jobs, hands them to {@code admit} (to be saved) and queues those that
+     * depend on nothing.
+     *
+     * @throws IllegalArgumentException if the workflow is invalid; nothing has been created then
+     */
+    Workflow submit(List<WorkflowJobRequest> requests, Function<WorkflowJobRequest, Job> create, Consumer<Job> admit) {
+        Workflow workflow = new Workflow(UUID.randomUUID().toString(), requests);
+        for (int i = 0; i < workflow.jobs.length; i++) {
+            Job job = create.apply(requests.get(i));
+            if (workflow.pendingParents[i] > 0) job.setStatus(JobStatus.BLOCKED);
+            workflow.jobs[i] = job;
+        }
+        byId.put(workflow.id, workflow);
+        for (int i = 0; i < workflow.jobs.length; i++) {
+            byJob.put(workflow.jobs[i].getJobId(), new Node(workflow, i));
+        }
+        for (Job job : workflow.jobs) {
+            admit.accept(job);
+        }
+        logger.info("Workflow {} submitted with {} jobs", workflow.id, workflow.jobs.length);
+        for (int i = 0; i < workflow.jobs.length; i++) {
+            if (workflow.pendingParents[i] == 0) release.accept(workflow.jobs[i]);
+        }
+        return workflow;
+    }
+
+    /** The workflow, or {@code null} if it is unknown or finished too long ago. */
+    WorkflowResponse find(String workflowId) {
+        Workflow workflow = byId.get(workflowId);
+        return workflow == null ? null : workflow.toResponse();
+    }
+
+    /**
+     * Called after every transition of any job, with the status it moved to.
+     */
+    void onTransition(Job job, JobStatus status) {
+        if (byJob.isEmpty()) return;
+        Node node = byJob.get(job.getJobId());
+        if (node == null) return;
+        Workflow workflow = node.workflow();
+        int index = node.index();
+
+        List<Job> ready = List.of();
+        List<Job> cancelled = List.of();
+        boolean settled;
+        boolean compensating = false;
+        synchronized (workflow) {
+            switch (status) {
+                case SUCCEEDED -> {
+                    if (workflow.status == WorkflowStatus.RUNNING) ready = readyChildren(workflow, index);
+                    settled = true;
+                }
+                case FAILED -> {
+                    if (workflow.status == WorkflowStatus.RUNNING) {
+                        workflow.status = WorkflowStatus.COMPENSATING;
+                        cancelled = blocked(workflow);
+                        logger.warn("Workflow {} failed with its job {} (Job {}); cancelling {} blocked jobs",
+                                workflow.id, workflow.names[index], job.getJobId(), cancelled.size());
+                    }
+                    settled = false;
+                }
+                case CANCELLED, COMPENSATED, COMPENSATION_FAILED -> settled = true;
+                default -> settled = false;
+            }
+            if (settled && --workflow.unsettled == 0) {
+                if (workflow.status == WorkflowStatus.RUNNING) {
+                    finish(workflow, WorkflowStatus.SUCCEEDED);
+                } else {
+                    compensating = true;
+                }
+            }
+        }
+        for (Job child : ready) {
+            release.accept(child);
+        }
+        for (Job blocked : cancelled) {
+            cancel.accept(blocked);
+        }
+        if (compensating) compensateNext(workflow, workflow.order.length - 1);
+    }
+
+    private static List<Job> readyChildren(Workflow workflow, int parent) {
+        List<Job> ready = null;
+        for (int child : workflow.children[parent]) {
+            if (--workflow.pendingParents[child] == 0) {
+                if (ready == null) ready = new ArrayList<>(workflow.children[parent].length);
+                ready.add(workflow.jobs[child]);
+            }
+        }
+        return ready == null ? List.of() : ready;
+    }
+
+    /**
+     * The jobs never released. Only called once per workflow, when it fails, and afterwards no counter is
+     * decremented any more.
+     */
+    private static List<Job> blocked(Workflow workflow) {
+        List<Job> blocked = new ArrayList<>();
+        for (int i = 0; i < workflow.jobs.length; i++) {
+            if (workflow.pendingParents[i] > 0) blocked.add(workflow.jobs[i]);
+        }
+        return blocked;
+    }
+
+    /**
+     * Compensates the succeeded job at or before {@code position} in topological order, and then the one before
+     * it, until there is none left.
+     */
+    private void compensateNext(Workflow workflow, int position) {
+        int index;
+        synchronized (workflow) {
+            while (position >= 0 && workflow.jobs[workflow.order[position]].getStatus() != JobStatus.SUCCEEDED) {
+                position--;
+            }
+            if (position < 0) {
+                finish(workflow, compensationOutcome(workflow));
+                return;
+            }
+            index = workflow.order[position];
+        }
+        int next = position - 1;
+        compensate.accept(workflow.jobs[index], outcome -> {
+            synchronized (workflow) {
+                workflow.compensation[index] = outcome;
+            }
+            compensateNext(workflow, next);
+        });
+    }
+
+    private static WorkflowStatus compensationOutcome(Workflow workflow) {
+        for (int i = 0; i < workflow.jobs.length; i++) {
+            if (workflow.jobs[i].getStatus() == JobStatus.COMPENSATION_FAILED
+                    || workflow.compensation[i] == JobStatus.COMPENSATION_FAILED) {
+                return WorkflowStatus.COMPENSATION_FAILED;
+            }
+        }
+        return WorkflowStatus.COMPENSATED;
+    }
+
+    /** Called while holding the workflow's lock. */
+    private void finish(Workflow workflow, WorkflowStatus status) {
+        workflow.status = status;
+        for (Job job : workflow.jobs) {
+            byJob.remove(job.getJobId());
+        }
+        retryScheduler.deadline(FINISHED_RETENTION_MS, () -> byId.remove(workflow.id, workflow));
+        logger.info("Workflow {} finished: {}", workflow.id, status);
+    }
+}
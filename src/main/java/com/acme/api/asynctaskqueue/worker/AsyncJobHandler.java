@@ -0,0 +1,63 @@
+package com.acme.api.asynctaskqueue.worker;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A {@link JobHandler} whose work completes asynchronously, e.g. when a non-blocking HTTP call or database
+ * driver answers. {@link #executeAsync(Map)} must only start the work and return; the worker thread that
+ * called it is given back right away, and the attempt ends when the returned stage completes. Completing the
+ * stage exceptionally is a failed attempt, retried and compensated exactly like an exception thrown by a
+ * blocking handler.
+ * <p/>
+ * The stage may be completed on any thread. The bookkeeping that follows (saving the new status, scheduling a
+ * retry) runs on that thread, so it should not be a thread that must never block, such as an event loop.
+ * Compensation still runs on the compensation executor through {@link #compensate(Map)}.
+ */
+public interface AsyncJobHandler extends JobHandler {
+
+    /**
+     * Starts the job. Completes normally on success and exceptionally on failure.
+     */
+    CompletionStage<Void> executeAsync(Map<String, Object> payload);
+
+    /**
+     * Waits for {@link #executeAsync(Map)}. The job service never calls this; it lets an async handler be used
+     * wherever a blocking one is expected.
+     */
+    @Override
+    default void execute(Map<String, Object> payload) throws Exception {
+        try {
+            executeAsync(payload).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Adapts a blocking handler: the job runs on the calling thread, and the returned stage is already
+     * complete. Async handlers are returned as they are.
+     */
+    static AsyncJobHandler of(JobHandler handler) {
+        if (handler instanceof AsyncJobHandler async) return async;
+        return new AsyncJobHandler() {
+            @Override
+            public CompletionStage<Void> executeAsync(Map<String, Object> payload) {
+                try {
+                    handler.execute(payload);
+                    return CompletableFuture.completedFuture(null);
+                } catch (Exception e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+
+            @Override
+            public void compensate(Map<String, Object> lastKnownState) {
+                handler.compensate(lastKnownState);
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.acme.api.asynctaskqueue.worker;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link JobHandler} that runs many jobs of its type at once, for work that is far cheaper in bulk (one SMTP
+ * session or one bulk API call for a hundred messages). The job service collects queued jobs of the type
+ * according to {@link #batchPolicy()} and hands them over together; each job still succeeds, fails, is retried
+ * and compensated on its own.
+ */
+public interface BatchJobHandler extends JobHandler {
+
+    /**
+     * Executes the jobs of one batch. Report the jobs that failed in the result; throwing fails every job of the
+     * batch.
+     *
+     * @param payloads one payload per job, in the order the jobs were queued
+     */
+    BatchResult executeBatch(List<Map<String, Object>> payloads) throws Exception;
+
+    default BatchPolicy batchPolicy() {
+        return BatchPolicy.DEFAULT;
+    }
+
+    /**
+     * Runs a batch of one. The job service never calls this; it lets a batch handler be used wherever a single
+     * job handler is expected.
+     */
+    @Override
+    default void execute(Map<String, Object> payload) throws Exception {
+        Exception failure = executeBatch(List.of(payload)).failure(0);
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,23 @@
+package com.acme.api.asynctaskqueue.worker;
+
+/**
+ * How the jobs of a {@link BatchJobHandler}'s type are collected into batches. A batch is dispatched as soon as
+ * it holds {@code maxSize} jobs, or {@code lingerMs} after its first job arrived, whichever comes first.
+ *
+ * @param maxSize  most jobs in one batch
+ * @param lingerMs longest time the first job of a batch waits for more to arrive; 0 dispatches whatever
+ *                 arrived within one tick of the timer
+ */
+public record BatchPolicy(int maxSize, long lingerMs) {
+
+    public static final BatchPolicy DEFAULT = new BatchPolicy(100, 20);
+
+    public BatchPolicy {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("A batch needs a max size of at least 1");
+        }
+        if (lingerMs < 0) {
+            throw new IllegalArgumentException("Linger time cannot be negative");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.acme.api.asynctaskqueue.worker;
+
+import java.util.Map;
+
+/**
+ * Outcome of one batch, item by item. Items are identified by their index in the list given to
+ * {@link BatchJobHandler#executeBatch(java.util.List)}; every item without a failure succeeded.
+ *
+ * @param failures the cause of each failed item, by index
+ */
+public record BatchResult(Map<Integer, Exception> failures) {
+
+    private static final BatchResult ALL_SUCCEEDED = new BatchResult(Map.of());
+
+    public BatchResult {
+        failures = Map.copyOf(failures);
+    }
+
+    public static BatchResult allSucceeded() {
+        return ALL_SUCCEEDED;
+    }
+
+    public static BatchResult failed(Map<Integer, ? extends Exception> failures) {
+        return new BatchResult(Map.copyOf(failures));
+    }
+
+    /** Why the item at {@code index} failed, or {@code null} if it succeeded. */
+    public Exception failure(int index) {
+        return failures.get(index);
+    }
+}
@@ -3,21 +3,31 @@ package com.acme.api.asynctaskqueue.worker;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Created to simulate side-effectful case with retries and compensation.
+ * Created to simulate side-effectful case with retries and compensation. Sending is asynchronous, like a
+ * non-blocking SMTP client would be, so a pending email does not hold a worker thread.
  */
 @Component
-public class EmailJobHandler implements JobHandler {
+public class EmailJobHandler implements AsyncJobHandler {
     private static final Logger logger = LoggerFactory.getLogger(EmailJobHandler.class);
 
+    // Simulate a long-running send: the gateway answers after 3 seconds
+    private static final Executor SMTP_GATEWAY = CompletableFuture.delayedExecutor(3000, TimeUnit.MILLISECONDS);
+
     @Override
-    public void execute(Map<String, Object> payload) throws Exception {
-        // Simulate a long-running job
-        Thread.sleep(3000);
+    public CompletionStage<Void> executeAsync(Map<String, Object> payload) {
+        return CompletableFuture.runAsync(() -> send(payload), SMTP_GATEWAY);
+    }
+
+    private void send(Map<String, Object> payload) {
         // Extract email fields if present (optional, for logging)
         String to = (String) payload.getOrDefault("to", "unknown@acme.com");
         String subject = (String) payload.getOrDefault("subject", "<no-subject>");
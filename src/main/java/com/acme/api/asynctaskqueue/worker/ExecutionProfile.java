@@ -0,0 +1,54 @@
+package com.acme.api.asynctaskqueue.worker;
+
+/**
+ * How the jobs of one type are executed. A type registered without a profile (or with {@link #SHARED}) runs on
+ * the shared normal executor, as all types used to. Any other profile gives the type its own bulkhead, so a slow
+ * or failing type can only fill its own queue and only its own submissions get a 429.
+ *
+ * @param mode            SHARED, PLATFORM (fixed thread pool with a bounded queue) or VIRTUAL (one virtual thread
+ *                        per job, bounded by {@code concurrency} permits)
+ * @param concurrency     pool size (PLATFORM) or maximum number of jobs in flight (VIRTUAL)
+ * @param queueCapacity   jobs that may wait for a thread (PLATFORM only)
+ * @param rejectionPolicy what happens once the bulkhead is saturated
+ */
+public record ExecutionProfile(Mode mode, int concurrency, int queueCapacity, RejectionPolicy rejectionPolicy) {
+
+    public enum Mode {
+        SHARED,
+        PLATFORM,
+        VIRTUAL
+    }
+
+    public enum RejectionPolicy {
+        /** Reject the job; a submission is answered with 429 naming the bulkhead. */
+        ABORT,
+        /**
+         * Run the job on the submitting request thread, which slows the producer down instead of rejecting.
+         * Jobs the service queues on its own threads (retries, due schedules, claimed jobs) are parked instead.
+         */
+        CALLER_RUNS
+    }
+
+    public static final ExecutionProfile SHARED = new ExecutionProfile(Mode.SHARED, 0, 0, RejectionPolicy.ABORT);
+
+    public ExecutionProfile {
+        if (mode != Mode.SHARED && concurrency < 1) {
+            throw new IllegalArgumentException("A " + mode + " profile needs a concurrency of at least 1");
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("Queue capacity cannot be negative");
+        }
+    }
+
+    public static ExecutionProfile platform(int threads, int queueCapacity) {
+        return new ExecutionProfile(Mode.PLATFORM, threads, queueCapacity, RejectionPolicy.ABORT);
+    }
+
+    public static ExecutionProfile virtual(int maxConcurrent) {
+        return new ExecutionProfile(Mode.VIRTUAL, maxConcurrent, 0, RejectionPolicy.ABORT);
+    }
+
+    public ExecutionProfile withRejectionPolicy(RejectionPolicy policy) {
+        return new ExecutionProfile(mode, concurrency, queueCapacity, policy);
+    }
+}
@@ -1,11 +1,29 @@
 package com.acme.api.asynctaskqueue.worker;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 @Configuration
 public class JobHandlerBootstrap {
-    public JobHandlerBootstrap(JobHandlerRegistry registry, EmailJobHandler email, ReportJobHandler report) {
-        registry.register("sendEmail", email);
-        registry.register("generateReport", report);
+    public JobHandlerBootstrap(JobHandlerRegistry registry, EmailJobHandler email, ReportJobHandler report,
+                               Environment env) {
+        registry.register("sendEmail", email, profile(env, "sendEmail"));
+        registry.register("generateReport", report, profile(env, "generateReport"));
+    }
+
+    /**
+     * Reads {@code jobs.bulkhead.<type>.*}. A type without {@code mode} runs on the shared executor.
+     */
+    static ExecutionProfile profile(Environment env, String type) {
+        String prefix = "jobs.bulkhead." + type + ".";
+        ExecutionProfile.Mode mode = env.getProperty(prefix + "mode", ExecutionProfile.Mode.class,
+                ExecutionProfile.Mode.SHARED);
+        if (mode == ExecutionProfile.Mode.SHARED) return ExecutionProfile.SHARED;
+
+        return new ExecutionProfile(mode,
+                env.getProperty(prefix + "concurrency", Integer.class, 2),
+                env.getProperty(prefix + "queue-capacity", Integer.class, 10),
+                env.getProperty(prefix + "rejection-policy", ExecutionProfile.RejectionPolicy.class,
+                        ExecutionProfile.RejectionPolicy.ABORT));
     }
 }
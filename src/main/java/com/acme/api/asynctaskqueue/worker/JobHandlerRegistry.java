@@ -3,14 +3,25 @@ package com.acme.api.asynctaskqueue.worker;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class JobHandlerRegistry {
     private final Map<String, JobHandler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, ExecutionProfile> profiles = new ConcurrentHashMap<>();
 
     public void register(String type, JobHandler handler) {
+        register(type, handler, ExecutionProfile.SHARED);
+    }
+
+    /**
+     * Registers a handler whose jobs run in their own bulkhead, see {@link ExecutionProfile}. The profile is
+     * read when the first job of the type is enqueued; registering again later does not change it.
+     */
+    public void register(String type, JobHandler handler, ExecutionProfile profile) {
         handlers.put(type, handler);
+        profiles.put(type, profile == null ? ExecutionProfile.SHARED : profile);
     }
 
     public JobHandler get(String type) {
@@ -18,4 +29,13 @@ public class JobHandlerRegistry {
         if (h == null) throw new IllegalArgumentException("No handler for type: " + type);
         return h;
     }
+
+    /** The handler of the type, if one is registered. */
+    public Optional<JobHandler> find(String type) {
+        return Optional.ofNullable(handlers.get(type));
+    }
+
+    public ExecutionProfile profile(String type) {
+        return profiles.getOrDefault(type, ExecutionProfile.SHARED);
+    }
 }
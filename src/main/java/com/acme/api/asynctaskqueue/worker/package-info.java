@@ -4,10 +4,17 @@
  * <p>Classes in this package include:</p>
  * <ul>
  *   <li>{@link com.acme.api.asynctaskqueue.worker.JobHandler} - Interface defining the contract for job handlers.</li>
- *   <li>{@link com.acme.api.asynctaskqueue.worker.EmailJobHandler} - Implementation of {@code JobHandler} for email jobs.</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.worker.AsyncJobHandler} - Handler whose work completes through a
+ *   {@code CompletionStage}, so it does not hold a worker thread while it waits.</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.worker.BatchJobHandler} - Handler that runs many jobs of its type at once,
+ *   batched according to its {@link com.acme.api.asynctaskqueue.worker.BatchPolicy} and reporting a
+ *   {@link com.acme.api.asynctaskqueue.worker.BatchResult} per job.</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.worker.EmailJobHandler} - Implementation of {@code AsyncJobHandler} for email jobs.</li>
  *   <li>{@link com.acme.api.asynctaskqueue.worker.ReportJobHandler} - Implementation of {@code JobHandler} for report generation jobs.</li>
  *   <li>{@link com.acme.api.asynctaskqueue.worker.JobHandlerBootstrap} - Initializes and configures job handlers at application startup.</li>
  *   <li>{@link com.acme.api.asynctaskqueue.worker.JobHandlerRegistry} - Maintains a registry of available job handlers.</li>
+ *   <li>{@link com.acme.api.asynctaskqueue.worker.ExecutionProfile} - Optional per-type execution settings that give
+ *   a job type its own bulkhead.</li>
  * </ul>
  *
  * <p>This package is primarily concerned with executing jobs, managing their handlers, and supporting
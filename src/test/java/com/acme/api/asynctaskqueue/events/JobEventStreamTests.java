@@ -0,0 +1,123 @@
+package com.acme.api.asynctaskqueue.events;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobEventGap;
+import com.acme.api.asynctaskqueue.jobs.dto.JobTransitionEvent;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobEventStreamTests {
+
+    private final JobEventStream stream = new JobEventStream(16, 60_000, 10);
+
+    /** Records what it receives; blocks on the first transition until released, like a client that stalls. */
+    private static class RecordingSink implements JobEventSink {
+        final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release;
+
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void transition(long seq, JobTransitionEvent event) throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            received.add(seq);
+        }
+
+        @Override
+        public void gap(JobEventGap gap) {
+            received.add(gap);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        List<Object> take(int count) throws InterruptedException {
+            List<Object> items = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Object item = received.poll(2, TimeUnit.SECONDS);
+                assertNotNull(item, "received only " + items);
+                items.add(item);
+            }
+            return items;
+        }
+    }
+
+    @AfterEach
+    void close() {
+        stream.destroy();
+    }
+
+    private void publish(String jobId, String type, String key, JobStatus from, JobStatus to) {
+        Job job = new Job(jobId, type, Map.of(), key);
+        job.setStatus(to);
+        stream.onTransition(job, from);
+    }
+
+    @Test
+    void testDeliversMatchingTransitionsInOrder() throws Exception {
+        RecordingSink sink = new RecordingSink(new CountDownLatch(0));
+        stream.subscribe(new JobEventFilter(Set.of("sendEmail"), Set.of(JobStatus.SUCCEEDED), "tenant-a:"), null, sink);
+
+        publish("1", "sendEmail", "tenant-a:1", JobStatus.RUNNING, JobStatus.SUCCEEDED);
+        publish("2", "generateReport", "tenant-a:2", JobStatus.RUNNING, JobStatus.SUCCEEDED);
+        publish("3", "sendEmail", "tenant-b:3", JobStatus.RUNNING, JobStatus.SUCCEEDED);
+        publish("4", "sendEmail", "tenant-a:4", JobStatus.QUEUED, JobStatus.RUNNING);
+        publish("5", "sendEmail", "tenant-a:5", JobStatus.RUNNING, JobStatus.SUCCEEDED);
+
+        assertEquals(List.of(0L, 4L), sink.take(2));
+        assertNull(sink.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testSlowSubscriberGetsAGapInsteadOfBlockingPublishers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        stream.subscribe(JobEventFilter.ALL, null, sink);
+
+        // The subscriber is stuck on the first event; publishing the rest must not wait for it
+        publish("job-0", "sendEmail", null, JobStatus.QUEUED, JobStatus.RUNNING);
+        assertTrue(sink.entered.await(2, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        for (int i = 1; i < 100; i++) {
+            publish("job-" + i, "sendEmail", null, JobStatus.QUEUED, JobStatus.RUNNING);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        List<Object> received = sink.take(18);
+        assertEquals(0L, received.get(0));
+        assertEquals(new JobEventGap(83, 84), received.get(1));
+        assertEquals(84L, received.get(2));
+        assertEquals(99L, received.get(17));
+    }
+
+    @Test
+    void testResumesFromAGivenEvent() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            publish("job-" + i, "sendEmail", null, null, JobStatus.QUEUED);
+        }
+        RecordingSink sink = new RecordingSink(new CountDownLatch(0));
+        stream.subscribe(JobEventFilter.ALL, 5L, sink);
+        assertEquals(List.of(5L, 6L, 7L), sink.take(3));
+    }
+}
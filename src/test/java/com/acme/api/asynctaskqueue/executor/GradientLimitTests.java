@@ -0,0 +1,141 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Convergence of {@link GradientLimit} against a simulated downstream. The simulation runs on virtual time, so it
+ * is deterministic and fast.
+ */
+public class GradientLimitTests {
+
+    private static final long MS = 1_000_000L;
+
+    /**
+     * A downstream with {@code capacity} parallel slots and a fixed service time; requests beyond the capacity
+     * wait in its FIFO queue. The client always has work and keeps exactly {@code limit} requests in flight.
+     */
+    private static final class Simulation {
+        private record Completion(long at, long admittedAt) {}
+
+        final GradientLimit limit;
+        final PriorityQueue<Completion> completions = new PriorityQueue<>((a, b) -> Long.compare(a.at, b.at));
+        final ArrayDeque<Long> waiting = new ArrayDeque<>();
+        int capacity;
+        long serviceNanos;
+        long now;
+        int inFlight;
+        int busy;
+
+        long completed;
+        long latencySum;
+
+        Simulation(GradientLimit limit, int capacity, long serviceNanos) {
+            this.limit = limit;
+            this.capacity = capacity;
+            this.serviceNanos = serviceNanos;
+        }
+
+        /** Runs until {@code count} more requests completed and returns their mean latency. */
+        double run(int count) {
+            completed = 0;
+            latencySum = 0;
+            while (completed < count) {
+                while (inFlight < limit.getLimit()) {
+                    inFlight++;
+                    if (busy < capacity) {
+                        busy++;
+                        completions.add(new Completion(now + serviceNanos, now));
+                    } else {
+                        waiting.add(now);
+                    }
+                }
+                Completion done = completions.poll();
+                now = done.at;
+                limit.onSample(now - done.admittedAt, inFlight);
+                inFlight--;
+                busy--;
+                completed++;
+                latencySum += now - done.admittedAt;
+                if (!waiting.isEmpty()) {
+                    busy++;
+                    completions.add(new Completion(now + serviceNanos, waiting.poll()));
+                }
+            }
+            return (double) latencySum / completed;
+        }
+    }
+
+    private static GradientLimit limit(int initial) {
+        return new GradientLimit(initial, 2, 1000, 1.5, 0.2, 20);
+    }
+
+    @Test
+    void testGrowsWhileLatencyStaysFlat() {
+        // Below the downstream's capacity of 200 nothing queues, so the limit keeps growing
+        Simulation sim = new Simulation(limit(10), 200, 10 * MS);
+        double latency = sim.run(9_000);
+        assertTrue(sim.limit.getLimit() >= 150, "limit " + sim.limit.getLimit());
+        assertEquals(10 * MS, latency, 0.5 * MS);
+
+        sim.run(200_000);
+        assertTrue(sim.limit.getLimit() >= 200, "limit " + sim.limit.getLimit());
+    }
+
+    @Test
+    void testConvergesNearDownstreamCapacity() {
+        Simulation sim = new Simulation(limit(10), 50, 10 * MS);
+        sim.run(300_000);
+
+        // Goodput is the capacity; the limit settles within the latency tolerance above it
+        int settled = sim.limit.getLimit();
+        assertTrue(settled >= 50 && settled <= 50 * 2, "limit " + settled);
+        double latency = sim.run(50_000);
+        assertTrue(latency < 2 * 10 * MS, "latency " + latency / MS + "ms");
+    }
+
+    @Test
+    void testShrinksWhenDownstreamSlowsDownAndRecovers() {
+        Simulation sim = new Simulation(limit(10), 100, 10 * MS);
+        sim.run(300_000);
+        int healthy = sim.limit.getLimit();
+
+        // The downstream loses 3/4 of its capacity; holding the limit would quadruple latency
+        sim.capacity = 25;
+        sim.run(100_000);
+        int degraded = sim.limit.getLimit();
+        assertTrue(degraded < healthy / 2, "healthy " + healthy + ", degraded " + degraded);
+        assertTrue(degraded >= 25, "degraded " + degraded);
+
+        sim.capacity = 100;
+        sim.run(300_000);
+        assertTrue(sim.limit.getLimit() >= 100, "recovered " + sim.limit.getLimit());
+    }
+
+    @Test
+    void testLimiterRejectsAboveTheAdaptiveLimitAndReportsIt() {
+        TypeConcurrencyLimiter limiter = new TypeConcurrencyLimiter(true, type -> 0,
+                type -> new GradientLimit(2, 2, 100, 1.5, 0.2, 20));
+        long first = limiter.acquire("sendEmail");
+        limiter.acquire("sendEmail");
+        assertEquals("sendEmail",
+                assertThrows(BulkheadFullException.class, () -> limiter.acquire("sendEmail")).getBulkhead());
+        assertEquals(new TypeConcurrencyLimiter.TypeLimit(2, 2), limiter.limits().get("sendEmail"));
+
+        limiter.release("sendEmail", first);
+        assertDoesNotThrow(() -> limiter.acquire("sendEmail"));
+    }
+
+    @Test
+    void testIdleTypeDoesNotDriftUp() {
+        GradientLimit limit = limit(20);
+        for (int i = 0; i < 100_000; i++) {
+            limit.onSample(10 * MS, 1);
+        }
+        assertEquals(20, limit.getLimit());
+    }
+}
@@ -0,0 +1,151 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.worker.ExecutionProfile;
+import com.acme.api.asynctaskqueue.worker.JobHandler;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobBulkheadsTests {
+
+    private static final JobHandler NOOP = new JobHandler() {
+        @Override
+        public void execute(Map<String, Object> payload) {
+        }
+
+        @Override
+        public void compensate(Map<String, Object> lastKnownState) {
+        }
+    };
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final Runnable blocked = () -> {
+        try {
+            gate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    };
+
+    private JobHandlerRegistry registry;
+    private JobBulkheads bulkheads;
+
+    @BeforeEach
+    void setup() {
+        registry = new JobHandlerRegistry();
+        registry.register("sendEmail", NOOP);
+        registry.register("generateReport", NOOP, ExecutionProfile.platform(1, 1));
+        registry.register("render", NOOP, ExecutionProfile.virtual(2));
+        ThreadPoolExecutor normal = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                new PriorityLaneQueue(10, 2000, true));
+        bulkheads = new JobBulkheads(normal, new TypeConcurrencyLimiter(false, type -> 0), registry);
+    }
+
+    @AfterEach
+    void release() {
+        gate.countDown();
+        bulkheads.destroy();
+    }
+
+    private void execute(String type, Runnable attempt) {
+        bulkheads.forType(type).execute(type, JobPriority.NORMAL, false, attempt);
+    }
+
+    @Test
+    void testSaturatedBulkheadOnlyRejectsItsOwnType() {
+        execute("generateReport", blocked);
+        execute("generateReport", blocked);
+
+        BulkheadFullException full = assertThrows(BulkheadFullException.class, () -> execute("generateReport", blocked));
+        assertEquals("generateReport", full.getBulkhead());
+
+        // Other types are unaffected
+        CountDownLatch ran = new CountDownLatch(1);
+        execute("sendEmail", ran::countDown);
+        assertDoesNotThrow(() -> assertTrue(ran.await(2, TimeUnit.SECONDS)));
+        assertEquals(Bulkhead.SHARED_NAME, bulkheads.forType("sendEmail").getName());
+    }
+
+    @Test
+    void testVirtualBulkheadIsBoundedByPermits() throws Exception {
+        execute("render", blocked);
+        execute("render", blocked);
+        assertEquals(2, bulkheads.forType("render").getActive());
+        assertEquals("render", assertThrows(BulkheadFullException.class, () -> execute("render", blocked)).getBulkhead());
+
+        gate.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (bulkheads.forType("render").getActive() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, bulkheads.forType("render").getActive());
+    }
+
+    @Test
+    void testCallerRunsPolicyRunsOnTheSubmittingThread() {
+        registry.register("audit", NOOP, ExecutionProfile.virtual(1)
+                .withRejectionPolicy(ExecutionProfile.RejectionPolicy.CALLER_RUNS));
+        execute("audit", blocked);
+
+        Thread caller = Thread.currentThread();
+        Thread[] ranOn = new Thread[1];
+        bulkheads.forType("audit").execute("audit", JobPriority.NORMAL, false, true, () -> ranOn[0] = Thread.currentThread());
+        assertSame(caller, ranOn[0]);
+    }
+
+    @Test
+    void testCallerRunsPolicyRejectsSubmittersThatMustNotRunJobs() {
+        registry.register("audit", NOOP, ExecutionProfile.platform(1, 1)
+                .withRejectionPolicy(ExecutionProfile.RejectionPolicy.CALLER_RUNS));
+        execute("audit", blocked);
+        execute("audit", blocked);
+
+        // E.g. the retry wheel's thread: it parks the job again instead of running it
+        boolean[] ran = new boolean[1];
+        assertEquals("audit", assertThrows(BulkheadFullException.class, () -> execute("audit", () -> ran[0] = true))
+                .getBulkhead());
+        assertFalse(ran[0]);
+
+        bulkheads.forType("audit").execute("audit", JobPriority.NORMAL, false, true, () -> ran[0] = true);
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    void testSharedExecutorRejectionNamesTheSharedBulkhead() {
+        // Unknown types (and types the registry knows nothing about) use the shared bulkhead
+        for (int i = 0; i < 12; i++) {
+            execute("unknown", blocked);
+        }
+        assertEquals(Bulkhead.SHARED_NAME,
+                assertThrows(BulkheadFullException.class, () -> execute("unknown", blocked)).getBulkhead());
+    }
+
+    @Test
+    void testAsyncAttemptsHoldTheirSlotUntilTheirStageCompletes() throws Exception {
+        // Two threads and ten queue slots: at most 12 attempts, even when none of them holds a thread
+        Bulkhead shared = bulkheads.forType("sendEmail");
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(12);
+        for (int i = 0; i < 12; i++) {
+            shared.executeAsync("sendEmail", JobPriority.NORMAL, false, false, () -> {
+                started.countDown();
+                return pending;
+            });
+        }
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        assertEquals(0, shared.getQueued());
+        assertThrows(BulkheadFullException.class, () -> execute("sendEmail", () -> {}));
+
+        pending.complete(null);
+        CountDownLatch ran = new CountDownLatch(1);
+        execute("sendEmail", ran::countDown);
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,176 @@
+package com.acme.api.asynctaskqueue.executor;
+
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriorityLaneQueueTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private static PrioritizedTask task(JobPriority priority, boolean retry, List<String> log, String name) {
+        return new PrioritizedTask(priority, retry, () -> log.add(name));
+    }
+
+    private static void drain(PriorityLaneQueue queue) {
+        Runnable r;
+        while ((r = queue.poll()) != null) {
+            r.run();
+        }
+    }
+
+    @Test
+    void testHigherLanesAreServedFirstAndEachLaneIsFifo() {
+        PriorityLaneQueue queue = new PriorityLaneQueue(100, 1000, true, now::get);
+        List<String> log = new ArrayList<>();
+        queue.offer(task(JobPriority.LOW, false, log, "low-1"));
+        queue.offer(task(JobPriority.NORMAL, false, log, "normal-1"));
+        queue.offer(task(JobPriority.NORMAL, true, log, "retry-1"));
+        queue.offer(task(JobPriority.HIGH, false, log, "high-1"));
+        queue.offer(() -> log.add("plain"));
+        queue.offer(task(JobPriority.HIGH, false, log, "high-2"));
+
+        assertEquals(1, queue.retryLaneSize());
+        assertEquals(2, queue.laneSize(JobPriority.HIGH));
+        drain(queue);
+        assertEquals(List.of("high-1", "high-2", "normal-1", "plain", "low-1", "retry-1"), log);
+    }
+
+    @Test
+    void testRetriesStayInTheirPriorityLaneWhenRetryLaneIsDisabled() {
+        PriorityLaneQueue queue = new PriorityLaneQueue(100, 1000, false, now::get);
+        List<String> log = new ArrayList<>();
+        queue.offer(task(JobPriority.LOW, false, log, "low"));
+        queue.offer(task(JobPriority.HIGH, true, log, "high-retry"));
+
+        drain(queue);
+        assertEquals(List.of("high-retry", "low"), log);
+    }
+
+    @Test
+    void testAgingPromotesStarvedJobs() {
+        PriorityLaneQueue queue = new PriorityLaneQueue(100, 1000, true, now::get);
+        List<String> log = new ArrayList<>();
+        queue.offer(task(JobPriority.LOW, false, log, "low"));
+
+        // Two aging periods only make LOW tie with a fresh HIGH job, which wins the tie
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(2000));
+        queue.offer(task(JobPriority.HIGH, false, log, "high-1"));
+        queue.poll().run();
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        queue.offer(task(JobPriority.HIGH, false, log, "high-2"));
+        queue.poll().run();
+        queue.poll().run();
+
+        assertEquals(List.of("high-1", "low", "high-2"), log);
+    }
+
+    @Test
+    void testCapacityIsSharedByAllLanes() {
+        PriorityLaneQueue queue = new PriorityLaneQueue(3, 1000, true, now::get);
+        List<String> log = new ArrayList<>();
+        assertTrue(queue.offer(task(JobPriority.LOW, false, log, "a")));
+        assertTrue(queue.offer(task(JobPriority.HIGH, false, log, "b")));
+        assertTrue(queue.offer(task(JobPriority.NORMAL, true, log, "c")));
+        assertFalse(queue.offer(task(JobPriority.HIGH, false, log, "d")));
+        assertEquals(0, queue.remainingCapacity());
+
+        assertNotNull(queue.poll());
+        assertTrue(queue.offer(task(JobPriority.HIGH, false, log, "d")));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void testNoTaskIsLostUnderConcurrentProducersAndConsumers() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0L, TimeUnit.MILLISECONDS,
+                new PriorityLaneQueue(1_000_000, 5, true));
+        LongAdderTask.counter.reset();
+
+        CountDownLatch done = new CountDownLatch(producers);
+        JobPriority[] priorities = JobPriority.values();
+        for (int p = 0; p < producers; p++) {
+            int seed = p;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    pool.execute(new PrioritizedTask(priorities[(i + seed) % priorities.length], i % 7 == 0,
+                            LongAdderTask.INSTANCE));
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(producers * perProducer, LongAdderTask.counter.sum());
+    }
+
+    private enum LongAdderTask implements Runnable {
+        INSTANCE;
+        static final LongAdder counter = new LongAdder();
+
+        @Override
+        public void run() {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Queue wait of HIGH jobs while a flood of LOW jobs keeps the workers busy, with the previous FIFO queue
+     * and with priority lanes. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkHighPriorityLatencyUnderLowPriorityFlood() throws Exception {
+        int lowJobs = Integer.getInteger("lanes.low-jobs", 20_000);
+        int highJobs = Integer.getInteger("lanes.high-jobs", 500);
+
+        System.out.println("===== Priority lanes benchmark (" + lowJobs + " LOW flood, " + highJobs + " HIGH) =====");
+        run("FIFO (LinkedBlockingQueue)", new LinkedBlockingQueue<>(), lowJobs, highJobs);
+        run("priority lanes", new PriorityLaneQueue(Integer.MAX_VALUE, 2000, true), lowJobs, highJobs);
+        System.out.println("========================================");
+    }
+
+    private void run(String label, BlockingQueue<Runnable> queue, int lowJobs, int highJobs) throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(5, 5, 0L, TimeUnit.MILLISECONDS, queue);
+        Runnable work = () -> {
+            long until = System.nanoTime() + 100_000; // 0.1ms of work
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+        };
+        for (int i = 0; i < lowJobs; i++) {
+            pool.execute(new PrioritizedTask(JobPriority.LOW, false, work));
+        }
+
+        long[] waits = new long[highJobs];
+        CountDownLatch done = new CountDownLatch(highJobs);
+        for (int i = 0; i < highJobs; i++) {
+            int n = i;
+            long submitted = System.nanoTime();
+            pool.execute(new PrioritizedTask(JobPriority.HIGH, false, () -> {
+                waits[n] = System.nanoTime() - submitted;
+                done.countDown();
+            }));
+            Thread.sleep(0, 200_000);
+        }
+        done.await();
+        pool.shutdownNow();
+
+        Arrays.sort(waits);
+        System.out.printf("%-28s HIGH wait p50=%.2fms p99=%.2fms max=%.2fms%n", label,
+                waits[highJobs / 2] / 1e6, waits[(int) Math.ceil(highJobs * 0.99) - 1] / 1e6,
+                waits[highJobs - 1] / 1e6);
+    }
+}
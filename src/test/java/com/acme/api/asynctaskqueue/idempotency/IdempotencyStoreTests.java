@@ -0,0 +1,111 @@
+package com.acme.api.asynctaskqueue.idempotency;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyStoreTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void testConcurrentDuplicatesHaveExactlyOneWinner() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(TimeUnit.HOURS.toNanos(1), 1000, System::nanoTime);
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<String> winners = ConcurrentHashMap.newKeySet();
+        Set<String> answers = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < threads; i++) {
+            String jobId = "job-" + i;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String existing = store.claim("same-key", jobId);
+                if (existing == null) winners.add(jobId);
+                else answers.add(existing);
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, winners.size());
+        assertEquals(winners, answers);
+    }
+
+    @Test
+    void testKeysLiveAtLeastTheTtlThenExpire() {
+        IdempotencyStore store = new IdempotencyStore(300, 1000, now::get);
+        assertNull(store.claim("key", "job-1"));
+
+        now.set(299);
+        assertEquals("job-1", store.claim("key", "job-2"));
+        assertEquals("job-1", store.find("key"));
+
+        // At most ttl * GENERATIONS / (GENERATIONS - 1) later the key is forgotten
+        for (int i = 0; i < IdempotencyStore.GENERATIONS; i++) {
+            now.addAndGet(100);
+            store.claim("other-" + i, "job-x");
+        }
+        assertNull(store.find("key"));
+        assertNull(store.claim("key", "job-3"));
+    }
+
+    @Test
+    void testSizeIsCapped() {
+        IdempotencyStore store = new IdempotencyStore(TimeUnit.HOURS.toNanos(1), 1000, now::get);
+        for (int i = 0; i < 100_000; i++) {
+            store.claim("key-" + i, "job-" + i);
+        }
+        assertTrue(store.size() <= 1000, "size was " + store.size());
+        assertEquals("job-99999", store.find("key-99999"));
+    }
+
+    @Test
+    void testReleaseOnlyRemovesOwnClaim() {
+        IdempotencyStore store = new IdempotencyStore(TimeUnit.HOURS.toNanos(1), 1000, now::get);
+        store.claim("key", "job-1");
+
+        store.release("key", "job-2");
+        assertEquals("job-1", store.find("key"));
+
+        store.release("key", "job-1");
+        assertNull(store.claim("key", "job-2"));
+    }
+
+    /**
+     * Heap stays flat while tens of millions of unique keys go through. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkMemoryUnderUniqueKeys() {
+        int keys = Integer.getInteger("idempotency.keys", 30_000_000);
+        IdempotencyStore store = new IdempotencyStore(TimeUnit.HOURS.toNanos(24), 1_000_000, System::nanoTime);
+        Runtime rt = Runtime.getRuntime();
+
+        System.out.println("===== Idempotency store benchmark (" + keys + " unique keys, cap 1M) =====");
+        long start = System.nanoTime();
+        for (int i = 1; i <= keys; i++) {
+            store.claim("key-" + i, "job-" + i);
+            if (i % (keys / 10) == 0) {
+                System.gc();
+                System.out.printf("keys=%,d resident=%,d usedHeapMb=%d%n",
+                        i, store.size(), (rt.totalMemory() - rt.freeMemory()) >> 20);
+            }
+        }
+        System.out.println("Average claim (ns): " + (System.nanoTime() - start) / keys);
+        System.out.println("========================================");
+    }
+}
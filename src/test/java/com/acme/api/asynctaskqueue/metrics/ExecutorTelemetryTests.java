@@ -0,0 +1,113 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+import com.acme.api.asynctaskqueue.executor.Bulkhead;
+import com.acme.api.asynctaskqueue.executor.BulkheadFullException;
+import com.acme.api.asynctaskqueue.executor.CountingRejectionHandler;
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.executor.PriorityLaneQueue;
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutorTelemetryTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final CountDownLatch first = new CountDownLatch(1);
+    private final CountDownLatch rest = new CountDownLatch(1);
+
+    private ThreadPoolExecutor normal;
+    private ThreadPoolExecutor compensation;
+    private RetryScheduler retries;
+    private JobBulkheads bulkheads;
+
+    @BeforeEach
+    void setup() {
+        normal = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new PriorityLaneQueue(2, 2000, true));
+        compensation = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                new CountingRejectionHandler(new ThreadPoolExecutor.AbortPolicy()));
+        retries = new RetryScheduler(10, 500, 30_000);
+        bulkheads = new JobBulkheads(normal, new TypeConcurrencyLimiter(false, type -> 0), new JobHandlerRegistry());
+    }
+
+    @AfterEach
+    void release() {
+        first.countDown();
+        rest.countDown();
+        normal.shutdownNow();
+        compensation.shutdownNow();
+        retries.close();
+    }
+
+    private static Runnable await(CountDownLatch latch) {
+        return () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static ExecutorSample executor(TelemetrySample sample, String name) {
+        return sample.executors().stream().filter(e -> e.executor().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testSamplesSaturationRejectionsAndQueueWait() throws Exception {
+        ExecutorTelemetry telemetry = new ExecutorTelemetry(bulkheads, compensation, retries, 10, now::get);
+        Bulkhead shared = bulkheads.forType("sendEmail");
+        shared.execute("sendEmail", JobPriority.NORMAL, false, await(first));
+        shared.execute("sendEmail", JobPriority.NORMAL, false, await(rest));
+        shared.execute("sendEmail", JobPriority.NORMAL, false, await(rest));
+        assertThrows(BulkheadFullException.class, () -> shared.execute("sendEmail", JobPriority.NORMAL, false, () -> {}));
+
+        compensation.execute(await(rest));
+        compensation.execute(await(rest));
+        assertThrows(RejectedExecutionException.class, () -> compensation.execute(() -> {}));
+        retries.schedule("job-1", 60_000, () -> {});
+
+        TelemetrySample before = telemetry.sample();
+        ExecutorSample normalBefore = executor(before, Bulkhead.SHARED_NAME);
+        assertEquals(1, normalBefore.active());
+        assertEquals(2, normalBefore.queued());
+        assertEquals(1, normalBefore.rejected());
+        assertNull(normalBefore.estimatedQueueWaitMs()); // no interval to measure throughput over yet
+        assertEquals(1, executor(before, ExecutorTelemetry.COMPENSATION).rejected());
+        assertEquals(1, before.pendingRetries());
+
+        // One job completes during the next second and one is still queued: about a second of wait
+        first.countDown();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (normal.getCompletedTaskCount() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        now.addAndGet(1000);
+        ExecutorSample normalAfter = executor(telemetry.sample(), Bulkhead.SHARED_NAME);
+        assertEquals(1, normalAfter.completed());
+        assertEquals(1, normalAfter.queued());
+        assertEquals(1000L, normalAfter.estimatedQueueWaitMs());
+    }
+
+    @Test
+    void testRingKeepsTheMostRecentSamplesInOrder() {
+        ExecutorTelemetry telemetry = new ExecutorTelemetry(bulkheads, compensation, retries, 3, now::get);
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(1000);
+            telemetry.sample();
+        }
+        List<TelemetrySample> recent = telemetry.recent(10);
+        assertEquals(List.of(1_003_000L, 1_004_000L, 1_005_000L),
+                recent.stream().map(TelemetrySample::timestampMs).toList());
+        assertEquals(1_005_000L, telemetry.recent(1).getFirst().timestampMs());
+    }
+}
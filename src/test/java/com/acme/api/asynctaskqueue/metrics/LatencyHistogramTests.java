@@ -0,0 +1,107 @@
+package com.acme.api.asynctaskqueue.metrics;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void testBucketsCoverEveryValueWithBoundedError() {
+        int previous = -1;
+        for (long v = 0; v < 1L << 20; v++) {
+            int index = LatencyHistogram.index(v);
+            assertTrue(index == previous || index == previous + 1, "gap at " + v);
+            long upper = LatencyHistogram.highestEquivalent(index);
+            assertTrue(upper >= v && upper - v <= v * LatencyHistogram.RELATIVE_ERROR, "value " + v + " -> " + upper);
+            previous = index;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram(6, 10_000);
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1000L, now.get());
+        }
+        LatencySummary summary = histogram.summary(6, now.get());
+        assertEquals(1000, summary.count());
+        assertEquals(500, summary.p50Ms(), 500 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(900, summary.p90Ms(), 900 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(990, summary.p99Ms(), 990 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(1000, summary.maxMs(), 1000 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    @Test
+    void testOldSlicesFallOutOfTheWindow() {
+        LatencyHistogram histogram = new LatencyHistogram(3, 1000);
+        histogram.record(100_000, now.get());
+        now.addAndGet(1000);
+        histogram.record(1_000, now.get());
+
+        assertEquals(1, histogram.summary(1, now.get()).count());
+        assertEquals(2, histogram.summary(3, now.get()).count());
+        assertEquals(100, histogram.summary(3, now.get()).maxMs(), 100 * LatencyHistogram.RELATIVE_ERROR);
+
+        // Three slices later the slow sample is gone, and its slot is reused without leftovers
+        now.addAndGet(2000);
+        histogram.record(2_000, now.get());
+        LatencySummary summary = histogram.summary(3, now.get());
+        assertEquals(2, summary.count());
+        assertEquals(2, summary.maxMs(), 2 * LatencyHistogram.RELATIVE_ERROR);
+
+        now.addAndGet(10_000);
+        assertEquals(LatencySummary.EMPTY, histogram.summary(3, now.get()));
+    }
+
+    @Test
+    void testJobMetricsReportsPhasesPerType() {
+        JobMetrics metrics = new JobMetrics(6, 10_000, now::get);
+        metrics.record("sendEmail", LatencyPhase.EXECUTION, TimeUnit.MILLISECONDS.toNanos(20));
+        metrics.record("sendEmail", LatencyPhase.QUEUE_WAIT, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.record("generateReport", LatencyPhase.COMPENSATION, TimeUnit.SECONDS.toNanos(2));
+
+        Map<String, Map<LatencyPhase, LatencySummary>> latency = metrics.latency(60_000);
+        assertEquals(2, latency.size());
+        assertEquals(2, latency.get("sendEmail").size());
+        assertEquals(20, latency.get("sendEmail").get(LatencyPhase.EXECUTION).p99Ms(), 20 * LatencyHistogram.RELATIVE_ERROR);
+        assertEquals(2000, latency.get("generateReport").get(LatencyPhase.COMPENSATION).p50Ms(),
+                2000 * LatencyHistogram.RELATIVE_ERROR);
+    }
+
+    /**
+     * Cost of recording from several threads at once. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkRecordingCost() throws Exception {
+        JobMetrics metrics = new JobMetrics();
+        int threads = Integer.getInteger("latency.threads", 8);
+        int perThread = 5_000_000;
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    metrics.record("sendEmail", LatencyPhase.EXECUTION, (i & 0xFFFF) * 1000L);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("===== Latency histogram: %d threads, %.1f ns per record =====%n",
+                threads, (double) elapsed / ((long) threads * perThread));
+    }
+}
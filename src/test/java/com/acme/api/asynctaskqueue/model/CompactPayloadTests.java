@@ -0,0 +1,131 @@
+package com.acme.api.asynctaskqueue.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactPayloadTests {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {};
+
+    private static Map<String, Object> parse(String json) throws Exception {
+        return mapper.readValue(json, PAYLOAD_TYPE);
+    }
+
+    private static String emailJson(int n) {
+        return """
+                {"to":"user%d@example.com","subject":"Your weekly report","templateId":42,"locale":"en-US",
+                 "sendAt":%d,"vars":{"firstName":"Ada","plan":"pro","seats":%d,"trial":false},
+                 "tags":["weekly","report"]}""".formatted(n, 1_700_000_000_000L + n, n % 50);
+    }
+
+    @Test
+    void testRoundTripKeepsEveryValueAndType() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("ratio", 0.25);
+        nested.put("empty", List.of());
+        nested.put("missing", null);
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("to", "ünïcødé@example.com");
+        payload.put("count", -7);
+        payload.put("min", Integer.MIN_VALUE);
+        payload.put("big", Long.MAX_VALUE);
+        payload.put("negativeLong", -5_000_000_000L);
+        payload.put("float", 1.5f);
+        payload.put("huge", new BigInteger("123456789012345678901234567890"));
+        payload.put("amount", new BigDecimal("-12.345"));
+        payload.put("flags", Arrays.asList(true, false, null));
+        payload.put("nested", nested);
+        payload.put("k".repeat(CompactPayload.MAX_INTERNED_LENGTH + 1), "written inline");
+
+        Job job = new Job("job-1", "EMAIL", payload, null, PayloadStorage.COMPACT);
+        assertEquals(PayloadStorage.COMPACT, job.getPayloadStorage());
+
+        Map<String, Object> decoded = job.getPayload();
+        assertEquals(payload, decoded);
+        assertEquals(new ArrayList<>(payload.keySet()), new ArrayList<>(decoded.keySet()));
+        assertInstanceOf(Integer.class, decoded.get("count"));
+        assertInstanceOf(Long.class, decoded.get("negativeLong"));
+        assertInstanceOf(Float.class, decoded.get("float"));
+        // Every read is a fresh map, so a handler cannot change what the next attempt sees
+        assertNotSame(decoded, job.getPayload());
+    }
+
+    @Test
+    void testJacksonPayloadIsSmallerThanItsJson() throws Exception {
+        String json = emailJson(12345);
+        Map<String, Object> payload = parse(json);
+        CompactPayload compact = CompactPayload.encode(payload);
+
+        assertNotNull(compact);
+        assertEquals(payload, compact.decode());
+        assertTrue(compact.size() < json.getBytes(StandardCharsets.UTF_8).length / 2,
+                "compact " + compact.size() + " bytes");
+    }
+
+    @Test
+    void testUnsupportedValuesKeepTheMap() {
+        Map<String, Object> payload = Map.of("at", Instant.EPOCH);
+        Job job = new Job("job-1", "EMAIL", payload, null, PayloadStorage.COMPACT);
+
+        assertEquals(PayloadStorage.MAP, job.getPayloadStorage());
+        assertSame(payload, job.getPayload());
+        assertNull(new Job("job-2", null, null, null, PayloadStorage.COMPACT).getPayload());
+    }
+
+    /**
+     * Heap retained by a million queued jobs whose payloads were materialized by Jackson, kept as maps and kept
+     * compact. Run with {@code mvn test -Dbenchmarks=true} (more jobs may need {@code -DargLine=-Xmx4g}).
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkHeapPerQueuedJob() throws Exception {
+        int count = Integer.getInteger("payload.jobs", 1_000_000);
+
+        System.out.println("===== Payload storage benchmark (" + count + " queued jobs) =====");
+        for (PayloadStorage storage : PayloadStorage.values()) {
+            long before = usedHeapAfterGc();
+            Job[] jobs = new Job[count];
+            for (int i = 0; i < count; i++) {
+                jobs[i] = new Job(Integer.toString(i), "sendEmail", parse(emailJson(i)), null, storage);
+            }
+            long retained = usedHeapAfterGc() - before;
+
+            long start = System.nanoTime();
+            long fields = 0;
+            for (Job job : jobs) {
+                fields += job.getPayload().size();
+            }
+            long decodeNanos = System.nanoTime() - start;
+
+            System.out.printf("%-8s %7.1f MB retained, %5d bytes/job, %4d ns/read (%d fields)%n", storage,
+                    retained / 1e6, retained / count, decodeNanos / count, fields);
+            Arrays.fill(jobs, null);
+        }
+        System.out.println("========================================");
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,102 @@
+package com.acme.api.asynctaskqueue.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobTransitionTests {
+
+    private static Job job() {
+        return new Job("job-1", "EMAIL", null, null);
+    }
+
+    @Test
+    void testLifecycleEdges() {
+        Job job = job();
+        assertSame(JobState.QUEUED, job.state());
+
+        Instant started = Instant.parse("2025-08-28T02:06:34.532370100Z");
+        JobState previous = job.transition(JobStatus.RUNNING, s -> s.withStartedAt(started));
+        assertEquals(JobStatus.QUEUED, previous.status());
+        job.transition(JobStatus.RETRYING, s -> s.withAttempts(1).withLastError("boom"));
+        job.transition(JobStatus.RUNNING);
+        job.transition(JobStatus.SUCCEEDED, s -> s.withCompletedAt(started.plusSeconds(1)));
+
+        JobState state = job.state();
+        assertEquals(new JobState(JobStatus.SUCCEEDED, 1, "boom", 0, 0).withStartedAt(started)
+                .withCompletedAt(started.plusSeconds(1)), state);
+        assertEquals(started, job.getStartedAt());
+
+        // Nothing leaves a terminal status, and a rejected transition changes nothing
+        for (JobStatus next : JobStatus.values()) {
+            IllegalStateException ex = assertThrows(IllegalStateException.class, () -> job.transition(next));
+            assertTrue(ex.getMessage().contains("SUCCEEDED"), ex.getMessage());
+        }
+        assertEquals(state, job.state());
+
+        assertThrows(IllegalStateException.class, () -> job().transition(JobStatus.SUCCEEDED));
+        assertFalse(JobStatus.FAILED.canTransitionTo(JobStatus.RUNNING));
+        assertTrue(JobStatus.RUNNING.canTransitionTo(JobStatus.QUEUED));
+    }
+
+    @Test
+    void testOnlyOneOfConcurrentTransitionsWins() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            Job job = job();
+            job.transition(JobStatus.RUNNING);
+
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger winners = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (JobStatus outcome : List.of(JobStatus.SUCCEEDED, JobStatus.FAILED, JobStatus.SUCCEEDED)) {
+                threads.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        start.await();
+                        job.transition(outcome, s -> s.withAttempts(s.attempts() + 1));
+                        winners.incrementAndGet();
+                    } catch (IllegalStateException | InterruptedException lost) {
+                        // another outcome got there first
+                    }
+                }));
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, winners.get());
+            assertEquals(1, job.getAttempts());
+        }
+    }
+
+    @Test
+    void testReadersSeeConsistentSnapshots() throws Exception {
+        Job job = job();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger torn = new AtomicInteger();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (!done.get()) {
+                JobState s = job.state();
+                // Every writer below keeps the error in step with the attempts
+                if (s.attempts() > 0 && !("attempt " + s.attempts()).equals(s.lastError())) torn.incrementAndGet();
+            }
+        });
+
+        job.transition(JobStatus.RUNNING);
+        for (int i = 1; i <= 100_000; i++) {
+            int attempts = i;
+            job.transition(JobStatus.RETRYING, s -> s.withAttempts(attempts).withLastError("attempt " + attempts));
+            job.transition(JobStatus.RUNNING);
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, torn.get());
+    }
+}
@@ -0,0 +1,225 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcJobRepositoryTests {
+
+    private EmbeddedDatabase db;
+    private JdbcJobRepository repo;
+
+    @BeforeEach
+    void setup() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        // Long flush interval: the tests decide when to flush
+        repo = new JdbcJobRepository(db, new ObjectMapper(), 5000, 60_000, 50_000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        repo.destroy();
+        db.shutdown();
+    }
+
+    private String statusInTable(String jobId) {
+        return new JdbcTemplate(db).queryForList("SELECT status FROM jobs WHERE job_id = ?", String.class, jobId)
+                .stream().findFirst().orElse(null);
+    }
+
+    @Test
+    void testReadYourWritesBeforeFlush() {
+        Job job = new Job("job-1", "sendEmail", Map.of("to", "user@test.com"), "key-1");
+        repo.save(job);
+        job.setStatus(JobStatus.RUNNING);
+        repo.save(job);
+
+        assertSame(job, repo.findById("job-1"));
+        assertNull(statusInTable("job-1"));
+
+        repo.flush();
+        assertEquals("RUNNING", statusInTable("job-1"));
+    }
+
+    @Test
+    void testTransitionsAreMergedIntoOneRowWrite() {
+        int jobs = 1000;
+        for (int i = 0; i < jobs; i++) {
+            Job job = new Job("job-" + i, "generateReport", Map.of("reportName", "r" + i), null);
+            repo.save(job);
+            job.setStatus(JobStatus.RUNNING);
+            job.setStartedAt(Instant.now());
+            repo.save(job);
+            job.setStatus(JobStatus.SUCCEEDED);
+            job.setCompletedAt(Instant.now());
+            repo.save(job);
+        }
+        repo.flush();
+
+        assertEquals(jobs, repo.getRowsWritten());
+        assertEquals(1, repo.getFlushCount());
+        assertEquals("SUCCEEDED", statusInTable("job-999"));
+    }
+
+    @Test
+    void testJobIsReloadedFromTableAfterFlush() throws Exception {
+        Job job = new Job("job-2", "sendEmail", Map.of("to", "user@test.com", "retries", 2), "key-2");
+        repo.save(job);
+        repo.flush();
+
+        job.setStatus(JobStatus.FAILED);
+        job.incrementAttempts();
+        job.setLastError("SMTP temp failure");
+        job.setStartedAt(Instant.parse("2025-08-28T02:06:34.532370Z"));
+        repo.save(job);
+        Job scheduled = new Job("job-5", "sendEmail", Map.of(), null);
+        scheduled.setSchedule(Instant.parse("2025-08-28T03:00:00Z"), "0 0 * * * *");
+        scheduled.setStatus(JobStatus.SCHEDULED);
+        repo.save(scheduled);
+        repo.flush();
+
+        // A second repository on the same table stands in for a restarted process
+        JdbcJobRepository restarted = new JdbcJobRepository(db, new ObjectMapper(), 5000, 60_000, 50_000);
+        try {
+            Job loaded = restarted.findById("job-2");
+            assertNotSame(job, loaded);
+            assertEquals(JobStatus.FAILED, loaded.getStatus());
+            assertEquals(1, loaded.getAttempts());
+            assertEquals("SMTP temp failure", loaded.getLastError());
+            assertEquals(job.getStartedAt(), loaded.getStartedAt());
+            assertEquals(job.getStatusChangedAt(), loaded.getStatusChangedAt());
+            assertEquals(2, loaded.getPayload().get("retries"));
+            assertEquals("key-2", loaded.getIdempotencyKey());
+            assertEquals(scheduled.getRunAt(), restarted.findById("job-5").getRunAt());
+            assertEquals("0 0 * * * *", restarted.findById("job-5").getCron());
+            assertEquals(2, restarted.findRecoverable().size());
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    @Test
+    void testLiveJobKeepsItsInstanceAfterFlush() {
+        Job job = new Job("job-3", "sendEmail", Map.of(), null);
+        repo.save(job);
+        job.setStatus(JobStatus.RUNNING);
+        repo.save(job);
+        repo.flush();
+
+        // Transitions compare-and-set the state of this very instance, so lookups must not hand out copies
+        assertSame(job, repo.findById("job-3"));
+
+        job.setStatus(JobStatus.SUCCEEDED);
+        repo.save(job);
+        repo.flush();
+        Job finished = repo.findById("job-3");
+        assertNotSame(job, finished);
+        assertEquals(JobStatus.SUCCEEDED, finished.getStatus());
+    }
+
+    @Test
+    void testRowsAreInsertedWhenTheDriverReportsNoCounts() throws Exception {
+        repo.destroy();
+        repo = new JdbcJobRepository(withoutBatchCounts(db), new ObjectMapper(), 5000, 60_000, 50_000);
+
+        Job job = new Job("job-4", "sendEmail", Map.of(), null);
+        repo.save(job);
+        repo.flush();
+        assertEquals("QUEUED", statusInTable("job-4"));
+
+        job.setStatus(JobStatus.RUNNING);
+        repo.save(job);
+        repo.flush();
+        assertEquals("RUNNING", statusInTable("job-4"));
+        assertEquals(1, new JdbcTemplate(db).queryForObject("SELECT COUNT(*) FROM jobs", Integer.class));
+    }
+
+    /** Makes every batch answer {@link Statement#SUCCESS_NO_INFO}, as some drivers do. */
+    private static DataSource withoutBatchCounts(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, result) -> result instanceof Connection connection
+                ? proxy(Connection.class, connection, (m, r) -> r instanceof PreparedStatement ps
+                        ? proxy(PreparedStatement.class, ps, (batch, counts) -> counts instanceof int[] c
+                                && batch.getName().equals("executeBatch") ? noInfo(c.length) : counts)
+                        : r)
+                : result);
+    }
+
+    private static int[] noInfo(int length) {
+        int[] counts = new int[length];
+        Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, BiFunction<Method, Object, Object> wrap) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (p, method, args) -> {
+            try {
+                return wrap.apply(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * Compares write-behind against a flush after every save. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkWriteBehindThroughput() {
+        int jobs = Integer.getInteger("jdbc.jobs", 20_000);
+
+        long start = System.nanoTime();
+        runJobs(jobs, false);
+        repo.flush();
+        double batchedPerSec = jobs / ((System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        runJobs(jobs, true);
+        double syncPerSec = jobs / ((System.nanoTime() - start) / 1e9);
+
+        System.out.println("===== Write-behind benchmark (" + jobs + " jobs, 4 saves each) =====");
+        System.out.println("Write-behind jobs/sec: " + (long) batchedPerSec);
+        System.out.println("Flush per save jobs/sec: " + (long) syncPerSec);
+        System.out.println("========================================");
+    }
+
+    private void runJobs(int jobs, boolean flushEverySave) {
+        for (int i = 0; i < jobs; i++) {
+            Job job = new Job(UUID.randomUUID().toString(), "sendEmail", Map.of("to", "user" + i + "@test.com"), null);
+            for (JobStatus status : new JobStatus[]{JobStatus.QUEUED, JobStatus.RUNNING, JobStatus.RUNNING, JobStatus.SUCCEEDED}) {
+                job.setStatus(status);
+                repo.save(job);
+                if (flushEverySave) repo.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobIndexTests {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final JobIndex index = new JobIndex();
+
+    private Job save(String id, String type, JobStatus status) {
+        Job job = new Job(id, type, Map.of(), null);
+        setStatus(job, status);
+        index.onSave(job);
+        now.incrementAndGet();
+        return job;
+    }
+
+    private void setStatus(Job job, JobStatus status) {
+        job.setStatus(status);
+        job.setStatusChangedAt(Instant.ofEpochMilli(now.get()));
+    }
+
+    private static List<String> ids(JobIndex.Page page) {
+        return page.hits().stream().map(JobIndex.Hit::jobId).toList();
+    }
+
+    @Test
+    void testCountsFollowStatusChangesAndDeletes() {
+        Job a = save("a", "sendEmail", JobStatus.QUEUED);
+        save("b", "sendEmail", JobStatus.QUEUED);
+        save("c", "generateReport", JobStatus.QUEUED);
+
+        a.setStatus(JobStatus.RETRYING);
+        index.onSave(a);
+        index.onSave(a); // saving again without a status change is not a transition
+
+        assertEquals(2, index.count(JobStatus.QUEUED));
+        assertEquals(1, index.count("sendEmail", JobStatus.RETRYING));
+        assertEquals(Map.of("sendEmail", Map.of(JobStatus.QUEUED, 1, JobStatus.RETRYING, 1),
+                "generateReport", Map.of(JobStatus.QUEUED, 1)), index.countsByType());
+
+        index.onDelete("a");
+        index.onDelete("unknown");
+        assertEquals(0, index.count("sendEmail", JobStatus.RETRYING));
+        assertEquals(List.of("b", "c"), ids(index.query(null, null, null, null, 10)));
+    }
+
+    @Test
+    void testPagesThroughAFilteredBucketWithACursor() {
+        for (int i = 0; i < 25; i++) {
+            save("job-" + i, i % 2 == 0 ? "sendEmail" : "generateReport",
+                    i % 3 == 0 ? JobStatus.COMPENSATION_FAILED : JobStatus.SUCCEEDED);
+        }
+
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            JobIndex.Page page = index.query(JobStatus.SUCCEEDED, "sendEmail", null, cursor, 3);
+            all.addAll(ids(page));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Even numbers not divisible by 3, in order
+        assertEquals(List.of("job-2", "job-4", "job-8", "job-10", "job-14", "job-16", "job-20", "job-22"), all);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testSinceUsesTheTimeTheJobEnteredItsStatus() {
+        Job early = save("early", "sendEmail", JobStatus.RUNNING);
+        save("other", "sendEmail", JobStatus.COMPENSATION_FAILED);
+        long nineOClock = now.get();
+        save("late", "sendEmail", JobStatus.COMPENSATION_FAILED);
+
+        setStatus(early, JobStatus.COMPENSATION_FAILED);
+        index.onSave(early);
+
+        JobIndex.Page page = index.query(JobStatus.COMPENSATION_FAILED, null, nineOClock, null, 10);
+        assertEquals(List.of("late", "early"), ids(page));
+        assertNull(page.nextCursor());
+        assertTrue(page.hits().stream().allMatch(hit -> hit.statusChangedAtMs() >= nineOClock));
+    }
+
+    @Test
+    void testRebuiltIndexKeepsTheTimeJobsEnteredTheirStatus() {
+        Job job = new Job("old", "sendEmail", Map.of(), null);
+        job.setStatus(JobStatus.SUCCEEDED);
+        job.setStatusChangedAt(Instant.ofEpochMilli(500));
+
+        // As when a repository replays its jobs long after they finished
+        index.onSave(job);
+        assertEquals(List.of(new JobIndex.Hit("old", JobStatus.SUCCEEDED, 500)),
+                index.query(JobStatus.SUCCEEDED, null, null, null, 10).hits());
+    }
+
+    @Test
+    void testRejectsForeignCursors() {
+        assertThrows(IllegalArgumentException.class, () -> index.query(null, null, null, "not a cursor", 10));
+    }
+}
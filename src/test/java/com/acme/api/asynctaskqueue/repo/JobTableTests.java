@@ -0,0 +1,229 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobTableTests {
+
+    private static Job job(String id) {
+        return new Job(id, "EMAIL", Map.of(), null);
+    }
+
+    @Test
+    void testPutGetRemoveAcrossRehashes() {
+        JobTable table = new JobTable();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String id = UUID.randomUUID().toString();
+            ids.add(id);
+            assertNull(table.put(job(id)));
+        }
+        assertEquals(20_000, table.size());
+        for (String id : ids) {
+            assertEquals(id, table.get(id).getJobId());
+        }
+
+        Job replacement = job(ids.get(0));
+        assertNotSame(replacement, table.put(replacement));
+        assertSame(replacement, table.get(ids.get(0)));
+        assertEquals(20_000, table.size());
+
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertNotNull(table.remove(ids.get(i)));
+            assertNull(table.remove(ids.get(i)));
+        }
+        assertEquals(10_000, table.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i % 2 == 1, table.get(ids.get(i)) != null, ids.get(i));
+        }
+
+        // Re-adding into deleted slots keeps every id findable
+        for (int i = 0; i < ids.size(); i += 2) {
+            table.put(job(ids.get(i)));
+        }
+        Set<String> seen = new HashSet<>();
+        table.forEach(job -> assertTrue(seen.add(job.getJobId())));
+        assertEquals(new HashSet<>(ids), seen);
+    }
+
+    @Test
+    void testIdsThatAreNotCanonicalUuidsAreKeptAsStrings() {
+        JobTable table = new JobTable();
+        String upper = UUID.randomUUID().toString().toUpperCase();
+        table.put(job("job-1"));
+        table.put(job(upper));
+
+        assertFalse(table.get("job-1").hasUuidId());
+        assertEquals(upper, table.get(upper).getJobId());
+        assertNull(table.get(upper.toLowerCase()));
+        assertNull(table.get("job-2"));
+        assertEquals(2, table.size());
+        assertNotNull(table.remove("job-1"));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testConcurrentWritersAndReaders() throws Exception {
+        JobTable table = new JobTable();
+        int threads = 4;
+        int perThread = 5_000;
+        List<String> stable = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String id = UUID.randomUUID().toString();
+            stable.add(id);
+            table.put(job(id));
+        }
+
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger misses = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            Thread.ofPlatform().start(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        String id = UUID.randomUUID().toString();
+                        table.put(job(id));
+                        if (table.get(id) == null) misses.incrementAndGet();
+                        if (table.get(stable.get(i % stable.size())) == null) misses.incrementAndGet();
+                        if (i % 3 == 0) table.remove(id);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+
+        assertEquals(0, misses.get());
+        int removedPerThread = (perThread + 2) / 3;
+        assertEquals(stable.size() + threads * (perThread - removedPerThread), table.size());
+    }
+
+    /** How jobs were held before: string id, enum and Instant fields, an AtomicInteger, in a ConcurrentHashMap. */
+    private static final class LegacyJob {
+        final String jobId;
+        final String type;
+        final Map<String, Object> payload;
+        final String idempotencyKey;
+        volatile JobStatus status = JobStatus.QUEUED;
+        volatile JobPriority priority = JobPriority.NORMAL;
+        final AtomicInteger attempts = new AtomicInteger();
+        Long timeoutMs;
+        String lastError;
+        Instant startedAt;
+        Instant completedAt;
+        final long submittedAtNanos = System.nanoTime();
+
+        LegacyJob(String jobId, String type, Map<String, Object> payload, String idempotencyKey) {
+            this.jobId = jobId;
+            this.type = type;
+            this.payload = payload;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+
+    /**
+     * Heap retained per in-flight job, and GC activity while jobs churn through their lifecycle, for the legacy
+     * layout and for {@link Job} in a {@link JobTable}. Payloads are left out so only the metadata is compared.
+     * Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkMetadataFootprint() throws Exception {
+        int count = Integer.getInteger("table.jobs", 1_000_000);
+        int rounds = 5;
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = UUID.randomUUID().toString();
+        }
+
+        System.out.println("===== Job metadata benchmark (" + count + " in-flight jobs) =====");
+
+        long before = usedHeapAfterGc();
+        Map<String, LegacyJob> legacy = new ConcurrentHashMap<>();
+        for (String id : ids) {
+            legacy.put(id, new LegacyJob(new String(id), new String("sendEmail"), null, null));
+        }
+        long legacyRetained = usedHeapAfterGc() - before;
+        long[] gc = gcTotals();
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (String id : ids) {
+                LegacyJob job = legacy.get(id);
+                job.status = JobStatus.RUNNING;
+                job.attempts.incrementAndGet();
+                job.startedAt = Instant.now();
+                job.status = JobStatus.SUCCEEDED;
+                job.completedAt = Instant.now();
+                legacy.remove(id);
+                legacy.put(id, new LegacyJob(new String(id), "sendEmail", null, null));
+            }
+        }
+        report("legacy", legacyRetained, count, rounds, gc, start);
+        legacy = null;
+
+        before = usedHeapAfterGc();
+        JobTable table = new JobTable();
+        for (String id : ids) {
+            table.put(new Job(id, new String("sendEmail"), null, null));
+        }
+        long tableRetained = usedHeapAfterGc() - before;
+        gc = gcTotals();
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (String id : ids) {
+                Job job = table.get(id);
+                job.setStatus(JobStatus.RUNNING);
+                job.incrementAttempts();
+                job.setStartedAt(Instant.now());
+                job.setStatus(JobStatus.SUCCEEDED);
+                job.setCompletedAt(Instant.now());
+                table.remove(id);
+                table.put(new Job(id, "sendEmail", null, null));
+            }
+        }
+        report("packed", tableRetained, count, rounds, gc, start);
+        assertEquals(count, table.size());
+        System.out.println("========================================");
+    }
+
+    private static void report(String layout, long retained, int count, int rounds, long[] gcBefore, long start) {
+        long nanos = System.nanoTime() - start;
+        long[] gc = gcTotals();
+        System.out.printf("%-7s %6.1f MB retained, %4d bytes/job; churn %4d ns/job, %3d GCs, %5d ms in GC%n", layout,
+                retained / 1e6, retained / count, nanos / ((long) count * rounds), gc[0] - gcBefore[0],
+                gc[1] - gcBefore[1]);
+    }
+
+    private static long[] gcTotals() {
+        long collections = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[] {collections, millis};
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,228 @@
+package com.acme.api.asynctaskqueue.repo;
+
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalJobRepositoryTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private JournalJobRepository open(int segmentSizeMb) throws IOException {
+        return new JournalJobRepository(mapper, dir, segmentSizeMb, 5, 1000);
+    }
+
+    @Test
+    void testReplayRestoresStateAndInFlightJobs() throws Exception {
+        JournalJobRepository repo = open(1);
+
+        Job done = new Job("job-1", "sendEmail", Map.of("to", "a@test.com"), "key-1");
+        repo.save(done);
+        done.setStatus(JobStatus.RUNNING);
+        done.setStartedAt(Instant.parse("2025-08-28T02:06:34.532370Z"));
+        repo.save(done);
+        done.setStatus(JobStatus.SUCCEEDED);
+        done.setCompletedAt(Instant.parse("2025-08-28T02:06:37.532370Z"));
+        repo.save(done);
+
+        Job retrying = new Job("job-2", "generateReport", Map.of("reportName", "daily", "pages", 3), null);
+        repo.save(retrying);
+        retrying.setStatus(JobStatus.RUNNING);
+        retrying.incrementAttempts();
+        retrying.setLastError("temporary failure");
+        repo.save(retrying);
+
+        Job recurring = new Job("job-3", "generateReport", Map.of(), null);
+        recurring.setSchedule(Instant.parse("2025-08-28T03:00:00Z"), "0 0 * * * *");
+        recurring.setStatus(JobStatus.SCHEDULED);
+        repo.save(recurring);
+        repo.destroy();
+
+        JournalJobRepository reopened = open(1);
+        Job restored = reopened.findById("job-1");
+        assertEquals(JobStatus.SUCCEEDED, restored.getStatus());
+        assertEquals("key-1", restored.getIdempotencyKey());
+        assertEquals("a@test.com", restored.getPayload().get("to"));
+        assertEquals(done.getStartedAt(), restored.getStartedAt());
+        assertEquals(done.getCompletedAt(), restored.getCompletedAt());
+        assertEquals(done.getStatusChangedAt(), restored.getStatusChangedAt());
+        assertEquals(done.getStatusChangedAtMillis(),
+                reopened.index().query(JobStatus.SUCCEEDED, null, null, null, 1).hits().get(0).statusChangedAtMs());
+
+        Job inFlight = reopened.findById("job-2");
+        assertEquals(1, inFlight.getAttempts());
+        assertEquals("temporary failure", inFlight.getLastError());
+        assertEquals(3, inFlight.getPayload().get("pages"));
+
+        Job scheduled = reopened.findById("job-3");
+        assertEquals(recurring.getRunAt(), scheduled.getRunAt());
+        assertEquals("0 0 * * * *", scheduled.getCron());
+        assertNull(inFlight.getRunAt());
+
+        Collection<Job> recoverable = reopened.findRecoverable();
+        assertEquals(List.of("job-2", "job-3"), recoverable.stream().map(Job::getJobId).sorted().toList());
+        assertTrue(reopened.findRecoverable().isEmpty());
+        // The finished job goes to retention instead
+        assertEquals(List.of(restored), List.copyOf(reopened.findRetained()));
+        reopened.destroy();
+    }
+
+    @Test
+    void testTornTailIsIgnored() throws Exception {
+        JournalJobRepository repo = open(1);
+        repo.save(new Job("job-1", "sendEmail", Map.of(), null));
+        repo.save(new Job("job-2", "sendEmail", Map.of(), null));
+        repo.destroy();
+
+        // Simulate a crash in the middle of the next append: a length with a garbage body
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("segment-")).sorted().findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            long offset = 0;
+            while (true) {
+                header.clear();
+                channel.read(header, offset);
+                int length = header.flip().getInt();
+                if (length == 0) break;
+                offset += 8 + length;
+            }
+            channel.write(ByteBuffer.allocate(12).putInt(40).putInt(12345).putInt(99).flip(), offset);
+        }
+
+        JournalJobRepository reopened = open(1);
+        assertNotNull(reopened.findById("job-1"));
+        assertNotNull(reopened.findById("job-2"));
+        reopened.save(new Job("job-3", "sendEmail", Map.of(), null));
+        reopened.destroy();
+
+        JournalJobRepository again = open(1);
+        assertNotNull(again.findById("job-3"));
+        again.destroy();
+    }
+
+    @Test
+    void testCompactionReplacesSegmentsWithSnapshot() throws Exception {
+        JournalJobRepository repo = open(1);
+        String padding = "x".repeat(2000);
+        for (int i = 0; i < 2000; i++) {
+            Job job = new Job("job-" + i, "generateReport", Map.of("padding", padding), null);
+            repo.save(job);
+            job.setStatus(i % 2 == 0 ? JobStatus.SUCCEEDED : JobStatus.QUEUED);
+            repo.save(job);
+        }
+        repo.compact();
+        repo.save(new Job("job-after", "sendEmail", Map.of(), null));
+        repo.destroy();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            List<String> names = files.map(p -> p.getFileName().toString()).sorted().toList();
+            assertEquals(1, names.stream().filter(n -> n.endsWith(".snap")).count());
+            assertTrue(names.stream().filter(n -> n.endsWith(".log")).count() <= 3, names.toString());
+        }
+
+        JournalJobRepository reopened = open(1);
+        assertEquals(JobStatus.SUCCEEDED, reopened.findById("job-0").getStatus());
+        assertEquals(JobStatus.QUEUED, reopened.findById("job-1999").getStatus());
+        assertNotNull(reopened.findById("job-after"));
+        assertEquals(1001, reopened.findRecoverable().size());
+        reopened.destroy();
+    }
+
+    @Test
+    void testConcurrentSavesOfOneJobReplayItsLatestState() throws Exception {
+        JournalJobRepository repo = open(4);
+        int jobs = 2000;
+        List<Job> created = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            Job job = new Job(UUID.randomUUID().toString(), "sendEmail", Map.of(), null);
+            repo.save(job);
+            created.add(job);
+        }
+
+        // One thread starts each job, another completes it as soon as it sees it running: their saves race
+        Thread starter = new Thread(() -> created.forEach(job -> {
+            job.setStatus(JobStatus.RUNNING);
+            repo.save(job);
+        }));
+        Thread completer = new Thread(() -> created.forEach(job -> {
+            while (job.getStatus() != JobStatus.RUNNING) Thread.onSpinWait();
+            job.setStatus(JobStatus.SUCCEEDED);
+            repo.save(job);
+        }));
+        starter.start();
+        completer.start();
+        starter.join();
+        completer.join();
+        repo.destroy();
+
+        JournalJobRepository reopened = open(4);
+        for (Job job : created) {
+            assertEquals(JobStatus.SUCCEEDED, reopened.findById(job.getJobId()).getStatus(), job.getJobId());
+        }
+        assertTrue(reopened.findRecoverable().isEmpty());
+        reopened.destroy();
+    }
+
+    /**
+     * Append latency and recovery time. Run with {@code mvn test -Dbenchmarks=true -Djournal.jobs=3000000}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkAppendAndRecovery() throws Exception {
+        int jobs = Integer.getInteger("journal.jobs", 2_000_000);
+        JournalJobRepository repo = open(64);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            Job job = new Job(UUID.randomUUID().toString(), "sendEmail", Map.of("to", "user" + i + "@example.com"), null);
+            repo.save(job);
+            job.setStatus(JobStatus.RUNNING);
+            repo.save(job);
+            if (i % 4 != 0) {
+                job.setStatus(JobStatus.SUCCEEDED);
+                repo.save(job);
+            }
+        }
+        long appendNanos = System.nanoTime() - start;
+        long appends = jobs * 2L + (jobs - (jobs + 3) / 4);
+        repo.destroy();
+
+        start = System.nanoTime();
+        JournalJobRepository reopened = open(64);
+        long recoveryMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("===== Journal benchmark (" + jobs + " jobs) =====");
+        System.out.println("Average append (us): " + (appendNanos / 1000.0 / appends));
+        System.out.println("Recovery time (ms): " + recoveryMs);
+        System.out.println("Recovered in flight: " + reopened.findRecoverable().size());
+        System.out.println("========================================");
+        reopened.destroy();
+    }
+}
@@ -0,0 +1,141 @@
+package com.acme.api.asynctaskqueue.retention;
+
+import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.repo.InMemoryJobRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobRetentionServiceTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private InMemoryJobRepository repo;
+
+    @BeforeEach
+    void setup() {
+        repo = new InMemoryJobRepository();
+    }
+
+    private JobRetentionService retention(int maxResident, int batchSize) {
+        // TTLs: SUCCEEDED 10s, COMPENSATED 20s, COMPENSATION_FAILED 30s
+        return new JobRetentionService(repo, 10, 20, 30, maxResident, 100, batchSize, now::get);
+    }
+
+    private Job terminalJob(String id, JobStatus status) {
+        Job job = new Job(id, "sendEmail", Map.of("to", "user@test.com"), null);
+        job.incrementAttempts();
+        job.setStartedAt(Instant.parse("2025-08-28T02:06:34.532Z"));
+        job.setCompletedAt(Instant.parse("2025-08-28T02:06:37.532Z"));
+        job.setStatus(status);
+        repo.save(job);
+        return job;
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+
+    @Test
+    void testEachStatusExpiresAfterItsOwnTtl() {
+        JobRetentionService retention = retention(1000, 1000);
+        retention.onTerminal(terminalJob("ok", JobStatus.SUCCEEDED));
+        retention.onTerminal(terminalJob("undone", JobStatus.COMPENSATED));
+        retention.onTerminal(terminalJob("broken", JobStatus.COMPENSATION_FAILED));
+
+        advanceSeconds(9);
+        assertEquals(0, retention.sweep());
+
+        advanceSeconds(1);
+        assertEquals(1, retention.sweep());
+        assertNull(repo.findById("ok"));
+        assertNotNull(repo.findById("undone"));
+
+        advanceSeconds(20);
+        assertEquals(2, retention.sweep());
+        assertNull(repo.findById("broken"));
+        assertEquals(0, retention.getResidentCount());
+    }
+
+    @Test
+    void testRecoveredJobsExpireAsOfWhenTheyFinished() {
+        JobRetentionService retention = retention(2, 1000);
+        long nowMillis = System.currentTimeMillis();
+        Job stale = terminalJob("stale", JobStatus.SUCCEEDED);
+        stale.setStatusChangedAt(Instant.ofEpochMilli(nowMillis - 15_000));
+        Job recent = terminalJob("recent", JobStatus.SUCCEEDED);
+        recent.setStatusChangedAt(Instant.ofEpochMilli(nowMillis - 5_000));
+        Job older = terminalJob("older", JobStatus.COMPENSATED);
+        older.setStatusChangedAt(Instant.ofEpochMilli(nowMillis - 8_000));
+
+        retention.onRecovered(List.of(recent, stale, older));
+        retention.onTerminal(terminalJob("live", JobStatus.SUCCEEDED));
+        assertEquals(4, retention.getResidentCount());
+
+        // Over the cap of 2, the two that finished first go; then nothing is past its TTL yet
+        assertEquals(2, retention.sweep());
+        assertNull(repo.findById("stale"));
+        assertNull(repo.findById("older"));
+        assertNotNull(repo.findById("recent"));
+
+        // 10s after it finished
+        advanceSeconds(5);
+        assertEquals(1, retention.sweep());
+        assertNull(repo.findById("recent"));
+        assertNotNull(repo.findById("live"));
+    }
+
+    @Test
+    void testTombstoneStillAnswersStatusQueries() {
+        JobRetentionService retention = retention(1000, 1000);
+        Job job = terminalJob("ok", JobStatus.SUCCEEDED);
+        retention.onTerminal(job);
+        advanceSeconds(10);
+        retention.sweep();
+
+        JobStatusResponse resp = retention.findTombstone("ok").toStatusResponse();
+        assertEquals("SUCCEEDED", resp.status());
+        assertEquals(1, resp.attempts());
+        assertEquals(job.getStartedAt(), resp.startedAt());
+        assertEquals(job.getCompletedAt(), resp.completedAt());
+    }
+
+    @Test
+    void testResidentCapEvictsOldestFirstInBatches() {
+        JobRetentionService retention = retention(5, 3);
+        for (int i = 0; i < 10; i++) {
+            retention.onTerminal(terminalJob("job-" + i, i % 2 == 0 ? JobStatus.SUCCEEDED : JobStatus.COMPENSATED));
+            now.incrementAndGet();
+        }
+
+        assertEquals(3, retention.sweep());
+        assertEquals(2, retention.sweep());
+        assertEquals(0, retention.sweep());
+
+        assertEquals(5, retention.getResidentCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i >= 5, repo.findById("job-" + i) != null, "job-" + i);
+        }
+    }
+
+    @Test
+    void testJobsThatAreNoLongerTerminalAreKept() {
+        JobRetentionService retention = retention(1000, 1000);
+        Job job = terminalJob("revived", JobStatus.SUCCEEDED);
+        retention.onTerminal(job);
+        job.setStatus(JobStatus.RUNNING);
+
+        advanceSeconds(60);
+        retention.sweep();
+        assertNotNull(repo.findById("revived"));
+        assertNull(retention.findTombstone("revived"));
+    }
+}
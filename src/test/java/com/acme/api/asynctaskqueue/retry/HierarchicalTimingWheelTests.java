@@ -0,0 +1,130 @@
+package com.acme.api.asynctaskqueue.retry;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HierarchicalTimingWheelTests {
+
+    @Test
+    void testTimeoutsFireNeverEarlyAcrossLevels() throws Exception {
+        // 16 buckets per level: level 0 covers 16ms, level 1 256ms, level 2 4s
+        try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 4, 3)) {
+            long[] delays = {0, 5, 15, 17, 100, 300, 700};
+            CountDownLatch done = new CountDownLatch(delays.length);
+            long[] firedAfter = new long[delays.length];
+
+            long start = System.nanoTime();
+            for (int i = 0; i < delays.length; i++) {
+                int n = i;
+                wheel.schedule(() -> {
+                    firedAfter[n] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    done.countDown();
+                }, delays[i], TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(done.await(3, TimeUnit.SECONDS));
+            for (int i = 0; i < delays.length; i++) {
+                assertTrue(firedAfter[i] >= delays[i], "delay " + delays[i] + " fired after " + firedAfter[i]);
+                assertTrue(firedAfter[i] < delays[i] + 200, "delay " + delays[i] + " fired after " + firedAfter[i]);
+            }
+            assertEquals(0, wheel.pending());
+        }
+    }
+
+    @Test
+    void testCancelledTimeoutsNeverRun() throws Exception {
+        try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("test-wheel", 1, 4, 3)) {
+            AtomicInteger ran = new AtomicInteger();
+            List<HierarchicalTimingWheel.Timeout> timeouts = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                timeouts.add(wheel.schedule(ran::incrementAndGet, 20 + i, TimeUnit.MILLISECONDS));
+            }
+            assertEquals(100, wheel.pending());
+
+            for (int i = 0; i < 100; i += 2) {
+                assertTrue(timeouts.get(i).cancel());
+                assertFalse(timeouts.get(i).cancel());
+            }
+            assertEquals(50, wheel.pending());
+
+            long deadline = System.currentTimeMillis() + 3000;
+            while (wheel.pending() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(50, ran.get());
+            assertTrue(timeouts.get(1).isExpired());
+            assertTrue(timeouts.get(0).isCancelled());
+            assertFalse(timeouts.get(1).cancel());
+        }
+    }
+
+    @Test
+    void testRejectedRetryIsParkedAgainInsteadOfDropped() throws Exception {
+        try (RetryScheduler scheduler = new RetryScheduler(1, 10, 40)) {
+            AtomicInteger calls = new AtomicInteger();
+            CountDownLatch accepted = new CountDownLatch(1);
+
+            scheduler.schedule("job-1", 5, () -> {
+                if (calls.incrementAndGet() <= 3) throw new RejectedExecutionException("queue full");
+                accepted.countDown();
+            });
+
+            assertTrue(accepted.await(3, TimeUnit.SECONDS));
+            assertEquals(4, calls.get());
+            assertEquals(3, scheduler.getReparkedRetries());
+            assertEquals(0, scheduler.getPendingRetries());
+        }
+    }
+
+    /**
+     * Cost of scheduling and then cancelling timers (the common case for retries that are superseded), against
+     * the heap-based {@link ScheduledThreadPoolExecutor}. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkScheduleAndCancel() throws Exception {
+        int timers = Integer.getInteger("wheel.timers", 500_000);
+        Runnable noop = () -> {};
+
+        System.out.println("===== Retry scheduler benchmark (" + timers + " timers) =====");
+        for (int round = 0; round < 3; round++) {
+            ScheduledThreadPoolExecutor heap = new ScheduledThreadPoolExecutor(1);
+            heap.setRemoveOnCancelPolicy(true);
+            long start = System.nanoTime();
+            List<ScheduledFuture<?>> futures = new ArrayList<>(timers);
+            for (int i = 0; i < timers; i++) {
+                futures.add(heap.schedule(noop, 1000 + ThreadLocalRandom.current().nextInt(60_000), TimeUnit.MILLISECONDS));
+            }
+            for (ScheduledFuture<?> f : futures) {
+                f.cancel(false);
+            }
+            long heapNanos = System.nanoTime() - start;
+            heap.shutdownNow();
+
+            long wheelNanos;
+            try (HierarchicalTimingWheel wheel = new HierarchicalTimingWheel("bench-wheel", 10, 8, 4)) {
+                start = System.nanoTime();
+                List<HierarchicalTimingWheel.Timeout> timeouts = new ArrayList<>(timers);
+                for (int i = 0; i < timers; i++) {
+                    timeouts.add(wheel.schedule(noop, 1000 + ThreadLocalRandom.current().nextInt(60_000), TimeUnit.MILLISECONDS));
+                }
+                for (HierarchicalTimingWheel.Timeout t : timeouts) {
+                    t.cancel();
+                }
+                wheelNanos = System.nanoTime() - start;
+            }
+            System.out.printf("round %d: ScheduledThreadPoolExecutor %dms, timing wheel %dms%n",
+                    round, heapNanos / 1_000_000, wheelNanos / 1_000_000);
+        }
+        System.out.println("========================================");
+    }
+}
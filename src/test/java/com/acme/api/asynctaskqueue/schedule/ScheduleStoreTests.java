@@ -0,0 +1,96 @@
+package com.acme.api.asynctaskqueue.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduleStoreTests {
+
+    @Test
+    void testJobsAreReleasedInTimeOrderAndNeverEarly() {
+        List<String> released = new ArrayList<>();
+        ScheduleStore store = new ScheduleStore(100, 0, () -> 0, false);
+        store.releaseTo(released::add);
+
+        String uuid = UUID.randomUUID().toString();
+        assertEquals(1100, store.add("late", 1050));
+        assertEquals(1000, store.add(uuid, 1000));
+        assertEquals(1000, store.add("early", 901));
+        assertEquals(3, store.size());
+
+        assertEquals(0, store.releaseDue(999));
+        assertEquals(2, store.releaseDue(1000));
+        assertEquals(List.of(uuid, "early"), released);
+        assertEquals(1, store.releaseDue(5000));
+        assertEquals("late", released.get(2));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testJobsDueAtTheSameInstantAreSpreadOverTheWindow() {
+        Map<Long, Integer> perSlot = new TreeMap<>();
+        ScheduleStore store = new ScheduleStore(100, 1000, () -> 0, false);
+        store.releaseTo(jobId -> {});
+
+        for (int i = 0; i < 10_000; i++) {
+            long releaseAt = store.add(UUID.randomUUID().toString(), 60_000);
+            assertTrue(releaseAt >= 60_000 && releaseAt <= 61_000, "released at " + releaseAt);
+            perSlot.merge(releaseAt, 1, Integer::sum);
+        }
+        // Offsets of 1-100ms go to the slot ending at 60.1s and so on; only an offset of 0 stays at 60s
+        assertEquals(11, perSlot.size());
+        assertTrue(perSlot.get(60_000L) < 50, perSlot.toString());
+        for (long slot = 60_100; slot <= 61_000; slot += 100) {
+            assertTrue(Math.abs(perSlot.get(slot) - 1000) < 150, perSlot.toString());
+        }
+        assertEquals(10_000, store.releaseDue(61_000));
+    }
+
+    @Test
+    void testRejectedJobsAreReleasedAgainLater() {
+        List<String> released = new ArrayList<>();
+        boolean[] full = {true};
+        ScheduleStore store = new ScheduleStore(100, 0, () -> 0, false);
+        store.releaseTo(jobId -> {
+            if (full[0]) throw new RejectedExecutionException("full");
+            released.add(jobId);
+        });
+
+        store.add("job-1", 1000);
+        assertEquals(0, store.releaseDue(1000));
+        assertEquals(1, store.size());
+        assertEquals(0, store.releaseDue(1000 + ScheduleStore.REPARK_MS - 1));
+
+        full[0] = false;
+        assertEquals(1, store.releaseDue(1000 + ScheduleStore.REPARK_MS));
+        assertEquals(List.of("job-1"), released);
+    }
+
+    @Test
+    void testReleaserThreadWakesUpForEarlierJobs() throws Exception {
+        List<String> released = new CopyOnWriteArrayList<>();
+        try (ScheduleStore store = new ScheduleStore(10, 0)) {
+            store.releaseTo(released::add);
+            long now = System.currentTimeMillis();
+            store.add("later", now + TimeUnit.HOURS.toMillis(1));
+            store.add("soon", now + 100);
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (released.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of("soon"), released);
+            assertTrue(System.currentTimeMillis() >= now + 100);
+            assertEquals(1, store.size());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.idempotency.IdempotencyStore;
+import com.acme.api.asynctaskqueue.jobs.dto.BulkSubmitSummary;
+import com.acme.api.asynctaskqueue.metrics.JobMetrics;
+import com.acme.api.asynctaskqueue.repo.InMemoryJobRepository;
+import com.acme.api.asynctaskqueue.retention.JobRetentionService;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.worker.JobHandler;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkJobSubmitterTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private InMemoryJobRepository repo;
+    private JobService service;
+
+    @BeforeEach
+    void setup() {
+        repo = new InMemoryJobRepository();
+        JobHandlerRegistry registry = new JobHandlerRegistry();
+        registry.register("report", new JobHandler() {
+            @Override
+            public void execute(Map<String, Object> payload) throws Exception {
+                gate.await();
+            }
+
+            @Override
+            public void compensate(Map<String, Object> lastKnownState) {
+            }
+        });
+        // One job running and two queued fill the executor
+        ThreadPoolExecutor normal = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(2));
+        service = new JobService(repo,
+                new JobBulkheads(normal, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                (ThreadPoolExecutor) Executors.newFixedThreadPool(1),
+                new RetryScheduler(10, 500, 30_000), registry, new JobMetrics(),
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000));
+    }
+
+    @AfterEach
+    void release() {
+        gate.countDown();
+    }
+
+    private List<JsonNode> submit(int batchSize, String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BulkJobSubmitter(service, mapper, batchSize)
+                .submit(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        return lines;
+    }
+
+    @Test
+    void testInvalidLinesAreRejectedOnTheirOwnAndQueueFullIsSticky() throws Exception {
+        String body = """
+                {"type":"report","payload":{"n":1}}
+                {"type":"report","payload":"not an object"}
+                {"payload":{"n":3}}
+
+                {"type":"report","payload":{"n":5}}
+                {"type":"report","payload":{"n":6},"idempotencyKey":"k-6"}
+                {"type":"report","payload":{"n":7}}
+                [1, 2]
+                {"type":"report","payload":{"n":9}}
+                """;
+
+        List<JsonNode> results = submit(2, body);
+        assertEquals(9, results.size());
+
+        assertEquals(1, results.get(0).get("line").asInt());
+        assertNotNull(repo.findById(results.get(0).get("jobId").asText()));
+        assertEquals(2, results.get(1).get("line").asInt());
+        assertTrue(results.get(1).get("error").asText().startsWith("Invalid job request"));
+        assertEquals("Job type is required", results.get(2).get("error").asText());
+        assertTrue(results.get(3).has("jobId"));
+        assertEquals(5, results.get(3).get("line").asInt());
+        assertTrue(results.get(4).has("jobId"));
+
+        // Line 7 no longer fits; valid lines after it are not admitted either
+        assertEquals(7, results.get(5).get("line").asInt());
+        assertEquals(BulkJobSubmitter.QUEUE_FULL, results.get(5).get("error").asText());
+        assertEquals("Each line must be a JSON object", results.get(6).get("error").asText());
+        assertEquals(9, results.get(7).get("line").asInt());
+        assertEquals(BulkJobSubmitter.QUEUE_FULL, results.get(7).get("error").asText());
+
+        assertEquals(new BulkSubmitSummary(3, 5, 7), mapper.treeToValue(results.get(8), BulkSubmitSummary.class));
+    }
+
+    @Test
+    void testSummaryReportsWhereToResume() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            body.append("{\"type\":\"report\",\"payload\":{\"n\":").append(i).append("}}\n");
+        }
+
+        List<JsonNode> results = submit(256, body.toString());
+        BulkSubmitSummary summary = mapper.treeToValue(results.get(results.size() - 1), BulkSubmitSummary.class);
+        assertEquals(new BulkSubmitSummary(3, 2, 4), summary);
+    }
+
+    @Test
+    void testMalformedJsonStopsTheStream() throws Exception {
+        String body = """
+                {"type":"report","payload":{"n":1}}
+                {"type":"report", payload}
+                {"type":"report","payload":{"n":3}}
+                """;
+
+        List<JsonNode> results = submit(256, body);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).has("jobId"));
+        assertEquals(2, results.get(1).get("line").asInt());
+        assertTrue(results.get(1).get("error").asText().startsWith("Malformed JSON"));
+        assertEquals(new BulkSubmitSummary(1, 1, null), mapper.treeToValue(results.get(2), BulkSubmitSummary.class));
+    }
+}
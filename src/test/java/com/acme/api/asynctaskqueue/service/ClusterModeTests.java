@@ -0,0 +1,316 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.config.ClusterSettings;
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.idempotency.IdempotencyStore;
+import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
+import com.acme.api.asynctaskqueue.metrics.JobMetrics;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobPriority;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.model.PayloadStorage;
+import com.acme.api.asynctaskqueue.repo.InMemoryJobRepository;
+import com.acme.api.asynctaskqueue.repo.JdbcJobRepository;
+import com.acme.api.asynctaskqueue.retention.JobRetentionService;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.schedule.ScheduleStore;
+import com.acme.api.asynctaskqueue.worker.JobHandler;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several nodes in one JVM, each with its own service, executor and repository, sharing one embedded database.
+ */
+public class ClusterModeTests {
+
+    /** One node of the cluster: everything a separate process would have of its own. */
+    private record Node(JdbcJobRepository repo, JobService service, ThreadPoolExecutor executor,
+                        ThreadPoolExecutor compensationExecutor, RetryScheduler retryScheduler, ScheduleStore schedules,
+                        JobRetentionService retention) {
+        void close() throws Exception {
+            service.destroy();
+            retention.destroy();
+            executor.shutdownNow();
+            compensationExecutor.shutdownNow();
+            retryScheduler.close();
+            schedules.close();
+            repo.destroy();
+        }
+    }
+
+    private EmbeddedDatabase db;
+    private final List<Node> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        db = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Node node : nodes) {
+            node.close();
+        }
+        db.shutdown();
+    }
+
+    private Node node(String nodeId, int threads, JobHandler handler) {
+        return node(nodeId, threads, handler, LeaseSettings.defaults());
+    }
+
+    private Node node(String nodeId, int threads, JobHandler handler, LeaseSettings leases) {
+        ClusterSettings cluster = new ClusterSettings(true, nodeId, 8, threads * 2, 5, 50);
+        JdbcJobRepository repo = new JdbcJobRepository(db, new ObjectMapper(), 500, 5, 50_000, cluster);
+        JobHandlerRegistry registry = new JobHandlerRegistry();
+        registry.register("work", handler);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(threads);
+        ThreadPoolExecutor compensationExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        RetryScheduler retryScheduler = new RetryScheduler(10, 500, 30_000);
+        ScheduleStore schedules = new ScheduleStore(100, 0);
+        JobRetentionService retention = new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000);
+        JobService service = new JobService(repo,
+                new JobBulkheads(executor, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                compensationExecutor, retryScheduler, registry, new JobMetrics(),
+                new IdempotencyStore(3600, 10_000), retention,
+                List.of(), 0, PayloadStorage.MAP, Set.of(), schedules, cluster, leases);
+        Node node = new Node(repo, service, executor, compensationExecutor, retryScheduler, schedules, retention);
+        nodes.add(node);
+        return node;
+    }
+
+    /** Counts the runs of every job by its payload's {@code n}, after sleeping {@code sleepMs} to stand in for I/O. */
+    private static JobHandler countingHandler(Map<Object, Integer> runs, long sleepMs) {
+        return new JobHandler() {
+            @Override
+            public void execute(Map<String, Object> payload) throws Exception {
+                if (sleepMs > 0) Thread.sleep(sleepMs);
+                runs.merge(payload.get("n"), 1, Integer::sum);
+            }
+
+            @Override
+            public void compensate(Map<String, Object> lastKnownState) {
+            }
+        };
+    }
+
+    private long succeededInTable() {
+        return new JdbcTemplate(db).queryForObject("SELECT COUNT(*) FROM jobs WHERE status = 'SUCCEEDED'", Long.class);
+    }
+
+    /** Submits {@code jobs} jobs round-robin over the nodes and waits until all of them succeeded. */
+    private long runJobs(int jobs, long timeoutMs) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            nodes.get(i % nodes.size()).service().submitJob(new JobRequest("work", Map.of("n", i), null));
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (succeededInTable() < jobs && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    void testEveryJobIsClaimedByExactlyOneNode() throws Exception {
+        Map<Object, Integer> runs = new ConcurrentHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            node("node-" + i, 2, countingHandler(runs, 2));
+        }
+        nodes.forEach(node -> node.service().startClaiming());
+
+        int jobs = 300;
+        runJobs(jobs, 10_000);
+
+        assertEquals(jobs, succeededInTable());
+        assertEquals(jobs, runs.size());
+        runs.forEach((n, count) -> assertEquals(1, count, "job " + n + " ran " + count + " times"));
+        long claimed = 0;
+        for (Node node : nodes) {
+            assertTrue(node.service().getClaimedJobs() > 0, "a node claimed nothing");
+            claimed += node.service().getClaimedJobs();
+        }
+        assertEquals(jobs, claimed);
+        assertEquals(0, new JdbcTemplate(db).queryForObject(
+                "SELECT COUNT(*) FROM jobs WHERE lease_owner IS NULL", Long.class));
+    }
+
+    @Test
+    void testOfferedJobsWaitForAClaimingNode() throws Exception {
+        Map<Object, Integer> runs = new ConcurrentHashMap<>();
+        Node submitter = node("submitter", 1, countingHandler(runs, 0));
+        Node worker = node("worker", 1, countingHandler(runs, 0));
+
+        // Neither node is claiming yet, so the jobs stay in the table
+        runJobs(10, 200);
+        assertTrue(runs.isEmpty());
+
+        worker.service().startClaiming();
+        long deadline = System.currentTimeMillis() + 3000;
+        while (succeededInTable() < 10 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(10, succeededInTable());
+        assertEquals(10, worker.service().getClaimedJobs());
+        assertEquals(0, submitter.service().getClaimedJobs());
+    }
+
+    @Test
+    void testSubmittingNodeFollowsJobsRunElsewhere() throws Exception {
+        Map<Object, Integer> runs = new ConcurrentHashMap<>();
+        Node submitter = node("submitter", 1, countingHandler(runs, 0));
+        Node worker = node("worker", 1, countingHandler(runs, 0));
+
+        Job job = submitter.service().submitJob(new JobRequest("work", Map.of("n", 1), null, JobPriority.HIGH, 5000L));
+        CompletableFuture<JobStatusResponse> done = submitter.service().awaitTerminalStatus(job.getJobId());
+
+        worker.service().startClaiming();
+        long deadline = System.currentTimeMillis() + 3000;
+        while (succeededInTable() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, succeededInTable());
+        Job claimed = worker.repo().findById(job.getJobId());
+        assertEquals(JobPriority.HIGH, claimed.getPriority());
+        assertEquals(5000, claimed.getTimeoutMs());
+
+        // Only the worker ran the job; the submitter learns of it from the row
+        submitter.service().startClaiming();
+        assertEquals("SUCCEEDED", done.get(3, TimeUnit.SECONDS).status());
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals(JobStatus.SUCCEEDED, submitter.repo().findById(job.getJobId()).getStatus());
+        // Retained like a local job, so it leaves the submitter's index with its TTL
+        assertEquals(1, submitter.retention().getResidentCount());
+        assertEquals(1, submitter.repo().index().count(JobStatus.SUCCEEDED));
+        assertEquals(0, submitter.repo().index().count(JobStatus.QUEUED));
+        assertEquals(0, submitter.service().getClaimedJobs());
+    }
+
+    @Test
+    void testJobsOfAStoppedNodeAreTakenOverAndRetried() throws Exception {
+        LeaseSettings leases = new LeaseSettings(300, 50, 60_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch hung = new CountDownLatch(1);
+        Node stopped = node("stopped", 1, new JobHandler() {
+            @Override
+            public void execute(Map<String, Object> payload) throws Exception {
+                started.countDown();
+                hung.await();
+            }
+
+            @Override
+            public void compensate(Map<String, Object> lastKnownState) {
+            }
+        }, leases);
+        Map<Object, Integer> runs = new ConcurrentHashMap<>();
+        Node survivor = node("survivor", 1, countingHandler(runs, 0), leases);
+
+        stopped.service().startClaiming();
+        String jobId = stopped.service().submitJob(new JobRequest("work", Map.of("n", 1), null)).getJobId();
+        assertTrue(started.await(3, TimeUnit.SECONDS));
+        // The node stops renewing its leases, as if it had died in the middle of the attempt
+        stopped.service().destroy();
+        survivor.service().startClaiming();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (succeededInTable() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, succeededInTable());
+        assertEquals(1, survivor.service().getReclaimedJobs());
+        assertEquals(Map.of(1, 1), runs);
+        Map<String, Object> row = new JdbcTemplate(db).queryForMap(
+                "SELECT attempts, last_error, lease_owner, lease_until FROM jobs WHERE job_id = ?", jobId);
+        assertEquals(1, ((Number) row.get("ATTEMPTS")).intValue());
+        assertEquals("The lease of the node running it lapsed", row.get("LAST_ERROR"));
+        assertEquals("survivor", row.get("LEASE_OWNER"));
+        assertNull(row.get("LEASE_UNTIL"));
+
+        // The stopped node's attempt finishing after all must not overwrite the survivor's outcome
+        hung.countDown();
+        deadline = System.currentTimeMillis() + 2000;
+        while (stopped.repo().getFencedWrites() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, stopped.repo().getFencedWrites());
+        assertEquals(1, new JdbcTemplate(db).queryForObject(
+                "SELECT attempts FROM jobs WHERE job_id = ?", Integer.class, jobId));
+    }
+
+    @Test
+    void testClusterModeRequiresTheSharedRepository() {
+        ClusterSettings cluster = new ClusterSettings(true, "node-1", 8, 16, 5, 50);
+        InMemoryJobRepository repo = new InMemoryJobRepository();
+        JobHandlerRegistry registry = new JobHandlerRegistry();
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
+        RetryScheduler retryScheduler = new RetryScheduler(10, 500, 30_000);
+        try (ScheduleStore schedules = new ScheduleStore(100, 0)) {
+            assertThrows(IllegalStateException.class, () -> new JobService(repo,
+                    new JobBulkheads(executor, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                    executor, retryScheduler, registry, new JobMetrics(),
+                    new IdempotencyStore(3600, 10_000),
+                    new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000),
+                    List.of(), 0, PayloadStorage.MAP, Set.of(), schedules, cluster, LeaseSettings.defaults()));
+        } finally {
+            executor.shutdownNow();
+            retryScheduler.close();
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkThroughputScalesWithNodes() throws Exception {
+        int jobs = 600;
+        long sleepMs = 10;
+        double baseline = 0;
+        System.out.println("===== Cluster throughput: " + jobs + " jobs of " + sleepMs + "ms, 4 threads per node =====");
+        for (int size : new int[]{1, 2, 4}) {
+            Map<Object, Integer> runs = new ConcurrentHashMap<>();
+            for (int i = 0; i < size; i++) {
+                node("node-" + size + "-" + i, 4, countingHandler(runs, sleepMs));
+            }
+            nodes.forEach(node -> node.service().startClaiming());
+
+            long elapsed = runJobs(jobs, 60_000);
+            assertEquals(jobs, runs.size());
+            double perSecond = jobs * 1e9 / elapsed;
+            if (size == 1) baseline = perSecond;
+            System.out.printf("%d node(s): %.0f jobs/s (%.2fx)%n", size, perSecond, perSecond / baseline);
+
+            for (Node node : nodes) {
+                node.close();
+            }
+            nodes.clear();
+            new JdbcTemplate(db).update("DELETE FROM jobs");
+        }
+        System.out.println("========================================");
+    }
+}
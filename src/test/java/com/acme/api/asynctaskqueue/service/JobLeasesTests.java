@@ -0,0 +1,120 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobLeasesTests {
+
+    private RetryScheduler retryScheduler;
+    private final List<String> expired = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        retryScheduler = new RetryScheduler(10, 500, 30_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        retryScheduler.close();
+    }
+
+    private static Job job(String id) {
+        return new Job(id, "TASK", Map.of(), null);
+    }
+
+    @Test
+    void testHeartbeatKeepsLeasesUntilTheAttemptIsTooOld() throws Exception {
+        // Renewed for 400ms, then gone 100ms after the last renewal
+        JobLeases leases = new JobLeases(retryScheduler, new LeaseSettings(100, 20, 400), job -> expired.add(job.getJobId()));
+        long start = System.currentTimeMillis();
+        JobLeases.Lease lease = leases.acquire(job("job-1"));
+
+        Thread.sleep(300);
+        assertTrue(expired.isEmpty(), "renewed leases must not lapse");
+        assertEquals(1, leases.held());
+
+        long deadline = start + 2000;
+        while (expired.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("job-1"), expired);
+        assertTrue(System.currentTimeMillis() - start >= 400);
+        assertFalse(leases.release(lease), "a lapsed lease cannot be given back");
+        assertEquals(1, leases.getExpirations());
+    }
+
+    @Test
+    void testReleasedLeasesNeverLapse() throws Exception {
+        JobLeases leases = new JobLeases(retryScheduler, new LeaseSettings(50, 20, 50), job -> expired.add(job.getJobId()));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(leases.release(leases.acquire(job("job-" + i))));
+        }
+        JobLeases.Lease kept = leases.acquire(job("kept"));
+        assertEquals(1, leases.held());
+
+        Thread.sleep(300);
+        assertEquals(List.of("kept"), expired);
+        assertFalse(leases.release(kept));
+        assertEquals(0, leases.held());
+    }
+
+    @Test
+    void testLeasesAreRenewedUntilTheAttemptsOwnTimeoutAndThenGiveItUp() throws Exception {
+        JobLeases leases = new JobLeases(retryScheduler, new LeaseSettings(100, 20, 60_000), job -> expired.add(job.getJobId()));
+        List<String> givenUp = new CopyOnWriteArrayList<>();
+        long start = System.currentTimeMillis();
+        JobLeases.Lease lease = leases.acquire(job("job-1"));
+        lease.attach(reason -> givenUp.add(reason.getMessage()), 200);
+
+        long deadline = start + 2000;
+        while (expired.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of("job-1"), expired);
+        assertEquals(List.of("The attempt's lease lapsed"), givenUp);
+        long lapsedAfter = System.currentTimeMillis() - start;
+        assertTrue(lapsedAfter >= 200 && lapsedAfter < 1000, "lapsed after " + lapsedAfter + "ms");
+        assertFalse(leases.release(lease));
+    }
+
+    @Test
+    void testAttemptsParkedOnAVirtualThreadKeepTheirLease() throws Exception {
+        // A virtual thread blocked on I/O is parked like this one, and reports WAITING all along
+        JobLeases leases = new JobLeases(retryScheduler, new LeaseSettings(50, 10, 60_000), job -> expired.add(job.getJobId()));
+        AtomicBoolean done = new AtomicBoolean();
+        CompletableFuture<JobLeases.Lease> acquired = new CompletableFuture<>();
+        Thread attempt = Thread.ofVirtual().start(() -> {
+            JobLeases.Lease lease = leases.acquire(job("job-1"));
+            acquired.complete(lease);
+            AttemptDeadline.run(() -> {
+                while (!done.get()) LockSupport.park();
+                return CompletableFuture.completedFuture(null);
+            }, 0, retryScheduler, List.of(lease));
+        });
+        JobLeases.Lease lease = acquired.get(1, TimeUnit.SECONDS);
+
+        Thread.sleep(300);
+        assertEquals(Thread.State.WAITING, attempt.getState());
+        assertTrue(expired.isEmpty(), "a parked attempt is still running");
+
+        done.set(true);
+        LockSupport.unpark(attempt);
+        attempt.join(1000);
+        assertTrue(leases.release(lease));
+        assertEquals(0, leases.getExpirations());
+    }
+}
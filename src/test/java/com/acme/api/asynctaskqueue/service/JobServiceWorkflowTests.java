@@ -1,20 +1,49 @@
 package com.acme.api.asynctaskqueue.service;
 
+import com.acme.api.asynctaskqueue.config.ClusterSettings;
+import com.acme.api.asynctaskqueue.config.LeaseSettings;
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.idempotency.IdempotencyStore;
 import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
 import com.acme.api.asynctaskqueue.jobs.dto.JobStatusResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowResponse;
 import com.acme.api.asynctaskqueue.metrics.JobMetrics;
 import com.acme.api.asynctaskqueue.model.Job;
 import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.model.PayloadStorage;
 import com.acme.api.asynctaskqueue.repo.JobRepository;
+import com.acme.api.asynctaskqueue.repo.JournalJobRepository;
+import com.acme.api.asynctaskqueue.retention.JobRetentionService;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.schedule.ScheduleStore;
+import com.acme.api.asynctaskqueue.worker.AsyncJobHandler;
+import com.acme.api.asynctaskqueue.worker.BatchJobHandler;
+import com.acme.api.asynctaskqueue.worker.BatchPolicy;
+import com.acme.api.asynctaskqueue.worker.BatchResult;
 import com.acme.api.asynctaskqueue.worker.JobHandler;
 import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -25,7 +54,7 @@ public class JobServiceWorkflowTests {
     private JobHandlerRegistry registry;
     private ThreadPoolExecutor normalExecutor;
     private ThreadPoolExecutor compensationExecutor;
-    private ScheduledExecutorService retryScheduler;
+    private RetryScheduler retryScheduler;
     private JobService service;
     private JobMetrics metrics;
 
@@ -40,7 +69,7 @@ public class JobServiceWorkflowTests {
         metrics = new JobMetrics(); // real metrics
         normalExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
         compensationExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(1);
-        retryScheduler = Executors.newSingleThreadScheduledExecutor();
+        retryScheduler = new RetryScheduler(10, 500, 30_000);
 
         // simulate repo save()
         doAnswer(invocation -> {
@@ -52,7 +81,11 @@ public class JobServiceWorkflowTests {
         // simulate repo findById()
         when(repo.findById(anyString())).thenAnswer(invocation -> jobsMap.get(invocation.getArgument(0)));
 
-        service = new JobService(repo, normalExecutor, compensationExecutor, retryScheduler, registry, metrics);
+        service = new JobService(repo,
+                new JobBulkheads(normalExecutor, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                compensationExecutor, retryScheduler, registry, metrics,
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000));
     }
 
     private void printJobMetrics(String testName) {
@@ -173,6 +206,38 @@ public class JobServiceWorkflowTests {
         printJobMetrics("testDuplicateIdempotencyKey");
     }
 
+    @Test
+    void testDuplicateWaitsForTheKeyOwnerToBeSaved() throws Exception {
+        when(registry.get("EMAIL")).thenReturn(mock(JobHandler.class));
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            Job j = invocation.getArgument(0);
+            if (!jobsMap.containsKey(j.getJobId())) {
+                saving.countDown();
+                release.await();
+            }
+            jobsMap.put(j.getJobId(), j);
+            return null;
+        }).when(repo).save(any(Job.class));
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Job> owner = callers.submit(() -> service.submitJob(new JobRequest("EMAIL", Map.of(), "slow-key")));
+            assertTrue(saving.await(3, TimeUnit.SECONDS));
+            Future<Job> duplicate = callers.submit(() -> service.submitJob(new JobRequest("EMAIL", Map.of(), "slow-key")));
+
+            // The owner has claimed the key but not saved its job: the duplicate blocks rather than failing
+            Thread.sleep(200);
+            assertFalse(duplicate.isDone());
+            release.countDown();
+            assertEquals(owner.get(3, TimeUnit.SECONDS).getJobId(), duplicate.get(3, TimeUnit.SECONDS).getJobId());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
     @Test
     void testGetJobStatus() {
         Job job = new Job("job-6", "EMAIL", Map.of("to", "test@test.com"), null);
@@ -189,4 +254,443 @@ public class JobServiceWorkflowTests {
 
         printJobMetrics("testGetJobStatus");
     }
+
+    @Test
+    void testAwaitTerminalStatusCompletesWhenTheJobFinishes() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        JobHandler handler = mock(JobHandler.class);
+        doAnswer(invocation -> release.await(2, TimeUnit.SECONDS)).when(handler).execute(any());
+        when(registry.get("EMAIL")).thenReturn(handler);
+
+        Job job = service.submitJob(new JobRequest("EMAIL", Map.of("to", "user@test.com"), null));
+        CompletableFuture<JobStatusResponse> terminal = service.awaitTerminalStatus(job.getJobId());
+        assertFalse(terminal.isDone());
+
+        release.countDown();
+        assertEquals("SUCCEEDED", terminal.get(2, TimeUnit.SECONDS).status());
+
+        // A terminal job answers right away
+        assertTrue(service.awaitTerminalStatus(job.getJobId()).isDone());
+        assertThrows(IllegalArgumentException.class, () -> service.awaitTerminalStatus("missing"));
+    }
+
+    @Test
+    void testAsyncJobsDoNotHoldWorkerThreads() throws Exception {
+        // The latest attempt of each job, by its "n"; two workers start them in no particular order
+        Map<Object, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+        AtomicInteger attempts = new AtomicInteger();
+        AsyncJobHandler handler = mock(AsyncJobHandler.class);
+        when(handler.executeAsync(any())).thenAnswer(invocation -> {
+            Map<String, Object> payload = invocation.getArgument(0);
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            pending.put(payload.get("n"), result);
+            attempts.incrementAndGet();
+            return result;
+        });
+        when(registry.get("EMAIL")).thenReturn(handler);
+
+        // Twice as many jobs in flight as there are workers
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            jobs.add(service.submitJob(new JobRequest("EMAIL", Map.of("n", i), null)));
+        }
+        // Until the workers are idle, an attempt may not have subscribed to its stage yet
+        long deadline = System.currentTimeMillis() + 2000;
+        while ((attempts.get() < 4 || normalExecutor.getActiveCount() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, attempts.get());
+        assertEquals(0, normalExecutor.getActiveCount());
+        jobs.forEach(job -> assertEquals(JobStatus.RUNNING, job.getStatus()));
+
+        pending.get(0).completeExceptionally(new RuntimeException("gateway down"));
+        for (int i = 1; i < 4; i++) {
+            pending.get(i).complete(null);
+        }
+        assertEquals(JobStatus.RETRYING, jobs.get(0).getStatus());
+        assertEquals("gateway down", jobs.get(0).getLastError());
+        for (Job job : jobs.subList(1, 4)) {
+            assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        }
+
+        // The retry runs through the same handler
+        deadline = System.currentTimeMillis() + 3000;
+        while ((attempts.get() < 5 || normalExecutor.getActiveCount() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        pending.get(0).complete(null);
+        assertEquals(JobStatus.SUCCEEDED, jobs.get(0).getStatus());
+        assertEquals(1, jobs.get(0).getAttempts());
+        verify(handler, never()).execute(any());
+    }
+
+    @Test
+    void testAttemptsOutlivingTheTimeoutFailAndAreCompensated() throws Exception {
+        JobHandler blocking = mock(JobHandler.class);
+        doAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return null;
+        }).when(blocking).execute(any());
+        when(registry.get("REPORT")).thenReturn(blocking);
+
+        List<CompletableFuture<Void>> neverCompleted = new CopyOnWriteArrayList<>();
+        AsyncJobHandler async = mock(AsyncJobHandler.class);
+        when(async.executeAsync(any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            neverCompleted.add(result);
+            return result;
+        });
+        when(registry.get("EMAIL")).thenReturn(async);
+
+        Job report = service.submitJob(new JobRequest("REPORT", Map.of("reportId", 7), null, null, 100L));
+        Job email = service.submitJob(new JobRequest("EMAIL", Map.of("to", "slow@test.com"), null, null, 100L));
+        waitForJobCompletion(report.getJobId(), 5000);
+        waitForJobCompletion(email.getJobId(), 5000);
+
+        assertEquals(JobStatus.COMPENSATED, report.getStatus());
+        assertEquals(3, report.getAttempts());
+        assertTrue(report.getLastError().contains("timed out"), report.getLastError());
+        assertEquals(JobStatus.COMPENSATED, email.getStatus());
+        assertTrue(email.getLastError().contains("timed out"), email.getLastError());
+        assertEquals(3, neverCompleted.size());
+        neverCompleted.forEach(result -> assertTrue(result.isCancelled()));
+
+        // The interrupt did not leak into the workers' next jobs
+        JobHandler quick = mock(JobHandler.class);
+        doAnswer(invocation -> {
+            Thread.sleep(20);
+            return null;
+        }).when(quick).execute(any());
+        when(registry.get("QUICK")).thenReturn(quick);
+        for (int i = 0; i < 4; i++) {
+            Job job = service.submitJob(new JobRequest("QUICK", Map.of("n", i), null));
+            waitForJobCompletion(job.getJobId(), 2000);
+            assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        }
+    }
+
+    @Test
+    void testBatchHandlerRunsJobsTogetherAndTracksEachJob() throws Exception {
+        List<List<Object>> batches = new CopyOnWriteArrayList<>();
+        BatchJobHandler handler = mock(BatchJobHandler.class);
+        when(handler.batchPolicy()).thenReturn(new BatchPolicy(3, 200));
+        when(handler.executeBatch(any())).thenAnswer(invocation -> {
+            List<Map<String, Object>> payloads = invocation.getArgument(0);
+            batches.add(payloads.stream().map(payload -> payload.get("n")).toList());
+            // The first batch fails its second item only
+            return batches.size() == 1
+                    ? BatchResult.failed(Map.of(1, new RuntimeException("mailbox full")))
+                    : BatchResult.allSucceeded();
+        });
+        when(registry.find("EMAILS")).thenReturn(Optional.of(handler));
+        when(registry.get("EMAILS")).thenReturn(handler);
+
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            jobs.add(service.submitJob(new JobRequest("EMAILS", Map.of("n", i), null)));
+        }
+        for (Job job : jobs) {
+            waitForJobCompletion(job.getJobId(), 4000);
+            assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        }
+
+        // A full batch right away, the fourth job after lingering, then the failed job's retry on its own
+        assertEquals(List.of(0, 1, 2), batches.get(0));
+        assertEquals(List.of(3), batches.get(1));
+        assertEquals(List.of(1), batches.get(2));
+        assertEquals(3, batches.size());
+        assertEquals(1, jobs.get(1).getAttempts());
+        assertEquals(0, jobs.get(0).getAttempts());
+        verify(handler, never()).execute(any());
+    }
+
+    @Test
+    void testCollectorParksRejectedBatchesAndBoundsWaitingJobs() {
+        List<List<JobBatchCollector.Entry>> accepted = new CopyOnWriteArrayList<>();
+        boolean[] full = {true};
+        JobBatchCollector collector = new JobBatchCollector(retryScheduler, (type, batch) -> {
+            if (full[0]) throw new RejectedExecutionException("full");
+            accepted.add(batch);
+        }, () -> 60_000);
+
+        BatchPolicy policy = new BatchPolicy(2, 60_000);
+        int limit = policy.maxSize() * JobBatchCollector.MAX_WAITING_BATCHES;
+        for (int i = 0; i < limit; i++) {
+            collector.add(new Job("job-" + i, "EMAILS", Map.of(), null), false, policy);
+        }
+        assertEquals(limit, collector.waiting("EMAILS"));
+        assertTrue(accepted.isEmpty());
+        assertThrows(RejectedExecutionException.class,
+                () -> collector.add(new Job("job-x", "EMAILS", Map.of(), null), false, policy));
+        assertEquals(limit / policy.maxSize(), retryScheduler.getPendingRetries());
+    }
+
+    @Test
+    void testIdenticalSubmissionsOfCoalescedTypesRunOnce() throws Exception {
+        service = new JobService(repo,
+                new JobBulkheads(normalExecutor, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                compensationExecutor, retryScheduler, registry, metrics,
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000),
+                List.of(), 0, PayloadStorage.MAP, Set.of("REPORT"), new ScheduleStore(100, 0), ClusterSettings.disabled(),
+                LeaseSettings.defaults());
+
+        CountDownLatch release = new CountDownLatch(1);
+        Map<Object, Integer> runs = new ConcurrentHashMap<>();
+        JobHandler handler = mock(JobHandler.class);
+        doAnswer(invocation -> {
+            Map<String, Object> payload = invocation.getArgument(0);
+            release.await();
+            if (runs.merge(payload.get("reportName"), 1, Integer::sum) == 1) throw new RuntimeException("flaky");
+            return null;
+        }).when(handler).execute(any());
+        when(registry.get("REPORT")).thenReturn(handler);
+
+        Map<String, Object> reversed = new LinkedHashMap<>();
+        reversed.put("options", Map.of("format", "pdf", "pages", 3));
+        reversed.put("reportName", "q3");
+        List<Job> identical = new ArrayList<>();
+        identical.add(service.submitJob(new JobRequest("REPORT", Map.of("reportName", "q3",
+                "options", Map.of("pages", 3, "format", "pdf")), null)));
+        for (int i = 0; i < 4; i++) {
+            identical.add(service.submitJob(new JobRequest("REPORT", reversed, null)));
+        }
+        Job other = service.submitJob(new JobRequest("REPORT", Map.of("reportName", "q4"), null));
+        assertEquals(5, identical.stream().map(Job::getJobId).distinct().count());
+
+        release.countDown();
+        for (Job job : identical) {
+            waitForJobCompletion(job.getJobId(), 4000);
+            assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+            assertEquals(1, job.getAttempts());
+            assertEquals("flaky", job.getLastError());
+            assertNotNull(job.getCompletedAt());
+        }
+        waitForJobCompletion(other.getJobId(), 4000);
+        assertEquals(JobStatus.SUCCEEDED, other.getStatus());
+        // q3 failed once and was retried once, for all five submissions together
+        assertEquals(Map.of("q3", 2, "q4", 2), runs);
+
+        // Once the first execution has finished, the same submission runs again
+        Job again = service.submitJob(new JobRequest("REPORT", reversed, null));
+        waitForJobCompletion(again.getJobId(), 2000);
+        assertEquals(JobStatus.SUCCEEDED, again.getStatus());
+        assertEquals(0, again.getAttempts());
+        assertEquals(3, runs.get("q3"));
+    }
+
+    @Test
+    void testAttemptsWhoseLeaseLapsesAreRetried() throws Exception {
+        // Leases are renewed for 300ms at most and lapse 200ms after their last renewal
+        service = new JobService(repo,
+                new JobBulkheads(normalExecutor, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                compensationExecutor, retryScheduler, registry, metrics,
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000),
+                List.of(), 0, PayloadStorage.MAP, Set.of(), new ScheduleStore(100, 0), ClusterSettings.disabled(),
+                new LeaseSettings(200, 50, 300));
+
+        CountDownLatch hung = new CountDownLatch(1);
+        AtomicLong interruptedAt = new AtomicLong();
+        AtomicInteger calls = new AtomicInteger();
+        JobHandler handler = mock(JobHandler.class);
+        doAnswer(invocation -> {
+            // The first attempt hangs on a latch nobody counts down; it has no timeout to stop it
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    hung.await();
+                } catch (InterruptedException e) {
+                    interruptedAt.set(System.currentTimeMillis());
+                    throw e;
+                }
+            }
+            return null;
+        }).when(handler).execute(any());
+        when(registry.get("SYNC")).thenReturn(handler);
+
+        long start = System.currentTimeMillis();
+        Job job = service.submitJob(new JobRequest("SYNC", Map.of("id", 1), null));
+        waitForJobCompletion(job.getJobId(), 5000);
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals(1, job.getAttempts());
+        assertEquals("The attempt's lease lapsed", job.getLastError());
+        assertEquals(1, service.getExpiredLeases());
+
+        // The hung attempt was interrupted when its lease lapsed, giving its thread back
+        long lapsedAfter = interruptedAt.get() - start;
+        assertTrue(lapsedAfter >= 300, "the lease lapsed early");
+        // Its late failure changes nothing
+        Thread.sleep(100);
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals(1, job.getAttempts());
+        assertEquals(2, calls.get());
+        assertEquals(0, normalExecutor.getActiveCount());
+    }
+
+    @Test
+    void testRejectedJobsAreNotRecoveredAfterARestart(@TempDir Path dir) throws Exception {
+        JournalJobRepository journal = new JournalJobRepository(new ObjectMapper(), dir, 1, 5, 1000);
+        ThreadPoolExecutor full = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        service = new JobService(journal,
+                new JobBulkheads(full, new TypeConcurrencyLimiter(false, type -> 0), registry),
+                compensationExecutor, retryScheduler, registry, metrics,
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(journal, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000));
+
+        CountDownLatch busy = new CountDownLatch(1);
+        JobHandler handler = mock(JobHandler.class);
+        doAnswer(invocation -> {
+            busy.await();
+            return null;
+        }).when(handler).execute(any());
+        when(registry.get("SYNC")).thenReturn(handler);
+
+        try {
+            Job accepted = service.submitJob(new JobRequest("SYNC", Map.of("id", 1), null));
+            assertThrows(RejectedExecutionException.class,
+                    () -> service.submitJob(new JobRequest("SYNC", Map.of("id", 2), "key-2")));
+            assertEquals(1, journal.index().count(JobStatus.QUEUED) + journal.index().count(JobStatus.RUNNING));
+            journal.destroy();
+
+            // The rejected job is gone for good; only the accepted one comes back
+            JournalJobRepository restarted = new JournalJobRepository(new ObjectMapper(), dir, 1, 5, 1000);
+            try {
+                assertEquals(List.of(accepted.getJobId()),
+                        restarted.findRecoverable().stream().map(Job::getJobId).toList());
+            } finally {
+                restarted.destroy();
+            }
+        } finally {
+            busy.countDown();
+            full.shutdownNow();
+        }
+    }
+
+    @Test
+    void testWaitersAreDroppedWhenTheyGiveUp() {
+        JobCompletionWaiters waiters = new JobCompletionWaiters();
+        CompletableFuture<Void> first = waiters.register("job-1");
+        CompletableFuture<Void> second = waiters.register("job-1");
+
+        first.cancel(false);
+        assertEquals(1, waiters.size());
+        assertFalse(second.isDone());
+        second.cancel(false);
+        assertEquals(0, waiters.size());
+
+        CompletableFuture<Void> third = waiters.register("job-1");
+        waiters.complete("job-1");
+        assertTrue(third.isDone() && !third.isCancelled());
+        assertEquals(0, waiters.size());
+    }
+
+    @Test
+    void testDelayedJobsWaitUntilTheyAreDue() throws Exception {
+        JobHandler handler = mock(JobHandler.class);
+        when(registry.get("EMAIL")).thenReturn(handler);
+
+        Instant submitted = Instant.now();
+        Job job = service.submitJob(new JobRequest("EMAIL", Map.of("to", "user@test.com"), null, null, null,
+                null, 300L, null));
+        assertEquals(JobStatus.SCHEDULED, job.getStatus());
+        verify(handler, never()).execute(any());
+
+        waitForJobCompletion(job.getJobId(), 3000);
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertFalse(job.getStartedAt().isBefore(submitted.plusMillis(300)), "started at " + job.getStartedAt());
+    }
+
+    @Test
+    void testRecurringJobsRunAtEveryOccurrence() throws Exception {
+        JobHandler handler = mock(JobHandler.class);
+        when(registry.get("REPORT")).thenReturn(handler);
+
+        Job first = service.submitJob(new JobRequest("REPORT", Map.of("reportName", "hourly"), null, null, null,
+                null, null, "* * * * * *"));
+        assertEquals(JobStatus.SCHEDULED, first.getStatus());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mockingDetails(handler).getInvocations().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        verify(handler, atLeast(2)).execute(Map.of("reportName", "hourly"));
+        waitForJobCompletion(first.getJobId(), 2000);
+        assertEquals(JobStatus.SUCCEEDED, first.getStatus());
+        // The next occurrence is always waiting
+        assertTrue(jobsMap.values().stream().anyMatch(j -> j.getStatus() == JobStatus.SCHEDULED
+                && "* * * * * *".equals(j.getCron())));
+    }
+
+    @Test
+    void testRecoveredScheduledJobsWaitForTheirTime() throws Exception {
+        JobHandler handler = mock(JobHandler.class);
+        when(registry.get("EMAIL")).thenReturn(handler);
+        Instant runAt = Instant.now().plusMillis(400);
+        Job job = new Job("scheduled-1", "EMAIL", Map.of("to", "user@test.com"), null);
+        job.setSchedule(runAt, null);
+        job.setStatus(JobStatus.SCHEDULED);
+        jobsMap.put(job.getJobId(), job);
+        when(repo.findRecoverable()).thenReturn(List.of(job));
+
+        service.resumeRecoveredJobs();
+        Thread.sleep(100);
+        assertEquals(JobStatus.SCHEDULED, job.getStatus());
+        verify(handler, never()).execute(any());
+
+        waitForJobCompletion(job.getJobId(), 3000);
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertFalse(job.getStartedAt().isBefore(runAt), "started at " + job.getStartedAt());
+    }
+
+    @Test
+    void testInvalidSchedulesAreRejected() {
+        Map<String, Object> payload = Map.of("to", "user@test.com");
+        assertThrows(IllegalArgumentException.class, () -> service.submitJob(new JobRequest("EMAIL", payload, null,
+                null, null, Instant.now(), 100L, null)));
+        assertThrows(IllegalArgumentException.class, () -> service.submitJob(new JobRequest("EMAIL", payload, null,
+                null, null, null, -1L, null)));
+        assertThrows(IllegalArgumentException.class, () -> service.submitJob(new JobRequest("EMAIL", payload, null,
+                null, null, null, null, "not a cron")));
+        assertTrue(jobsMap.isEmpty());
+    }
+
+    @Test
+    void testFailedWorkflowsAreCompensatedInReverseOrder() throws Exception {
+        JobHandler report = mock(JobHandler.class);
+        JobHandler email = mock(JobHandler.class);
+        doThrow(new RuntimeException("smtp down")).when(email).execute(any());
+        when(registry.get("REPORT")).thenReturn(report);
+        when(registry.get("EMAIL")).thenReturn(email);
+
+        WorkflowResponse submitted = service.submitWorkflow(new WorkflowRequest(List.of(
+                new WorkflowJobRequest("report", "REPORT", Map.of("reportName", "Q3"), null),
+                new WorkflowJobRequest("email", "EMAIL", Map.of("to", "cfo@test.com"), List.of("report")),
+                new WorkflowJobRequest("notify", "EMAIL", Map.of("to", "ops@test.com"), List.of("email")))));
+        assertEquals("RUNNING", submitted.status());
+        assertEquals("BLOCKED", submitted.jobs().get(1).status());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        WorkflowResponse workflow = submitted;
+        while (workflow.status().equals("RUNNING") || workflow.status().equals("COMPENSATING")) {
+            assertTrue(System.currentTimeMillis() < deadline, workflow.toString());
+            Thread.sleep(50);
+            workflow = service.getWorkflow(submitted.workflowId());
+        }
+
+        assertEquals("COMPENSATED", workflow.status());
+        assertEquals(List.of("SUCCEEDED", "COMPENSATED", "CANCELLED"),
+                workflow.jobs().stream().map(WorkflowJobResponse::status).toList());
+        assertEquals("COMPENSATED", workflow.jobs().get(0).compensation());
+        verify(email, times(3)).execute(any());
+        // The email is undone before the report it was about
+        InOrder order = inOrder(email, report);
+        order.verify(email).compensate(any());
+        order.verify(report).compensate(any());
+        verify(email, never()).execute(Map.of("to", "ops@test.com"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.getWorkflow("unknown"));
+        assertThrows(IllegalArgumentException.class, () -> service.submitWorkflow(new WorkflowRequest(List.of(
+                new WorkflowJobRequest("a", "REPORT", Map.of(), List.of("b")),
+                new WorkflowJobRequest("b", "REPORT", Map.of(), List.of("a"))))));
+    }
 }
@@ -0,0 +1,176 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobRequest;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowJobResponse;
+import com.acme.api.asynctaskqueue.jobs.dto.WorkflowResponse;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JobWorkflowsTests {
+
+    private RetryScheduler retryScheduler;
+    private JobWorkflows workflows;
+    private final Queue<Job> released = new ArrayDeque<>();
+    private final List<String> compensated = new ArrayList<>();
+    private final Map<String, Job> jobs = new HashMap<>();
+
+    @BeforeEach
+    void setup() {
+        retryScheduler = new RetryScheduler(10, 500, 30_000);
+        workflows = new JobWorkflows(job -> {
+            if (job.getStatus() == JobStatus.BLOCKED) move(job, JobStatus.QUEUED);
+            released.add(job);
+        }, job -> move(job, JobStatus.CANCELLED), (job, then) -> {
+            compensated.add(job.getType());
+            then.accept(JobStatus.COMPENSATED);
+        }, retryScheduler);
+    }
+
+    @AfterEach
+    void tearDown() {
+        retryScheduler.close();
+    }
+
+    private void move(Job job, JobStatus status) {
+        job.transition(status);
+        workflows.onTransition(job, status);
+    }
+
+    /** Jobs are named after their type, so the tests can tell them apart. */
+    private JobWorkflows.Workflow submit(WorkflowJobRequest... nodes) {
+        return workflows.submit(List.of(nodes), node -> new Job(UUID.randomUUID().toString(), node.name(), null, null),
+                job -> jobs.put(job.getType(), job));
+    }
+
+    private static WorkflowJobRequest node(String name, String... dependsOn) {
+        return new WorkflowJobRequest(name, "TASK", Map.of(), List.of(dependsOn));
+    }
+
+    private List<String> drainReleased() {
+        List<String> names = new ArrayList<>();
+        for (Job job; (job = released.poll()) != null; ) {
+            names.add(job.getType());
+        }
+        return names;
+    }
+
+    private void succeed(String name) {
+        move(jobs.get(name), JobStatus.RUNNING);
+        move(jobs.get(name), JobStatus.SUCCEEDED);
+    }
+
+    @Test
+    void testJobsRunOnceAllTheirParentsSucceeded() {
+        JobWorkflows.Workflow workflow = submit(node("split"), node("left", "split"), node("right", "split"),
+                node("join", "left", "right"));
+        assertEquals(List.of("split"), drainReleased());
+        assertEquals(JobStatus.BLOCKED, jobs.get("join").getStatus());
+
+        succeed("split");
+        assertEquals(List.of("left", "right"), drainReleased());
+        succeed("right");
+        assertEquals(List.of(), drainReleased());
+        assertEquals(JobStatus.BLOCKED, jobs.get("join").getStatus());
+        succeed("left");
+        assertEquals(List.of("join"), drainReleased());
+        succeed("join");
+
+        WorkflowResponse response = workflows.find(workflow.id);
+        assertEquals("SUCCEEDED", response.status());
+        assertEquals(List.of("split", "left", "right", "join"),
+                response.jobs().stream().map(WorkflowJobResponse::name).toList());
+        assertTrue(compensated.isEmpty());
+    }
+
+    @Test
+    void testFailureCancelsBlockedJobsAndCompensatesInReverseOrder() {
+        JobWorkflows.Workflow workflow = submit(node("report"), node("upload", "report"),
+                node("email", "upload"), node("audit"), node("archive", "report"));
+        assertEquals(List.of("report", "audit"), drainReleased());
+        succeed("report");
+        assertEquals(List.of("upload", "archive"), drainReleased());
+        succeed("upload");
+        assertEquals(List.of("email"), drainReleased());
+        move(jobs.get("audit"), JobStatus.RUNNING);
+        move(jobs.get("archive"), JobStatus.RUNNING);
+
+        // email fails for good; it is compensated by the usual path
+        move(jobs.get("email"), JobStatus.RUNNING);
+        move(jobs.get("email"), JobStatus.FAILED);
+        assertEquals("COMPENSATING", workflows.find(workflow.id).status());
+        move(jobs.get("email"), JobStatus.COMPENSATED);
+
+        // Nothing is compensated while audit and archive are still running
+        move(jobs.get("audit"), JobStatus.SUCCEEDED);
+        assertTrue(compensated.isEmpty());
+        move(jobs.get("archive"), JobStatus.SUCCEEDED);
+        assertEquals(List.of("archive", "upload", "audit", "report"), compensated);
+
+        WorkflowResponse response = workflows.find(workflow.id);
+        assertEquals("COMPENSATED", response.status());
+        assertEquals(List.of("SUCCEEDED", "SUCCEEDED", "COMPENSATED", "SUCCEEDED", "SUCCEEDED"),
+                response.jobs().stream().map(WorkflowJobResponse::status).toList());
+        assertEquals("COMPENSATED", response.jobs().get(0).compensation());
+        assertNull(response.jobs().get(2).compensation());
+    }
+
+    @Test
+    void testBlockedJobsAreCancelledWhenARootFails() {
+        JobWorkflows.Workflow workflow = submit(node("a"), node("b", "a"), node("c", "b"));
+        move(jobs.get("a"), JobStatus.RUNNING);
+        move(jobs.get("a"), JobStatus.FAILED);
+        assertEquals(JobStatus.CANCELLED, jobs.get("b").getStatus());
+        assertEquals(JobStatus.CANCELLED, jobs.get("c").getStatus());
+        move(jobs.get("a"), JobStatus.COMPENSATION_FAILED);
+
+        assertEquals("COMPENSATION_FAILED", workflows.find(workflow.id).status());
+        assertTrue(compensated.isEmpty());
+    }
+
+    @Test
+    void testInvalidWorkflowsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> submit(node("a", "c"), node("b", "a"), node("c", "b")));
+        assertThrows(IllegalArgumentException.class, () -> submit(node("a", "a")));
+        assertThrows(IllegalArgumentException.class, () -> submit(node("a"), node("b", "x")));
+        assertThrows(IllegalArgumentException.class, () -> submit(node("a"), node("a")));
+        assertThrows(IllegalArgumentException.class, () -> submit());
+        assertTrue(jobs.isEmpty());
+        assertTrue(released.isEmpty());
+    }
+
+    @Test
+    void testLargeWorkflowsScheduleInLinearTime() {
+        // A chain with a fan-out at every step; scanning for ready jobs after every success would take minutes
+        int n = 50_000;
+        WorkflowJobRequest[] nodes = new WorkflowJobRequest[2 * n];
+        nodes[0] = node("step-0");
+        nodes[1] = node("leaf-0", "step-0");
+        for (int i = 1; i < n; i++) {
+            nodes[2 * i] = node("step-" + i, "step-" + (i - 1));
+            nodes[2 * i + 1] = node("leaf-" + i, "step-" + i, "leaf-" + (i - 1));
+        }
+        JobWorkflows.Workflow workflow = submit(nodes);
+
+        int ran = 0;
+        for (Job job; (job = released.poll()) != null; ran++) {
+            move(job, JobStatus.RUNNING);
+            move(job, JobStatus.SUCCEEDED);
+        }
+        assertEquals(2 * n, ran);
+        assertEquals("SUCCEEDED", workflows.find(workflow.id).status());
+    }
+}
@@ -0,0 +1,135 @@
+package com.acme.api.asynctaskqueue.service;
+
+import com.acme.api.asynctaskqueue.executor.JobBulkheads;
+import com.acme.api.asynctaskqueue.executor.TypeConcurrencyLimiter;
+import com.acme.api.asynctaskqueue.idempotency.IdempotencyStore;
+import com.acme.api.asynctaskqueue.jobs.dto.JobRequest;
+import com.acme.api.asynctaskqueue.metrics.JobMetrics;
+import com.acme.api.asynctaskqueue.model.Job;
+import com.acme.api.asynctaskqueue.model.JobStatus;
+import com.acme.api.asynctaskqueue.repo.InMemoryJobRepository;
+import com.acme.api.asynctaskqueue.retention.JobRetentionService;
+import com.acme.api.asynctaskqueue.retry.RetryScheduler;
+import com.acme.api.asynctaskqueue.worker.JobHandler;
+import com.acme.api.asynctaskqueue.worker.JobHandlerRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadExecutionTests {
+
+    /** Stands in for SMTP/DB I/O: blocks, then records when the job finished. */
+    private static class BlockingHandler implements JobHandler {
+        private final long sleepMs;
+        private final CountDownLatch gate;
+        final Map<Object, Long> finishedAt = new ConcurrentHashMap<>();
+
+        BlockingHandler(long sleepMs, CountDownLatch gate) {
+            this.sleepMs = sleepMs;
+            this.gate = gate;
+        }
+
+        @Override
+        public void execute(Map<String, Object> payload) throws Exception {
+            if (gate != null) gate.await();
+            Thread.sleep(sleepMs);
+            finishedAt.put(payload.get("n"), System.nanoTime());
+        }
+
+        @Override
+        public void compensate(Map<String, Object> lastKnownState) {
+        }
+    }
+
+    private JobService service(ExecutorService executor, TypeConcurrencyLimiter limiter, JobHandler handler) {
+        InMemoryJobRepository repo = new InMemoryJobRepository();
+        JobHandlerRegistry registry = new JobHandlerRegistry();
+        registry.register("io", handler);
+        return new JobService(repo, new JobBulkheads(executor, limiter, registry), (ThreadPoolExecutor) Executors.newFixedThreadPool(1),
+                new RetryScheduler(10, 500, 30_000), registry, new JobMetrics(),
+                new IdempotencyStore(3600, 10_000),
+                new JobRetentionService(repo, 3600, 3600, 3600, 10_000, 10_000, 60_000, 1000));
+    }
+
+    @Test
+    void testPermitsBoundInFlightJobsPerType() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        TypeConcurrencyLimiter limiter = new TypeConcurrencyLimiter(true, type -> 2);
+        JobService service = service(Executors.newVirtualThreadPerTaskExecutor(), limiter, new BlockingHandler(0, gate));
+
+        Job first = service.submitJob(new JobRequest("io", Map.of("n", 1), null));
+        service.submitJob(new JobRequest("io", Map.of("n", 2), null));
+        assertThrows(RejectedExecutionException.class,
+                () -> service.submitJob(new JobRequest("io", Map.of("n", 3), null)));
+        assertEquals(2, limiter.inUse("io"));
+
+        gate.countDown();
+        long deadline = System.currentTimeMillis() + 3000;
+        while (limiter.inUse("io") > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, limiter.inUse("io"));
+        assertEquals(JobStatus.SUCCEEDED, first.getStatus());
+        assertNotNull(service.submitJob(new JobRequest("io", Map.of("n", 4), null)));
+    }
+
+    /**
+     * Throughput and p99 latency of I/O-bound jobs: the current 5-thread pool against one virtual thread per
+     * job. Run with {@code mvn test -Dbenchmarks=true}.
+     */
+    @Test
+    @Tag("benchmark")
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkPlatformPoolVersusVirtualThreads() throws Exception {
+        int jobs = Integer.getInteger("virtual.jobs", 2000);
+        long ioMs = Long.getLong("virtual.io-ms", 50);
+
+        System.out.println("===== Execution mode benchmark (" + jobs + " jobs, " + ioMs + "ms blocking I/O) =====");
+        run("platform pool (5 threads)", new ThreadPoolExecutor(5, 5, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()), new TypeConcurrencyLimiter(false, t -> 0), jobs, ioMs);
+        run("virtual threads (1000 permits)", Executors.newVirtualThreadPerTaskExecutor(),
+                new TypeConcurrencyLimiter(true, t -> 1000), jobs, ioMs);
+        System.out.println("========================================");
+    }
+
+    private void run(String label, ExecutorService executor, TypeConcurrencyLimiter limiter, int jobs, long ioMs)
+            throws Exception {
+        BlockingHandler handler = new BlockingHandler(ioMs, null);
+        JobService service = service(executor, limiter, handler);
+        long[] submittedAt = new long[jobs];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            submittedAt[i] = System.nanoTime();
+            while (true) {
+                try {
+                    service.submitJob(new JobRequest("io", Map.of("n", i), null));
+                    break;
+                } catch (RejectedExecutionException full) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        while (handler.finishedAt.size() < jobs) {
+            Thread.sleep(5);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < jobs; i++) {
+            latencies.add(handler.finishedAt.get(i) - submittedAt[i]);
+        }
+        Collections.sort(latencies);
+        long p99 = latencies.get((int) Math.ceil(jobs * 0.99) - 1);
+        System.out.printf("%-32s throughput=%.0f jobs/s p99=%dms%n", label, jobs / seconds, p99 / 1_000_000);
+        executor.shutdown();
+    }
+}